@@ -0,0 +1,817 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import com.sistemaexperto.service.ClipsService;
+import com.sistemaexperto.service.clips.AnalisisReglas;
+import com.sistemaexperto.service.clips.motor.*;
+
+import javax.lang.model.SourceVersion;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Genera en el build el código Java de las reglas CLIPS: una clase por archivo .clp cuyas reglas
+ * comparan directamente los campos de {@link HechosCaso}, y la implementación de
+ * {@link ReglasCompiladas} que las reúne. Se ejecuta en la fase process-classes (ver pom.xml)
+ * sobre los mismos archivos que carga ClipsService; las clases generadas se compilan a
+ * continuación y quedan registradas para ServiceLoader.
+ *
+ * Las fuentes se compilan primero con el motor embebido, así que sólo se genera código para
+ * reglas que ese motor acepta, y de su red Rete salen los valores por defecto de las plantillas
+ * y el orden en que los hechos activan cada patrón. Cada regla se evalúa como la evalúa el motor
+ * sobre los hechos de un caso: un lazo por cada patrón respuesta, las mismas comparaciones de
+ * tipos de CLIPS ((eq si "si") es FALSE) y la recencia de los hechos para ordenar la agenda.
+ *
+ * Se compilan las reglas cuyos patrones son todos hechos de entrada del caso. Las que dependen
+ * de hechos que afirman otras reglas (las de seguridad sobre diagnostico o solucion) quedan
+ * fuera, y las plantillas que también afirman ellas no se reproducen. Si una regla afirma un
+ * hecho de entrada el build falla: las reglas compiladas no se encadenan.
+ *
+ * Las reglas que quedan sin compilar tienen que estar listadas en el pom
+ * (reglas.no-compiladas): una regla nueva que no se puede compilar hace fallar el build en lugar
+ * de dejar al camino Java sin ella sin que nadie lo note.
+ *
+ * Uso: GeneradorReglasCompiladas &lt;directorio de los .clp&gt; &lt;salida de fuentes&gt; &lt;salida de clases&gt;
+ * [reglas sin compilar permitidas, separadas por comas]
+ */
+public final class GeneradorReglasCompiladas {
+
+    static final String CATALOGO = "ReglasClipsGeneradas";
+
+    private static final String CABECERA = "// Generado por GeneradorReglasCompiladas a partir de las reglas .clp; no editar.\n";
+    private static final Simbolo FLECHA = new Simbolo("=>");
+    private static final String RESPUESTA = "respuesta";
+
+    /**
+     * Slots que escribe EscritorHechosClips y el campo de HechosCaso que los contiene; los demás
+     * slots de estas plantillas toman su valor por defecto
+     */
+    private static final Map<String, Map<String, Campo>> ENTRADAS = Map.of(
+        "caso", Map.of(
+            "id", new Campo("id", Tipo.LONG, false),
+            "fecha", new Campo("fecha", Tipo.CADENA, false),
+            "cliente", new Campo("cliente", Tipo.CADENA, false),
+            "telefono", new Campo("telefono", Tipo.CADENA, false),
+            "direccion", new Campo("direccion", Tipo.CADENA, false),
+            "estado", new Campo("estado", Tipo.SIMBOLO, false)),
+        "electrodomestico", Map.of(
+            "caso-id", new Campo("id", Tipo.LONG, false),
+            "tipo", new Campo("tipo", Tipo.SIMBOLO, false),
+            "marca", new Campo("marca", Tipo.CADENA, false),
+            "modelo", new Campo("modelo", Tipo.CADENA, false),
+            "antiguedad", new Campo("antiguedad", Tipo.LONG, false),
+            "en-garantia", new Campo("enGarantia", Tipo.SIMBOLO, false)),
+        "sintoma", Map.of(
+            "caso-id", new Campo("id", Tipo.LONG, false),
+            "descripcion", new Campo("descripcion", Tipo.CADENA, false),
+            "gravedad", new Campo("gravedad", Tipo.SIMBOLO, false)),
+        RESPUESTA, Map.of(
+            "caso-id", new Campo("id", Tipo.LONG, false),
+            "pregunta", new Campo("pregunta", Tipo.CADENA, true),
+            "valor", new Campo("valor", Tipo.VALOR, true)));
+
+    /** Posición en la memoria de trabajo de los hechos de entrada que hay uno por caso */
+    private static final Map<String, Integer> POSICIONES = Map.of("caso", 0, "electrodomestico", 1, "sintoma", 2);
+
+    private final Map<String, String> fuentes;
+    private final String version;
+    private final ProgramaClips programa;
+    private final Map<String, List<ReglaFuente>> reglasPorArchivo = new LinkedHashMap<>();
+    private final List<String> compiladas = new ArrayList<>();
+    private final List<String> noCompiladas = new ArrayList<>();
+    private final Set<String> plantillas = new TreeSet<>();
+
+    GeneradorReglasCompiladas(Map<String, String> fuentes) {
+        this.fuentes = fuentes;
+        this.version = AnalisisReglas.huella(List.copyOf(fuentes.values()));
+        CompiladorClips compilador = new CompiladorClips();
+        fuentes.forEach((nombre, fuente) -> compilador.agregar(fuente, nombre));
+        this.programa = compilador.compilar();
+        clasificar();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            throw new IllegalArgumentException("Uso: GeneradorReglasCompiladas <directorio .clp> <salida de fuentes> "
+                + "<salida de clases> [reglas sin compilar permitidas]");
+        }
+        Set<String> permitidas = new TreeSet<>();
+        if (args.length == 4) {
+            Arrays.stream(args[3].split(",")).map(String::strip).filter(nombre -> !nombre.isEmpty()).forEach(permitidas::add);
+        }
+        Map<String, String> fuentes = new LinkedHashMap<>();
+        for (String ruta : ClipsService.ARCHIVOS_REGLAS) {
+            String nombre = ruta.substring(ruta.lastIndexOf('/') + 1);
+            Path archivo = Path.of(args[0], nombre);
+            if (Files.isRegularFile(archivo)) {
+                fuentes.put(nombre, Files.readString(archivo, StandardCharsets.UTF_8));
+            }
+        }
+
+        GeneradorReglasCompiladas generador = new GeneradorReglasCompiladas(fuentes);
+        generador.verificarNoCompiladas(permitidas);
+        int clases = generador.escribir(Path.of(args[1]), Path.of(args[2]));
+        System.out.printf("Reglas CLIPS %s compiladas a Java: %d reglas en %d clases, sin compilar %s%n",
+            generador.version, generador.compiladas.size(), clases, generador.noCompiladas);
+    }
+
+    /**
+     * Falla si alguna regla quedó sin compilar fuera de las permitidas; las permitidas que ya se
+     * compilan o no existen sólo se avisan, para que se borren de la lista
+     */
+    void verificarNoCompiladas(Set<String> permitidas) {
+        List<String> nuevas = noCompiladas.stream().filter(regla -> !permitidas.contains(regla)).toList();
+        if (!nuevas.isEmpty()) {
+            throw new IllegalStateException("Reglas CLIPS que no se pueden compilar a Java: " + nuevas
+                + ". Dependen de hechos que afirman otras reglas; si es intencional, agregarlas a reglas.no-compiladas en pom.xml");
+        }
+        List<String> sobrantes = permitidas.stream().filter(regla -> !noCompiladas.contains(regla)).toList();
+        if (!sobrantes.isEmpty()) {
+            System.out.printf("reglas.no-compiladas lista reglas que ya no quedan sin compilar: %s%n", sobrantes);
+        }
+    }
+
+    /**
+     * Código de cada clase generada por nombre de clase
+     */
+    Map<String, String> generar() {
+        Map<String, String> clases = new LinkedHashMap<>();
+        List<String> clasesArchivo = new ArrayList<>();
+        reglasPorArchivo.forEach((archivo, reglas) -> {
+            List<ReglaFuente> conEfecto = reglas.stream().filter(this::tieneEfecto).toList();
+            if (conEfecto.isEmpty()) {
+                return;
+            }
+            String nombre = "Reglas" + capitalizar(camel(archivo.replaceFirst("\\.clp$", "")));
+            clases.put(nombre, new ClaseArchivo(nombre, archivo).generar(conEfecto));
+            clasesArchivo.add(nombre);
+        });
+        clases.put(CATALOGO, generarCatalogo(clasesArchivo));
+        return clases;
+    }
+
+    /**
+     * Escribe las fuentes generadas (sólo si cambiaron, para no forzar la recompilación) y el
+     * registro de ServiceLoader. Retorna la cantidad de clases.
+     */
+    int escribir(Path salidaFuentes, Path salidaClases) throws IOException {
+        String paquete = GeneradorReglasCompiladas.class.getPackageName();
+        Path directorio = salidaFuentes.resolve(paquete.replace('.', '/'));
+        Files.createDirectories(directorio);
+
+        Map<String, String> clases = generar();
+        try (Stream<Path> anteriores = Files.list(directorio)) {
+            for (Path anterior : anteriores.toList()) {
+                String archivo = anterior.getFileName().toString();
+                if (!clases.containsKey(archivo.replaceFirst("\\.java$", ""))) {
+                    Files.delete(anterior);
+                }
+            }
+        }
+        for (Map.Entry<String, String> clase : clases.entrySet()) {
+            escribirSiCambio(directorio.resolve(clase.getKey() + ".java"), clase.getValue());
+        }
+
+        Path servicios = salidaClases.resolve("META-INF/services");
+        Files.createDirectories(servicios);
+        escribirSiCambio(servicios.resolve(ReglasCompiladas.class.getName()), paquete + "." + CATALOGO + "\n");
+        return clases.size();
+    }
+
+    private static void escribirSiCambio(Path archivo, String contenido) throws IOException {
+        if (Files.isRegularFile(archivo) && Files.readString(archivo, StandardCharsets.UTF_8).equals(contenido)) {
+            return;
+        }
+        Files.writeString(archivo, contenido, StandardCharsets.UTF_8);
+    }
+
+    // ---------- clasificación ----------
+
+    private void clasificar() {
+        Set<String> afirmadasCompiladas = new HashSet<>();
+        Set<String> afirmadasOtras = new HashSet<>();
+        fuentes.forEach((archivo, fuente) -> {
+            List<ReglaFuente> reglas = new ArrayList<>();
+            for (Object construccion : LectorClips.leerTodo(fuente, archivo)) {
+                if (!(construccion instanceof List<?> lista) || !new Simbolo("defrule").equals(lista.get(0))) {
+                    continue;
+                }
+                ReglaFuente regla = ReglaFuente.de(lista, archivo);
+                for (String plantilla : regla.afirmadas()) {
+                    if (ENTRADAS.containsKey(plantilla)) {
+                        throw new IllegalStateException(archivo + ": la regla " + regla.nombre()
+                            + " afirma hechos " + plantilla + ", las reglas compiladas no se encadenan sobre hechos de entrada");
+                    }
+                }
+                if (ENTRADAS.keySet().containsAll(regla.plantillasPatrones())) {
+                    reglas.add(regla);
+                    compiladas.add(regla.nombre());
+                    afirmadasCompiladas.addAll(regla.afirmadas());
+                } else {
+                    noCompiladas.add(regla.nombre());
+                    afirmadasOtras.addAll(regla.afirmadas());
+                }
+            }
+            reglasPorArchivo.put(archivo, reglas);
+        });
+        plantillas.addAll(afirmadasCompiladas);
+        plantillas.removeAll(afirmadasOtras);
+    }
+
+    private boolean tieneEfecto(ReglaFuente regla) {
+        return regla.afirmadas().stream().anyMatch(plantillas::contains);
+    }
+
+    private Regla reglaCompilada(String nombre) {
+        return programa.getReglas().stream()
+            .filter(regla -> regla.getNombre().equals(nombre))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    // ---------- catálogo ----------
+
+    private String generarCatalogo(List<String> clasesArchivo) {
+        StringBuilder codigo = new StringBuilder(CABECERA);
+        codigo.append("package ").append(GeneradorReglasCompiladas.class.getPackageName()).append(";\n\n")
+            .append("import java.util.List;\nimport java.util.Set;\n\n")
+            .append("/**\n * Reglas CLIPS compiladas a Java desde ").append(String.join(", ", fuentes.keySet()))
+            .append(" (versión ").append(version).append(").\n */\n")
+            .append("public final class ").append(CATALOGO).append(" implements ReglasCompiladas {\n\n")
+            .append("    static final String VERSION = ").append(literal(version)).append(";\n");
+        for (String plantilla : plantillas) {
+            Plantilla definicion = programa.getPlantilla(plantilla);
+            codigo.append("    static final AgendaCompilada.Plantilla ").append(nombreConstante(plantilla))
+                .append(" = new AgendaCompilada.Plantilla(").append(literal(plantilla));
+            for (String slot : definicion.getSlots()) {
+                codigo.append(", ").append(literal(slot));
+            }
+            codigo.append(");\n");
+        }
+        codigo.append("\n    private static final List<String> REGLAS = ").append(lista("List", compiladas)).append(";\n")
+            .append("    private static final List<String> NO_COMPILADAS = ").append(lista("List", noCompiladas)).append(";\n")
+            .append("    private static final Set<String> PLANTILLAS = ").append(lista("Set", plantillas)).append(";\n\n")
+            .append("    @Override\n    public String getVersion() {\n        return VERSION;\n    }\n\n")
+            .append("    @Override\n    public List<String> getReglas() {\n        return REGLAS;\n    }\n\n")
+            .append("    @Override\n    public List<String> getReglasNoCompiladas() {\n        return NO_COMPILADAS;\n    }\n\n")
+            .append("    @Override\n    public Set<String> getPlantillas() {\n        return PLANTILLAS;\n    }\n\n")
+            .append("    @Override\n    public void activar(HechosCaso hechos, AgendaCompilada agenda) {\n");
+        for (String clase : clasesArchivo) {
+            codigo.append("        ").append(clase).append(".activar(hechos, agenda);\n");
+        }
+        return codigo.append("    }\n}\n").toString();
+    }
+
+    private static String lista(String tipo, Collection<String> valores) {
+        StringJoiner elementos = new StringJoiner(", ", tipo + ".of(", ")");
+        valores.forEach(valor -> elementos.add(literal(valor)));
+        return elementos.toString();
+    }
+
+    // ---------- una clase por archivo ----------
+
+    /**
+     * Código de las reglas de un archivo. Los símbolos constantes se declaran una vez por clase.
+     */
+    private final class ClaseArchivo {
+
+        private final String nombre;
+        private final String archivo;
+        private final Map<Simbolo, String> simbolos = new LinkedHashMap<>();
+        private final Set<String> identificadores = new HashSet<>();
+
+        ClaseArchivo(String nombre, String archivo) {
+            this.nombre = nombre;
+            this.archivo = archivo;
+        }
+
+        String generar(List<ReglaFuente> reglas) {
+            StringBuilder metodos = new StringBuilder();
+            List<String> llamadas = new ArrayList<>();
+            for (ReglaFuente regla : reglas) {
+                String metodo = identificador(camel(regla.nombre()));
+                llamadas.add(metodo);
+                new CodigoRegla(this, regla, reglaCompilada(regla.nombre())).generar(metodo, metodos);
+            }
+
+            StringBuilder codigo = new StringBuilder(CABECERA);
+            codigo.append("package ").append(GeneradorReglasCompiladas.class.getPackageName()).append(";\n\n")
+                .append("import com.sistemaexperto.service.clips.motor.Expresion;\n")
+                .append("import com.sistemaexperto.service.clips.motor.Simbolo;\n\n")
+                .append("import java.util.Objects;\n\n")
+                .append("/**\n * Reglas de ").append(archivo).append(" compiladas a Java (versión ").append(version)
+                .append(").\n * Los printout se omiten; los assert de plantillas que no reproduce ")
+                .append(CATALOGO).append(" también.\n */\n")
+                .append("final class ").append(nombre).append(" {\n\n");
+            simbolos.forEach((simbolo, constante) -> codigo.append("    private static final Simbolo ")
+                .append(constante).append(" = new Simbolo(").append(literal(simbolo.nombre())).append(");\n"));
+            codigo.append("\n    private ").append(nombre).append("() {\n    }\n\n")
+                .append("    static void activar(HechosCaso h, AgendaCompilada agenda) {\n");
+            for (String llamada : llamadas) {
+                codigo.append("        ").append(llamada).append("(h, agenda);\n");
+            }
+            return codigo.append("    }\n").append(metodos).append("}\n").toString();
+        }
+
+        String simbolo(Simbolo simbolo) {
+            if (Simbolo.TRUE.equals(simbolo) || Simbolo.FALSE.equals(simbolo) || Simbolo.NIL.equals(simbolo)) {
+                return "Simbolo." + simbolo.nombre().toUpperCase(Locale.ROOT);
+            }
+            return simbolos.computeIfAbsent(simbolo, s -> identificador(nombreConstante(s.nombre())));
+        }
+
+        private String identificador(String base) {
+            String nombre = base;
+            for (int i = 2; !identificadores.add(nombre); i++) {
+                nombre = base + i;
+            }
+            return nombre;
+        }
+    }
+
+    /**
+     * Método de una regla: un bloque por patrón (un lazo si es respuesta) con sus comparaciones
+     * y los (test ...) que lo siguen, y en el centro la activación con el lado derecho
+     */
+    private final class CodigoRegla {
+
+        private final ClaseArchivo clase;
+        private final ReglaFuente regla;
+        private final Regla compilada;
+        private final Map<String, Expr> variables = new HashMap<>();
+
+        CodigoRegla(ClaseArchivo clase, ReglaFuente regla, Regla compilada) {
+            this.clase = clase;
+            this.regla = regla;
+            this.compilada = compilada;
+        }
+
+        void generar(String metodo, StringBuilder codigo) {
+            codigo.append("\n    // ").append(comentario(regla.nombre())).append('\n')
+                .append("    private static void ").append(metodo).append("(HechosCaso h, AgendaCompilada agenda) {\n");
+
+            StringBuilder cuerpo = new StringBuilder();
+            String sangria = "        ";
+            int bloques = 0;
+            int posicionFija = -1;
+            int ordenFijo = 0;
+            List<String[]> recencias = new ArrayList<>();
+
+            for (int patron = 0; patron < regla.patrones().size(); patron++) {
+                List<?> ce = regla.patrones().get(patron);
+                String plantilla = ce.get(0).toString();
+                int orden = programa.ordenActivacion(compilada, patron);
+                cuerpo.append(sangria).append("// ").append(comentario(texto(ce))).append('\n');
+
+                String hecho = "h";
+                if (RESPUESTA.equals(plantilla)) {
+                    String indice = "i" + patron;
+                    hecho = "r" + patron;
+                    cuerpo.append(sangria).append("for (int ").append(indice).append(" = 0; ").append(indice)
+                        .append(" < h.respuestas.length; ").append(indice).append("++) {\n");
+                    sangria += "    ";
+                    cuerpo.append(sangria).append("HechosCaso.HechoRespuesta ").append(hecho)
+                        .append(" = h.respuestas[").append(indice).append("];\n");
+                    recencias.add(new String[] {indice, String.valueOf(orden)});
+                    bloques++;
+                } else if (POSICIONES.get(plantilla) > posicionFija) {
+                    posicionFija = POSICIONES.get(plantilla);
+                    ordenFijo = orden;
+                }
+
+                List<String> condiciones = new ArrayList<>();
+                for (Object elemento : ce.subList(1, ce.size())) {
+                    List<?> restriccion = (List<?>) elemento;
+                    Expr slot = campo(plantilla, restriccion.get(0).toString(), hecho);
+                    Object valor = restriccion.get(1);
+                    if (valor instanceof Variable variable) {
+                        if (variable.isComodin()) {
+                            continue;
+                        }
+                        Expr ligada = variables.putIfAbsent(variable.nombre(), slot);
+                        if (ligada != null && !ligada.codigo().equals(slot.codigo())) {
+                            condiciones.add(igual(ligada, slot));
+                        }
+                    } else {
+                        condiciones.add(igual(slot, constante(valor)));
+                    }
+                }
+                for (Object test : regla.tests().get(patron)) {
+                    cuerpo.append(sangria).append("// ").append(comentario(texto(test))).append('\n');
+                    condiciones.add(booleano(compilar(((List<?>) test).get(1))));
+                }
+                if (!condiciones.isEmpty()) {
+                    cuerpo.append(sangria).append("if (").append(String.join(" && ", condiciones)).append(") {\n");
+                    sangria += "    ";
+                    bloques++;
+                }
+            }
+
+            // El hecho más reciente de la activación y el patrón que lo recibió ordenan la agenda
+            String reciente = String.valueOf(posicionFija);
+            String orden = String.valueOf(ordenFijo);
+            if (!recencias.isEmpty()) {
+                int desde = 0;
+                if (posicionFija < 0) {
+                    cuerpo.append(sangria).append("int reciente = HechosCaso.PRIMERA_RESPUESTA + ").append(recencias.get(0)[0])
+                        .append(";\n").append(sangria).append("int orden = ").append(recencias.get(0)[1]).append(";\n");
+                    desde = 1;
+                } else {
+                    cuerpo.append(sangria).append("int reciente = ").append(posicionFija).append(";\n")
+                        .append(sangria).append("int orden = ").append(ordenFijo).append(";\n");
+                }
+                for (String[] recencia : recencias.subList(desde, recencias.size())) {
+                    cuerpo.append(sangria).append("if (HechosCaso.PRIMERA_RESPUESTA + ").append(recencia[0])
+                        .append(" > reciente) {\n").append(sangria).append("    reciente = HechosCaso.PRIMERA_RESPUESTA + ")
+                        .append(recencia[0]).append(";\n").append(sangria).append("    orden = ").append(recencia[1])
+                        .append(";\n").append(sangria).append("}\n");
+                }
+                reciente = "reciente";
+                orden = "orden";
+            }
+
+            cuerpo.append(sangria).append("agenda.agregar(").append(compilada.getSalience()).append(", ")
+                .append(reciente).append(", ").append(orden).append(", a -> {\n");
+            generarAcciones(cuerpo, sangria + "    ");
+            cuerpo.append(sangria).append("});\n");
+            for (int i = bloques; i > 0; i--) {
+                sangria = sangria.substring(4);
+                cuerpo.append(sangria).append("}\n");
+            }
+            codigo.append(cuerpo).append("    }\n");
+        }
+
+        private void generarAcciones(StringBuilder cuerpo, String sangria) {
+            for (List<?> accion : regla.acciones()) {
+                if (!"assert".equals(accion.get(0).toString())) {
+                    continue;
+                }
+                for (Object elemento : accion.subList(1, accion.size())) {
+                    List<?> hecho = (List<?>) elemento;
+                    String nombre = hecho.get(0).toString();
+                    if (!plantillas.contains(nombre)) {
+                        continue;
+                    }
+                    Plantilla plantilla = programa.getPlantilla(nombre);
+                    String[] valores = new String[plantilla.cantidadSlots()];
+                    for (int i = 0; i < valores.length; i++) {
+                        valores[i] = objeto(constante(plantilla.getValorPorDefecto(i)));
+                    }
+                    for (Object slot : hecho.subList(1, hecho.size())) {
+                        List<?> valor = (List<?>) slot;
+                        valores[plantilla.indice(valor.get(0).toString())] = objeto(compilar(valor.get(1)));
+                    }
+                    cuerpo.append(sangria).append("a.afirmar(").append(CATALOGO).append('.').append(nombreConstante(nombre))
+                        .append(", new Object[] {").append(String.join(", ", valores)).append("});\n");
+                }
+            }
+        }
+
+        /**
+         * Campo de HechosCaso con el valor del slot, o el valor por defecto si no se escribe
+         */
+        private Expr campo(String plantilla, String slot, String hecho) {
+            Campo campo = ENTRADAS.get(plantilla).get(slot);
+            if (campo == null) {
+                Plantilla definicion = programa.getPlantilla(plantilla);
+                return constante(definicion.getValorPorDefecto(definicion.indice(slot)));
+            }
+            return new Expr((campo.deRespuesta() ? hecho : "h") + "." + campo.nombre(), campo.tipo());
+        }
+
+        private Expr constante(Object valor) {
+            if (valor instanceof Long entero) {
+                return new Expr(entero + "L", Tipo.LONG);
+            }
+            if (valor instanceof Double real) {
+                return new Expr(real + "d", Tipo.DOUBLE);
+            }
+            if (valor instanceof String cadena) {
+                return new Expr(literal(cadena), Tipo.CADENA);
+            }
+            if (valor instanceof Simbolo simbolo) {
+                return new Expr(clase.simbolo(simbolo), Tipo.SIMBOLO);
+            }
+            throw new IllegalStateException("Constante no soportada en " + regla.nombre() + ": " + valor);
+        }
+
+        // ---------- expresiones ----------
+
+        private Expr compilar(Object termino) {
+            if (termino instanceof Variable variable) {
+                Expr ligada = variables.get(variable.nombre());
+                if (ligada == null) {
+                    throw new IllegalStateException("Variable " + variable + " sin ligar en " + regla.nombre());
+                }
+                return ligada;
+            }
+            if (!(termino instanceof List<?> llamada)) {
+                return constante(termino);
+            }
+            String funcion = llamada.get(0).toString();
+            List<Expr> args = llamada.subList(1, llamada.size()).stream().map(this::compilar).toList();
+            return switch (funcion) {
+                case "and" -> new Expr(unir(args, this::booleano, " && ", "true"), Tipo.BOOLEANO);
+                case "or" -> new Expr(unir(args, this::booleano, " || ", "false"), Tipo.BOOLEANO);
+                case "not" -> new Expr("!(" + booleano(args.get(0)) + ")", Tipo.BOOLEANO);
+                case "eq", "neq" -> {
+                    List<String> comparaciones = new ArrayList<>();
+                    for (Expr arg : args.subList(1, args.size())) {
+                        String comparacion = igual(args.get(0), arg);
+                        comparaciones.add("eq".equals(funcion) ? comparacion : "!(" + comparacion + ")");
+                    }
+                    yield new Expr(unir(comparaciones, c -> c, " && ", "true"), Tipo.BOOLEANO);
+                }
+                case "=", "<>", "<", "<=", ">", ">=" -> {
+                    String operador = switch (funcion) {
+                        case "=" -> "==";
+                        case "<>" -> "!=";
+                        default -> funcion;
+                    };
+                    List<String> comparaciones = new ArrayList<>();
+                    for (int i = 1; i < args.size(); i++) {
+                        comparaciones.add(comparar(args.get(i - 1), args.get(i), operador));
+                    }
+                    yield new Expr(unir(comparaciones, c -> c, " && ", "true"), Tipo.BOOLEANO);
+                }
+                case "+", "-", "*" -> {
+                    Expr resultado = args.get(0);
+                    for (Expr arg : args.subList(1, args.size())) {
+                        resultado = aritmetica(resultado, arg, funcion);
+                    }
+                    yield resultado;
+                }
+                case "/" -> {
+                    StringJoiner division = new StringJoiner(" / ", "(", ")");
+                    args.forEach(arg -> division.add(real(arg)));
+                    yield new Expr(division.toString(), Tipo.DOUBLE);
+                }
+                case "str-index" -> new Expr(lexema(args.get(1)) + ".indexOf(" + lexema(args.get(0)) + ")", Tipo.INDICE);
+                case "str-cat" -> new Expr(unir(args, this::lexema, " + ", "\"\""), Tipo.CADENA);
+                default -> throw new IllegalStateException("Función no soportada en " + regla.nombre() + ": " + funcion);
+            };
+        }
+
+        /**
+         * (eq a b) de CLIPS: mismo tipo y mismo valor
+         */
+        private String igual(Expr a, Expr b) {
+            if (a.tipo() == b.tipo()) {
+                return switch (a.tipo()) {
+                    case LONG, BOOLEANO, INDICE -> a.codigo() + " == " + b.codigo();
+                    case DOUBLE -> "Double.compare(" + a.codigo() + ", " + b.codigo() + ") == 0";
+                    case CADENA, SIMBOLO -> a.codigo() + ".equals(" + b.codigo() + ")";
+                    case VALOR -> "Objects.equals(" + a.codigo() + ", " + b.codigo() + ")";
+                };
+            }
+            if (a.tipo() == Tipo.BOOLEANO && b.tipo() == Tipo.SIMBOLO) {
+                return b.codigo() + ".equals(" + objeto(a) + ")";
+            }
+            if (a.tipo() == Tipo.SIMBOLO && b.tipo() == Tipo.BOOLEANO) {
+                return a.codigo() + ".equals(" + objeto(b) + ")";
+            }
+            if (a.tipo().clase != null && b.tipo().clase != null && !a.tipo().clase.equals(b.tipo().clase)) {
+                return "false";
+            }
+            return "Objects.equals(" + objeto(a) + ", " + objeto(b) + ")";
+        }
+
+        private String comparar(Expr a, Expr b, String operador) {
+            if (a.tipo() == Tipo.LONG && b.tipo() == Tipo.LONG) {
+                return a.codigo() + " " + operador + " " + b.codigo();
+            }
+            if (a.tipo().numerico && b.tipo().numerico) {
+                return "Double.compare(" + a.codigo() + ", " + b.codigo() + ") " + operador + " 0";
+            }
+            return "Expresion.comparar(" + numero(a) + ", " + numero(b) + ") " + operador + " 0";
+        }
+
+        private Expr aritmetica(Expr a, Expr b, String operador) {
+            if (a.tipo().numerico && b.tipo().numerico) {
+                Tipo tipo = a.tipo() == Tipo.LONG && b.tipo() == Tipo.LONG ? Tipo.LONG : Tipo.DOUBLE;
+                return new Expr("(" + a.codigo() + " " + operador + " " + b.codigo() + ")", tipo);
+            }
+            return new Expr("FuncionesCompiladas.aritmetica('" + operador + "', " + objeto(a) + ", " + objeto(b) + ")",
+                Tipo.VALOR);
+        }
+
+        /**
+         * Verdadero en CLIPS: cualquier valor salvo el símbolo FALSE
+         */
+        private String booleano(Expr expr) {
+            return switch (expr.tipo()) {
+                case BOOLEANO -> expr.codigo();
+                case INDICE -> expr.codigo() + " >= 0";
+                case SIMBOLO, VALOR -> "Expresion.esVerdadero(" + expr.codigo() + ")";
+                // Se evalúa igual por si falla, como en el motor
+                case CADENA -> "(" + expr.codigo() + ") != null";
+                case LONG, DOUBLE -> "true";
+            };
+        }
+
+        /**
+         * El valor tal como lo maneja el motor (Long, Double, String o Simbolo)
+         */
+        private String objeto(Expr expr) {
+            return switch (expr.tipo()) {
+                case BOOLEANO -> "Simbolo.de(" + expr.codigo() + ")";
+                case INDICE -> "FuncionesCompiladas.indice(" + expr.codigo() + ")";
+                default -> expr.codigo();
+            };
+        }
+
+        private String lexema(Expr expr) {
+            return switch (expr.tipo()) {
+                case CADENA -> expr.codigo();
+                case SIMBOLO -> expr.codigo() + ".nombre()";
+                default -> "Expresion.lexema(" + objeto(expr) + ")";
+            };
+        }
+
+        private String numero(Expr expr) {
+            return expr.tipo().numerico ? expr.codigo() : "Expresion.numero(" + objeto(expr) + ")";
+        }
+
+        private String real(Expr expr) {
+            return switch (expr.tipo()) {
+                case LONG -> "(double) " + expr.codigo();
+                case DOUBLE -> expr.codigo();
+                default -> numero(expr) + ".doubleValue()";
+            };
+        }
+
+        private <T> String unir(List<T> partes, Function<T, String> codigo,
+                                String separador, String vacio) {
+            if (partes.isEmpty()) {
+                return vacio;
+            }
+            StringJoiner unidas = new StringJoiner(separador, "(", ")");
+            partes.forEach(parte -> unidas.add(codigo.apply(parte)));
+            return unidas.toString();
+        }
+    }
+
+    // ---------- modelo de una regla ----------
+
+    /**
+     * Defrule leído de la fuente: patrones, los (test ...) que siguen a cada uno y acciones
+     */
+    private record ReglaFuente(String nombre, List<List<?>> patrones, List<List<Object>> tests,
+                               List<List<?>> acciones) {
+
+        static ReglaFuente de(List<?> defrule, String archivo) {
+            List<?> cuerpo = defrule.subList(2, defrule.size());
+            if (!cuerpo.isEmpty() && cuerpo.get(0) instanceof String) {
+                cuerpo = cuerpo.subList(1, cuerpo.size());
+            }
+            int flecha = cuerpo.indexOf(FLECHA);
+            List<List<?>> patrones = new ArrayList<>();
+            List<List<Object>> tests = new ArrayList<>();
+            for (Object elemento : cuerpo.subList(0, flecha)) {
+                List<?> ce = (List<?>) elemento;
+                String cabeza = ce.get(0).toString();
+                if ("test".equals(cabeza)) {
+                    tests.get(tests.size() - 1).add(ce);
+                } else if (!"declare".equals(cabeza)) {
+                    patrones.add(ce);
+                    tests.add(new ArrayList<>());
+                }
+            }
+            List<List<?>> acciones = new ArrayList<>();
+            for (Object accion : cuerpo.subList(flecha + 1, cuerpo.size())) {
+                acciones.add((List<?>) accion);
+            }
+            return new ReglaFuente(defrule.get(1).toString(), patrones, tests, acciones);
+        }
+
+        Set<String> plantillasPatrones() {
+            Set<String> plantillas = new HashSet<>();
+            patrones.forEach(patron -> plantillas.add(patron.get(0).toString()));
+            return plantillas;
+        }
+
+        Set<String> afirmadas() {
+            Set<String> plantillas = new HashSet<>();
+            for (List<?> accion : acciones) {
+                if ("assert".equals(accion.get(0).toString())) {
+                    accion.subList(1, accion.size()).forEach(hecho -> plantillas.add(((List<?>) hecho).get(0).toString()));
+                }
+            }
+            return plantillas;
+        }
+    }
+
+    /**
+     * Tipo Java de una expresión generada; clase es la clase del valor en el motor si es fija
+     */
+    private enum Tipo {
+        LONG("Long", true),
+        DOUBLE("Double", true),
+        CADENA("String", false),
+        SIMBOLO("Simbolo", false),
+        BOOLEANO("Simbolo", false),
+        /** Resultado de String.indexOf: str-index retorna un entero o FALSE */
+        INDICE(null, false),
+        /** Cualquier valor del motor, sólo se conoce al evaluar */
+        VALOR(null, false);
+
+        final String clase;
+        final boolean numerico;
+
+        Tipo(String clase, boolean numerico) {
+            this.clase = clase;
+            this.numerico = numerico;
+        }
+    }
+
+    private record Expr(String codigo, Tipo tipo) {
+    }
+
+    private record Campo(String nombre, Tipo tipo, boolean deRespuesta) {
+    }
+
+    // ---------- texto ----------
+
+    private static String texto(Object expresion) {
+        if (expresion instanceof List<?> lista) {
+            StringJoiner texto = new StringJoiner(" ", "(", ")");
+            lista.forEach(elemento -> texto.add(texto(elemento)));
+            return texto.toString();
+        }
+        if (expresion instanceof String cadena) {
+            return "\"" + cadena.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+        return String.valueOf(expresion);
+    }
+
+    /**
+     * Texto seguro para un comentario de línea (javac interpreta los escapes unicode también en comentarios)
+     */
+    private static String comentario(String texto) {
+        return texto.replace("\\", "\\\\").replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String literal(String texto) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : texto.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * heladera-no-enfria → heladeraNoEnfria
+     */
+    private static String camel(String nombre) {
+        StringBuilder camel = new StringBuilder();
+        boolean mayuscula = false;
+        for (char c : nombre.toCharArray()) {
+            if (!Character.isLetterOrDigit(c)) {
+                mayuscula = camel.length() > 0;
+            } else {
+                camel.append(mayuscula ? Character.toUpperCase(c) : c);
+                mayuscula = false;
+            }
+        }
+        if (camel.isEmpty() || !Character.isJavaIdentifierStart(camel.charAt(0))
+                || SourceVersion.isKeyword(camel)) {
+            camel.insert(0, "regla");
+        }
+        return camel.toString();
+    }
+
+    /**
+     * en-diagnostico → EN_DIAGNOSTICO
+     */
+    private static String nombreConstante(String nombre) {
+        StringBuilder constante = new StringBuilder();
+        for (char c : nombre.toUpperCase(Locale.ROOT).toCharArray()) {
+            constante.append(Character.isLetterOrDigit(c) ? c : '_');
+        }
+        if (constante.isEmpty() || !Character.isJavaIdentifierStart(constante.charAt(0))) {
+            constante.insert(0, "S_");
+        }
+        return constante.toString();
+    }
+
+    private static String capitalizar(String texto) {
+        return Character.toUpperCase(texto.charAt(0)) + texto.substring(1);
+    }
+}
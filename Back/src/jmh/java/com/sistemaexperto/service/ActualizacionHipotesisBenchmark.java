@@ -0,0 +1,63 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.ModeloHipotesis;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posterior de las hipótesis con las respuestas de cada caso del corpus:
+ * respuesta por respuesta (como en el wizard) y recalculada desde los priors
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ActualizacionHipotesisBenchmark {
+
+    @Param({"HELADERA", "LAVARROPAS", "MICROONDAS"})
+    private TipoElectrodomestico tipo;
+
+    private ModeloHipotesis modelo;
+    private List<Map<String, Object>> respuestas;
+    private String[][] preguntas;
+    private Object[][] valores;
+    private double[] posterior;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        DiagnosticRule regla = DatosBenchmark.reglas().stream()
+            .filter(r -> r.getTipoElectrodomestico() == tipo)
+            .findFirst()
+            .orElseThrow();
+        modelo = regla.getModeloHipotesis();
+        respuestas = DatosBenchmark.corpus().stream()
+            .filter(c -> c.caso().getTipo() == tipo)
+            .map(CasoPrueba::respuestas)
+            .map(r -> DatosBenchmark.respuestasJava(regla, r))
+            .toList();
+        preguntas = respuestas.stream().map(r -> r.keySet().toArray(new String[0])).toArray(String[][]::new);
+        valores = respuestas.stream().map(r -> r.values().toArray()).toArray(Object[][]::new);
+        posterior = modelo.crearPriors();
+    }
+
+    @Benchmark
+    public double[] actualizarPorRespuesta() {
+        int indice = siguiente++ % preguntas.length;
+        modelo.calcular(Map.of(), posterior);
+        for (int i = 0; i < preguntas[indice].length; i++) {
+            modelo.actualizar(posterior, preguntas[indice][i], valores[indice][i]);
+        }
+        return posterior;
+    }
+
+    @Benchmark
+    public double[] recalcular() {
+        modelo.calcular(respuestas.get(siguiente++ % respuestas.size()), posterior);
+        return posterior;
+    }
+}
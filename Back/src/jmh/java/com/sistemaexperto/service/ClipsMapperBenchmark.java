@@ -0,0 +1,46 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.mapper.ClipsMapper;
+import com.sistemaexperto.service.mapper.EscritorHechosClips;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Generación de los hechos CLIPS de un caso completo: un String por hecho con ClipsMapper,
+ * o escritos en un buffer reutilizado con EscritorHechosClips (medir con -prof gc)
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClipsMapperBenchmark {
+
+    private final ClipsMapper mapper = new ClipsMapper();
+    private final StringBuilder buffer = new StringBuilder(4096);
+    private List<CasoPrueba> corpus;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        corpus = DatosBenchmark.corpus();
+    }
+
+    @Benchmark
+    public void generarHechos(Blackhole blackhole) {
+        CasoPrueba caso = corpus.get(siguiente++ % corpus.size());
+        blackhole.consume(mapper.casoToClipsFact(caso.caso()));
+        blackhole.consume(mapper.electrodomesticoToClipsFact(caso.caso()));
+        blackhole.consume(mapper.sintomaToClipsFact(caso.caso()));
+        blackhole.consume(mapper.respuestasToClipsFacts(caso.respuestas()));
+    }
+
+    @Benchmark
+    public StringBuilder escribirHechos() {
+        CasoPrueba caso = corpus.get(siguiente++ % corpus.size());
+        buffer.setLength(0);
+        EscritorHechosClips.escribirCaso(caso.caso(), caso.respuestas(), buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,60 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.PlantillaDiagnostico;
+import com.sistemaexperto.service.rules.ReglaArbolDecision;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DiagnosticRule.evaluarDiagnostico de cada regla Java sobre los casos del corpus de su tipo,
+ * y la consulta de la tabla de combinaciones sin crear la entidad Diagnostico
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EvaluacionDiagnosticoBenchmark {
+
+    @Param({"HELADERA", "LAVARROPAS", "MICROONDAS"})
+    private TipoElectrodomestico tipo;
+
+    private DiagnosticRule regla;
+    private ReglaArbolDecision arbol;
+    private Caso[] casos;
+    private List<Map<String, Object>> respuestas;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        regla = DatosBenchmark.reglas().stream()
+            .filter(r -> r.getTipoElectrodomestico() == tipo)
+            .findFirst()
+            .orElseThrow();
+        arbol = (ReglaArbolDecision) regla;
+        List<CasoPrueba> corpus = DatosBenchmark.corpus().stream()
+            .filter(c -> c.caso().getTipo() == tipo)
+            .toList();
+        casos = corpus.stream().map(CasoPrueba::caso).toArray(Caso[]::new);
+        respuestas = corpus.stream()
+            .map(c -> DatosBenchmark.respuestasJava(regla, c.respuestas()))
+            .toList();
+    }
+
+    @Benchmark
+    public Diagnostico evaluarDiagnostico() {
+        int indice = siguiente++ % casos.length;
+        return regla.evaluarDiagnostico(respuestas.get(indice), casos[indice]);
+    }
+
+    @Benchmark
+    public PlantillaDiagnostico evaluarArbol() {
+        int indice = siguiente++ % casos.length;
+        return arbol.evaluar(respuestas.get(indice), casos[indice]);
+    }
+}
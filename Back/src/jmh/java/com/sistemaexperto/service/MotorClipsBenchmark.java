@@ -0,0 +1,83 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.clips.ResultadoInferencia;
+import com.sistemaexperto.service.clips.motor.CompiladorClips;
+import com.sistemaexperto.service.clips.motor.Hecho;
+import com.sistemaexperto.service.clips.motor.ProgramaClips;
+import com.sistemaexperto.service.clips.motor.SesionClips;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Inferencia en el motor CLIPS embebido y parseo de la salida (facts) que
+ * produciría un proceso CLIPS externo (ClipsService.parsearResultados)
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MotorClipsBenchmark {
+
+    private static final String[] ARCHIVOS = {"templates", "heladera", "lavarropas", "microondas", "seguridad"};
+
+    private ProgramaClips programa;
+    private List<CasoPrueba> corpus;
+    private String[] salidas;
+    private ClipsService clipsService;
+    private int siguiente;
+
+    @Setup
+    public void preparar() throws IOException {
+        corpus = DatosBenchmark.corpus();
+        CompiladorClips compilador = new CompiladorClips();
+        for (String archivo : ARCHIVOS) {
+            try (InputStream in = getClass().getResourceAsStream("/clips/" + archivo + ".clp")) {
+                compilador.agregar(new String(in.readAllBytes(), StandardCharsets.UTF_8), archivo + ".clp");
+            }
+        }
+        programa = compilador.compilar();
+
+        // Salida equivalente a (facts) de cada caso, para medir sólo el parseo
+        salidas = corpus.stream()
+            .map(caso -> inferir(caso).getHechos().stream()
+                .map(Hecho::toString)
+                .collect(Collectors.joining("\n", "", "\nFor a total of facts.\n")))
+            .toArray(String[]::new);
+        clipsService = new ClipsService(null, null, null, null, null);
+    }
+
+    @Benchmark
+    public SesionClips inferenciaPorCaso() {
+        return inferir(corpus.get(siguiente++ % corpus.size()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public SesionClips inferenciaCorpusCompleto() {
+        SesionClips sesion = programa.nuevaSesion();
+        for (CasoPrueba caso : corpus) {
+            caso.hechos().forEach(sesion::insertar);
+        }
+        sesion.ejecutar();
+        return sesion;
+    }
+
+    @Benchmark
+    public ResultadoInferencia parsearSalida() {
+        return clipsService.parsearResultados(salidas[siguiente++ % salidas.length]);
+    }
+
+    private SesionClips inferir(CasoPrueba caso) {
+        SesionClips sesion = programa.nuevaSesion();
+        caso.hechos().forEach(sesion::insertar);
+        sesion.ejecutar();
+        return sesion;
+    }
+}
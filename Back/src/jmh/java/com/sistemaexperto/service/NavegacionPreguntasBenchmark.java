@@ -0,0 +1,62 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.model.Pregunta;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recorrido completo del wizard (getPrimeraPregunta + getSiguientePregunta) de la regla
+ * de cada caso, respondiendo con las respuestas del corpus
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NavegacionPreguntasBenchmark {
+
+    private static final int MAXIMO_PREGUNTAS = 16;
+
+    private DiagnosticRule[] reglas;
+    private List<Map<String, Object>> respuestas;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        List<DiagnosticRule> disponibles = DatosBenchmark.reglas();
+        List<CasoPrueba> corpus = DatosBenchmark.corpus();
+        reglas = new DiagnosticRule[corpus.size()];
+        respuestas = new java.util.ArrayList<>(corpus.size());
+        for (int i = 0; i < corpus.size(); i++) {
+            CasoPrueba caso = corpus.get(i);
+            DiagnosticRule regla = disponibles.stream()
+                .filter(r -> r.getTipoElectrodomestico() == caso.caso().getTipo())
+                .findFirst()
+                .orElseThrow();
+            reglas[i] = regla;
+            respuestas.add(DatosBenchmark.respuestasJava(regla, caso.respuestas()));
+        }
+    }
+
+    @Benchmark
+    public int recorrerPreguntas() {
+        int indice = siguiente++ % reglas.length;
+        DiagnosticRule regla = reglas[indice];
+        Map<String, Object> corpus = respuestas.get(indice);
+        Map<String, Object> dadas = new HashMap<>();
+
+        int preguntas = 0;
+        Pregunta pregunta = regla.getPrimeraPregunta();
+        while (pregunta != null && preguntas < MAXIMO_PREGUNTAS) {
+            String id = regla.getPreguntaIdString(pregunta.getId());
+            Object valor = corpus.getOrDefault(id, Boolean.FALSE);
+            dadas.put(id, valor);
+            pregunta = regla.getSiguientePregunta(id, valor, dadas);
+            preguntas++;
+        }
+        return preguntas;
+    }
+}
@@ -0,0 +1,39 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import com.sistemaexperto.service.session.InMemorySessionStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Selección de la regla Java aplicable (InferenceEngine.seleccionarReglaAplicable)
+ * recorriendo los casos del corpus
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SeleccionReglaBenchmark {
+
+    private InferenceEngine engine;
+    private Caso[] casos;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        casos = DatosBenchmark.corpus().stream().map(CasoPrueba::caso).toArray(Caso[]::new);
+        engine = new InferenceEngine();
+        ReflectionTestUtils.setField(engine, "indiceReglas", new IndiceReglas(DatosBenchmark.reglas()));
+        ReflectionTestUtils.setField(engine, "metricas",
+            new MetricasInferencia(new SimpleMeterRegistry(), new InMemorySessionStore(1, 1)));
+    }
+
+    @Benchmark
+    public DiagnosticRule seleccionarRegla() {
+        Caso caso = casos[siguiente++ % casos.length];
+        return engine.seleccionarReglaAplicable(caso);
+    }
+}
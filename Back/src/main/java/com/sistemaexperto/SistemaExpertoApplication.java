@@ -2,8 +2,10 @@ package com.sistemaexperto;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SistemaExpertoApplication {
     public static void main(String[] args) {
         SpringApplication.run(SistemaExpertoApplication.class, args);
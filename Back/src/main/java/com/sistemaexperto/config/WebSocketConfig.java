@@ -0,0 +1,23 @@
+package com.sistemaexperto.config;
+
+import com.sistemaexperto.controller.WizardWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final WizardWebSocketHandler wizardWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Mismos orígenes que CorsConfig
+        registry.addHandler(wizardWebSocketHandler, "/ws/casos/*/wizard")
+                .setAllowedOrigins("http://localhost:5173", "http://localhost:3000");
+    }
+}
@@ -1,17 +1,31 @@
 package com.sistemaexperto.controller;
 
+import com.sistemaexperto.dto.CasoCreadoDTO;
 import com.sistemaexperto.dto.CasoCreateDTO;
+import com.sistemaexperto.dto.DiagnosticoLoteDTO;
+import com.sistemaexperto.dto.PaginaCasosDTO;
+import com.sistemaexperto.dto.PasoDiagnosticoDTO;
 import com.sistemaexperto.dto.RespuestaDTO;
+import com.sistemaexperto.dto.TrabajoDiagnosticoDTO;
 import com.sistemaexperto.model.Caso;
 import com.sistemaexperto.model.Pregunta;
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
 import com.sistemaexperto.service.CasoService;
+import com.sistemaexperto.service.DiagnosticoAsincronoService;
 import com.sistemaexperto.service.DiagnosticoService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/casos")
@@ -19,18 +33,42 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class CasoController {
 
+    /** Máximo que un long-poll de trabajo retiene la respuesta */
+    private static final long MAXIMA_ESPERA_SEGUNDOS = 60;
+
     private final CasoService casoService;
     private final DiagnosticoService diagnosticoService;
+    private final DiagnosticoAsincronoService diagnosticoAsincronoService;
 
+    /**
+     * Crea el caso y retorna, junto con sus datos, el primer paso del wizard. Los campos del
+     * caso siguen en el nivel superior del JSON, como antes; el paso se agrega en "paso".
+     */
     @PostMapping
-    public ResponseEntity<Caso> crearCaso(@RequestBody CasoCreateDTO dto) {
+    public ResponseEntity<CasoCreadoDTO> crearCaso(@RequestBody CasoCreateDTO dto) {
         Caso caso = casoService.crearCaso(dto);
-        return ResponseEntity.ok(caso);
+        return ResponseEntity.ok(new CasoCreadoDTO(caso, diagnosticoService.iniciarDiagnostico(caso)));
     }
 
+    /**
+     * Sin cursor ni limite retorna el arreglo de casos, como antes de paginar; con alguno
+     * de los dos retorna una página de resúmenes ({@link PaginaCasosDTO})
+     */
     @GetMapping
-    public ResponseEntity<List<Caso>> listarCasos() {
-        return ResponseEntity.ok(casoService.listarTodos());
+    public ResponseEntity<?> listarCasos(
+            @RequestParam(required = false) EstadoCaso estado,
+            @RequestParam(required = false) TipoElectrodomestico tipo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        if (cursor == null && limite == null) {
+            return ResponseEntity.ok(casoService.listarTodos(estado, tipo));
+        }
+        return ResponseEntity.ok(casoService.listarResumen(estado, tipo, cursor, limite));
+    }
+
+    @PostMapping("/diagnosticar-lote")
+    public ResponseEntity<List<DiagnosticoLoteDTO>> diagnosticarLote(@RequestBody List<Long> casoIds) {
+        return ResponseEntity.ok(diagnosticoService.diagnosticarLote(casoIds));
     }
 
     @GetMapping("/{id}")
@@ -55,6 +93,17 @@ public class CasoController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Responde una o más preguntas y avanza el wizard en una sola llamada.
+     * Con una lista vacía sólo retorna el paso actual.
+     */
+    @PostMapping("/{id}/pasos")
+    public ResponseEntity<PasoDiagnosticoDTO> registrarPaso(
+            @PathVariable Long id,
+            @RequestBody List<RespuestaDTO> respuestas) {
+        return ResponseEntity.ok(diagnosticoService.registrarPaso(id, respuestas));
+    }
+
     @GetMapping("/{id}/hipotesis")
     public ResponseEntity<List<Map<String, Object>>> obtenerHipotesis(@PathVariable Long id) {
         return ResponseEntity.ok(diagnosticoService.obtenerHipotesisActuales(id));
@@ -66,6 +115,55 @@ public class CasoController {
         return ResponseEntity.ok(caso);
     }
 
+    /**
+     * Finaliza en segundo plano: responde 202 con el trabajo, que se consulta en su Location
+     * desde cualquier instancia. Un caso ya diagnosticado responde 409.
+     */
+    @PostMapping(value = "/{id}/finalizar", params = "modo=async")
+    public ResponseEntity<TrabajoDiagnosticoDTO> finalizarDiagnosticoAsincrono(@PathVariable Long id) {
+        TrabajoDiagnosticoDTO trabajo;
+        try {
+            trabajo = diagnosticoAsincronoService.iniciar(id);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/casos/" + id + "/trabajos/" + trabajo.getId()))
+                .body(trabajo);
+    }
+
+    /**
+     * Estado de un diagnóstico asíncrono. Con esperar > 0 (segundos, máximo 60) la respuesta
+     * se retiene hasta que el trabajo termine o se cumpla el tiempo (long-poll), sin ocupar un hilo.
+     */
+    @GetMapping("/{id}/trabajos/{trabajoId}")
+    public DeferredResult<ResponseEntity<TrabajoDiagnosticoDTO>> obtenerTrabajo(
+            @PathVariable Long id,
+            @PathVariable String trabajoId,
+            @RequestParam(defaultValue = "0") long esperar) {
+        long segundos = Math.max(0, Math.min(esperar, MAXIMA_ESPERA_SEGUNDOS));
+        DeferredResult<ResponseEntity<TrabajoDiagnosticoDTO>> resultado = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(segundos),
+                () -> respuestaTrabajo(id, diagnosticoAsincronoService.obtener(trabajoId)));
+
+        TrabajoDiagnosticoDTO actual = diagnosticoAsincronoService.obtener(trabajoId);
+        if (segundos == 0 || actual == null) {
+            resultado.setResult(respuestaTrabajo(id, actual));
+        } else {
+            // Si el trabajo ya terminó se completa en el acto
+            diagnosticoAsincronoService.alTerminar(trabajoId, Duration.ofSeconds(segundos))
+                    .thenAccept(terminado -> resultado.setResult(respuestaTrabajo(id, terminado)));
+        }
+        return resultado;
+    }
+
+    private static ResponseEntity<TrabajoDiagnosticoDTO> respuestaTrabajo(Long casoId, TrabajoDiagnosticoDTO trabajo) {
+        if (trabajo == null || !trabajo.getCasoId().equals(casoId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(trabajo);
+    }
+
     @PostMapping("/{id}/diagnosticar")
     public ResponseEntity<Caso> diagnosticar(@PathVariable Long id) {
         // Este endpoint puede ser opcional si prefieres usar el wizard interactivo
@@ -1,15 +1,16 @@
 package com.sistemaexperto.controller;
 
 import com.sistemaexperto.dto.MetricasDTO;
-import com.sistemaexperto.model.Caso;
-import com.sistemaexperto.model.enums.EstadoCaso;
-import com.sistemaexperto.service.CasoService;
+import com.sistemaexperto.service.CacheDiagnosticos;
+import com.sistemaexperto.service.ClipsService;
+import com.sistemaexperto.service.MetricasService;
+import com.sistemaexperto.service.clips.AnalisisReglas;
+import com.sistemaexperto.service.session.SessionStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDate;
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/metricas")
@@ -17,26 +18,37 @@ import java.util.List;
 public class MetricasController {
     
     @Autowired
-    private CasoService casoService;
+    private MetricasService metricasService;
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private ClipsService clipsService;
+
+    @Autowired
+    private CacheDiagnosticos cacheDiagnosticos;
     
     @GetMapping
     public ResponseEntity<MetricasDTO> getMetricas() {
-        List<Caso> casosHoy = casoService.findByFecha(LocalDate.now());
-        
-        long total = casosHoy.size();
-        long diyExitosos = casosHoy.stream()
-            .filter(c -> c.getEstado() == EstadoCaso.RESUELTO_DIY)
-            .count();
-        long tecnicoEnviados = casosHoy.stream()
-            .filter(c -> c.getEstado() == EstadoCaso.REQUIERE_TECNICO)
-            .count();
-        
-        MetricasDTO metricas = new MetricasDTO();
-        metricas.setCasosTotales(total);
-        metricas.setDiyExitosos(diyExitosos);
-        metricas.setTecnicoEnviados(tecnicoEnviados);
-        metricas.setTiempoPromedio(4.2);
-        
-        return ResponseEntity.ok(metricas);
+        return ResponseEntity.ok(metricasService.obtenerMetricasDelDia());
+    }
+    
+    @GetMapping("/sesiones")
+    public ResponseEntity<Map<String, Object>> getMetricasSesiones() {
+        return ResponseEntity.ok(sessionStore.getEstadisticas());
+    }
+    
+    @GetMapping("/clips")
+    public ResponseEntity<Map<String, Object>> getMetricasClips() {
+        return ResponseEntity.ok(clipsService.getEstadisticas());
+    }
+    
+    @GetMapping("/diagnosticos-cache")
+    public ResponseEntity<Map<String, Object>> getMetricasCacheDiagnosticos() {
+        Map<String, Object> estadisticas = cacheDiagnosticos.getEstadisticas();
+        AnalisisReglas analisis = clipsService.getAnalisisReglas();
+        estadisticas.put("slotsRelevantes", analisis != null ? analisis.getSlotsRelevantes() : Map.of());
+        return ResponseEntity.ok(estadisticas);
     }
-}
+}
\ No newline at end of file
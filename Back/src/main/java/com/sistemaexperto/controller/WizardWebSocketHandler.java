@@ -0,0 +1,163 @@
+package com.sistemaexperto.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sistemaexperto.dto.EventoWizardDTO;
+import com.sistemaexperto.dto.MensajeWizardDTO;
+import com.sistemaexperto.dto.RespuestaDTO;
+import com.sistemaexperto.dto.TrabajoDiagnosticoDTO;
+import com.sistemaexperto.service.DiagnosticoAsincronoService;
+import com.sistemaexperto.service.DiagnosticoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Wizard de diagnóstico por WebSocket, una conexión por caso (/ws/casos/{id}/wizard).
+ * Al conectar se envía el paso actual; cada RESPUESTA se contesta con el paso siguiente
+ * (pregunta e hipótesis actualizadas) y FINALIZAR lanza el diagnóstico asíncrono, cuyo
+ * resultado se envía apenas termina.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WizardWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Pattern RUTA = Pattern.compile("/ws/casos/(\\d+)/wizard$");
+    private static final String CASO = "casoId";
+    private static final String CONEXION = "conexion";
+
+    /** Límites del envío concurrente: un cliente lento no retiene al que envía */
+    private static final int LIMITE_ENVIO_MILLIS = 5000;
+    private static final int LIMITE_BUFFER_BYTES = 64 * 1024;
+
+    private final DiagnosticoService diagnosticoService;
+    private final DiagnosticoAsincronoService diagnosticoAsincronoService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Long, WebSocketSession> conexiones = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        Matcher ruta = RUTA.matcher(session.getUri() != null ? session.getUri().getPath() : "");
+        if (!ruta.find()) {
+            session.close(CloseStatus.BAD_DATA.withReason("Caso inválido"));
+            return;
+        }
+        Long casoId = Long.valueOf(ruta.group(1));
+
+        // Los eventos del diagnóstico asíncrono se envían desde otro hilo
+        WebSocketSession conexion = new ConcurrentWebSocketSessionDecorator(session, LIMITE_ENVIO_MILLIS, LIMITE_BUFFER_BYTES);
+        session.getAttributes().put(CASO, casoId);
+        session.getAttributes().put(CONEXION, conexion);
+
+        WebSocketSession anterior = conexiones.put(casoId, conexion);
+        if (anterior != null && anterior.isOpen()) {
+            log.info("Conexión del wizard del caso {} reemplazada", casoId);
+            anterior.close(CloseStatus.POLICY_VIOLATION.withReason("Reemplazada por otra conexión"));
+        }
+
+        enviarPaso(conexion, casoId, List.of());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Long casoId = (Long) session.getAttributes().get(CASO);
+        WebSocketSession conexion = (WebSocketSession) session.getAttributes().get(CONEXION);
+
+        MensajeWizardDTO mensaje;
+        try {
+            mensaje = objectMapper.readValue(message.getPayload(), MensajeWizardDTO.class);
+        } catch (IOException e) {
+            enviarError(conexion, "Mensaje inválido");
+            return;
+        }
+
+        if (mensaje.getTipo() == MensajeWizardDTO.Tipo.FINALIZAR) {
+            finalizar(conexion, casoId);
+        } else if (mensaje.getTipo() == MensajeWizardDTO.Tipo.RESPUESTA && mensaje.getPreguntaId() != null) {
+            enviarPaso(conexion, casoId, List.of(new RespuestaDTO(mensaje.getPreguntaId(), mensaje.getValor())));
+        } else {
+            enviarError(conexion, "Mensaje inválido");
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Long casoId = (Long) session.getAttributes().get(CASO);
+        if (casoId != null) {
+            conexiones.remove(casoId, session.getAttributes().get(CONEXION));
+        }
+    }
+
+    private void enviarPaso(WebSocketSession conexion, Long casoId, List<RespuestaDTO> respuestas) {
+        try {
+            enviar(conexion, EventoWizardDTO.builder()
+                    .tipo(EventoWizardDTO.Tipo.PASO)
+                    .paso(diagnosticoService.registrarPaso(casoId, respuestas))
+                    .build());
+        } catch (RuntimeException e) {
+            log.warn("Error en el paso del wizard del caso {}: {}", casoId, e.getMessage());
+            enviarError(conexion, e.getMessage());
+        }
+    }
+
+    private void finalizar(WebSocketSession conexion, Long casoId) {
+        TrabajoDiagnosticoDTO trabajo;
+        try {
+            trabajo = diagnosticoAsincronoService.iniciar(casoId);
+        } catch (RejectedExecutionException e) {
+            enviarError(conexion, "Demasiados diagnósticos en curso, intente nuevamente");
+            return;
+        } catch (ResponseStatusException e) {
+            enviarError(conexion, e.getReason());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("No se pudo finalizar el caso {}: {}", casoId, e.getMessage());
+            enviarError(conexion, e.getMessage());
+            return;
+        }
+
+        diagnosticoAsincronoService.alTerminar(trabajo.getId()).thenAccept(terminado -> {
+            if (terminado != null && terminado.getEstado() == TrabajoDiagnosticoDTO.Estado.COMPLETADO) {
+                enviar(conexion, EventoWizardDTO.builder()
+                        .tipo(EventoWizardDTO.Tipo.DIAGNOSTICO)
+                        .diagnostico(terminado.getDiagnostico())
+                        .build());
+            } else {
+                enviarError(conexion, terminado != null ? terminado.getError() : "Diagnóstico no disponible");
+            }
+        });
+    }
+
+    private void enviarError(WebSocketSession conexion, String mensaje) {
+        enviar(conexion, EventoWizardDTO.builder()
+                .tipo(EventoWizardDTO.Tipo.ERROR)
+                .mensaje(mensaje)
+                .build());
+    }
+
+    private void enviar(WebSocketSession conexion, EventoWizardDTO evento) {
+        if (!conexion.isOpen()) {
+            return;
+        }
+        try {
+            conexion.sendMessage(new TextMessage(objectMapper.writeValueAsString(evento)));
+        } catch (IOException e) {
+            log.debug("No se pudo enviar al wizard: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.sistemaexperto.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.sistemaexperto.model.Caso;
+import lombok.*;
+
+/**
+ * Caso recién creado con el primer paso del wizard.
+ * Los campos del caso se serializan en el nivel superior, como antes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CasoCreadoDTO {
+    @JsonUnwrapped
+    private Caso caso;
+    private PasoDiagnosticoDTO paso;
+}
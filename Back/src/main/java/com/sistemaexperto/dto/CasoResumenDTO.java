@@ -0,0 +1,26 @@
+package com.sistemaexperto.dto;
+
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos de un caso para listados, sin respuestas, hipótesis ni diagnóstico.
+ * Se construye directamente en la consulta JPQL (el orden del constructor importa).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CasoResumenDTO {
+    private Long id;
+    private String clienteNombre;
+    private TipoElectrodomestico tipo;
+    private String marca;
+    private String modelo;
+    private Integer antiguedad;
+    private String sintomaReportado;
+    private EstadoCaso estado;
+    private LocalDateTime fechaCreacion;
+}
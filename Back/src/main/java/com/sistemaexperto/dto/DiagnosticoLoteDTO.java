@@ -0,0 +1,19 @@
+package com.sistemaexperto.dto;
+
+import lombok.*;
+
+/**
+ * Resultado de un caso dentro de un diagnóstico en lote
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiagnosticoLoteDTO {
+    private Long casoId;
+    private boolean diagnosticado;
+    private String motor;
+    private String causaProbable;
+    private Integer probabilidad;
+    private String error;
+}
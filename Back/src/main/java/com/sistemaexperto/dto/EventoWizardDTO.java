@@ -0,0 +1,27 @@
+package com.sistemaexperto.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sistemaexperto.model.Diagnostico;
+import lombok.*;
+
+/**
+ * Evento que el servidor envía por el WebSocket del wizard: el paso actual (pregunta e
+ * hipótesis), el diagnóstico final o un error
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EventoWizardDTO {
+    private Tipo tipo;
+    private PasoDiagnosticoDTO paso;
+    private Diagnostico diagnostico;
+    private String mensaje;
+
+    public enum Tipo {
+        PASO,
+        DIAGNOSTICO,
+        ERROR
+    }
+}
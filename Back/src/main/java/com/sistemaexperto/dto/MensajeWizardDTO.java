@@ -0,0 +1,20 @@
+package com.sistemaexperto.dto;
+
+import lombok.*;
+
+/**
+ * Mensaje del cliente por el WebSocket del wizard: una respuesta o el pedido de finalizar
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MensajeWizardDTO {
+    private Tipo tipo;
+    private Long preguntaId;
+    private String valor;
+
+    public enum Tipo {
+        RESPUESTA,
+        FINALIZAR
+    }
+}
@@ -1,7 +1,11 @@
 package com.sistemaexperto.dto;
 
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
 import lombok.*;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -9,5 +13,8 @@ public class MetricasDTO {
     private Long casosTotales;
     private Long diyExitosos;
     private Long tecnicoEnviados;
+    /** Minutos promedio entre la creación y el diagnóstico */
     private Double tiempoPromedio;
+    private Map<EstadoCaso, Long> porEstado;
+    private Map<TipoElectrodomestico, Long> porTipo;
 }
@@ -0,0 +1,18 @@
+package com.sistemaexperto.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Página de casos, del más reciente al más antiguo.
+ * siguienteCursor es null cuando no hay más casos.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCasosDTO {
+    private List<CasoResumenDTO> casos;
+    private String siguienteCursor;
+}
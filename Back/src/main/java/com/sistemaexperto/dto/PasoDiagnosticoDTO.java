@@ -0,0 +1,21 @@
+package com.sistemaexperto.dto;
+
+import com.sistemaexperto.model.Pregunta;
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado del wizard después de un paso: siguiente pregunta (null si no quedan),
+ * hipótesis actualizadas y si el caso ya se puede finalizar
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PasoDiagnosticoDTO {
+    private Pregunta siguientePregunta;
+    private List<Map<String, Object>> hipotesis;
+    private boolean listoParaFinalizar;
+}
@@ -0,0 +1,30 @@
+package com.sistemaexperto.dto;
+
+import com.sistemaexperto.model.Diagnostico;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estado de un diagnóstico asíncrono. El diagnóstico se completa al terminar con éxito.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrabajoDiagnosticoDTO {
+    private String id;
+    private Long casoId;
+    private Estado estado;
+    private LocalDateTime creado;
+    private LocalDateTime finalizado;
+    private Diagnostico diagnostico;
+    private String error;
+
+    public enum Estado {
+        PENDIENTE,
+        EN_CURSO,
+        COMPLETADO,
+        ERROR
+    }
+}
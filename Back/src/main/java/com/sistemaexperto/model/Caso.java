@@ -12,7 +12,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "casos")
+@Table(name = "casos", indexes = {
+    // Listado paginado por (fechaCreacion, id) descendente
+    @Index(name = "idx_casos_fecha_id", columnList = "fechaCreacion, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,6 +45,9 @@ public class Caso {
     
     @CreationTimestamp
     private LocalDateTime fechaCreacion;
+
+    /** Primera vez que el caso quedó diagnosticado */
+    private LocalDateTime fechaDiagnostico;
     
     @OneToMany(mappedBy = "caso", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Respuesta> respuestas = new ArrayList<>();
@@ -1,5 +1,6 @@
 package com.sistemaexperto.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,6 +22,10 @@ public class Hipotesis {
     private Integer probabilidad;
     private boolean activa;
 
+    /** Versión de la sesión de la que se volcaron los valores, o null si nunca se volcaron */
+    @JsonIgnore
+    private Long versionSesion;
+
     @ManyToOne
     @JoinColumn(name = "caso_id")
     private Caso caso;
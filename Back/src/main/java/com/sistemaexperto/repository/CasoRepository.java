@@ -1,12 +1,17 @@
 package com.sistemaexperto.repository;
 
+import com.sistemaexperto.dto.CasoResumenDTO;
 import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +19,74 @@ public interface CasoRepository extends JpaRepository<Caso, Long> {
     
     @Query("SELECT c FROM Caso c WHERE c.fechaCreacion >= :inicio AND c.fechaCreacion < :fin")
     List<Caso> findByFechaCreacionBetween(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
-}
\ No newline at end of file
+
+    /**
+     * Casos completos con filtros opcionales (null = todos), para el listado sin paginar
+     */
+    @Query("SELECT c FROM Caso c WHERE (:estado IS NULL OR c.estado = :estado) AND (:tipo IS NULL OR c.tipo = :tipo)")
+    List<Caso> findFiltrados(@Param("estado") EstadoCaso estado, @Param("tipo") TipoElectrodomestico tipo);
+
+    /**
+     * Primera página del listado: casos más recientes, filtros opcionales (null = todos)
+     */
+    @Query("SELECT new com.sistemaexperto.dto.CasoResumenDTO(c.id, c.clienteNombre, c.tipo, c.marca, c.modelo, " +
+           "c.antiguedad, c.sintomaReportado, c.estado, c.fechaCreacion) FROM Caso c " +
+           "WHERE (:estado IS NULL OR c.estado = :estado) AND (:tipo IS NULL OR c.tipo = :tipo) " +
+           "ORDER BY c.fechaCreacion DESC, c.id DESC")
+    List<CasoResumenDTO> findResumenes(@Param("estado") EstadoCaso estado,
+                                       @Param("tipo") TipoElectrodomestico tipo,
+                                       Pageable pagina);
+
+    /**
+     * Páginas siguientes: casos anteriores a (fechaCreacion, id) del último caso entregado
+     */
+    @Query("SELECT new com.sistemaexperto.dto.CasoResumenDTO(c.id, c.clienteNombre, c.tipo, c.marca, c.modelo, " +
+           "c.antiguedad, c.sintomaReportado, c.estado, c.fechaCreacion) FROM Caso c " +
+           "WHERE (:estado IS NULL OR c.estado = :estado) AND (:tipo IS NULL OR c.tipo = :tipo) " +
+           "AND (c.fechaCreacion < :fecha OR (c.fechaCreacion = :fecha AND c.id < :id)) " +
+           "ORDER BY c.fechaCreacion DESC, c.id DESC")
+    List<CasoResumenDTO> findResumenesAnteriores(@Param("estado") EstadoCaso estado,
+                                                 @Param("tipo") TipoElectrodomestico tipo,
+                                                 @Param("fecha") LocalDateTime fecha,
+                                                 @Param("id") Long id,
+                                                 Pageable pagina);
+
+    /**
+     * Casos creados en el rango, contados por estado y tipo en la base
+     */
+    @Query("SELECT c.estado AS estado, c.tipo AS tipo, COUNT(c) AS cantidad FROM Caso c " +
+           "WHERE c.fechaCreacion >= :inicio AND c.fechaCreacion < :fin " +
+           "GROUP BY c.estado, c.tipo")
+    List<ConteoCasos> contarPorEstadoYTipo(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    /**
+     * Cantidad de casos del rango ya diagnosticados y la suma de segundos entre creación y diagnóstico
+     */
+    @Query("SELECT COUNT(c) AS cantidad, " +
+           "COALESCE(SUM((c.fechaDiagnostico - c.fechaCreacion) BY SECOND), 0) AS segundos FROM Caso c " +
+           "WHERE c.fechaCreacion >= :inicio AND c.fechaCreacion < :fin AND c.fechaDiagnostico IS NOT NULL")
+    TiempoDiagnostico sumarTiempoDiagnostico(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    /**
+     * Id de la última respuesta guardada de cada caso en el estado dado (null si no tiene respuestas)
+     */
+    @Query("SELECT c.id AS casoId, MAX(r.id) AS ultimaRespuestaId FROM Caso c LEFT JOIN c.respuestas r " +
+           "WHERE c.id IN :ids AND c.estado = :estado GROUP BY c.id")
+    List<UltimaRespuesta> buscarUltimaRespuesta(@Param("ids") Collection<Long> ids, @Param("estado") EstadoCaso estado);
+
+    interface ConteoCasos {
+        EstadoCaso getEstado();
+        TipoElectrodomestico getTipo();
+        long getCantidad();
+    }
+
+    interface UltimaRespuesta {
+        Long getCasoId();
+        Long getUltimaRespuestaId();
+    }
+
+    interface TiempoDiagnostico {
+        long getCantidad();
+        Number getSegundos();
+    }
+}
@@ -2,6 +2,9 @@ package com.sistemaexperto.repository;
 
 import com.sistemaexperto.model.Hipotesis;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,5 +13,9 @@ import java.util.List;
 public interface HipotesisRepository extends JpaRepository<Hipotesis, Long> {
     List<Hipotesis> findByCasoIdAndActivaTrue(Long casoId);
     List<Hipotesis> findByCasoId(Long casoId);
+
+    @Modifying
+    @Query("DELETE FROM Hipotesis h WHERE h.caso.id = :casoId")
+    void eliminarPorCaso(@Param("casoId") Long casoId);
 }
 
@@ -4,9 +4,12 @@ import com.sistemaexperto.model.Respuesta;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface RespuestaRepository extends JpaRepository<Respuesta, Long> {
     List<Respuesta> findByCasoId(Long casoId);
+    List<Respuesta> findByCasoIdOrderByIdAsc(Long casoId);
+    List<Respuesta> findByCasoIdIn(Collection<Long> casoIds);
 }
@@ -0,0 +1,91 @@
+package com.sistemaexperto.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.service.clips.AnalisisReglas;
+import com.sistemaexperto.service.rules.PlantillaDiagnostico;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diagnósticos CLIPS ya calculados, por clave canónica de los hechos de entrada
+ * (ver {@link AnalisisReglas#clave}). Un caso que repite el camino de otro (mismo tipo,
+ * síntoma, respuestas y tramo de antigüedad) se diagnostica sin ejecutar la inferencia.
+ *
+ * Acotada por cantidad (LRU aproximado de Caffeine). Las claves empiezan con la versión de las
+ * reglas, así conviven las de varias versiones mientras haya casos fijados a cada una; al
+ * recargar las reglas las entradas de la versión anterior siguen sirviendo a esos casos y
+ * sólo se descartan cuando ClipsService deja de retener la versión.
+ */
+@Slf4j
+@Component
+public class CacheDiagnosticos {
+
+    private final boolean habilitada;
+    private final long maximo;
+    private final Cache<String, PlantillaDiagnostico> diagnosticos;
+
+    private final LongAdder invalidaciones = new LongAdder();
+
+    public CacheDiagnosticos(@Value("${diagnostico.cache.enabled:true}") boolean habilitada,
+                             @Value("${diagnostico.cache.max-size:10000}") long maximo) {
+        this.habilitada = habilitada;
+        this.maximo = maximo;
+        this.diagnosticos = Caffeine.newBuilder()
+            .maximumSize(maximo)
+            .recordStats()
+            .build();
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Diagnóstico guardado para la clave, o null
+     */
+    public PlantillaDiagnostico obtener(AnalisisReglas analisis, String clave) {
+        if (!habilitada || analisis == null || clave == null) {
+            return null;
+        }
+        return diagnosticos.getIfPresent(clave);
+    }
+
+    public void guardar(AnalisisReglas analisis, String clave, Diagnostico diagnostico) {
+        if (!habilitada || analisis == null || clave == null || diagnostico == null) {
+            return;
+        }
+        diagnosticos.put(clave, PlantillaDiagnostico.de(diagnostico));
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        CacheStats stats = diagnosticos.stats();
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitada", habilitada);
+        estadisticas.put("tamanio", diagnosticos.estimatedSize());
+        estadisticas.put("maximo", maximo);
+        estadisticas.put("aciertos", stats.hitCount());
+        estadisticas.put("fallos", stats.missCount());
+        estadisticas.put("tasaAciertos", stats.hitRate());
+        estadisticas.put("desalojados", stats.evictionCount());
+        estadisticas.put("invalidaciones", invalidaciones.sum());
+        return estadisticas;
+    }
+
+    /**
+     * Descarta las entradas de una versión de las reglas que ya no se usa
+     */
+    public void descartarVersion(String version) {
+        if (diagnosticos.asMap().keySet().removeIf(clave -> clave.startsWith(version))) {
+            invalidaciones.increment();
+            log.info("Diagnósticos cacheados de las reglas CLIPS {} descartados", version);
+        }
+    }
+}
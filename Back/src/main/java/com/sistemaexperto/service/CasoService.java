@@ -1,6 +1,8 @@
 package com.sistemaexperto.service;
 
 import com.sistemaexperto.dto.CasoCreateDTO;
+import com.sistemaexperto.dto.CasoResumenDTO;
+import com.sistemaexperto.dto.PaginaCasosDTO;
 import com.sistemaexperto.dto.RespuestaDTO;
 import com.sistemaexperto.model.Caso;
 import com.sistemaexperto.model.enums.EstadoCaso;
@@ -9,29 +11,42 @@ import com.sistemaexperto.model.Respuesta;
 import com.sistemaexperto.repository.CasoRepository;
 import com.sistemaexperto.repository.RespuestaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class CasoService {
 
+    public static final int LIMITE_PAGINA_DEFECTO = 20;
+    public static final int LIMITE_PAGINA_MAXIMO = 100;
+
     @Autowired
     private CasoRepository casoRepository;
 
     @Autowired
     private RespuestaRepository respuestaRepository;
 
+    @Autowired
+    private MetricasService metricasService;
+
     @Transactional
     public Caso crearCaso(Caso caso) {
         caso.setFechaCreacion(LocalDateTime.now());
         caso.setEstado(EstadoCaso.EN_DIAGNOSTICO);
 
-        return casoRepository.save(caso);
+        Caso guardado = casoRepository.save(caso);
+        metricasService.registrarCreacion(guardado);
+        return guardado;
     }
 
     @Transactional
@@ -60,7 +75,9 @@ public class CasoService {
         caso.setFechaCreacion(LocalDateTime.now());
         caso.setEstado(EstadoCaso.EN_DIAGNOSTICO);
 
-        return casoRepository.save(caso);
+        Caso guardado = casoRepository.save(caso);
+        metricasService.registrarCreacion(guardado);
+        return guardado;
     }
 
     public Optional<Caso> findById(Long id) {
@@ -77,9 +94,59 @@ public class CasoService {
         return casoRepository.findAll();
     }
 
+    /**
+     * Todos los casos con los filtros opcionales (null = todos), sin paginar
+     */
     @Transactional(readOnly = true)
-    public List<Caso> listarTodos() {
-        return casoRepository.findAll();
+    public List<Caso> listarTodos(EstadoCaso estado, TipoElectrodomestico tipo) {
+        return casoRepository.findFiltrados(estado, tipo);
+    }
+
+    /**
+     * Listado paginado por cursor (keyset sobre fechaCreacion, id), del más reciente al más antiguo.
+     * Cada página es una única consulta de proyección que no depende de cuántos casos haya antes.
+     */
+    @Transactional(readOnly = true)
+    public PaginaCasosDTO listarResumen(EstadoCaso estado, TipoElectrodomestico tipo, String cursor, Integer limite) {
+        int tamanio = limite == null ? LIMITE_PAGINA_DEFECTO : Math.max(1, Math.min(limite, LIMITE_PAGINA_MAXIMO));
+        // Se pide uno más para saber si hay otra página
+        PageRequest pagina = PageRequest.of(0, tamanio + 1);
+
+        List<CasoResumenDTO> casos;
+        if (cursor == null || cursor.isBlank()) {
+            casos = casoRepository.findResumenes(estado, tipo, pagina);
+        } else {
+            CasoResumenDTO ultimo = decodificarCursor(cursor);
+            casos = casoRepository.findResumenesAnteriores(estado, tipo, ultimo.getFechaCreacion(), ultimo.getId(), pagina);
+        }
+
+        String siguienteCursor = null;
+        if (casos.size() > tamanio) {
+            casos = casos.subList(0, tamanio);
+            siguienteCursor = codificarCursor(casos.get(tamanio - 1));
+        }
+        return PaginaCasosDTO.builder()
+            .casos(casos)
+            .siguienteCursor(siguienteCursor)
+            .build();
+    }
+
+    private static String codificarCursor(CasoResumenDTO caso) {
+        String valor = caso.getFechaCreacion() + "|" + caso.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CasoResumenDTO decodificarCursor(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = valor.lastIndexOf('|');
+            CasoResumenDTO ultimo = new CasoResumenDTO();
+            ultimo.setFechaCreacion(LocalDateTime.parse(valor.substring(0, separador)));
+            ultimo.setId(Long.parseLong(valor.substring(separador + 1)));
+            return ultimo;
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido: " + cursor);
+        }
     }
 
     @Transactional
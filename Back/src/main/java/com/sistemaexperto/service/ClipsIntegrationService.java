@@ -1,7 +1,12 @@
 package com.sistemaexperto.service;
 
 import com.sistemaexperto.model.*;
+import com.sistemaexperto.service.clips.AnalisisReglas;
+import com.sistemaexperto.service.clips.BaseConocimiento;
+import com.sistemaexperto.service.clips.ResultadoInferencia;
 import com.sistemaexperto.service.mapper.ClipsMapper;
+import com.sistemaexperto.service.mapper.EscritorHechosClips;
+import com.sistemaexperto.service.rules.PlantillaDiagnostico;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -16,35 +21,79 @@ import java.util.*;
 @Service
 public class ClipsIntegrationService {
     
+    private static final int CAPACIDAD_INICIAL_BUFFER = 4 * 1024;
+    private static final int CAPACIDAD_MAXIMA_BUFFER = 256 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER_HECHOS =
+        ThreadLocal.withInitial(() -> new StringBuilder(CAPACIDAD_INICIAL_BUFFER));
+    
     @Autowired
     private ClipsService clipsService;
     
     @Autowired
     private ClipsMapper clipsMapper;
     
+    @Autowired
+    private CacheDiagnosticos cacheDiagnosticos;
+    
+    /**
+     * Indica si CLIPS puede atender casos (disponible y con el circuito cerrado)
+     */
+    public boolean isClipsDisponible() {
+        return clipsService.isClipsDisponible();
+    }
+    
+    /**
+     * Por qué CLIPS no puede atender casos, o null si puede (ver ClipsService.motivoNoDisponible)
+     */
+    public String motivoNoDisponible() {
+        return clipsService.motivoNoDisponible();
+    }
+    
     /**
-     * Procesa un caso completo usando CLIPS
+     * Versión actual de las reglas CLIPS, o null si no hay reglas cargadas.
+     * Una sesión nueva la guarda para diagnosticarse con las mismas reglas aunque se recarguen.
      */
-    public Diagnostico procesarCasoConClips(Caso caso, List<Respuesta> respuestas) {
+    public String getVersionReglas() {
+        BaseConocimiento base = clipsService.getBase();
+        return base != null ? base.getVersion() : null;
+    }
+    
+    /**
+     * Procesa un caso completo usando CLIPS, con la versión de las reglas con que empezó
+     * (o la actual si es null o ya no está retenida).
+     * Retorna null si ninguna regla CLIPS generó un diagnóstico para el caso.
+     */
+    public Diagnostico procesarCasoConClips(Caso caso, List<Respuesta> respuestas, String versionReglas) {
         if (!clipsService.isClipsDisponible()) {
             throw new IllegalStateException("CLIPS no está disponible");
         }
         
         try {
-            // 1. Convertir Caso Java a hechos CLIPS
-            List<String> hechos = new ArrayList<>();
-            hechos.add(clipsMapper.casoToClipsFact(caso));
-            hechos.add(clipsMapper.electrodomesticoToClipsFact(caso));
-            hechos.add(clipsMapper.sintomaToClipsFact(caso));
+            // 1. Escribir los hechos CLIPS del caso y sus respuestas
+            StringBuilder hechos = bufferHechos();
+            EscritorHechosClips.escribirCaso(caso, respuestas, hechos);
             
-            // 2. Agregar respuestas
-            hechos.addAll(clipsMapper.respuestasToClipsFacts(respuestas));
+            // 2. Un caso con el mismo camino ya diagnosticado no necesita inferencia
+            BaseConocimiento base = clipsService.getBase(versionReglas);
+            AnalisisReglas analisis = base.getAnalisis();
+            String clave = claveCache(analisis, hechos, 0);
+            PlantillaDiagnostico enCache = cacheDiagnosticos.obtener(analisis, clave);
+            if (enCache != null) {
+                log.info("Diagnóstico CLIPS para caso {} tomado de la caché", caso.getId());
+                return enCache.crearDiagnostico();
+            }
             
             // 3. Ejecutar inferencia
-            Map<String, Object> resultados = clipsService.ejecutarInferencia(hechos);
-            
+            ResultadoInferencia resultado = clipsService.ejecutarInferencia(hechos, base);
+            if (!resultado.tieneDiagnostico(caso.getId())) {
+                log.info("Ninguna regla CLIPS generó un diagnóstico para caso {}", caso.getId());
+                return null;
+            }
+
             // 4. Convertir resultados a Diagnostico Java
-            Diagnostico diagnostico = clipsMapper.clipsFactsToDiagnostico(caso.getId(), resultados);
+            Diagnostico diagnostico = clipsMapper.clipsFactsToDiagnostico(
+                caso.getId(), resultado.hechosDelCaso(caso.getId()));
+            cacheDiagnosticos.guardar(analisis, clave, diagnostico);
             
             log.info("Diagnóstico generado por CLIPS para caso {}", caso.getId());
             return diagnostico;
@@ -55,6 +104,86 @@ public class ClipsIntegrationService {
         }
     }
     
+    /**
+     * Procesa varios casos en una única sesión de inferencia CLIPS, con la versión actual de
+     * las reglas. Retorna los diagnósticos por id de caso; los casos sin diagnóstico CLIPS no se incluyen.
+     */
+    public Map<Long, Diagnostico> procesarLoteConClips(List<Caso> casos, Map<Long, List<Respuesta>> respuestas) {
+        if (!clipsService.isClipsDisponible()) {
+            throw new IllegalStateException("CLIPS no está disponible");
+        }
+        
+        try {
+            // Los casos encontrados en la caché no se envían a la inferencia
+            BaseConocimiento base = clipsService.getBase();
+            AnalisisReglas analisis = base.getAnalisis();
+            StringBuilder hechos = bufferHechos();
+            Map<Long, PlantillaDiagnostico> enCache = new HashMap<>();
+            Map<Long, String> claves = new HashMap<>();
+            for (Caso caso : casos) {
+                int desde = hechos.length();
+                EscritorHechosClips.escribirCaso(caso, respuestas.getOrDefault(caso.getId(), List.of()), hechos);
+                String clave = claveCache(analisis, hechos, desde);
+                PlantillaDiagnostico plantilla = cacheDiagnosticos.obtener(analisis, clave);
+                if (plantilla != null) {
+                    enCache.put(caso.getId(), plantilla);
+                    hechos.setLength(desde);
+                } else {
+                    claves.put(caso.getId(), clave);
+                }
+            }
+            
+            ResultadoInferencia resultado = claves.isEmpty()
+                ? ResultadoInferencia.agrupar(List.of())
+                : clipsService.ejecutarInferencia(hechos, base);
+            
+            Map<Long, Diagnostico> diagnosticos = new LinkedHashMap<>();
+            for (Caso caso : casos) {
+                PlantillaDiagnostico plantilla = enCache.get(caso.getId());
+                if (plantilla != null) {
+                    diagnosticos.put(caso.getId(), plantilla.crearDiagnostico());
+                } else if (resultado.tieneDiagnostico(caso.getId())) {
+                    Diagnostico diagnostico = clipsMapper.clipsFactsToDiagnostico(
+                        caso.getId(), resultado.hechosDelCaso(caso.getId()));
+                    cacheDiagnosticos.guardar(analisis, claves.get(caso.getId()), diagnostico);
+                    diagnosticos.put(caso.getId(), diagnostico);
+                }
+            }
+            
+            log.info("Lote CLIPS: {} de {} casos diagnosticados ({} desde la caché, {} enviados a inferencia)",
+                diagnosticos.size(), casos.size(), enCache.size(), claves.size());
+            return diagnosticos;
+            
+        } catch (Exception e) {
+            log.error("Error procesando lote con CLIPS: {}", e.getMessage(), e);
+            throw new RuntimeException("Error ejecutando inferencia CLIPS en lote", e);
+        }
+    }
+    
+    /**
+     * Clave de caché de los hechos escritos desde la posición dada, o null sin caché
+     */
+    private String claveCache(AnalisisReglas analisis, StringBuilder hechos, int desde) {
+        if (analisis == null || !cacheDiagnosticos.isHabilitada()) {
+            return null;
+        }
+        return analisis.clave(hechos, desde, hechos.length());
+    }
+    
+    /**
+     * Buffer de hechos del hilo, vacío. Se reutiliza entre inferencias porque ClipsService
+     * lo consume antes de retornar; si un lote grande lo agrandó demasiado se reemplaza.
+     */
+    private static StringBuilder bufferHechos() {
+        StringBuilder buffer = BUFFER_HECHOS.get();
+        if (buffer.capacity() > CAPACIDAD_MAXIMA_BUFFER) {
+            buffer = new StringBuilder(CAPACIDAD_INICIAL_BUFFER);
+            BUFFER_HECHOS.set(buffer);
+        }
+        buffer.setLength(0);
+        return buffer;
+    }
+    
     /**
      * Obtiene la siguiente pregunta usando CLIPS
      * Nota: Esta funcionalidad requiere reglas específicas en CLIPS
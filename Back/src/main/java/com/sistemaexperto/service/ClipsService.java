@@ -1,71 +1,305 @@
 package com.sistemaexperto.service;
 
+import com.sistemaexperto.service.clips.AnalisisReglas;
+import com.sistemaexperto.service.clips.BaseConocimiento;
+import com.sistemaexperto.service.clips.CircuitoClips;
+import com.sistemaexperto.service.clips.ClipsWorkerPool;
+import com.sistemaexperto.service.clips.HechoClips;
+import com.sistemaexperto.service.clips.MetricasClips;
+import com.sistemaexperto.service.clips.LectorHechosClips;
+import com.sistemaexperto.service.clips.ResultadoInferencia;
+import com.sistemaexperto.service.clips.motor.Hecho;
+import com.sistemaexperto.service.clips.motor.ProgramaClips;
+import com.sistemaexperto.service.clips.motor.SesionClips;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 /**
  * Servicio para interactuar con CLIPS
- * Usa CLIPS como proceso externo vía CLI
+ * Por defecto ejecuta las reglas .clp en un motor Rete dentro de la JVM;
+ * con clips.engine=external usa un pool de procesos CLIPS persistentes.
+ *
+ * Las reglas se compilan una vez por versión a una {@link BaseConocimiento} inmutable. Con
+ * clips.rules.dir los archivos de ese directorio reemplazan a los del classpath y al cambiar
+ * se recargan sin reiniciar: la nueva versión se compila aparte y se publica de una vez.
+ * Los casos en curso siguen con la versión con que empezaron mientras esté retenida.
  */
 @Slf4j
 @Service
 public class ClipsService {
     
     private final ResourceLoader resourceLoader;
+    private final ClipsWorkerPool workerPool;
+    private final CircuitoClips circuito;
+    private final MetricasClips metricas;
+    private final CacheDiagnosticos cacheDiagnosticos;
     
     @Value("${clips.enabled:true}")
     private boolean clipsEnabled;
     
+    @Value("${clips.engine:embedded}")
+    private String motor;
+    
     @Value("${clips.command:clips}")
     private String clipsCommand;
     
-    @Value("${clips.timeout.seconds:30}")
-    private int timeoutSeconds;
+    @Value("${clips.rules.dir:}")
+    private String directorioExterno;
+    
+    @Value("${clips.rules.versions-retained:4}")
+    private int versionesRetenidas;
     
-    private static final Pattern FACT_PATTERN = Pattern.compile(
-        "\\(([a-z-]+)\\s+(.*?)\\)", Pattern.DOTALL
+    /** Fuentes de las reglas en orden de carga; también las compila a Java GeneradorReglasCompiladas */
+    public static final List<String> ARCHIVOS_REGLAS = List.of(
+        "classpath:clips/templates.clp",
+        "classpath:clips/heladera.clp",
+        "classpath:clips/lavarropas.clp",
+        "classpath:clips/microondas.clp",
+        "classpath:clips/seguridad.clp"
     );
     
-    public ClipsService(ResourceLoader resourceLoader) {
+    // Copia en disco de cada versión para que los procesos CLIPS la lean con (load)
+    private Path directorioReglas;
+    
+    // Versión actual de las reglas y las anteriores que todavía pueden usar casos en curso
+    private volatile BaseConocimiento base;
+    private final Map<String, BaseConocimiento> versiones = new ConcurrentHashMap<>();
+    private final Deque<String> ordenVersiones = new ArrayDeque<>();
+    private final LongAdder recargas = new LongAdder();
+    
+    // Resultado cacheado del último sondeo de disponibilidad
+    private volatile boolean disponible;
+    private volatile LocalDateTime ultimoSondeo;
+    
+    public ClipsService(ResourceLoader resourceLoader, ClipsWorkerPool workerPool, CircuitoClips circuito,
+                        MetricasClips metricas, CacheDiagnosticos cacheDiagnosticos) {
         this.resourceLoader = resourceLoader;
+        this.workerPool = workerPool;
+        this.circuito = circuito;
+        this.metricas = metricas;
+        this.cacheDiagnosticos = cacheDiagnosticos;
     }
     
     /**
-     * Inicializa el motor CLIPS y carga todas las reglas
+     * Inicializa el motor CLIPS: carga todas las reglas y arranca el pool de workers
      */
-    public void inicializarMotor() throws IOException {
+    @PostConstruct
+    public void inicializarMotor() {
         if (!clipsEnabled) {
             log.warn("CLIPS está deshabilitado");
             return;
         }
         
-        log.info("Inicializando motor CLIPS...");
+        log.info("Inicializando motor CLIPS ({})...", motor);
+        
+        if (isMotorEmbebido()) {
+            recargarReglas();
+            return;
+        }
         
         // Verificar que CLIPS esté disponible
-        if (!verificarClipsDisponible()) {
+        disponible = verificarClipsDisponible();
+        ultimoSondeo = LocalDateTime.now();
+        if (!disponible) {
             log.error("CLIPS no está disponible en el sistema. Usando fallback a Java.");
             return;
         }
         
-        // Cargar archivos de reglas
-        cargarArchivo("classpath:clips/templates.clp");
-        cargarArchivo("classpath:clips/heladera.clp");
-        cargarArchivo("classpath:clips/lavarropas.clp");
-        cargarArchivo("classpath:clips/microondas.clp");
-        cargarArchivo("classpath:clips/seguridad.clp");
+        iniciarPool();
+    }
+    
+    /**
+     * Sondea en segundo plano la disponibilidad de CLIPS y cachea el resultado.
+     * Si CLIPS aparece después del arranque, inicia el pool de workers.
+     */
+    @Scheduled(initialDelayString = "${clips.probe.interval.seconds:60}",
+               fixedDelayString = "${clips.probe.interval.seconds:60}",
+               timeUnit = TimeUnit.SECONDS)
+    public void sondearDisponibilidad() {
+        if (!clipsEnabled || isMotorEmbebido()) {
+            return;
+        }
+        
+        boolean ahora = verificarClipsDisponible();
+        ultimoSondeo = LocalDateTime.now();
+        if (ahora != disponible) {
+            log.info("Disponibilidad de CLIPS cambió: {} -> {}", disponible, ahora);
+        }
+        disponible = ahora;
+        
+        if (ahora && !workerPool.isIniciado()) {
+            iniciarPool();
+        }
+    }
+    
+    private synchronized void iniciarPool() {
+        if (workerPool.isIniciado()) {
+            return;
+        }
+        if (base == null && !recargarReglas()) {
+            return;
+        }
+        
+        try {
+            // Los workers cargan las reglas una única vez al arrancar
+            workerPool.iniciar(escribirArchivos(base));
+        } catch (IOException e) {
+            log.error("No se pudieron preparar las reglas CLIPS: {}", e.getMessage());
+            return;
+        }
         
-        log.info("Motor CLIPS inicializado correctamente");
+        if (workerPool.isIniciado()) {
+            log.info("Motor CLIPS inicializado correctamente");
+        }
+    }
+    
+    /**
+     * Lee y compila las reglas y, si cambiaron, las publica como versión actual.
+     * Si no compilan se conserva la versión actual. Retorna si se publicó una versión nueva.
+     */
+    public synchronized boolean recargarReglas() {
+        if (!clipsEnabled) {
+            return false;
+        }
+        
+        BaseConocimiento actual = base;
+        BaseConocimiento nueva;
+        try {
+            nueva = BaseConocimiento.compilar(leerFuentes(), isMotorEmbebido());
+        } catch (IOException | IllegalArgumentException e) {
+            if (actual == null) {
+                log.error("No se pudieron compilar las reglas CLIPS: {}. Usando fallback a Java.", e.getMessage());
+            } else {
+                log.error("No se pudieron compilar las reglas CLIPS: {}. Se mantiene la versión {}",
+                    e.getMessage(), actual.getVersion());
+            }
+            return false;
+        }
+        if (actual != null && actual.getVersion().equals(nueva.getVersion())) {
+            log.debug("Las reglas CLIPS no cambiaron (versión {})", actual.getVersion());
+            return false;
+        }
+        
+        if (!isMotorEmbebido() && workerPool.isIniciado()) {
+            try {
+                workerPool.recargar(escribirArchivos(nueva));
+            } catch (IOException e) {
+                log.error("No se pudieron copiar las reglas CLIPS {}: {}", nueva.getVersion(), e.getMessage());
+                return false;
+            }
+        }
+        publicar(nueva);
+        
+        if (actual == null) {
+            log.info("Reglas CLIPS cargadas: versión {}{}", nueva.getVersion(), descripcionPrograma(nueva));
+        } else {
+            recargas.increment();
+            log.info("Reglas CLIPS recargadas: versión {} -> {}{}",
+                actual.getVersion(), nueva.getVersion(), descripcionPrograma(nueva));
+        }
+        return true;
+    }
+    
+    /**
+     * Publica la versión como actual y retiene las últimas clips.rules.versions-retained;
+     * las que salen ya no se ofrecen a casos fijados y sus diagnósticos cacheados se descartan
+     */
+    private void publicar(BaseConocimiento nueva) {
+        ordenVersiones.remove(nueva.getVersion());
+        ordenVersiones.addLast(nueva.getVersion());
+        versiones.put(nueva.getVersion(), nueva);
+        base = nueva;
+        
+        while (ordenVersiones.size() > Math.max(1, versionesRetenidas)) {
+            String retirada = ordenVersiones.removeFirst();
+            versiones.remove(retirada);
+            cacheDiagnosticos.descartarVersion(retirada);
+            if (directorioReglas != null) {
+                borrar(directorioReglas.resolve(retirada));
+            }
+            log.debug("Versión de reglas CLIPS {} retirada", retirada);
+        }
+    }
+    
+    /**
+     * Fuentes de las reglas por nombre de archivo, en orden de carga. Un archivo con el mismo
+     * nombre en clips.rules.dir reemplaza al del classpath.
+     */
+    private Map<String, String> leerFuentes() throws IOException {
+        Map<String, String> fuentes = new LinkedHashMap<>();
+        for (String ruta : ARCHIVOS_REGLAS) {
+            Resource resource = resourceLoader.getResource(ruta);
+            String nombre = Objects.requireNonNull(resource.getFilename());
+            Path externo = directorioExterno.isBlank() ? null : Path.of(directorioExterno, nombre);
+            if (externo != null && Files.isRegularFile(externo)) {
+                fuentes.put(nombre, Files.readString(externo, StandardCharsets.UTF_8));
+            } else if (resource.exists()) {
+                fuentes.put(nombre, resource.getContentAsString(StandardCharsets.UTF_8));
+            } else {
+                log.warn("Archivo CLIPS no encontrado: {}", ruta);
+            }
+        }
+        return fuentes;
+    }
+    
+    /**
+     * Copia las fuentes de la versión a su propio directorio, así los procesos que todavía
+     * usan la anterior no ven archivos cambiados
+     */
+    private List<Path> escribirArchivos(BaseConocimiento version) throws IOException {
+        if (directorioReglas == null) {
+            directorioReglas = Files.createTempDirectory("clips_reglas_");
+        }
+        Path directorio = Files.createDirectories(directorioReglas.resolve(version.getVersion()));
+        List<Path> archivos = new ArrayList<>();
+        for (Map.Entry<String, String> fuente : version.getFuentes().entrySet()) {
+            Path destino = directorio.resolve(fuente.getKey());
+            log.debug("Cargando archivo CLIPS: {}", destino);
+            Files.writeString(destino, fuente.getValue(), StandardCharsets.UTF_8);
+            archivos.add(destino);
+        }
+        return archivos;
+    }
+    
+    private static String descripcionPrograma(BaseConocimiento version) {
+        ProgramaClips programa = version.getPrograma();
+        return programa == null ? "" : String.format(" (%d reglas, %d nodos alfa, %d joins)",
+            programa.getReglas().size(), programa.cantidadNodosAlfa(), programa.cantidadJoins());
+    }
+    
+    @PreDestroy
+    public void liberarRecursos() {
+        if (directorioReglas != null) {
+            borrar(directorioReglas);
+        }
+    }
+    
+    private static void borrar(Path directorio) {
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            for (Path archivo : archivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(archivo);
+            }
+        } catch (IOException e) {
+            log.debug("No se pudo limpiar el directorio de reglas CLIPS: {}", e.getMessage());
+        }
     }
     
     /**
@@ -91,168 +325,160 @@ public class ClipsService {
     }
     
     /**
-     * Carga un archivo .clp en el motor CLIPS
+     * Ejecuta inferencia con hechos dados y retorna los resultados agrupados por caso.
+     * Los hechos pueden pertenecer a varios casos: todas las reglas los unen por caso-id.
+     * Se escriben uno por línea (EscritorHechosClips) y se consumen antes de retornar,
+     * así el buffer puede reutilizarse.
+     *
+     * @param version versión de las reglas (ver {@link #getBase(String)}); el pool externo
+     *                siempre usa la que tienen cargada sus procesos
      */
-    public void cargarArchivo(String rutaArchivo) throws IOException {
+    public ResultadoInferencia ejecutarInferencia(StringBuilder hechos, BaseConocimiento version)
+            throws IOException, InterruptedException {
         if (!clipsEnabled) {
-            return;
+            throw new IllegalStateException("CLIPS está deshabilitado");
+        }
+        if (!circuito.intentarAdquirir()) {
+            throw new IllegalStateException("Circuito CLIPS abierto");
         }
         
-        Resource resource = resourceLoader.getResource(rutaArchivo);
-        if (!resource.exists()) {
-            log.warn("Archivo CLIPS no encontrado: {}", rutaArchivo);
-            return;
+        ResultadoInferencia resultados;
+        long inicio = System.nanoTime();
+        try {
+            if (isMotorEmbebido()) {
+                resultados = ejecutarEmbebido(hechos, version.getPrograma());
+                metricas.registrarEjecucion(MetricasClips.EMBEBIDO, System.nanoTime() - inicio);
+            } else {
+                // Un worker libre hace (reset), inserta los hechos, ejecuta (run) y lista (facts)
+                resultados = ResultadoInferencia.agrupar(workerPool.ejecutar(hechos));
+                metricas.registrarEjecucion(MetricasClips.EXTERNO, System.nanoTime() - inicio);
+            }
+            circuito.registrarExito();
+        } catch (TimeoutException e) {
+            circuito.registrarFallo();
+            throw new RuntimeException(e.getMessage(), e);
+        } catch (RuntimeException | InterruptedException e) {
+            circuito.registrarFallo();
+            throw e;
         }
         
-        log.debug("Cargando archivo CLIPS: {}", rutaArchivo);
-        // En una implementación real, esto cargaría el archivo en CLIPS
-        // Por ahora solo logueamos
+        return resultados;
     }
     
     /**
-     * Ejecuta inferencia con hechos dados y retorna resultados
+     * Ejecuta la inferencia en el motor embebido: (reset), assert de cada hecho y (run)
      */
-    public Map<String, Object> ejecutarInferencia(List<String> hechos) throws IOException, InterruptedException {
-        if (!clipsEnabled) {
-            throw new IllegalStateException("CLIPS está deshabilitado");
-        }
-        
-        // Crear script temporal CLIPS
-        Path scriptFile = Files.createTempFile("clips_", ".clp");
-        Path outputFile = Files.createTempFile("clips_output_", ".txt");
+    private ResultadoInferencia ejecutarEmbebido(CharSequence hechos, ProgramaClips programa) {
+        SesionClips sesion = programa.nuevaSesion();
+        // Igual que CLIPS: el assert inválido se informa y la inferencia continúa
+        sesion.insertarTodos(hechos, e -> log.warn("Hecho CLIPS descartado: {}", e.getMessage()));
+        int disparos = sesion.ejecutar();
+        log.debug("Motor CLIPS embebido: {} reglas disparadas\n{}", disparos, sesion.getSalida());
         
-        try {
-            // Escribir script CLIPS
-            try (PrintWriter writer = new PrintWriter(new FileWriter(scriptFile.toFile()))) {
-                // Cargar templates
-                writer.println("(load \"templates.clp\")");
-                
-                // Insertar hechos
-                for (String hecho : hechos) {
-                    writer.println("(assert " + hecho + ")");
-                }
-                
-                // Ejecutar inferencia
-                writer.println("(run)");
-                
-                // Obtener hechos de diagnóstico
-                writer.println("(printout t \"DIAGNOSTICOS:\" crlf)");
-                writer.println("(facts)");
-                
-                // Salir
-                writer.println("(exit)");
-            }
-            
-            // Ejecutar CLIPS
-            ProcessBuilder pb = new ProcessBuilder(
-                clipsCommand,
-                "-f", scriptFile.toString()
-            );
-            
-            pb.redirectOutput(outputFile.toFile());
-            pb.redirectErrorStream(true);
-            
-            Process process = pb.start();
-            boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
-            
-            if (!finished) {
-                process.destroyForcibly();
-                throw new RuntimeException("CLIPS timeout después de " + timeoutSeconds + " segundos");
-            }
-            
-            if (process.exitValue() != 0) {
-                String error = new String(Files.readAllBytes(outputFile));
-                throw new RuntimeException("Error ejecutando CLIPS: " + error);
-            }
-            
-            // Leer resultados
-            return parsearResultados(outputFile);
-            
-        } finally {
-            // Limpiar archivos temporales
-            Files.deleteIfExists(scriptFile);
-            Files.deleteIfExists(outputFile);
+        long inicio = System.nanoTime();
+        List<HechoClips> resultados = new ArrayList<>();
+        for (Hecho hecho : sesion.getHechos()) {
+            Map<String, Object> slots = new HashMap<>();
+            hecho.comoMapa().forEach((slot, valor) -> slots.put(slot, HechoClips.convertirValor(valor)));
+            resultados.add(new HechoClips(hecho.getPlantilla().getNombre(), slots));
         }
+        ResultadoInferencia agrupados = ResultadoInferencia.agrupar(resultados);
+        metricas.registrarParseo(MetricasClips.EMBEBIDO, System.nanoTime() - inicio);
+        return agrupados;
     }
     
     /**
-     * Parsea los resultados de CLIPS
+     * Parsea una salida completa de (facts) de un proceso CLIPS
      */
-    private Map<String, Object> parsearResultados(Path outputFile) throws IOException {
-        Map<String, Object> resultados = new HashMap<>();
-        String contenido = new String(Files.readAllBytes(outputFile));
-        
-        // Buscar hechos de diagnóstico, decisión, solución, etc.
-        Matcher matcher = FACT_PATTERN.matcher(contenido);
-        
-        while (matcher.find()) {
-            String tipo = matcher.group(1);
-            String contenidoHecho = matcher.group(2);
-            
-            Map<String, Object> hecho = parsearHecho(tipo, contenidoHecho);
-            resultados.put(tipo, hecho);
-        }
-        
-        return resultados;
+    ResultadoInferencia parsearResultados(String contenido) {
+        return ResultadoInferencia.agrupar(LectorHechosClips.parsear(contenido));
     }
     
     /**
-     * Parsea un hecho individual
+     * Versión y slots relevantes de las reglas actuales, o null si CLIPS no cargó reglas
+     * o no se pudieron analizar
      */
-    private Map<String, Object> parsearHecho(String tipo, String contenido) {
-        Map<String, Object> hecho = new HashMap<>();
-        
-        // Extraer slots del hecho
-        Pattern slotPattern = Pattern.compile("\\(([a-z-]+)\\s+([^)]+)\\)");
-        Matcher slotMatcher = slotPattern.matcher(contenido);
-        
-        while (slotMatcher.find()) {
-            String slot = slotMatcher.group(1);
-            String valor = slotMatcher.group(2).trim();
-            
-            // Limpiar comillas
-            if (valor.startsWith("\"") && valor.endsWith("\"")) {
-                valor = valor.substring(1, valor.length() - 1);
-            }
-            
-            // Convertir tipos
-            Object valorConvertido = convertirValor(valor);
-            hecho.put(slot, valorConvertido);
-        }
-        
-        return hecho;
+    public AnalisisReglas getAnalisisReglas() {
+        BaseConocimiento actual = base;
+        return actual != null ? actual.getAnalisis() : null;
     }
     
     /**
-     * Convierte string a tipo apropiado
+     * Versión actual de las reglas, o null si CLIPS no cargó reglas
      */
-    private Object convertirValor(String valor) {
-        // Intentar como número
-        try {
-            if (valor.contains(".")) {
-                return Double.parseDouble(valor);
-            } else {
-                return Integer.parseInt(valor);
-            }
-        } catch (NumberFormatException e) {
-            // Es string
-            return valor;
-        }
+    public BaseConocimiento getBase() {
+        return base;
+    }
+    
+    /**
+     * Versión de las reglas con la que empezó un caso, si todavía está retenida; si no (o con
+     * el motor externo, cuyos procesos sólo tienen cargada una) la actual
+     */
+    public BaseConocimiento getBase(String version) {
+        BaseConocimiento fijada = version != null && isMotorEmbebido() ? versiones.get(version) : null;
+        return fijada != null ? fijada : base;
     }
     
     /**
      * Limpia la base de hechos (reset)
      */
     public void limpiarBaseHechos() {
-        // En implementación real, ejecutaría (clear) en CLIPS
+        // Cada worker ejecuta (reset) antes de atender un caso
         log.debug("Limpiando base de hechos CLIPS");
     }
     
     /**
-     * Verifica si CLIPS está habilitado y disponible
+     * Estado de disponibilidad, circuito y pool de procesos CLIPS
+     */
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", clipsEnabled);
+        estadisticas.put("motor", motor);
+        BaseConocimiento actual = base;
+        estadisticas.put("versionReglas", actual != null ? actual.getVersion() : null);
+        estadisticas.put("reglasCargadas", actual != null ? actual.getCargada() : null);
+        estadisticas.put("versionesRetenidas", List.copyOf(versiones.keySet()));
+        estadisticas.put("recargas", recargas.sum());
+        estadisticas.put("directorioReglas", directorioExterno.isBlank() ? null : directorioExterno);
+        if (isMotorEmbebido()) {
+            estadisticas.put("reglas", actual != null ? actual.getPrograma().getReglas().size() : 0);
+            estadisticas.put("circuito", circuito.getEstadisticas());
+            return estadisticas;
+        }
+        estadisticas.put("disponible", disponible);
+        estadisticas.put("ultimoSondeo", ultimoSondeo);
+        estadisticas.put("circuito", circuito.getEstadisticas());
+        estadisticas.put("pool", workerPool.getEstadisticas());
+        return estadisticas;
+    }
+    
+    /**
+     * Verifica si CLIPS está habilitado, disponible y con el circuito cerrado.
+     * Usa el resultado cacheado del sondeo en segundo plano.
      */
     public boolean isClipsDisponible() {
-        return clipsEnabled && verificarClipsDisponible();
+        if (!clipsEnabled || !circuito.permiteLlamadas()) {
+            return false;
+        }
+        return isMotorEmbebido() ? base != null : disponible && workerPool.isIniciado();
+    }
+    
+    /**
+     * Por qué CLIPS no puede atender casos (deshabilitado, circuito-abierto o no-disponible),
+     * o null si puede
+     */
+    public String motivoNoDisponible() {
+        if (!clipsEnabled) {
+            return "deshabilitado";
+        }
+        if (!circuito.permiteLlamadas()) {
+            return "circuito-abierto";
+        }
+        return isClipsDisponible() ? null : "no-disponible";
+    }
+    
+    private boolean isMotorEmbebido() {
+        return "embedded".equalsIgnoreCase(motor);
     }
 }
 
@@ -0,0 +1,329 @@
+package com.sistemaexperto.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sistemaexperto.dto.TrabajoDiagnosticoDTO;
+import com.sistemaexperto.dto.TrabajoDiagnosticoDTO.Estado;
+import com.sistemaexperto.model.Diagnostico;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diagnóstico final en segundo plano.
+ * La inferencia (CLIPS puede tardar hasta clips.timeout.seconds) corre fuera de toda transacción;
+ * sólo la preparación y el guardado usan transacciones cortas, así un diagnóstico lento no retiene
+ * un hilo de Tomcat ni una conexión del pool. Los trabajos se consultan por id hasta que expiran.
+ *
+ * El estado de los trabajos se guarda en una tabla compartida, como las sesiones jdbc: cualquier
+ * instancia responde la consulta de un trabajo que corre en otra, y un caso tiene a lo sumo un
+ * trabajo en curso entre todas (columna única caso_en_curso). La espera de un trabajo de otra
+ * instancia consulta la tabla cada pocos cientos de milisegundos.
+ *
+ * Con Java 21 o superior se ejecutan en hilos virtuales; en Java 17 en un pool acotado
+ * (diagnostico.async.hilos) con cola limitada (diagnostico.async.cola).
+ */
+@Slf4j
+@Service
+public class DiagnosticoAsincronoService {
+
+    private static final String CREAR_TABLA = """
+        CREATE TABLE IF NOT EXISTS trabajo_diagnostico (
+            id VARCHAR(36) PRIMARY KEY,
+            caso_id BIGINT NOT NULL,
+            caso_en_curso BIGINT UNIQUE,
+            estado VARCHAR(16) NOT NULL,
+            creado TIMESTAMP NOT NULL,
+            finalizado TIMESTAMP,
+            diagnostico CLOB,
+            error VARCHAR(1000)
+        )""";
+
+    private static final String COLUMNAS = "id, caso_id, estado, creado, finalizado, diagnostico, error";
+
+    private static final String INSERTAR = """
+        INSERT INTO trabajo_diagnostico (id, caso_id, caso_en_curso, estado, creado)
+        VALUES (?, ?, ?, 'PENDIENTE', ?)""";
+
+    private static final String TERMINAR = """
+        UPDATE trabajo_diagnostico SET estado = ?, finalizado = ?, diagnostico = ?, error = ?, caso_en_curso = NULL
+        WHERE id = ?""";
+
+    /** Cada cuánto se consulta la tabla al esperar un trabajo de otra instancia */
+    private static final long CONSULTA_MILLIS = 250;
+
+    private final DiagnosticoService diagnosticoService;
+    private final InferenceEngine inferenceEngine;
+    private final MetricasInferencia metricas;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService ejecutor;
+    private final ScheduledExecutorService consultas;
+    private final Duration retencion;
+    private final RowMapper<TrabajoDiagnosticoDTO> filaATrabajo = this::aTrabajo;
+    /** Trabajos que corren en esta instancia: su espera se completa sin consultar la tabla */
+    private final Map<String, CompletableFuture<TrabajoDiagnosticoDTO>> locales = new ConcurrentHashMap<>();
+
+    public DiagnosticoAsincronoService(DiagnosticoService diagnosticoService,
+                                       InferenceEngine inferenceEngine,
+                                       MetricasInferencia metricas,
+                                       JdbcTemplate jdbcTemplate,
+                                       ObjectMapper objectMapper,
+                                       @Value("${diagnostico.async.hilos:8}") int hilos,
+                                       @Value("${diagnostico.async.cola:1000}") int cola,
+                                       @Value("${diagnostico.async.retencion.minutes:15}") long retencionMinutos) {
+        this.diagnosticoService = diagnosticoService;
+        this.inferenceEngine = inferenceEngine;
+        this.metricas = metricas;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ejecutor = crearEjecutor(hilos, cola);
+        this.consultas = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "diagnostico-consultas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.retencion = Duration.ofMinutes(retencionMinutos);
+    }
+
+    @PostConstruct
+    public void crearTabla() {
+        jdbcTemplate.execute(CREAR_TABLA);
+    }
+
+    /**
+     * Programa el diagnóstico del caso y retorna el trabajo, o el que ya estaba en curso para ese
+     * caso en cualquier instancia
+     *
+     * @throws ResponseStatusException    409 si el caso ya está diagnosticado
+     * @throws RejectedExecutionException si la cola de diagnósticos está llena
+     */
+    public TrabajoDiagnosticoDTO iniciar(Long casoId) {
+        if (diagnosticoService.estaDiagnosticado(casoId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, DiagnosticoService.YA_DIAGNOSTICADO);
+        }
+
+        String id = UUID.randomUUID().toString();
+        LocalDateTime creado = LocalDateTime.now();
+        try {
+            jdbcTemplate.update(INSERTAR, id, casoId, casoId, Timestamp.valueOf(creado));
+        } catch (DuplicateKeyException e) {
+            List<TrabajoDiagnosticoDTO> enCurso = jdbcTemplate.query(
+                    "SELECT " + COLUMNAS + " FROM trabajo_diagnostico WHERE caso_en_curso = ?", filaATrabajo, casoId);
+            // Si terminó entre el insert y la consulta se intenta de nuevo
+            return !enCurso.isEmpty() ? enCurso.get(0) : iniciar(casoId);
+        }
+
+        TrabajoDiagnosticoDTO trabajo = TrabajoDiagnosticoDTO.builder()
+                .id(id)
+                .casoId(casoId)
+                .estado(Estado.PENDIENTE)
+                .creado(creado)
+                .build();
+        locales.put(id, new CompletableFuture<>());
+        try {
+            ejecutor.execute(() -> ejecutar(trabajo));
+        } catch (RejectedExecutionException e) {
+            locales.remove(id);
+            jdbcTemplate.update("DELETE FROM trabajo_diagnostico WHERE id = ?", id);
+            log.warn("Diagnóstico asíncrono del caso {} rechazado: cola llena", casoId);
+            throw e;
+        }
+        log.info("Diagnóstico asíncrono {} programado para caso {}", id, casoId);
+        return trabajo;
+    }
+
+    /**
+     * Estado actual del trabajo, o null si no existe o expiró
+     */
+    public TrabajoDiagnosticoDTO obtener(String trabajoId) {
+        List<TrabajoDiagnosticoDTO> filas = jdbcTemplate.query(
+                "SELECT " + COLUMNAS + " FROM trabajo_diagnostico WHERE id = ?", filaATrabajo, trabajoId);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    /**
+     * Se completa con el estado final del trabajo cuando termina (ya completado si terminó),
+     * o con el estado que tenga al cumplirse la espera
+     */
+    public CompletionStage<TrabajoDiagnosticoDTO> alTerminar(String trabajoId, Duration espera) {
+        CompletableFuture<TrabajoDiagnosticoDTO> local = locales.get(trabajoId);
+        if (local != null) {
+            return local;
+        }
+        TrabajoDiagnosticoDTO actual = obtener(trabajoId);
+        if (actual == null || terminado(actual)) {
+            return CompletableFuture.completedFuture(actual);
+        }
+
+        // Corre en otra instancia: se consulta la tabla hasta que termine o se cumpla la espera
+        long limite = System.nanoTime() + espera.toNanos();
+        CompletableFuture<TrabajoDiagnosticoDTO> resultado = new CompletableFuture<>();
+        ScheduledFuture<?> consulta = consultas.scheduleWithFixedDelay(() -> {
+            try {
+                TrabajoDiagnosticoDTO trabajo = obtener(trabajoId);
+                if (trabajo == null || terminado(trabajo) || System.nanoTime() >= limite) {
+                    resultado.complete(trabajo);
+                }
+            } catch (RuntimeException e) {
+                resultado.completeExceptionally(e);
+            }
+        }, CONSULTA_MILLIS, CONSULTA_MILLIS, TimeUnit.MILLISECONDS);
+        resultado.whenComplete((trabajo, error) -> consulta.cancel(false));
+        return resultado;
+    }
+
+    /**
+     * Como {@link #alTerminar(String, Duration)}, esperando a lo sumo lo que se retienen los trabajos
+     */
+    public CompletionStage<TrabajoDiagnosticoDTO> alTerminar(String trabajoId) {
+        return alTerminar(trabajoId, retencion);
+    }
+
+    /**
+     * Borra los trabajos terminados hace más que la retención. Los que siguen en curso después de
+     * ese tiempo quedaron de una instancia que se cayó: se cierran con error para liberar el caso.
+     */
+    @Scheduled(initialDelayString = "${diagnostico.async.purge-interval.minutes:1}",
+               fixedDelayString = "${diagnostico.async.purge-interval.minutes:1}",
+               timeUnit = TimeUnit.MINUTES)
+    public void purgarVencidos() {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(retencion));
+        int abandonados = jdbcTemplate.update("""
+                UPDATE trabajo_diagnostico SET estado = 'ERROR', finalizado = ?, error = 'Trabajo abandonado',
+                caso_en_curso = NULL WHERE caso_en_curso IS NOT NULL AND creado < ?""", ahora, limite);
+        int eliminados = jdbcTemplate.update("DELETE FROM trabajo_diagnostico WHERE finalizado < ?", limite);
+        if (abandonados > 0 || eliminados > 0) {
+            log.info("Trabajos de diagnóstico: {} abandonados, {} vencidos eliminados", abandonados, eliminados);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() throws InterruptedException {
+        consultas.shutdownNow();
+        ejecutor.shutdown();
+        if (!ejecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Quedaron diagnósticos asíncronos sin terminar al cerrar");
+            ejecutor.shutdownNow();
+        }
+    }
+
+    private void ejecutar(TrabajoDiagnosticoDTO trabajo) {
+        jdbcTemplate.update("UPDATE trabajo_diagnostico SET estado = 'EN_CURSO' WHERE id = ? AND estado = 'PENDIENTE'",
+                trabajo.getId());
+        Timer.Sample muestra = metricas.iniciar();
+        InferenceEngine.EntradaDiagnostico entrada = null;
+        try {
+            entrada = diagnosticoService.prepararFinalizacion(trabajo.getCasoId());
+            Diagnostico diagnostico = inferenceEngine.inferirDiagnostico(entrada);
+            diagnosticoService.guardarFinalizacion(trabajo.getCasoId(), diagnostico);
+            terminar(trabajo, Estado.COMPLETADO, diagnostico, null);
+            log.info("Diagnóstico asíncrono {} del caso {} completado", trabajo.getId(), trabajo.getCasoId());
+        } catch (RuntimeException e) {
+            log.warn("Diagnóstico asíncrono {} del caso {} falló: {}", trabajo.getId(), trabajo.getCasoId(), e.getMessage());
+            terminar(trabajo, Estado.ERROR, null, e.getMessage());
+        } finally {
+            metricas.registrarEtapa(muestra, MetricasInferencia.ETAPA_DIAGNOSTICO,
+                entrada != null ? entrada.caso() : null, entrada != null ? entrada.regla() : null);
+        }
+    }
+
+    private void terminar(TrabajoDiagnosticoDTO trabajo, Estado estado, Diagnostico diagnostico, String error) {
+        trabajo.setEstado(estado);
+        trabajo.setFinalizado(LocalDateTime.now());
+        trabajo.setDiagnostico(diagnostico);
+        trabajo.setError(error);
+        try {
+            jdbcTemplate.update(TERMINAR, estado.name(), Timestamp.valueOf(trabajo.getFinalizado()),
+                    diagnostico != null ? aJson(diagnostico) : null, recortar(error), trabajo.getId());
+        } catch (RuntimeException e) {
+            log.warn("No se pudo guardar el final del trabajo {}: {}", trabajo.getId(), e.getMessage());
+        } finally {
+            CompletableFuture<TrabajoDiagnosticoDTO> local = locales.remove(trabajo.getId());
+            if (local != null) {
+                local.complete(trabajo);
+            }
+        }
+    }
+
+    private TrabajoDiagnosticoDTO aTrabajo(ResultSet rs, int fila) throws SQLException {
+        Timestamp finalizado = rs.getTimestamp("finalizado");
+        String diagnostico = rs.getString("diagnostico");
+        return TrabajoDiagnosticoDTO.builder()
+                .id(rs.getString("id"))
+                .casoId(rs.getLong("caso_id"))
+                .estado(Estado.valueOf(rs.getString("estado")))
+                .creado(rs.getTimestamp("creado").toLocalDateTime())
+                .finalizado(finalizado != null ? finalizado.toLocalDateTime() : null)
+                .diagnostico(diagnostico != null ? deJson(diagnostico) : null)
+                .error(rs.getString("error"))
+                .build();
+    }
+
+    private String aJson(Diagnostico diagnostico) {
+        try {
+            return objectMapper.writeValueAsString(diagnostico);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el diagnóstico", e);
+        }
+    }
+
+    private Diagnostico deJson(String json) {
+        try {
+            return objectMapper.readValue(json, Diagnostico.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Diagnóstico guardado ilegible", e);
+        }
+    }
+
+    private static boolean terminado(TrabajoDiagnosticoDTO trabajo) {
+        return trabajo.getEstado() == Estado.COMPLETADO || trabajo.getEstado() == Estado.ERROR;
+    }
+
+    private static String recortar(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    /**
+     * Hilos virtuales si la JVM los tiene (Java 21+), si no un pool acotado con cola limitada
+     */
+    private static ExecutorService crearEjecutor(int hilos, int cola) {
+        try {
+            ExecutorService virtuales = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+            log.info("Diagnósticos asíncronos en hilos virtuales");
+            return virtuales;
+        } catch (ReflectiveOperationException e) {
+            log.info("Diagnósticos asíncronos en un pool de {} hilos (cola de {})", hilos, cola);
+            AtomicInteger numero = new AtomicInteger();
+            return new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(cola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "diagnostico-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        }
+    }
+}
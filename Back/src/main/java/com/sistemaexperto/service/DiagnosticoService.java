@@ -1,30 +1,54 @@
 package com.sistemaexperto.service;
 
+import com.sistemaexperto.dto.DiagnosticoLoteDTO;
+import com.sistemaexperto.dto.PasoDiagnosticoDTO;
 import com.sistemaexperto.dto.RespuestaDTO;
 import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Diagnostico;
 import com.sistemaexperto.model.Pregunta;
 import com.sistemaexperto.model.Respuesta;
 import com.sistemaexperto.model.enums.EstadoCaso;
 import com.sistemaexperto.repository.CasoRepository;
 import com.sistemaexperto.repository.RespuestaRepository;
-import lombok.RequiredArgsConstructor;
+import com.sistemaexperto.service.session.SesionDiagnostico;
+import com.sistemaexperto.service.session.SessionStore;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Service
-@RequiredArgsConstructor
 public class DiagnosticoService {
 
+    static final String YA_DIAGNOSTICADO = "El caso ya está diagnosticado";
+
     private final CasoRepository casoRepository;
     private final RespuestaRepository respuestaRepository;
     private final InferenceEngine inferenceEngine;
+    private final MetricasService metricasService;
+    private final SessionStore sessionStore;
+    private final TransactionTemplate transaccionPorCaso;
 
-    @Transactional(readOnly = true)
+    public DiagnosticoService(CasoRepository casoRepository, RespuestaRepository respuestaRepository,
+                              InferenceEngine inferenceEngine, MetricasService metricasService,
+                              SessionStore sessionStore, PlatformTransactionManager transactionManager) {
+        this.casoRepository = casoRepository;
+        this.respuestaRepository = respuestaRepository;
+        this.inferenceEngine = inferenceEngine;
+        this.metricasService = metricasService;
+        this.sessionStore = sessionStore;
+        this.transaccionPorCaso = new TransactionTemplate(transactionManager);
+        this.transaccionPorCaso.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Transactional
     public Pregunta obtenerSiguientePregunta(Long casoId) {
         Caso caso = casoRepository.findById(casoId)
                 .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
@@ -38,10 +62,7 @@ public class DiagnosticoService {
         Caso caso = casoRepository.findById(casoId)
                 .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
 
-        Respuesta respuesta = new Respuesta();
-        respuesta.setCaso(caso);
-        respuesta.setPreguntaId(respuestaDTO.getPreguntaId());
-        respuesta.setValor(respuestaDTO.getValor());
+        Respuesta respuesta = crearRespuesta(caso, respuestaDTO);
 
         respuestaRepository.save(respuesta);
 
@@ -51,27 +72,107 @@ public class DiagnosticoService {
         casoRepository.save(caso);
     }
 
-    @Transactional(readOnly = true)
-    public List<Map<String, Object>> obtenerHipotesisActuales(Long casoId) {
+    /**
+     * Paso del wizard en una sola transacción: registra las respuestas dadas (puede no haber
+     * ninguna) y retorna la siguiente pregunta, las hipótesis y si el caso está listo para finalizar
+     */
+    @Transactional
+    public PasoDiagnosticoDTO registrarPaso(Long casoId, List<RespuestaDTO> respuestas) {
         Caso caso = casoRepository.findById(casoId)
                 .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
+        return avanzar(caso, respuestas);
+    }
+
+    /**
+     * Inicia el wizard de un caso recién creado y retorna su primer paso
+     */
+    @Transactional
+    public PasoDiagnosticoDTO iniciarDiagnostico(Caso caso) {
+        return avanzar(caso, List.of());
+    }
+
+    private PasoDiagnosticoDTO avanzar(Caso caso, List<RespuestaDTO> respuestasDTO) {
+        // La primera consulta de pregunta selecciona la regla y crea la sesión con sus hipótesis
+        if (sessionStore.obtener(caso.getId()) == null) {
+            Pregunta primera = inferenceEngine.obtenerSiguientePregunta(caso);
+            if (respuestasDTO.isEmpty()) {
+                return crearPaso(caso.getId(), primera);
+            }
+        }
+
+        List<Respuesta> respuestas = respuestasDTO.stream()
+                .map(dto -> crearRespuesta(caso, dto))
+                .toList();
+        respuestaRepository.saveAll(respuestas);
+        for (Respuesta respuesta : respuestas) {
+            inferenceEngine.procesarRespuesta(caso, respuesta);
+        }
+
+        return crearPaso(caso.getId(), inferenceEngine.obtenerSiguientePregunta(caso));
+    }
 
+    private PasoDiagnosticoDTO crearPaso(Long casoId, Pregunta siguiente) {
+        SesionDiagnostico sesion = sessionStore.obtener(casoId);
+        boolean hayRespuestas;
+        if (sesion != null) {
+            synchronized (sesion) {
+                hayRespuestas = !sesion.getRespuestas().isEmpty();
+            }
+        } else {
+            hayRespuestas = false;
+        }
+        return PasoDiagnosticoDTO.builder()
+                .siguientePregunta(siguiente)
+                .hipotesis(obtenerHipotesisActuales(casoId))
+                .listoParaFinalizar(siguiente == null && hayRespuestas)
+                .build();
+    }
+
+    private static Respuesta crearRespuesta(Caso caso, RespuestaDTO dto) {
+        Respuesta respuesta = new Respuesta();
+        respuesta.setCaso(caso);
+        respuesta.setPreguntaId(dto.getPreguntaId());
+        respuesta.setValor(dto.getValor());
+        return respuesta;
+    }
+
+    /**
+     * Hipótesis del caso: de la sesión si el wizard está en curso (incluye cambios
+     * aún no volcados), si no de la base de datos
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenerHipotesisActuales(Long casoId) {
         List<Map<String, Object>> hipotesis = new ArrayList<>();
 
+        SesionDiagnostico sesion = sessionStore.obtener(casoId);
+        if (sesion != null) {
+            synchronized (sesion) {
+                sesion.getHipotesis().forEach(h -> hipotesis.add(
+                        hipotesisAMapa(h.getId(), h.getDescripcion(), h.getProbabilidad(), h.isActiva())));
+            }
+            return hipotesis;
+        }
+
+        Caso caso = casoRepository.findById(casoId)
+                .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
+
         if (caso.getHipotesis() != null) {
-            caso.getHipotesis().forEach(h -> {
-                Map<String, Object> hipotesisMap = new HashMap<>();
-                hipotesisMap.put("id", h.getId());
-                hipotesisMap.put("descripcion", h.getDescripcion());
-                hipotesisMap.put("probabilidad", h.getProbabilidad());
-                hipotesisMap.put("activa", h.isActiva());
-                hipotesis.add(hipotesisMap);
-            });
+            caso.getHipotesis().forEach(h -> hipotesis.add(
+                    hipotesisAMapa(h.getId(), h.getDescripcion(), h.getProbabilidad(), h.isActiva())));
         }
 
         return hipotesis;
     }
 
+    private static Map<String, Object> hipotesisAMapa(Long id, String descripcion, Integer probabilidad, boolean activa) {
+        Map<String, Object> hipotesisMap = new HashMap<>();
+        hipotesisMap.put("id", id);
+        hipotesisMap.put("descripcion", descripcion);
+        hipotesisMap.put("probabilidad", probabilidad);
+        hipotesisMap.put("activa", activa);
+        return hipotesisMap;
+    }
+
     @Transactional
     public Caso finalizarDiagnostico(Long casoId) {
         Caso caso = casoRepository.findById(casoId)
@@ -80,9 +181,103 @@ public class DiagnosticoService {
         // Realizar el diagnóstico final utilizando el motor de inferencia
         inferenceEngine.realizarDiagnostico(caso);
 
-        caso.setEstado(EstadoCaso.DIAGNOSTICADO);
+        marcarDiagnosticado(caso);
 
         return casoRepository.save(caso);
     }
-}
 
+    /**
+     * Indica si el caso ya tiene diagnóstico
+     */
+    @Transactional(readOnly = true)
+    public boolean estaDiagnosticado(Long casoId) {
+        Caso caso = casoRepository.findById(casoId)
+                .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
+        return caso.getDiagnostico() != null;
+    }
+
+    /**
+     * Primera transacción del diagnóstico asíncrono: prepara la inferencia del caso
+     */
+    @Transactional
+    public InferenceEngine.EntradaDiagnostico prepararFinalizacion(Long casoId) {
+        Caso caso = casoRepository.findById(casoId)
+                .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
+        return inferenceEngine.prepararDiagnostico(caso);
+    }
+
+    /**
+     * Última transacción del diagnóstico asíncrono: guarda el diagnóstico inferido
+     */
+    @Transactional
+    public Caso guardarFinalizacion(Long casoId, Diagnostico diagnostico) {
+        Caso caso = casoRepository.findById(casoId)
+                .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
+        if (caso.getDiagnostico() != null) {
+            throw new IllegalStateException(YA_DIAGNOSTICADO);
+        }
+        inferenceEngine.guardarDiagnostico(caso, diagnostico);
+
+        marcarDiagnosticado(caso);
+
+        return casoRepository.save(caso);
+    }
+
+    /**
+     * Diagnostica varios casos en una única inferencia. Cada caso se guarda en su propia transacción,
+     * así la falla de uno no revierte a los demás. Los ids inexistentes y los casos ya diagnosticados
+     * se informan como error.
+     */
+    public List<DiagnosticoLoteDTO> diagnosticarLote(List<Long> casoIds) {
+        Map<Long, DiagnosticoLoteDTO> resultados = new HashMap<>();
+        List<Caso> pendientes = new ArrayList<>();
+        casoRepository.findAllById(casoIds).forEach(caso -> {
+            if (caso.getDiagnostico() != null) {
+                resultados.put(caso.getId(), DiagnosticoLoteDTO.builder()
+                        .casoId(caso.getId())
+                        .error(YA_DIAGNOSTICADO)
+                        .build());
+            } else {
+                pendientes.add(caso);
+            }
+        });
+
+        for (DiagnosticoLoteDTO resultado : inferenceEngine.realizarDiagnosticoLote(pendientes, this::guardarDelLote)) {
+            resultados.put(resultado.getCasoId(), resultado);
+        }
+
+        return casoIds.stream().distinct()
+                .map(id -> resultados.getOrDefault(id, DiagnosticoLoteDTO.builder()
+                        .casoId(id)
+                        .error("Caso no encontrado")
+                        .build()))
+                .toList();
+    }
+
+    /**
+     * Guarda el diagnóstico de un caso del lote en una transacción nueva. Relee el caso para no
+     * pisar un diagnóstico guardado por otra petición mientras corría la inferencia.
+     */
+    private void guardarDelLote(Caso caso, Diagnostico diagnostico) {
+        transaccionPorCaso.executeWithoutResult(estado -> {
+            Caso actual = casoRepository.findById(caso.getId())
+                    .orElseThrow(() -> new RuntimeException("Caso no encontrado"));
+            if (actual.getDiagnostico() != null) {
+                throw new IllegalStateException(YA_DIAGNOSTICADO);
+            }
+            inferenceEngine.guardarDiagnostico(actual, diagnostico);
+            marcarDiagnosticado(actual);
+            casoRepository.save(actual);
+        });
+    }
+
+    private void marcarDiagnosticado(Caso caso) {
+        EstadoCaso anterior = caso.getEstado();
+        boolean primerDiagnostico = caso.getFechaDiagnostico() == null;
+        caso.setEstado(EstadoCaso.DIAGNOSTICADO);
+        if (primerDiagnostico) {
+            caso.setFechaDiagnostico(LocalDateTime.now());
+        }
+        metricasService.registrarCambioEstado(caso, anterior, primerDiagnostico);
+    }
+}
@@ -1,17 +1,26 @@
 package com.sistemaexperto.service;
 
+import com.sistemaexperto.dto.DiagnosticoLoteDTO;
 import com.sistemaexperto.model.*;
 import com.sistemaexperto.repository.CasoRepository;
 import com.sistemaexperto.repository.DiagnosticoRepository;
 import com.sistemaexperto.repository.HipotesisRepository;
 import com.sistemaexperto.repository.RespuestaRepository;
+import com.sistemaexperto.service.clips.compiladas.MotorReglasCompiladas;
 import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import com.sistemaexperto.service.rules.ModeloHipotesis;
+import com.sistemaexperto.service.session.HipotesisSesion;
+import com.sistemaexperto.service.session.SesionDiagnostico;
+import com.sistemaexperto.service.session.SessionStore;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +31,9 @@ import java.util.stream.Collectors;
 @Service
 public class InferenceEngine {
 
+    /** Probabilidad posterior por debajo de la cual una hipótesis se muestra descartada */
+    private static final double UMBRAL_HIPOTESIS_ACTIVA = 0.05;
+
     @Autowired
     private CasoRepository casoRepository;
 
@@ -35,55 +47,67 @@ public class InferenceEngine {
     private DiagnosticoRepository diagnosticoRepository;
 
     @Autowired
-    private List<DiagnosticRule> todasLasReglas;
+    private IndiceReglas indiceReglas;
 
     @Autowired(required = false)
     private ClipsIntegrationService clipsIntegration;
 
-    private Map<Long, DiagnosticRule> reglasActivas = new HashMap<>();
-    private Map<Long, Map<String, Object>> respuestasPorCaso = new HashMap<>();
-    private Map<Long, String> ultimaPreguntaPorCaso = new HashMap<>();
+    @Autowired
+    private MotorReglasCompiladas reglasCompiladas;
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private VolcadoHipotesis volcadoHipotesis;
+
+    @Autowired
+    private MetricasInferencia metricas;
 
     /**
      * Obtiene la siguiente pregunta para un caso
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public Pregunta obtenerSiguientePregunta(Caso caso) {
-        log.info("Obteniendo siguiente pregunta para caso {}", caso.getId());
-
-        // Si es la primera vez, seleccionar la regla aplicable
-        if (!reglasActivas.containsKey(caso.getId())) {
-            DiagnosticRule regla = seleccionarReglaAplicable(caso);
-            if (regla == null) {
-                log.warn("No se encontró regla aplicable para el caso {}", caso.getId());
-                return null;
-            }
-            reglasActivas.put(caso.getId(), regla);
-            respuestasPorCaso.put(caso.getId(), new HashMap<>());
-
-            // Crear hipótesis iniciales
-            crearHipotesisIniciales(caso, regla);
-
-            // Retornar primera pregunta
-            Pregunta primera = regla.getPrimeraPregunta();
-            log.info("Primera pregunta para caso {}: {}", caso.getId(), primera.getTexto());
-            return primera;
+        Timer.Sample muestra = metricas.iniciar();
+        SesionDiagnostico sesion = null;
+        try {
+            sesion = obtenerOReconstruirSesion(caso);
+            return siguientePregunta(caso, sesion);
+        } finally {
+            metricas.registrarEtapa(muestra, MetricasInferencia.ETAPA_SIGUIENTE_PREGUNTA, caso,
+                    sesion != null ? sesion.getRegla() : null);
         }
+    }
 
-        // Obtener la regla activa y las respuestas previas
-        DiagnosticRule regla = reglasActivas.get(caso.getId());
-        Map<String, Object> respuestas = respuestasPorCaso.get(caso.getId());
-        String ultimaPregunta = ultimaPreguntaPorCaso.get(caso.getId());
+    private Pregunta siguientePregunta(Caso caso, SesionDiagnostico sesion) {
+        log.info("Obteniendo siguiente pregunta para caso {}", caso.getId());
 
-        if (ultimaPregunta == null) {
-            return regla.getPrimeraPregunta();
+        // Si es la primera vez, la sesión se creó seleccionando la regla aplicable
+        if (sesion == null) {
+            log.warn("No se encontró regla aplicable para el caso {}", caso.getId());
+            return null;
         }
 
-        // Obtener última respuesta
-        Object ultimaRespuesta = respuestas.get(ultimaPregunta);
+        Pregunta siguiente;
+        synchronized (sesion) {
+            // Obtener la regla activa y las respuestas previas
+            DiagnosticRule regla = sesion.getRegla();
+            Map<String, Object> respuestas = sesion.getRespuestas();
+            String ultimaPregunta = sesion.getUltimaPregunta();
+
+            if (ultimaPregunta == null) {
+                Pregunta primera = regla.getPrimeraPregunta();
+                log.info("Primera pregunta para caso {}: {}", caso.getId(), primera.getTexto());
+                return primera;
+            }
+
+            // Obtener última respuesta
+            Object ultimaRespuesta = respuestas.get(ultimaPregunta);
 
-        // Obtener siguiente pregunta
-        Pregunta siguiente = regla.getSiguientePregunta(ultimaPregunta, ultimaRespuesta, respuestas);
+            // Obtener siguiente pregunta
+            siguiente = regla.getSiguientePregunta(ultimaPregunta, ultimaRespuesta, respuestas);
+        }
 
         if (siguiente == null) {
             log.info("No hay más preguntas para caso {}. Listo para diagnóstico final.", caso.getId());
@@ -99,34 +123,50 @@ public class InferenceEngine {
      */
     @Transactional
     public void procesarRespuesta(Caso caso, Respuesta respuesta) {
+        Timer.Sample muestra = metricas.iniciar();
+        SesionDiagnostico sesion = null;
+        try {
+            // Obtener la sesión con la regla activa (reconstruida desde la base si hace falta)
+            sesion = obtenerOReconstruirSesion(caso);
+            aplicarRespuesta(caso, sesion, respuesta);
+        } finally {
+            metricas.registrarEtapa(muestra, MetricasInferencia.ETAPA_RESPUESTA, caso,
+                    sesion != null ? sesion.getRegla() : null);
+        }
+    }
+
+    private void aplicarRespuesta(Caso caso, SesionDiagnostico sesion, Respuesta respuesta) {
         log.info("Procesando respuesta para caso {}: pregunta={}, valor={}",
                 caso.getId(), respuesta.getPreguntaId(), respuesta.getValor());
 
-        // Obtener la regla activa
-        DiagnosticRule regla = reglasActivas.get(caso.getId());
-        if (regla == null) {
+        if (sesion == null) {
             log.error("No hay regla activa para caso {}", caso.getId());
             throw new RuntimeException("No se puede procesar respuesta sin regla activa");
         }
 
-        // Obtener el ID string de la pregunta
-        String preguntaIdString = regla.getPreguntaIdString(respuesta.getPreguntaId());
-        log.debug("ID string de pregunta: {}", preguntaIdString);
+        synchronized (sesion) {
+            // Al reconstruir la sesión ya se reprodujo esta respuesta si estaba guardada
+            if (sesion.yaAplicada(respuesta.getId())) {
+                log.debug("Respuesta {} ya aplicada a la sesión del caso {}", respuesta.getId(), caso.getId());
+                return;
+            }
 
-        Map<String, Object> respuestas = respuestasPorCaso.computeIfAbsent(
-            caso.getId(), k -> new HashMap<>()
-        );
+            // Obtener el ID string de la pregunta
+            String preguntaIdString = sesion.getRegla().getPreguntaIdString(respuesta.getPreguntaId());
+            log.debug("ID string de pregunta: {}", preguntaIdString);
 
-        // Convertir respuesta a tipo apropiado
-        Object valorProcesado = procesarValorRespuesta(respuesta.getValor());
-        respuestas.put(preguntaIdString, valorProcesado);
-        ultimaPreguntaPorCaso.put(caso.getId(), preguntaIdString);
+            // Convertir respuesta a tipo apropiado
+            Object valorProcesado = procesarValorRespuesta(respuesta.getValor());
+            boolean corrige = sesion.getRespuestas().containsKey(preguntaIdString);
+            sesion.registrarRespuesta(preguntaIdString, valorProcesado, respuesta.getId());
 
-        // Actualizar hipótesis basándose en la respuesta
-        actualizarHipotesis(caso, respuestas);
+            // Actualizar hipótesis basándose en la respuesta; se vuelcan a la base en diferido
+            actualizarHipotesis(caso, sesion, preguntaIdString, valorProcesado, corrige);
+            sessionStore.guardar(sesion);
 
-        log.info("Respuesta procesada. Total respuestas para caso {}: {}",
-                caso.getId(), respuestas.size());
+            log.info("Respuesta procesada. Total respuestas para caso {}: {}",
+                    caso.getId(), sesion.getRespuestas().size());
+        }
     }
 
     /**
@@ -135,43 +175,179 @@ public class InferenceEngine {
      */
     @Transactional
     public void realizarDiagnostico(Caso caso) {
+        Timer.Sample muestra = metricas.iniciar();
+        EntradaDiagnostico entrada = null;
+        try {
+            entrada = prepararDiagnostico(caso);
+            guardarDiagnostico(caso, inferirDiagnostico(entrada));
+        } finally {
+            metricas.registrarEtapa(muestra, MetricasInferencia.ETAPA_DIAGNOSTICO, caso,
+                    entrada != null ? entrada.regla() : null);
+        }
+    }
+
+    /**
+     * Reúne lo que necesita la inferencia del caso (regla, copia de las respuestas de la sesión
+     * y, si se usará CLIPS o sus reglas compiladas, las respuestas guardadas) para poder correrla
+     * fuera de la transacción
+     */
+    @Transactional
+    public EntradaDiagnostico prepararDiagnostico(Caso caso) {
         log.info("Realizando diagnóstico final para caso {}", caso.getId());
 
-        Map<String, Object> respuestas = respuestasPorCaso.get(caso.getId());
-        if (respuestas == null || respuestas.isEmpty()) {
+        SesionDiagnostico sesion = obtenerOReconstruirSesion(caso);
+        if (sesion == null || sesion.getRespuestas().isEmpty()) {
             log.error("No hay respuestas para caso {}", caso.getId());
             throw new RuntimeException("No se puede realizar diagnóstico sin respuestas");
         }
 
+        Map<String, Object> respuestas;
+        synchronized (sesion) {
+            respuestas = new HashMap<>(sesion.getRespuestas());
+        }
+        // Obtener respuestas del caso desde la base de datos para CLIPS o sus reglas compiladas
+        boolean usaClips = clipsIntegration != null && clipsIntegration.isClipsDisponible();
+        List<Respuesta> respuestasGuardadas = usaClips || reglasCompiladas.isDisponible(sesion.getVersionReglas())
+            ? respuestaRepository.findByCasoId(caso.getId())
+            : null;
+        return new EntradaDiagnostico(caso, sesion.getRegla(), respuestas, respuestasGuardadas,
+                sesion.getVersionReglas());
+    }
+
+    /**
+     * Infiere el diagnóstico sin acceder a la base. Con CLIPS puede tardar hasta
+     * clips.timeout.seconds, por eso el diagnóstico asíncrono la llama sin transacción abierta.
+     */
+    public Diagnostico inferirDiagnostico(EntradaDiagnostico entrada) {
+        Caso caso = entrada.caso();
         Diagnostico diagnostico = null;
 
-        // Intentar usar CLIPS primero si está disponible
-        if (clipsIntegration != null) {
+        // Intentar usar CLIPS primero si está disponible y el circuito no está abierto
+        String causaFallback = motivoSinClips();
+        if (entrada.respuestasGuardadas() != null && causaFallback == null) {
             try {
-                // Obtener respuestas del caso desde la base de datos
-                List<Respuesta> respuestasList = respuestaRepository.findByCasoId(caso.getId());
-                
-                diagnostico = clipsIntegration.procesarCasoConClips(caso, respuestasList);
-                log.info("Diagnóstico generado por CLIPS para caso {}", caso.getId());
+                diagnostico = clipsIntegration.procesarCasoConClips(caso, entrada.respuestasGuardadas(),
+                        entrada.versionReglas());
+                if (diagnostico != null) {
+                    log.info("Diagnóstico generado por CLIPS para caso {}", caso.getId());
+                } else {
+                    causaFallback = MetricasInferencia.FALLBACK_SIN_DIAGNOSTICO;
+                }
             } catch (Exception e) {
                 log.warn("Error usando CLIPS, fallback a reglas Java: {}", e.getMessage());
+                causaFallback = MetricasInferencia.causaFallback(e);
                 // Continuar con fallback a Java
             }
+        } else if (causaFallback == null) {
+            // Preparado cuando CLIPS no estaba disponible
+            causaFallback = MetricasInferencia.FALLBACK_NO_DISPONIBLE;
         }
 
         // Fallback a reglas Java si CLIPS no está disponible o falló
         if (diagnostico == null) {
-            DiagnosticRule regla = reglasActivas.get(caso.getId());
-            if (regla == null) {
-                log.error("No hay regla activa para caso {}", caso.getId());
-                throw new RuntimeException("No se puede realizar diagnóstico sin regla activa");
+            metricas.registrarFallback(causaFallback, caso, entrada.regla());
+            if (entrada.respuestasGuardadas() != null) {
+                diagnostico = diagnosticarConReglasCompiladas(caso, entrada.respuestasGuardadas(),
+                        entrada.versionReglas(), causaFallback);
+            }
+            if (diagnostico == null) {
+                diagnostico = entrada.regla().evaluarDiagnostico(entrada.respuestas(), caso);
+                log.info("Diagnóstico generado por reglas Java para caso {}", caso.getId());
             }
+        }
+        return diagnostico;
+    }
 
-            // Evaluar diagnóstico usando la regla Java
-            diagnostico = regla.evaluarDiagnostico(respuestas, caso);
-            log.info("Diagnóstico generado por reglas Java para caso {}", caso.getId());
+    /**
+     * Diagnostica varios casos a partir de las respuestas guardadas.
+     * Todos los casos se evalúan en una única inferencia CLIPS; los que CLIPS no
+     * resuelve usan la regla Java aplicable. No abre transacción: guardar persiste cada
+     * diagnóstico en la suya, y si falla sólo ese caso queda con error.
+     */
+    public List<DiagnosticoLoteDTO> realizarDiagnosticoLote(List<Caso> casos, BiConsumer<Caso, Diagnostico> guardar) {
+        Map<Long, List<Respuesta>> respuestasPorCaso = respuestaRepository
+            .findByCasoIdIn(casos.stream().map(Caso::getId).toList()).stream()
+            .collect(Collectors.groupingBy(r -> r.getCaso().getId()));
+
+        List<Caso> conRespuestas = casos.stream()
+            .filter(caso -> respuestasPorCaso.containsKey(caso.getId()))
+            .toList();
+
+        Map<Long, Diagnostico> diagnosticosClips = Map.of();
+        String causaFallback = motivoSinClips();
+        if (causaFallback == null && !conRespuestas.isEmpty()) {
+            try {
+                diagnosticosClips = clipsIntegration.procesarLoteConClips(conRespuestas, respuestasPorCaso);
+                causaFallback = MetricasInferencia.FALLBACK_SIN_DIAGNOSTICO;
+            } catch (Exception e) {
+                log.warn("Error usando CLIPS en lote, fallback a reglas Java: {}", e.getMessage());
+                causaFallback = MetricasInferencia.causaFallback(e);
+            }
         }
 
+        List<DiagnosticoLoteDTO> resultados = new ArrayList<>();
+        for (Caso caso : casos) {
+            DiagnosticoLoteDTO.DiagnosticoLoteDTOBuilder resultado = DiagnosticoLoteDTO.builder()
+                .casoId(caso.getId());
+            List<Respuesta> respuestas = respuestasPorCaso.get(caso.getId());
+            if (respuestas == null) {
+                resultados.add(resultado.error("No se puede realizar diagnóstico sin respuestas").build());
+                continue;
+            }
+
+            try {
+                Diagnostico diagnostico = diagnosticosClips.get(caso.getId());
+                String motor = "CLIPS";
+                if (diagnostico == null) {
+                    diagnostico = evaluarConReglaJava(caso, respuestas, causaFallback);
+                    motor = "JAVA";
+                }
+                guardar.accept(caso, diagnostico);
+                resultados.add(resultado
+                    .diagnosticado(true)
+                    .motor(motor)
+                    .causaProbable(diagnostico.getCausaProbable())
+                    .probabilidad(diagnostico.getProbabilidad())
+                    .build());
+            } catch (Exception e) {
+                log.warn("No se pudo diagnosticar el caso {} del lote: {}", caso.getId(), e.getMessage());
+                resultados.add(resultado.error(e.getMessage()).build());
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Evalúa las reglas CLIPS compiladas o, si no aplican, la regla Java del caso reconstruyendo
+     * las respuestas desde la base de datos
+     */
+    private Diagnostico evaluarConReglaJava(Caso caso, List<Respuesta> respuestas, String causaFallback) {
+        SesionDiagnostico sesion = sessionStore.obtener(caso.getId());
+        DiagnosticRule regla = sesion != null ? sesion.getRegla() : seleccionarReglaAplicable(caso);
+        if (regla == null) {
+            throw new IllegalStateException("No hay regla aplicable para el caso " + caso.getId());
+        }
+        metricas.registrarFallback(causaFallback, caso, regla);
+
+        // El lote usa la versión actual de las reglas, como procesarLoteConClips
+        Diagnostico compilado = diagnosticarConReglasCompiladas(caso, respuestas, null, causaFallback);
+        if (compilado != null) {
+            return compilado;
+        }
+
+        Map<String, Object> valores = new HashMap<>();
+        for (Respuesta respuesta : respuestas) {
+            valores.put(regla.getPreguntaIdString(respuesta.getPreguntaId()),
+                procesarValorRespuesta(respuesta.getValor()));
+        }
+        return regla.evaluarDiagnostico(valores, caso);
+    }
+
+    /**
+     * Persiste el diagnóstico, actualiza las hipótesis finales y descarta la sesión del caso
+     */
+    @Transactional
+    public void guardarDiagnostico(Caso caso, Diagnostico diagnostico) {
         // Convertir listas inmutables en mutables para que JPA pueda persistirlas
         if (diagnostico.getInstruccionesDiy() != null) {
             diagnostico.setInstruccionesDiy(new ArrayList<>(diagnostico.getInstruccionesDiy()));
@@ -191,7 +367,7 @@ public class InferenceEngine {
         caso.setDiagnostico(diagnostico);
 
         // Actualizar hipótesis finales
-        actualizarHipotesisFinales(caso, diagnostico);
+        actualizarHipotesisFinales(caso, diagnostico, sessionStore.obtener(caso.getId()));
 
         // Limpiar caché
         limpiarCache(caso.getId());
@@ -201,176 +377,239 @@ public class InferenceEngine {
     }
 
     /**
-     * Selecciona la regla más apropiada para el caso
+     * Sesión del caso. Si no está en memoria (reinicio, expiración) se crea seleccionando la
+     * regla y reproduciendo las respuestas guardadas; null si no hay regla aplicable.
      */
-    private DiagnosticRule seleccionarReglaAplicable(Caso caso) {
-        log.info("Seleccionando regla para caso {}: tipo={}, síntoma={}",
-                caso.getId(), caso.getTipo(), caso.getSintomaReportado());
+    private SesionDiagnostico obtenerOReconstruirSesion(Caso caso) {
+        SesionDiagnostico sesion = sessionStore.obtener(caso.getId());
+        if (sesion != null) {
+            return sesion;
+        }
 
-        // Filtrar reglas por tipo de electrodoméstico
-        List<DiagnosticRule> reglasCompatibles = todasLasReglas.stream()
-            .filter(regla -> regla.getTipoElectrodomestico() == caso.getTipo())
-            .collect(Collectors.toList());
+        DiagnosticRule regla = seleccionarReglaAplicable(caso);
+        if (regla == null) {
+            return null;
+        }
 
-        log.debug("Reglas compatibles con tipo {}: {}", caso.getTipo(), reglasCompatibles.size());
+        // Las reglas CLIPS que se usen al diagnosticar quedan fijadas a la versión de ahora
+        String versionReglas = clipsIntegration != null ? clipsIntegration.getVersionReglas() : null;
+        SesionDiagnostico nueva = new SesionDiagnostico(caso.getId(), regla, versionReglas);
+        // Se completa con el lock tomado: quien la obtenga en paralelo espera a que esté lista
+        synchronized (nueva) {
+            sesion = sessionStore.registrarSiAusente(nueva);
+            if (sesion != nueva) {
+                // Otro hilo inició la sesión en paralelo
+                return sesion;
+            }
+            try {
+                List<Respuesta> guardadas = respuestaRepository.findByCasoIdOrderByIdAsc(caso.getId());
+                for (Respuesta respuesta : guardadas) {
+                    nueva.registrarRespuesta(regla.getPreguntaIdString(respuesta.getPreguntaId()),
+                            procesarValorRespuesta(respuesta.getValor()), respuesta.getId());
+                }
+                regla.getModeloHipotesis().calcular(nueva.getRespuestas(), nueva.getProbabilidades());
 
-        // Buscar regla que coincida con el síntoma (ordenadas por prioridad)
-        Optional<DiagnosticRule> reglaSeleccionada = reglasCompatibles.stream()
-            .filter(regla -> regla.esAplicable(caso.getSintomaReportado()))
-            .sorted((r1, r2) -> Integer.compare(r2.getPrioridad(), r1.getPrioridad()))
-            .findFirst();
+                if (guardadas.isEmpty()) {
+                    crearHipotesisIniciales(caso, nueva);
+                } else {
+                    restaurarHipotesis(caso, nueva);
+                    log.info("Sesión del caso {} reconstruida con {} respuestas guardadas", caso.getId(), guardadas.size());
+                }
+                sessionStore.guardar(nueva);
+            } catch (RuntimeException e) {
+                sessionStore.eliminar(caso.getId());
+                throw e;
+            }
+        }
+        return nueva;
+    }
 
-        if (reglaSeleccionada.isPresent()) {
+    /**
+     * Retoma las hipótesis guardadas de una sesión reconstruida con su probabilidad recalculada.
+     * Si no corresponden al modelo de la regla (la regla cambió) se crean de nuevo.
+     */
+    private void restaurarHipotesis(Caso caso, SesionDiagnostico sesion) {
+        ModeloHipotesis modelo = sesion.getRegla().getModeloHipotesis();
+        List<Hipotesis> guardadas = hipotesisRepository.findByCasoId(caso.getId()).stream()
+                .sorted(Comparator.comparing(Hipotesis::getId))
+                .toList();
+        boolean coinciden = guardadas.size() == modelo.getCantidad();
+        for (int i = 0; coinciden && i < guardadas.size(); i++) {
+            coinciden = guardadas.get(i).getDescripcion().equals(modelo.getDescripcion(i));
+        }
+        if (!coinciden) {
+            crearHipotesisIniciales(caso, sesion);
+            return;
+        }
+
+        double[] probabilidades = sesion.getProbabilidades();
+        for (int i = 0; i < guardadas.size(); i++) {
+            Hipotesis h = guardadas.get(i);
+            sesion.getHipotesis().add(new HipotesisSesion(h.getId(), h.getDescripcion(),
+                    porcentaje(probabilidades[i]), probabilidades[i] >= UMBRAL_HIPOTESIS_ACTIVA));
+        }
+        sesion.marcarHipotesisPendientes();
+        volcadoHipotesis.programar(sesion);
+    }
+
+    /**
+     * Selecciona la regla más apropiada para el caso
+     */
+    DiagnosticRule seleccionarReglaAplicable(Caso caso) {
+        log.info("Seleccionando regla para caso {}: tipo={}, síntoma={}",
+                caso.getId(), caso.getTipo(), caso.getSintomaReportado());
+
+        // Regla de mayor prioridad del tipo cuyo síntoma coincide
+        DiagnosticRule reglaSeleccionada = indiceReglas.buscar(caso.getTipo(), caso.getSintomaReportado());
+        if (reglaSeleccionada != null) {
             log.info("Regla seleccionada: {} (prioridad: {})",
-                    reglaSeleccionada.get().getId(), reglaSeleccionada.get().getPrioridad());
-            return reglaSeleccionada.get();
+                    reglaSeleccionada.getId(), reglaSeleccionada.getPrioridad());
+        } else {
+            // Si no hay coincidencia exacta, usar la de mayor prioridad para ese tipo
+            log.warn("No se encontró regla específica, usando regla genérica");
+            reglaSeleccionada = indiceReglas.principal(caso.getTipo());
+        }
+        metricas.registrarReglaSeleccionada(caso, reglaSeleccionada);
+        return reglaSeleccionada;
+    }
+
+    /**
+     * Diagnóstico de las reglas CLIPS compiladas a Java, o null si no aplican. Si CLIPS ya corrió
+     * y no diagnosticó, las mismas reglas compiladas tampoco lo harían.
+     */
+    private Diagnostico diagnosticarConReglasCompiladas(Caso caso, List<Respuesta> respuestas,
+                                                        String versionReglas, String causaFallback) {
+        if (MetricasInferencia.FALLBACK_SIN_DIAGNOSTICO.equals(causaFallback)) {
+            return null;
+        }
+        Diagnostico diagnostico = reglasCompiladas.diagnosticar(caso, respuestas, versionReglas);
+        if (diagnostico != null) {
+            log.info("Diagnóstico generado por reglas CLIPS compiladas para caso {}", caso.getId());
         }
+        return diagnostico;
+    }
 
-        // Si no hay coincidencia exacta, usar la de mayor prioridad para ese tipo
-        log.warn("No se encontró regla específica, usando regla genérica");
-        return reglasCompatibles.stream()
-            .sorted((r1, r2) -> Integer.compare(r2.getPrioridad(), r1.getPrioridad()))
-            .findFirst()
-            .orElse(null);
+    /**
+     * Causa por la que el diagnóstico no puede intentarse con CLIPS, o null si puede
+     */
+    private String motivoSinClips() {
+        return clipsIntegration != null ? clipsIntegration.motivoNoDisponible()
+                : MetricasInferencia.FALLBACK_DESHABILITADO;
     }
 
     /**
-     * Crea hipótesis iniciales basadas en el síntoma
+     * Crea hipótesis iniciales basadas en el síntoma.
+     * Se insertan una sola vez al iniciar la sesión; desde ahí se actualizan en memoria.
      */
-    private void crearHipotesisIniciales(Caso caso, DiagnosticRule regla) {
+    private void crearHipotesisIniciales(Caso caso, SesionDiagnostico sesion) {
         log.debug("Creando hipótesis iniciales para caso {}", caso.getId());
+        DiagnosticRule regla = sesion.getRegla();
 
         // Limpiar hipótesis previas
-        hipotesisRepository.deleteAll(hipotesisRepository.findByCasoId(caso.getId()));
+        hipotesisRepository.eliminarPorCaso(caso.getId());
 
-        // Crear hipótesis genéricas basadas en el tipo de problema
+        // Una hipótesis por cada una del modelo de la regla, con su probabilidad a priori
+        ModeloHipotesis modelo = regla.getModeloHipotesis();
+        double[] probabilidades = sesion.getProbabilidades();
         List<Hipotesis> hipotesisIniciales = new ArrayList<>();
+        for (int i = 0; i < modelo.getCantidad(); i++) {
+            hipotesisIniciales.add(crearHipotesis(caso, modelo.getDescripcion(i), porcentaje(probabilidades[i]),
+                    probabilidades[i] >= UMBRAL_HIPOTESIS_ACTIVA));
+        }
 
-        // Hipótesis basadas en la regla seleccionada
-        if (regla.getId().contains("no_enfria")) {
-            hipotesisIniciales.add(crearHipotesis(caso, "Problema eléctrico", 30));
-            hipotesisIniciales.add(crearHipotesis(caso, "Falla del compresor", 25));
-            hipotesisIniciales.add(crearHipotesis(caso, "Termostato defectuoso", 20));
-            hipotesisIniciales.add(crearHipotesis(caso, "Fuga de gas refrigerante", 15));
-            hipotesisIniciales.add(crearHipotesis(caso, "Sistema de desescarche", 10));
-        } else if (regla.getId().contains("no_carga_agua")) {
-            hipotesisIniciales.add(crearHipotesis(caso, "Canilla cerrada", 35));
-            hipotesisIniciales.add(crearHipotesis(caso, "Filtro obstruido", 30));
-            hipotesisIniciales.add(crearHipotesis(caso, "Electroválvula defectuosa", 25));
-            hipotesisIniciales.add(crearHipotesis(caso, "Problema de presión", 10));
-        } else if (regla.getId().contains("hace_chispas")) {
-            hipotesisIniciales.add(crearHipotesis(caso, "Objeto metálico dentro", 50));
-            hipotesisIniciales.add(crearHipotesis(caso, "Mica protectora dañada", 30));
-            hipotesisIniciales.add(crearHipotesis(caso, "Magnetrón defectuoso", 15));
-            hipotesisIniciales.add(crearHipotesis(caso, "Plato mal colocado", 5));
-        }
-
-        hipotesisRepository.saveAll(hipotesisIniciales);
+        for (Hipotesis h : hipotesisRepository.saveAll(hipotesisIniciales)) {
+            sesion.getHipotesis().add(new HipotesisSesion(h.getId(), h.getDescripcion(), h.getProbabilidad(), h.isActiva()));
+        }
         log.info("Creadas {} hipótesis iniciales para caso {}", hipotesisIniciales.size(), caso.getId());
     }
 
     /**
      * Actualiza probabilidades de hipótesis según respuestas
      */
-    private void actualizarHipotesis(Caso caso, Map<String, Object> respuestas) {
-        log.debug("Actualizando hipótesis para caso {} con {} respuestas",
-                caso.getId(), respuestas.size());
-
-        List<Hipotesis> hipotesis = hipotesisRepository.findByCasoId(caso.getId());
-        DiagnosticRule regla = reglasActivas.get(caso.getId());
-
-        // Ajustar probabilidades basándose en las respuestas
-        // (Lógica simplificada - en producción sería más sofisticada)
-
-        for (Hipotesis h : hipotesis) {
-            int ajuste = calcularAjusteProbabilidad(h, respuestas, regla);
-            int nuevaProbabilidad = Math.max(0, Math.min(100, h.getProbabilidad() + ajuste));
-            h.setProbabilidad(nuevaProbabilidad);
-            h.setActiva(nuevaProbabilidad > 10); // Desactivar hipótesis muy improbables
+    private void actualizarHipotesis(Caso caso, SesionDiagnostico sesion, String preguntaId, Object valor,
+                                     boolean corrige) {
+        ModeloHipotesis modelo = sesion.getRegla().getModeloHipotesis();
+        double[] probabilidades = sesion.getProbabilidades();
+
+        // Una respuesta corregida invalida su evidencia anterior: se recalcula desde los priors
+        if (corrige) {
+            modelo.calcular(sesion.getRespuestas(), probabilidades);
+        } else if (!modelo.actualizar(probabilidades, preguntaId, valor)) {
+            log.debug("La respuesta {}={} no aporta evidencia para el caso {}", preguntaId, valor, caso.getId());
+            return;
         }
 
-        // Normalizar probabilidades
-        normalizarProbabilidades(hipotesis);
+        List<HipotesisSesion> hipotesis = sesion.getHipotesis();
+        for (int i = 0; i < hipotesis.size(); i++) {
+            HipotesisSesion h = hipotesis.get(i);
+            h.setProbabilidad(porcentaje(probabilidades[i]));
+            h.setActiva(probabilidades[i] >= UMBRAL_HIPOTESIS_ACTIVA);
+        }
 
-        hipotesisRepository.saveAll(hipotesis);
+        sesion.marcarHipotesisPendientes();
+        volcadoHipotesis.programar(sesion);
     }
 
     /**
      * Actualiza hipótesis finales con el diagnóstico
      */
-    private void actualizarHipotesisFinales(Caso caso, Diagnostico diagnostico) {
+    private void actualizarHipotesisFinales(Caso caso, Diagnostico diagnostico, SesionDiagnostico sesion) {
+        String componente = diagnostico.getComponenteAfectado().toLowerCase().split("/")[0].trim();
+
+        // Con sesión activa se actualizan las hipótesis en memoria y se vuelcan junto al diagnóstico
+        if (sesion != null) {
+            synchronized (sesion) {
+                for (HipotesisSesion h : sesion.getHipotesis()) {
+                    if (h.getDescripcion().toLowerCase().contains(componente)) {
+                        h.setProbabilidad(diagnostico.getProbabilidad());
+                        h.setActiva(true);
+                    } else {
+                        h.setActiva(false);
+                    }
+                }
+                sesion.marcarHipotesisPendientes();
+            }
+            volcadoHipotesis.volcar(sesion);
+            return;
+        }
+
         List<Hipotesis> hipotesis = hipotesisRepository.findByCasoId(caso.getId());
 
         // Desactivar todas excepto la que coincide con el diagnóstico
         for (Hipotesis h : hipotesis) {
-            if (h.getDescripcion().toLowerCase().contains(
-                    diagnostico.getComponenteAfectado().toLowerCase().split("/")[0].trim())) {
+            if (h.getDescripcion().toLowerCase().contains(componente)) {
                 h.setProbabilidad(diagnostico.getProbabilidad());
                 h.setActiva(true);
             } else {
                 h.setActiva(false);
             }
+            // Una copia pendiente en otra instancia no debe pisar el resultado final
+            h.setVersionSesion(VolcadoHipotesis.VERSION_FINAL);
         }
 
         hipotesisRepository.saveAll(hipotesis);
     }
 
-    /**
-     * Calcula ajuste de probabilidad para una hipótesis
-     */
-    private int calcularAjusteProbabilidad(Hipotesis hipotesis,
-                                           Map<String, Object> respuestas,
-                                           DiagnosticRule regla) {
-        // Lógica simplificada - ajusta según respuestas específicas
-        int ajuste = 0;
-
-        // Ejemplo: si la luz funciona, reducir probabilidad de problema eléctrico
-        if (hipotesis.getDescripcion().contains("eléctrico")) {
-            if (Boolean.TRUE.equals(respuestas.get("h_ne_p1"))) {
-                ajuste -= 20;
-            } else if (Boolean.FALSE.equals(respuestas.get("h_ne_p1"))) {
-                ajuste += 40;
-            }
-        }
-
-        return ajuste;
-    }
-
-    /**
-     * Normaliza probabilidades para que sumen aproximadamente 100%
-     */
-    private void normalizarProbabilidades(List<Hipotesis> hipotesis) {
-        int total = hipotesis.stream()
-            .filter(Hipotesis::isActiva)
-            .mapToInt(Hipotesis::getProbabilidad)
-            .sum();
-
-        if (total > 0 && total != 100) {
-            double factor = 100.0 / total;
-            for (Hipotesis h : hipotesis) {
-                if (h.isActiva()) {
-                    h.setProbabilidad((int) Math.round(h.getProbabilidad() * factor));
-                }
-            }
-        }
+    private static int porcentaje(double probabilidad) {
+        return (int) Math.round(probabilidad * 100);
     }
 
     /**
      * Crea una hipótesis
      */
-    private Hipotesis crearHipotesis(Caso caso, String descripcion, int probabilidad) {
+    private Hipotesis crearHipotesis(Caso caso, String descripcion, int probabilidad, boolean activa) {
         return Hipotesis.builder()
             .caso(caso)
             .descripcion(descripcion)
             .probabilidad(probabilidad)
-            .activa(true)
+            .activa(activa)
             .build();
     }
 
     /**
      * Procesa el valor de una respuesta al tipo correcto
      */
-    private Object procesarValorRespuesta(String valor) {
+    static Object procesarValorRespuesta(String valor) {
         if (valor == null) {
             return null;
         }
@@ -397,10 +636,18 @@ public class InferenceEngine {
      * Limpia la caché para un caso
      */
     private void limpiarCache(Long casoId) {
-        reglasActivas.remove(casoId);
-        respuestasPorCaso.remove(casoId);
-        ultimaPreguntaPorCaso.remove(casoId);
+        sessionStore.eliminar(casoId);
         log.debug("Caché limpiada para caso {}", casoId);
     }
-}
 
+    /**
+     * Datos con los que se infiere el diagnóstico de un caso
+     *
+     * @param respuestasGuardadas respuestas de la base para CLIPS o sus reglas compiladas, o null
+     *                            si no está disponible ninguno de los dos
+     * @param versionReglas       versión de las reglas CLIPS con que empezó el caso, o null
+     */
+    public record EntradaDiagnostico(Caso caso, DiagnosticRule regla, Map<String, Object> respuestas,
+                                     List<Respuesta> respuestasGuardadas, String versionReglas) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.session.SessionStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Métricas Micrometer del motor de inferencia, etiquetadas por tipo de electrodoméstico y regla:
+ * duración de cada etapa del wizard, regla seleccionada por caso, diagnósticos que pasaron de
+ * CLIPS a las reglas Java (por causa) y sesiones activas.
+ *
+ * Los medidores se buscan una vez por combinación de etiquetas y quedan en un mapa local,
+ * así registrar una medición no crea ids ni etiquetas en cada llamada.
+ */
+@Component
+public class MetricasInferencia {
+
+    public static final String ETAPA_SIGUIENTE_PREGUNTA = "siguiente-pregunta";
+    public static final String ETAPA_RESPUESTA = "procesar-respuesta";
+    public static final String ETAPA_DIAGNOSTICO = "diagnostico";
+
+    /** Causas de paso de CLIPS a las reglas Java */
+    public static final String FALLBACK_DESHABILITADO = "deshabilitado";
+    public static final String FALLBACK_CIRCUITO_ABIERTO = "circuito-abierto";
+    public static final String FALLBACK_NO_DISPONIBLE = "no-disponible";
+    public static final String FALLBACK_SIN_DIAGNOSTICO = "sin-diagnostico";
+    public static final String FALLBACK_TIMEOUT = "timeout";
+    public static final String FALLBACK_PROCESO = "proceso";
+    public static final String FALLBACK_ERROR = "error";
+
+    private static final String SIN_REGLA = "ninguna";
+    private static final String SIN_TIPO = "desconocido";
+
+    private final MeterRegistry registry;
+    private final Map<Etiquetas, Timer> etapas = new ConcurrentHashMap<>();
+    private final Map<Etiquetas, Counter> selecciones = new ConcurrentHashMap<>();
+    private final Map<Etiquetas, Counter> fallbacks = new ConcurrentHashMap<>();
+
+    public MetricasInferencia(MeterRegistry registry, SessionStore sessionStore) {
+        this.registry = registry;
+        Gauge.builder("sesiones.activas", sessionStore, SessionStore::tamanio)
+            .description("Sesiones del wizard de diagnóstico en curso")
+            .register(registry);
+    }
+
+    public Timer.Sample iniciar() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Registra la duración de una etapa iniciada con {@link #iniciar()}; regla puede ser null
+     * si el caso no tiene regla aplicable
+     */
+    public void registrarEtapa(Timer.Sample muestra, String etapa, Caso caso, DiagnosticRule regla) {
+        Etiquetas etiquetas = new Etiquetas(etapa, tipo(caso, regla), idRegla(regla));
+        muestra.stop(etapas.computeIfAbsent(etiquetas, e -> Timer.builder("inferencia.etapa")
+            .description("Duración de cada etapa del motor de inferencia")
+            .tag("etapa", e.nombre())
+            .tag("tipo", e.tipo())
+            .tag("regla", e.regla())
+            .register(registry)));
+    }
+
+    public void registrarReglaSeleccionada(Caso caso, DiagnosticRule regla) {
+        Etiquetas etiquetas = new Etiquetas("", tipo(caso, regla), idRegla(regla));
+        selecciones.computeIfAbsent(etiquetas, e -> Counter.builder("inferencia.regla.seleccionada")
+            .description("Casos por regla seleccionada")
+            .tag("tipo", e.tipo())
+            .tag("regla", e.regla())
+            .register(registry)).increment();
+    }
+
+    public void registrarFallback(String causa, Caso caso, DiagnosticRule regla) {
+        Etiquetas etiquetas = new Etiquetas(causa, tipo(caso, regla), idRegla(regla));
+        fallbacks.computeIfAbsent(etiquetas, e -> Counter.builder("clips.fallback")
+            .description("Diagnósticos resueltos con reglas Java en lugar de CLIPS")
+            .tag("causa", e.nombre())
+            .tag("tipo", e.tipo())
+            .tag("regla", e.regla())
+            .register(registry)).increment();
+    }
+
+    /**
+     * Causa de un fallo de CLIPS según la excepción (timeout, proceso caído o error)
+     */
+    public static String causaFallback(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof TimeoutException) {
+                return FALLBACK_TIMEOUT;
+            }
+            if (causa instanceof IOException) {
+                return FALLBACK_PROCESO;
+            }
+        }
+        return FALLBACK_ERROR;
+    }
+
+    private static String tipo(Caso caso, DiagnosticRule regla) {
+        TipoElectrodomestico tipo = regla != null ? regla.getTipoElectrodomestico()
+            : caso != null ? caso.getTipo() : null;
+        return tipo != null ? tipo.name().toLowerCase(Locale.ROOT) : SIN_TIPO;
+    }
+
+    private static String idRegla(DiagnosticRule regla) {
+        return regla != null ? regla.getId() : SIN_REGLA;
+    }
+
+    private record Etiquetas(String nombre, String tipo, String regla) {
+    }
+}
@@ -0,0 +1,205 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.dto.MetricasDTO;
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.repository.CasoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del día para el dashboard.
+ * Los contadores se cargan con consultas agregadas (GROUP BY estado, tipo) al empezar el día
+ * y después se actualizan en memoria con cada alta y cambio de estado, así leerlos no depende
+ * de cuántos casos haya. Periódicamente se recalculan desde la base para corregir desvíos
+ * (casos escritos por fuera de los servicios, otras instancias).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetricasService {
+
+    private final CasoRepository casoRepository;
+
+    private volatile ContadoresDia contadores;
+
+    /**
+     * Métricas de los casos creados hoy
+     */
+    public MetricasDTO obtenerMetricasDelDia() {
+        return actuales().aDTO();
+    }
+
+    /**
+     * Caso nuevo en estado inicial. Se aplica al confirmar la transacción en curso.
+     */
+    public void registrarCreacion(Caso caso) {
+        LocalDateTime creacion = caso.getFechaCreacion();
+        EstadoCaso estado = caso.getEstado();
+        TipoElectrodomestico tipo = caso.getTipo();
+        alConfirmar(() -> {
+            ContadoresDia dia = delDia(creacion);
+            if (dia != null) {
+                dia.total.increment();
+                dia.contador(estado).increment();
+                if (tipo != null) {
+                    dia.porTipo.get(tipo).increment();
+                }
+            }
+        });
+    }
+
+    /**
+     * Cambio de estado de un caso. Si es su primer diagnóstico suma también su tiempo de diagnóstico.
+     */
+    public void registrarCambioEstado(Caso caso, EstadoCaso anterior, boolean primerDiagnostico) {
+        LocalDateTime creacion = caso.getFechaCreacion();
+        LocalDateTime diagnostico = caso.getFechaDiagnostico();
+        EstadoCaso nuevo = caso.getEstado();
+        alConfirmar(() -> {
+            ContadoresDia dia = delDia(creacion);
+            if (dia == null) {
+                return;
+            }
+            if (anterior != nuevo) {
+                dia.contador(anterior).decrement();
+                dia.contador(nuevo).increment();
+            }
+            if (primerDiagnostico && diagnostico != null) {
+                dia.diagnosticados.increment();
+                dia.segundosDiagnostico.add(Duration.between(creacion, diagnostico).getSeconds());
+            }
+        });
+    }
+
+    /**
+     * Recalcula los contadores del día con las consultas agregadas
+     */
+    @Scheduled(initialDelayString = "${metricas.reconciliacion.minutes:5}",
+               fixedDelayString = "${metricas.reconciliacion.minutes:5}",
+               timeUnit = TimeUnit.MINUTES)
+    public void reconciliar() {
+        contadores = cargar(LocalDate.now());
+    }
+
+    private ContadoresDia actuales() {
+        LocalDate hoy = LocalDate.now();
+        ContadoresDia actuales = contadores;
+        if (actuales == null || !actuales.dia.equals(hoy)) {
+            synchronized (this) {
+                actuales = contadores;
+                if (actuales == null || !actuales.dia.equals(hoy)) {
+                    actuales = cargar(hoy);
+                    contadores = actuales;
+                }
+            }
+        }
+        return actuales;
+    }
+
+    /**
+     * Contadores del día del caso, o null si el caso no es de hoy
+     */
+    private ContadoresDia delDia(LocalDateTime creacion) {
+        if (creacion == null) {
+            return null;
+        }
+        ContadoresDia dia = actuales();
+        return dia.dia.equals(creacion.toLocalDate()) ? dia : null;
+    }
+
+    private ContadoresDia cargar(LocalDate dia) {
+        LocalDateTime inicio = dia.atStartOfDay();
+        LocalDateTime fin = dia.plusDays(1).atStartOfDay();
+        ContadoresDia cargados = new ContadoresDia(dia);
+
+        for (CasoRepository.ConteoCasos conteo : casoRepository.contarPorEstadoYTipo(inicio, fin)) {
+            cargados.total.add(conteo.getCantidad());
+            cargados.contador(conteo.getEstado()).add(conteo.getCantidad());
+            if (conteo.getTipo() != null) {
+                cargados.porTipo.get(conteo.getTipo()).add(conteo.getCantidad());
+            }
+        }
+        CasoRepository.TiempoDiagnostico tiempo = casoRepository.sumarTiempoDiagnostico(inicio, fin);
+        cargados.diagnosticados.add(tiempo.getCantidad());
+        cargados.segundosDiagnostico.add(tiempo.getSegundos().longValue());
+
+        log.debug("Métricas del {} cargadas: {} casos", dia, cargados.total.sum());
+        return cargados;
+    }
+
+    private static void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    /**
+     * Contadores de los casos creados en un día
+     */
+    private static final class ContadoresDia {
+        final LocalDate dia;
+        final LongAdder total = new LongAdder();
+        final Map<EstadoCaso, LongAdder> porEstado = new EnumMap<>(EstadoCaso.class);
+        final Map<TipoElectrodomestico, LongAdder> porTipo = new EnumMap<>(TipoElectrodomestico.class);
+        /** Casos sin estado (escritos por fuera de los servicios) */
+        final LongAdder sinEstado = new LongAdder();
+        final LongAdder diagnosticados = new LongAdder();
+        final LongAdder segundosDiagnostico = new LongAdder();
+
+        ContadoresDia(LocalDate dia) {
+            this.dia = dia;
+            for (EstadoCaso estado : EstadoCaso.values()) {
+                porEstado.put(estado, new LongAdder());
+            }
+            for (TipoElectrodomestico tipo : TipoElectrodomestico.values()) {
+                porTipo.put(tipo, new LongAdder());
+            }
+        }
+
+        LongAdder contador(EstadoCaso estado) {
+            return estado != null ? porEstado.get(estado) : sinEstado;
+        }
+
+        MetricasDTO aDTO() {
+            Map<EstadoCaso, Long> estados = new EnumMap<>(EstadoCaso.class);
+            porEstado.forEach((estado, cantidad) -> estados.put(estado, cantidad.sum()));
+            Map<TipoElectrodomestico, Long> tipos = new EnumMap<>(TipoElectrodomestico.class);
+            porTipo.forEach((tipo, cantidad) -> tipos.put(tipo, cantidad.sum()));
+
+            long cantidadDiagnosticados = diagnosticados.sum();
+            // Minutos con un decimal, como lo muestra el dashboard
+            double minutos = cantidadDiagnosticados == 0 ? 0.0
+                : Math.round(segundosDiagnostico.sum() / 6.0 / cantidadDiagnosticados) / 10.0;
+
+            MetricasDTO metricas = new MetricasDTO();
+            metricas.setCasosTotales(total.sum());
+            metricas.setDiyExitosos(estados.get(EstadoCaso.RESUELTO_DIY));
+            metricas.setTecnicoEnviados(estados.get(EstadoCaso.REQUIERE_TECNICO));
+            metricas.setTiempoPromedio(minutos);
+            metricas.setPorEstado(estados);
+            metricas.setPorTipo(tipos);
+            return metricas;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.sistemaexperto.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Observa clips.rules.dir y recarga las reglas CLIPS cuando cambia algún .clp.
+ * Los eventos se agrupan hasta que el directorio queda quieto clips.rules.watch.delay.millis,
+ * así guardar varios archivos (o un editor que escribe en partes) produce una sola recarga.
+ */
+@Slf4j
+@Component
+public class ObservadorReglasClips {
+
+    private final ClipsService clipsService;
+    private final String directorio;
+    private final long esperaMillis;
+
+    private WatchService watchService;
+
+    public ObservadorReglasClips(ClipsService clipsService,
+                                 @Value("${clips.rules.dir:}") String directorio,
+                                 @Value("${clips.rules.watch.delay.millis:500}") long esperaMillis) {
+        this.clipsService = clipsService;
+        this.directorio = directorio;
+        this.esperaMillis = esperaMillis;
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        if (directorio.isBlank()) {
+            return;
+        }
+        Path carpeta = Path.of(directorio);
+        try {
+            watchService = carpeta.getFileSystem().newWatchService();
+            carpeta.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.error("No se puede observar el directorio de reglas CLIPS {}: {}", carpeta, e.getMessage());
+            return;
+        }
+
+        Thread hilo = new Thread(this::observar, "clips-reglas-observador");
+        hilo.setDaemon(true);
+        hilo.start();
+        log.info("Observando cambios de reglas CLIPS en {}", carpeta.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void detener() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void observar() {
+        try {
+            while (true) {
+                boolean cambioReglas = consumir(watchService.take());
+                // Esperar a que dejen de llegar eventos antes de recargar
+                WatchKey siguiente;
+                while ((siguiente = watchService.poll(esperaMillis, TimeUnit.MILLISECONDS)) != null) {
+                    cambioReglas |= consumir(siguiente);
+                }
+                if (cambioReglas) {
+                    recargar();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.debug("Observador de reglas CLIPS detenido");
+        } catch (RuntimeException e) {
+            log.error("El observador de reglas CLIPS se detuvo: {}", e.getMessage(), e);
+        }
+    }
+
+    private void recargar() {
+        try {
+            clipsService.recargarReglas();
+        } catch (RuntimeException e) {
+            // Un error inesperado no debe dejar de observar: se conserva la versión actual
+            log.error("Error recargando las reglas CLIPS: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Si entre los eventos hay algún archivo .clp; rearma la clave para los siguientes
+     */
+    private boolean consumir(WatchKey clave) {
+        boolean cambioReglas = false;
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            cambioReglas |= evento.kind() == StandardWatchEventKinds.OVERFLOW
+                || evento.context() instanceof Path archivo && archivo.toString().endsWith(".clp");
+        }
+        if (!clave.reset()) {
+            log.warn("El directorio de reglas CLIPS {} ya no es accesible, no se observan más cambios", directorio);
+        }
+        return cambioReglas;
+    }
+}
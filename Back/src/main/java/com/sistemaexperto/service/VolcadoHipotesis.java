@@ -0,0 +1,231 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.service.session.HipotesisSesion;
+import com.sistemaexperto.service.session.SesionDiagnostico;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Escritura diferida de las hipótesis de las sesiones en curso.
+ * Cada respuesta sólo marca la sesión; los cambios se vuelcan juntos cada pocos
+ * segundos (una lectura por lote y updates agrupados) o al finalizar el diagnóstico.
+ * Las sesiones pendientes se retienen aquí aunque expiren del SessionStore.
+ *
+ * Cada volcado toma el candado del caso desde que copia las hipótesis hasta que su transacción
+ * termina: así una copia vieja del volcado periódico no puede confirmarse después de la copia
+ * más nueva que vuelca el diagnóstico final.
+ *
+ * El candado sólo ordena los volcados de esta instancia. Con sesiones jdbc otra instancia puede
+ * tener pendiente una copia más vieja del mismo caso, así que cada fila se escribe con la versión
+ * de la sesión (el id de la última respuesta aplicada, que crece en todas las instancias y no se
+ * reinicia al reconstruir la sesión) y sólo si la versión guardada es menor.
+ */
+@Slf4j
+@Component
+public class VolcadoHipotesis {
+
+    /** Versión de las hipótesis del diagnóstico final: ningún volcado periódico las reemplaza */
+    public static final long VERSION_FINAL = Long.MAX_VALUE;
+
+    private static final String ACTUALIZAR = """
+        UPDATE hipotesis SET probabilidad = ?, activa = ?, version_sesion = ?
+        WHERE id = ? AND COALESCE(version_sesion, -1) < ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final long ESPERA_CANDADO_SEGUNDOS = 10;
+
+    private final Map<Long, SesionDiagnostico> pendientes = new ConcurrentHashMap<>();
+    private final Map<Long, Candado> candados = new ConcurrentHashMap<>();
+
+    public VolcadoHipotesis(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Programa el volcado de las hipótesis modificadas de la sesión
+     */
+    public void programar(SesionDiagnostico sesion) {
+        pendientes.put(sesion.getCasoId(), sesion);
+    }
+
+    /**
+     * Vuelca ya las hipótesis finales de la sesión, dentro de la transacción en curso. Espera a
+     * que termine un volcado periódico del mismo caso y retiene el candado hasta el commit.
+     */
+    @Transactional
+    public void volcar(SesionDiagnostico sesion) {
+        Long casoId = sesion.getCasoId();
+        Candado candado = bloquear(casoId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                soltar(casoId, candado);
+            }
+        });
+
+        pendientes.remove(casoId, sesion);
+        Map<Long, Cambio> cambios = new HashMap<>();
+        tomarCambios(sesion, VERSION_FINAL, cambios);
+        actualizar(cambios);
+    }
+
+    /**
+     * Vuelca en una sola transacción todas las sesiones con cambios pendientes
+     */
+    @Scheduled(fixedDelayString = "${hipotesis.volcado.millis:2000}", timeUnit = TimeUnit.MILLISECONDS)
+    public void volcarPendientes() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<SesionDiagnostico> sesiones = new ArrayList<>();
+        Map<Long, Cambio> cambios = new HashMap<>();
+        Map<Long, Candado> tomados = new HashMap<>();
+        try {
+            for (Long casoId : pendientes.keySet()) {
+                // Un caso que se está volcando con su diagnóstico queda para la próxima pasada
+                Candado candado = intentarBloquear(casoId);
+                if (candado == null) {
+                    continue;
+                }
+                tomados.put(casoId, candado);
+                SesionDiagnostico sesion = pendientes.remove(casoId);
+                if (sesion != null) {
+                    sesiones.add(sesion);
+                    tomarCambios(sesion, null, cambios);
+                }
+            }
+            if (cambios.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> actualizar(cambios));
+                log.debug("Volcadas {} hipótesis de {} sesiones", cambios.size(), sesiones.size());
+            } catch (RuntimeException e) {
+                log.warn("No se pudieron volcar las hipótesis de {} sesiones, se reintenta: {}",
+                        sesiones.size(), e.getMessage());
+                for (SesionDiagnostico sesion : sesiones) {
+                    synchronized (sesion) {
+                        sesion.marcarHipotesisPendientes();
+                    }
+                    pendientes.putIfAbsent(sesion.getCasoId(), sesion);
+                }
+            }
+        } finally {
+            tomados.forEach(this::soltar);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        volcarPendientes();
+    }
+
+    /**
+     * Copia los valores actuales de las hipótesis si la sesión tenía cambios sin volcar
+     *
+     * @param version versión con que se escriben, o null para la versión actual de la sesión
+     */
+    private static void tomarCambios(SesionDiagnostico sesion, Long version, Map<Long, Cambio> cambios) {
+        synchronized (sesion) {
+            if (!sesion.tomarHipotesisPendientes()) {
+                return;
+            }
+            long versionCopia = version != null ? version : sesion.getUltimaRespuestaId();
+            for (HipotesisSesion h : sesion.getHipotesis()) {
+                cambios.put(h.getId(), new Cambio(h.getProbabilidad(), h.isActiva(), versionCopia));
+            }
+        }
+    }
+
+    /**
+     * Candado del caso, esperando a que lo suelte otro volcado
+     */
+    private Candado bloquear(Long casoId) {
+        Candado candado = referenciar(casoId);
+        try {
+            if (candado.lock.tryLock(ESPERA_CANDADO_SEGUNDOS, TimeUnit.SECONDS)) {
+                return candado;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        liberarReferencia(casoId);
+        throw new IllegalStateException("Las hipótesis del caso " + casoId + " se están volcando en otra transacción");
+    }
+
+    /**
+     * Candado del caso si está libre, o null
+     */
+    private Candado intentarBloquear(Long casoId) {
+        Candado candado = referenciar(casoId);
+        if (candado.lock.tryLock()) {
+            return candado;
+        }
+        liberarReferencia(casoId);
+        return null;
+    }
+
+    private void soltar(Long casoId, Candado candado) {
+        candado.lock.unlock();
+        liberarReferencia(casoId);
+    }
+
+    /**
+     * Los candados se cuentan por uso para descartarlos cuando nadie los tiene ni los espera;
+     * son por caso y no por sesión porque con sesiones jdbc cada pedido trae su propia copia
+     */
+    private Candado referenciar(Long casoId) {
+        return candados.compute(casoId, (id, candado) -> {
+            Candado usado = candado != null ? candado : new Candado();
+            usado.usos++;
+            return usado;
+        });
+    }
+
+    private void liberarReferencia(Long casoId) {
+        candados.computeIfPresent(casoId, (id, candado) -> --candado.usos == 0 ? null : candado);
+    }
+
+    /**
+     * Updates agrupados en un solo batch; cada uno se aplica sólo si la fila tiene una versión anterior
+     */
+    private void actualizar(Map<Long, Cambio> cambios) {
+        if (cambios.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>(cambios.size());
+        cambios.forEach((id, cambio) -> filas.add(new Object[]{
+                cambio.probabilidad(), cambio.activa(), cambio.version(), id, cambio.version()}));
+        int[] actualizadas = jdbcTemplate.batchUpdate(ACTUALIZAR, filas);
+        long descartadas = Arrays.stream(actualizadas).filter(cantidad -> cantidad == 0).count();
+        if (descartadas > 0) {
+            log.debug("{} hipótesis no se volcaron porque ya tenían una versión más nueva", descartadas);
+        }
+    }
+
+    private record Cambio(int probabilidad, boolean activa, long version) {
+    }
+
+    private static final class Candado {
+        final ReentrantLock lock = new ReentrantLock();
+        /** Sólo se modifica dentro de compute sobre el mapa de candados */
+        int usos;
+    }
+}
@@ -0,0 +1,285 @@
+package com.sistemaexperto.service.clips;
+
+import com.sistemaexperto.service.clips.motor.LectorClips;
+import com.sistemaexperto.service.clips.motor.Simbolo;
+import com.sistemaexperto.service.clips.motor.Variable;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Qué partes de los hechos de entrada pueden cambiar el resultado de una base de reglas CLIPS.
+ *
+ * Se recorre el lado izquierdo de cada defrule: un slot que ninguna regla menciona no influye,
+ * y un slot numérico que sólo se liga a una variable comparada con constantes ((< ?años 2),
+ * (> ?años 15)) sólo influye por el tramo entre esos cortes. Cualquier otro uso (cadenas,
+ * funciones, la variable en el lado derecho) hace que importe el valor exacto.
+ *
+ * Con eso se arma la clave canónica de los hechos de un caso: dos casos con la misma clave
+ * producen el mismo resultado con esta versión de las reglas. Los slots de identidad del caso
+ * (id, caso-id) no forman parte de la clave: lo que las reglas calculan con ellos (el número
+ * de orden de trabajo) no pasa al Diagnostico.
+ */
+public final class AnalisisReglas {
+
+    private static final Set<String> SLOTS_IDENTIDAD = Set.of("id", "caso-id");
+    private static final Set<String> COMPARACIONES = Set.of("<", "<=", ">", ">=", "=", "<>");
+    private static final Set<String> CONECTIVAS = Set.of("not", "or", "and", "exists", "forall", "logical");
+    private static final Simbolo FLECHA = new Simbolo("=>");
+
+    private final String version;
+    /** plantilla → slot → cortes del tramo, o null si importa el valor exacto */
+    private final Map<String, Map<String, long[]>> relevantes;
+
+    private AnalisisReglas(String version, Map<String, Map<String, long[]>> relevantes) {
+        this.version = version;
+        this.relevantes = relevantes;
+    }
+
+    /**
+     * Analiza las fuentes .clp de la base de reglas, en el orden en que se cargan
+     */
+    public static AnalisisReglas analizar(List<String> fuentes) {
+        Map<String, Map<String, UsoSlot>> usos = new HashMap<>();
+        for (String fuente : fuentes) {
+            for (Object expresion : LectorClips.leerTodo(fuente, "<analisis>")) {
+                if (expresion instanceof List<?> lista && lista.size() > 2
+                        && new Simbolo("defrule").equals(lista.get(0))) {
+                    analizarRegla(lista, usos);
+                }
+            }
+        }
+
+        Map<String, Map<String, long[]>> relevantes = new HashMap<>();
+        usos.forEach((plantilla, slots) -> {
+            // HashMap admite null: el slot importa por su valor exacto
+            Map<String, long[]> cortes = new HashMap<>();
+            slots.forEach((slot, uso) -> cortes.put(slot, uso.exacto ? null
+                : uso.cortes.stream().mapToLong(Long::longValue).toArray()));
+            relevantes.put(plantilla, Collections.unmodifiableMap(cortes));
+        });
+        return new AnalisisReglas(huella(fuentes), Collections.unmodifiableMap(relevantes));
+    }
+
+    /**
+     * Huella de las fuentes: cambia si cambia cualquier regla o plantilla
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Clave canónica de un tramo de hechos escritos uno por línea (EscritorHechosClips):
+     * plantilla y slots relevantes de cada hecho, en orden, con la versión de las reglas
+     */
+    public String clave(CharSequence hechos, int desde, int hasta) {
+        StringBuilder clave = new StringBuilder(version);
+        LectorClips lector = new LectorClips(CharBuffer.wrap(hechos, desde, hasta), "<clave>");
+        Object hecho;
+        while ((hecho = lector.siguiente()) != null) {
+            if (!(hecho instanceof List<?> lista) || lista.isEmpty()) {
+                continue;
+            }
+            String plantilla = lista.get(0).toString();
+            Map<String, long[]> slots = relevantes.getOrDefault(plantilla, Map.of());
+            clave.append('|').append(plantilla);
+            for (int i = 1; i < lista.size(); i++) {
+                if (!(lista.get(i) instanceof List<?> slot) || slot.isEmpty()) {
+                    continue;
+                }
+                String nombre = slot.get(0).toString();
+                if (!slots.containsKey(nombre)) {
+                    continue;
+                }
+                clave.append(' ').append(nombre).append('=');
+                long[] cortes = slots.get(nombre);
+                if (cortes != null && slot.size() == 2 && slot.get(1) instanceof Long numero) {
+                    clave.append('#').append(tramo(cortes, numero));
+                } else {
+                    for (int j = 1; j < slot.size(); j++) {
+                        escribirValor(slot.get(j), clave);
+                    }
+                }
+            }
+        }
+        return clave.toString();
+    }
+
+    /**
+     * Slots que influyen en el resultado, con sus cortes ([] si sólo importa que exista,
+     * "exacto" si importa el valor); para diagnóstico y estadísticas
+     */
+    public Map<String, String> getSlotsRelevantes() {
+        Map<String, String> descripcion = new TreeMap<>();
+        relevantes.forEach((plantilla, slots) -> slots.forEach((slot, cortes) ->
+            descripcion.put(plantilla + "." + slot, cortes == null ? "exacto" : Arrays.toString(cortes))));
+        return descripcion;
+    }
+
+    private static int tramo(long[] cortes, long valor) {
+        int tramo = 0;
+        while (tramo < cortes.length && valor >= cortes[tramo]) {
+            tramo++;
+        }
+        return tramo;
+    }
+
+    private static void escribirValor(Object valor, StringBuilder destino) {
+        if (valor instanceof String cadena) {
+            destino.append('"').append(cadena.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else {
+            destino.append(valor);
+        }
+        destino.append(' ');
+    }
+
+    // ---------- análisis de una regla ----------
+
+    private static void analizarRegla(List<?> regla, Map<String, Map<String, UsoSlot>> usos) {
+        int flecha = regla.indexOf(FLECHA);
+        List<?> lhs = regla.subList(2, flecha < 0 ? regla.size() : flecha);
+
+        // Slots ligados a una variable simple en esta regla, y ocurrencias de cada variable
+        Map<String, List<UsoSlot>> ligaduras = new HashMap<>();
+        Map<String, Integer> ocurrencias = new HashMap<>();
+        contarVariables(regla, ocurrencias);
+        for (Object elemento : lhs) {
+            recorrerCondicion(elemento, usos, ligaduras);
+        }
+
+        // Comparaciones de cada variable con constantes en toda la regla
+        Map<String, List<Long>> cortes = new HashMap<>();
+        Map<String, Integer> comparaciones = new HashMap<>();
+        buscarComparaciones(regla, cortes, comparaciones);
+
+        ligaduras.forEach((variable, slots) -> {
+            int entendidas = slots.size() + comparaciones.getOrDefault(variable, 0);
+            boolean soloComparada = slots.size() == 1 && entendidas == ocurrencias.getOrDefault(variable, 0);
+            for (UsoSlot uso : slots) {
+                if (soloComparada) {
+                    uso.cortes.addAll(cortes.getOrDefault(variable, List.of()));
+                } else {
+                    uso.exacto = true;
+                }
+            }
+        });
+    }
+
+    private static void recorrerCondicion(Object elemento, Map<String, Map<String, UsoSlot>> usos,
+                                          Map<String, List<UsoSlot>> ligaduras) {
+        if (!(elemento instanceof List<?> ce) || ce.isEmpty()) {
+            return;
+        }
+        String cabeza = ce.get(0).toString();
+        if ("test".equals(cabeza) || "declare".equals(cabeza)) {
+            return;
+        }
+        if (CONECTIVAS.contains(cabeza)) {
+            for (int i = 1; i < ce.size(); i++) {
+                recorrerCondicion(ce.get(i), usos, ligaduras);
+            }
+            return;
+        }
+
+        for (int i = 1; i < ce.size(); i++) {
+            if (!(ce.get(i) instanceof List<?> slot) || slot.isEmpty()) {
+                continue;
+            }
+            String nombre = slot.get(0).toString();
+            if (SLOTS_IDENTIDAD.contains(nombre)) {
+                continue;
+            }
+            UsoSlot uso = usos.computeIfAbsent(cabeza, p -> new HashMap<>())
+                .computeIfAbsent(nombre, s -> new UsoSlot());
+            if (slot.size() == 2 && slot.get(1) instanceof Variable variable && !variable.isComodin()) {
+                ligaduras.computeIfAbsent(variable.nombre(), v -> new ArrayList<>()).add(uso);
+            } else if (slot.size() == 2 && slot.get(1) instanceof Long numero) {
+                uso.cortes.add(numero);
+                uso.cortes.add(numero + 1);
+            } else if (!(slot.size() == 2 && slot.get(1) instanceof Variable)) {
+                uso.exacto = true;
+            }
+        }
+    }
+
+    private static void contarVariables(Object expresion, Map<String, Integer> ocurrencias) {
+        if (expresion instanceof Variable variable) {
+            ocurrencias.merge(variable.nombre(), 1, Integer::sum);
+        } else if (expresion instanceof List<?> lista) {
+            lista.forEach(e -> contarVariables(e, ocurrencias));
+        }
+    }
+
+    /**
+     * (op ?v N) u (op N ?v) con op de comparación: agrega los cortes que separan los valores
+     * de ?v para los que la comparación cambia de resultado
+     */
+    private static void buscarComparaciones(Object expresion, Map<String, List<Long>> cortes,
+                                            Map<String, Integer> comparaciones) {
+        if (!(expresion instanceof List<?> lista)) {
+            return;
+        }
+        if (lista.size() == 3 && COMPARACIONES.contains(lista.get(0).toString())) {
+            String op = lista.get(0).toString();
+            Object izquierda = lista.get(1);
+            Object derecha = lista.get(2);
+            if (izquierda instanceof Variable v && derecha instanceof Long n) {
+                registrarCorte(v.nombre(), op, n, cortes, comparaciones);
+                return;
+            }
+            if (izquierda instanceof Long n && derecha instanceof Variable v) {
+                registrarCorte(v.nombre(), invertir(op), n, cortes, comparaciones);
+                return;
+            }
+        }
+        lista.forEach(e -> buscarComparaciones(e, cortes, comparaciones));
+    }
+
+    private static void registrarCorte(String variable, String op, long n, Map<String, List<Long>> cortes,
+                                       Map<String, Integer> comparaciones) {
+        List<Long> delVariable = cortes.computeIfAbsent(variable, v -> new ArrayList<>());
+        switch (op) {
+            case "<", ">=" -> delVariable.add(n);
+            case ">", "<=" -> delVariable.add(n + 1);
+            default -> {
+                delVariable.add(n);
+                delVariable.add(n + 1);
+            }
+        }
+        comparaciones.merge(variable, 1, Integer::sum);
+    }
+
+    private static String invertir(String op) {
+        return switch (op) {
+            case "<" -> ">";
+            case ">" -> "<";
+            case "<=" -> ">=";
+            case ">=" -> "<=";
+            default -> op;
+        };
+    }
+
+    /**
+     * Huella SHA-256 abreviada del contenido de las fuentes, en orden
+     */
+    public static String huella(List<String> fuentes) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (String fuente : fuentes) {
+                sha.update(fuente.getBytes(StandardCharsets.UTF_8));
+                sha.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(sha.digest(), 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class UsoSlot {
+        final SortedSet<Long> cortes = new TreeSet<>();
+        boolean exacto;
+    }
+}
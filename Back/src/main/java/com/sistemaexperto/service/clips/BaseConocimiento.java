@@ -0,0 +1,94 @@
+package com.sistemaexperto.service.clips;
+
+import com.sistemaexperto.service.clips.motor.CompiladorClips;
+import com.sistemaexperto.service.clips.motor.ProgramaClips;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Una versión compilada e inmutable de las reglas CLIPS: las fuentes .clp, la red Rete del
+ * motor embebido y el análisis de slots de la caché de diagnósticos. Se compila una vez por
+ * versión y se comparte entre todos los casos que la usan; recargar las reglas crea otra
+ * instancia sin tocar ésta.
+ *
+ * La versión es la huella del contenido de las fuentes: volver a leer archivos sin cambios
+ * produce la misma versión.
+ */
+@Slf4j
+public final class BaseConocimiento {
+
+    private final String version;
+    private final Map<String, String> fuentes;
+    private final ProgramaClips programa;
+    private final AnalisisReglas analisis;
+    private final LocalDateTime cargada = LocalDateTime.now();
+
+    private BaseConocimiento(String version, Map<String, String> fuentes, ProgramaClips programa,
+                             AnalisisReglas analisis) {
+        this.version = version;
+        this.fuentes = fuentes;
+        this.programa = programa;
+        this.analisis = analisis;
+    }
+
+    /**
+     * Compila las fuentes (nombre de archivo → contenido, en orden de carga).
+     * Para el motor embebido cualquier error de las reglas se lanza como IllegalArgumentException;
+     * el proceso clips acepta más sintaxis que el lector embebido, así que para el motor externo
+     * un error de análisis sólo deja la versión sin caché de diagnósticos.
+     */
+    public static BaseConocimiento compilar(Map<String, String> fuentes, boolean embebido) {
+        Map<String, String> copia = Collections.unmodifiableMap(new LinkedHashMap<>(fuentes));
+        List<String> textos = List.copyOf(copia.values());
+        String version = AnalisisReglas.huella(textos);
+
+        if (embebido) {
+            CompiladorClips compilador = new CompiladorClips();
+            copia.forEach((nombre, fuente) -> compilador.agregar(fuente, nombre));
+            return new BaseConocimiento(version, copia, compilador.compilar(), AnalisisReglas.analizar(textos));
+        }
+
+        AnalisisReglas analisis = null;
+        try {
+            analisis = AnalisisReglas.analizar(textos);
+        } catch (IllegalArgumentException e) {
+            log.warn("No se pudieron analizar las reglas CLIPS {}, sin caché de diagnósticos: {}",
+                version, e.getMessage());
+        }
+        return new BaseConocimiento(version, copia, null, analisis);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Fuentes por nombre de archivo, en orden de carga
+     */
+    public Map<String, String> getFuentes() {
+        return fuentes;
+    }
+
+    /**
+     * Red Rete compilada, o null si la versión es para el motor externo
+     */
+    public ProgramaClips getPrograma() {
+        return programa;
+    }
+
+    /**
+     * Slots relevantes para la caché de diagnósticos, o null si las reglas no se pudieron analizar
+     */
+    public AnalisisReglas getAnalisis() {
+        return analisis;
+    }
+
+    public LocalDateTime getCargada() {
+        return cargada;
+    }
+}
@@ -0,0 +1,117 @@
+package com.sistemaexperto.service.clips;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker para las llamadas a CLIPS.
+ * Tras varios fallos consecutivos el circuito se abre y las inferencias van
+ * directo a las reglas Java; pasado el tiempo de espera se permite una única
+ * llamada de prueba (semi-abierto) que decide si se vuelve a cerrar.
+ */
+@Slf4j
+@Component
+public class CircuitoClips {
+
+    public enum Estado {
+        CERRADO,
+        ABIERTO,
+        SEMI_ABIERTO
+    }
+
+    private final int umbralFallos;
+    private final long esperaNanos;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosConsecutivos;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+
+    private final LongAdder aperturas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+
+    public CircuitoClips(@Value("${clips.circuit.failure-threshold:3}") int umbralFallos,
+                         @Value("${clips.circuit.open.seconds:30}") long esperaSegundos) {
+        this.umbralFallos = umbralFallos;
+        this.esperaNanos = Duration.ofSeconds(esperaSegundos).toNanos();
+    }
+
+    /**
+     * Indica si una llamada tendría permiso, sin modificar el estado
+     */
+    public synchronized boolean permiteLlamadas() {
+        return switch (estado) {
+            case CERRADO -> true;
+            case SEMI_ABIERTO -> !pruebaEnCurso;
+            case ABIERTO -> esperaCumplida();
+        };
+    }
+
+    /**
+     * Reserva permiso para una llamada. En estado semi-abierto sólo se concede uno a la vez.
+     */
+    public synchronized boolean intentarAdquirir() {
+        if (estado == Estado.ABIERTO && esperaCumplida()) {
+            estado = Estado.SEMI_ABIERTO;
+            log.info("Circuito CLIPS semi-abierto: se intentará una llamada de prueba");
+        }
+
+        boolean permitido = switch (estado) {
+            case CERRADO -> true;
+            case SEMI_ABIERTO -> !pruebaEnCurso;
+            case ABIERTO -> false;
+        };
+
+        if (!permitido) {
+            rechazadas.increment();
+        } else if (estado == Estado.SEMI_ABIERTO) {
+            pruebaEnCurso = true;
+        }
+        return permitido;
+    }
+
+    public synchronized void registrarExito() {
+        if (estado != Estado.CERRADO) {
+            log.info("Circuito CLIPS cerrado nuevamente");
+        }
+        estado = Estado.CERRADO;
+        fallosConsecutivos = 0;
+        pruebaEnCurso = false;
+    }
+
+    public synchronized void registrarFallo() {
+        fallosConsecutivos++;
+        pruebaEnCurso = false;
+        if (estado == Estado.SEMI_ABIERTO || fallosConsecutivos >= umbralFallos) {
+            if (estado != Estado.ABIERTO) {
+                aperturas.increment();
+                log.warn("Circuito CLIPS abierto tras {} fallos consecutivos", fallosConsecutivos);
+            }
+            estado = Estado.ABIERTO;
+            abiertoDesde = System.nanoTime();
+        }
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+
+    public synchronized Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("estado", estado);
+        estadisticas.put("fallosConsecutivos", fallosConsecutivos);
+        estadisticas.put("aperturas", aperturas.sum());
+        estadisticas.put("llamadasRechazadas", rechazadas.sum());
+        return estadisticas;
+    }
+
+    private boolean esperaCumplida() {
+        return System.nanoTime() - abiertoDesde >= esperaNanos;
+    }
+}
@@ -0,0 +1,231 @@
+package com.sistemaexperto.service.clips;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proceso CLIPS de larga vida controlado por stdin/stdout.
+ * Las reglas se cargan una sola vez al iniciar; entre casos sólo se ejecuta (reset).
+ * No es thread-safe: el pool garantiza que cada worker atiende un caso a la vez.
+ */
+@Slf4j
+public class ClipsWorker implements Closeable {
+
+    private static final AtomicLong SECUENCIA_WORKERS = new AtomicLong();
+    private static final AtomicLong SECUENCIA_MARCAS = new AtomicLong();
+    private static final long ESPERA_MAXIMA_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String ASSERT = "(assert ";
+    private static final int CAPACIDAD_INICIAL_COPIA = 4 * 1024;
+    private static final int CAPACIDAD_MAXIMA_COPIA = 256 * 1024;
+
+    private final long id;
+    private final Process process;
+    private final List<Path> archivos;
+    private final Writer entrada;
+    private final BlockingQueue<String> lineas = new LinkedBlockingQueue<>();
+    private long casosAtendidos;
+    private long nanosParseo;
+    private char[] copiaHechos = new char[CAPACIDAD_INICIAL_COPIA];
+
+    private ClipsWorker(long id, Process process, List<Path> archivos) {
+        this.id = id;
+        this.process = process;
+        this.archivos = archivos;
+        this.entrada = new BufferedWriter(
+            new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        Thread lector = new Thread(this::leerSalida, "clips-worker-" + id);
+        lector.setDaemon(true);
+        lector.start();
+    }
+
+    /**
+     * Inicia un proceso CLIPS y precarga los archivos de reglas
+     */
+    public static ClipsWorker iniciar(String comando, List<Path> archivos, long timeoutMillis)
+            throws IOException, TimeoutException, InterruptedException {
+        Process process = new ProcessBuilder(comando)
+            .redirectErrorStream(true)
+            .start();
+        ClipsWorker worker = new ClipsWorker(SECUENCIA_WORKERS.incrementAndGet(), process, archivos);
+
+        try {
+            for (Path archivo : archivos) {
+                worker.enviar("(load \"" + archivo.toAbsolutePath().toString().replace('\\', '/') + "\")");
+            }
+            worker.enviar("(reset)");
+            worker.esperarMarca(timeoutMillis, null);
+        } catch (IOException | TimeoutException | InterruptedException e) {
+            worker.close();
+            throw e;
+        }
+
+        log.info("Worker CLIPS {} iniciado con {} archivos de reglas", worker.id, archivos.size());
+        return worker;
+    }
+
+    /**
+     * Ejecuta una inferencia sobre los hechos dados (uno por línea) y retorna los hechos que
+     * lista (facts), parseados a medida que llega la salida
+     */
+    public List<HechoClips> ejecutar(StringBuilder hechos, long timeoutMillis)
+            throws IOException, TimeoutException, InterruptedException {
+        lineas.clear();
+        enviar("(reset)");
+        enviarAsserts(hechos);
+        enviar("(run)");
+        enviar("(printout t \"DIAGNOSTICOS:\" crlf)");
+        enviar("(facts)");
+
+        LectorHechosClips lector = new LectorHechosClips();
+        nanosParseo = 0;
+        esperarMarca(timeoutMillis, lector);
+        casosAtendidos++;
+        return lector.getHechos();
+    }
+
+    /**
+     * Tiempo que la última ejecución pasó parseando la salida (sin contar la espera de CLIPS)
+     */
+    public long getNanosParseo() {
+        return nanosParseo;
+    }
+
+    /**
+     * Verifica que el proceso siga respondiendo
+     */
+    public boolean responde(long timeoutMillis) {
+        if (!process.isAlive()) {
+            return false;
+        }
+        try {
+            lineas.clear();
+            esperarMarca(timeoutMillis, null);
+            return true;
+        } catch (Exception e) {
+            log.debug("Worker CLIPS {} no responde: {}", id, e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isVivo() {
+        return process.isAlive();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getCasosAtendidos() {
+        return casosAtendidos;
+    }
+
+    /**
+     * Archivos de reglas con los que se inició el proceso
+     */
+    public List<Path> getArchivos() {
+        return archivos;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (process.isAlive()) {
+                enviar("(exit)");
+                if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        } catch (Exception e) {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Un (assert) por línea, escrito directo al proceso desde una copia reutilizada de los
+     * hechos: no se crea un String por hecho. Un hecho inválido sólo falla su propio assert.
+     * Si un lote grande agrandó la copia por encima del máximo, se descarta al terminar.
+     */
+    private void enviarAsserts(StringBuilder hechos) throws IOException {
+        int largo = hechos.length();
+        if (copiaHechos.length < largo) {
+            copiaHechos = new char[Math.max(largo, copiaHechos.length * 2)];
+        }
+        hechos.getChars(0, largo, copiaHechos, 0);
+
+        int inicio = 0;
+        for (int i = 0; i <= largo; i++) {
+            if (i == largo || copiaHechos[i] == '\n') {
+                if (i > inicio) {
+                    entrada.write(ASSERT);
+                    entrada.write(copiaHechos, inicio, i - inicio);
+                    entrada.write(")\n");
+                }
+                inicio = i + 1;
+            }
+        }
+        if (copiaHechos.length > CAPACIDAD_MAXIMA_COPIA) {
+            copiaHechos = new char[CAPACIDAD_INICIAL_COPIA];
+        }
+        entrada.flush();
+    }
+
+    private void enviar(String comando) throws IOException {
+        entrada.write(comando);
+        entrada.write('\n');
+        entrada.flush();
+    }
+
+    /**
+     * Imprime una marca única y entrega la salida al lector, si hay uno, hasta que CLIPS la emite
+     */
+    private void esperarMarca(long timeoutMillis, LectorHechosClips lector) throws IOException, TimeoutException, InterruptedException {
+        String marca = "<<FIN-" + id + "-" + SECUENCIA_MARCAS.incrementAndGet() + ">>";
+        enviar("(printout t \"" + marca + "\" crlf)");
+
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long restante = limite - System.nanoTime();
+            if (restante <= 0) {
+                throw new TimeoutException("CLIPS timeout después de " + timeoutMillis + " ms");
+            }
+            // Esperas cortas para detectar rápido un proceso caído
+            String linea = lineas.poll(Math.min(restante, ESPERA_MAXIMA_NANOS), TimeUnit.NANOSECONDS);
+            if (linea == null) {
+                if (!process.isAlive() && lineas.isEmpty()) {
+                    throw new IOException("El proceso CLIPS " + id + " terminó inesperadamente");
+                }
+                continue;
+            }
+            if (linea.contains(marca)) {
+                return;
+            }
+            if (lector != null) {
+                long inicio = System.nanoTime();
+                lector.leerLinea(linea);
+                nanosParseo += System.nanoTime() - inicio;
+            }
+        }
+    }
+
+    private void leerSalida() {
+        try (BufferedReader lector = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                lineas.offer(linea);
+            }
+        } catch (IOException e) {
+            log.debug("Salida del worker CLIPS {} cerrada: {}", id, e.getMessage());
+        }
+    }
+}
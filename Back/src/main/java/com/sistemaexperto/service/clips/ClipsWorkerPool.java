@@ -0,0 +1,218 @@
+package com.sistemaexperto.service.clips;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de procesos CLIPS persistentes.
+ * Evita pagar el arranque del proceso y la carga de reglas en cada diagnóstico;
+ * los workers caídos o que no responden se reemplazan automáticamente.
+ * Al recargar las reglas los workers se renuevan de a uno, arrancando el nuevo antes de cerrar
+ * el viejo: el pool nunca queda sin capacidad.
+ */
+@Slf4j
+@Component
+public class ClipsWorkerPool {
+
+    @Value("${clips.command:clips}")
+    private String clipsCommand;
+
+    @Value("${clips.timeout.seconds:30}")
+    private int timeoutSeconds;
+
+    @Value("${clips.pool.size:2}")
+    private int tamanio;
+
+    @Value("${clips.pool.health-check.timeout.millis:2000}")
+    private long timeoutChequeoMillis;
+
+    @Autowired
+    private MetricasClips metricas;
+
+    private final BlockingQueue<ClipsWorker> disponibles = new LinkedBlockingQueue<>();
+    private final AtomicInteger workersVivos = new AtomicInteger();
+    private final LongAdder reinicios = new LongAdder();
+    private final LongAdder renovados = new LongAdder();
+    private final LongAdder ejecuciones = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    private volatile List<Path> archivos = List.of();
+    private volatile boolean iniciado;
+
+    /**
+     * Arranca los workers precargando los archivos de reglas indicados
+     */
+    public synchronized void iniciar(List<Path> archivosReglas) {
+        if (iniciado) {
+            return;
+        }
+        this.archivos = List.copyOf(archivosReglas);
+        for (int i = 0; i < tamanio; i++) {
+            agregarWorker();
+        }
+        iniciado = workersVivos.get() > 0;
+        log.info("Pool CLIPS iniciado con {}/{} workers", workersVivos.get(), tamanio);
+    }
+
+    /**
+     * Cambia los archivos de reglas. Los workers libres se renuevan ahora y los ocupados al
+     * terminar su caso; si un proceso nuevo no arranca, el viejo sigue atendiendo.
+     */
+    public synchronized void recargar(List<Path> archivosReglas) {
+        this.archivos = List.copyOf(archivosReglas);
+        if (!iniciado) {
+            return;
+        }
+        List<ClipsWorker> libres = new ArrayList<>();
+        disponibles.drainTo(libres);
+        libres.forEach(this::renovar);
+        log.info("Pool CLIPS recargado con {} archivos de reglas", archivos.size());
+    }
+
+    public boolean isIniciado() {
+        return iniciado;
+    }
+
+    /**
+     * Ejecuta una inferencia en el primer worker libre y retorna los hechos resultantes
+     */
+    public List<HechoClips> ejecutar(StringBuilder hechos) throws TimeoutException, InterruptedException {
+        if (!iniciado) {
+            throw new IllegalStateException("El pool CLIPS no está iniciado");
+        }
+
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        ClipsWorker worker = disponibles.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (worker == null) {
+            throw new TimeoutException("No hay workers CLIPS libres después de " + timeoutSeconds + " segundos");
+        }
+
+        boolean sano = false;
+        try {
+            List<HechoClips> resultado = worker.ejecutar(hechos, timeoutMillis);
+            metricas.registrarParseo(MetricasClips.EXTERNO, worker.getNanosParseo());
+            ejecuciones.increment();
+            sano = true;
+            return resultado;
+        } catch (Exception e) {
+            fallos.increment();
+            log.warn("Worker CLIPS {} falló, se reemplaza: {}", worker.getId(), e.getMessage());
+            if (e instanceof TimeoutException te) {
+                throw te;
+            }
+            throw new IllegalStateException("Error ejecutando CLIPS: " + e.getMessage(), e);
+        } finally {
+            if (sano && vigente(worker)) {
+                disponibles.offer(worker);
+            } else if (sano) {
+                renovar(worker);
+            } else {
+                reemplazar(worker);
+            }
+        }
+    }
+
+    /**
+     * Revisa periódicamente los workers libres y reinicia los que no responden
+     */
+    @Scheduled(fixedDelayString = "${clips.pool.health-check.seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void chequearSalud() {
+        if (!iniciado) {
+            return;
+        }
+
+        List<ClipsWorker> libres = new ArrayList<>();
+        disponibles.drainTo(libres);
+        for (ClipsWorker worker : libres) {
+            if (!vigente(worker)) {
+                renovar(worker);
+            } else if (worker.responde(timeoutChequeoMillis)) {
+                disponibles.offer(worker);
+            } else {
+                log.warn("Worker CLIPS {} no responde al chequeo de salud", worker.getId());
+                reemplazar(worker);
+            }
+        }
+
+        // Recuperar capacidad si algún reinicio anterior falló
+        while (workersVivos.get() < tamanio && agregarWorker()) {
+            reinicios.increment();
+        }
+    }
+
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("iniciado", iniciado);
+        estadisticas.put("tamanio", tamanio);
+        estadisticas.put("vivos", workersVivos.get());
+        estadisticas.put("libres", disponibles.size());
+        estadisticas.put("ejecuciones", ejecuciones.sum());
+        estadisticas.put("fallos", fallos.sum());
+        estadisticas.put("reinicios", reinicios.sum());
+        estadisticas.put("renovados", renovados.sum());
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public synchronized void detener() {
+        iniciado = false;
+        List<ClipsWorker> libres = new ArrayList<>();
+        disponibles.drainTo(libres);
+        libres.forEach(ClipsWorker::close);
+        workersVivos.addAndGet(-libres.size());
+    }
+
+    private void reemplazar(ClipsWorker worker) {
+        worker.close();
+        workersVivos.decrementAndGet();
+        if (iniciado && agregarWorker()) {
+            reinicios.increment();
+        }
+    }
+
+    /**
+     * Reemplaza un worker sano con reglas anteriores por uno con las actuales
+     */
+    private void renovar(ClipsWorker worker) {
+        if (!agregarWorker()) {
+            log.warn("No se pudo renovar el worker CLIPS {}, sigue con las reglas anteriores", worker.getId());
+            disponibles.offer(worker);
+            return;
+        }
+        worker.close();
+        workersVivos.decrementAndGet();
+        renovados.increment();
+    }
+
+    private boolean vigente(ClipsWorker worker) {
+        return worker.getArchivos() == archivos;
+    }
+
+    private boolean agregarWorker() {
+        try {
+            long inicio = System.nanoTime();
+            ClipsWorker worker = ClipsWorker.iniciar(
+                clipsCommand, archivos, TimeUnit.SECONDS.toMillis(timeoutSeconds));
+            metricas.registrarArranque(System.nanoTime() - inicio);
+            workersVivos.incrementAndGet();
+            disponibles.offer(worker);
+            return true;
+        } catch (Exception e) {
+            log.error("No se pudo iniciar un worker CLIPS: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.sistemaexperto.service.clips;
+
+import com.sistemaexperto.service.clips.motor.Simbolo;
+
+import java.util.Map;
+
+/**
+ * Hecho resultante de una inferencia CLIPS: plantilla y valores de sus slots
+ */
+public record HechoClips(String plantilla, Map<String, Object> slots) {
+
+    /**
+     * Caso al que pertenece el hecho: slot caso-id, o id para la plantilla caso.
+     * Retorna null si el hecho no está asociado a un caso (por ejemplo metrica).
+     */
+    public Long casoId() {
+        Object valor = "caso".equals(plantilla) ? slots.get("id") : slots.get("caso-id");
+        return valor instanceof Number numero ? numero.longValue() : null;
+    }
+
+    /**
+     * Convierte un valor del motor embebido a los mismos tipos que produce el parseo de (facts)
+     */
+    public static Object convertirValor(Object valor) {
+        if (valor instanceof Simbolo simbolo) {
+            return simbolo.nombre();
+        }
+        if (valor instanceof Long entero && entero == entero.intValue()) {
+            return entero.intValue();
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,240 @@
+package com.sistemaexperto.service.clips;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lector incremental de listados de hechos de CLIPS (la salida de (facts)), en una sola pasada.
+ * Recibe la salida por partes, tal como llega del proceso, y reconoce cada hecho
+ * "f-N (plantilla (slot valor...) ...)" aunque quede cortado entre líneas o lecturas. El resto
+ * de la salida (prompts, printout de las reglas) se ignora.
+ *
+ * Los valores se convierten como en el motor embebido: símbolos y cadenas a String, enteros a
+ * Integer (Long si no entran) y flotantes a Double. Un multislot con varios valores queda como
+ * List; los campos de un hecho ordenado (sin slots) quedan en el slot {@link #SLOT_IMPLICITO}.
+ * No es thread-safe: se usa un lector por inferencia.
+ */
+public final class LectorHechosClips {
+
+    /** Slot con los campos de los hechos ordenados, como (initial-fact) o (alerta a b) */
+    public static final String SLOT_IMPLICITO = "implied";
+
+    private enum Estado { FUERA, F, GUION, INDICE, ESPACIO, HECHO, CADENA, ESCAPE }
+
+    private final List<HechoClips> hechos = new ArrayList<>();
+    private final StringBuilder token = new StringBuilder();
+    private final List<Object> valores = new ArrayList<>();
+    private final List<Object> implicitos = new ArrayList<>();
+
+    private Estado estado = Estado.FUERA;
+    private char anterior = '\n';
+    private int profundidad;
+    private boolean enAtomo;
+    private String plantilla;
+    private String slot;
+    private Map<String, Object> slots = new LinkedHashMap<>();
+
+    /**
+     * Parsea una salida completa de CLIPS
+     */
+    public static List<HechoClips> parsear(CharSequence salida) {
+        LectorHechosClips lector = new LectorHechosClips();
+        lector.leer(salida);
+        return lector.getHechos();
+    }
+
+    /**
+     * Lee el stream hasta el final
+     */
+    public void leer(Reader entrada) throws IOException {
+        char[] buffer = new char[8192];
+        int leidos;
+        while ((leidos = entrada.read(buffer)) != -1) {
+            leer(buffer, 0, leidos);
+        }
+    }
+
+    public void leer(char[] buffer, int desde, int largo) {
+        for (int i = desde; i < desde + largo; i++) {
+            procesar(buffer[i]);
+        }
+    }
+
+    public void leer(CharSequence parte) {
+        for (int i = 0; i < parte.length(); i++) {
+            procesar(parte.charAt(i));
+        }
+    }
+
+    /**
+     * Una línea sin su terminador, como las entrega BufferedReader.readLine
+     */
+    public void leerLinea(CharSequence linea) {
+        leer(linea);
+        procesar('\n');
+    }
+
+    /**
+     * Hechos completos leídos hasta ahora, en orden de aparición
+     */
+    public List<HechoClips> getHechos() {
+        return hechos;
+    }
+
+    private void procesar(char c) {
+        switch (estado) {
+            case FUERA -> reiniciar(c);
+            case F -> avanzarMarca(c == '-', Estado.GUION, c);
+            case GUION -> avanzarMarca(Character.isDigit(c), Estado.INDICE, c);
+            case INDICE -> {
+                if (Character.isWhitespace(c)) {
+                    estado = Estado.ESPACIO;
+                } else {
+                    avanzarMarca(Character.isDigit(c), Estado.INDICE, c);
+                }
+            }
+            case ESPACIO -> {
+                if (c == '(') {
+                    estado = Estado.HECHO;
+                    profundidad = 1;
+                } else if (!Character.isWhitespace(c)) {
+                    reiniciar(c);
+                }
+            }
+            case HECHO -> procesarHecho(c);
+            case CADENA -> {
+                if (c == '\\') {
+                    estado = Estado.ESCAPE;
+                } else if (c == '"') {
+                    estado = Estado.HECHO;
+                    agregarValor(token.toString());
+                    token.setLength(0);
+                } else {
+                    token.append(c);
+                }
+            }
+            case ESCAPE -> {
+                token.append(c);
+                estado = Estado.CADENA;
+            }
+        }
+        anterior = c;
+    }
+
+    /**
+     * Avanza en el reconocimiento de "f-N " o vuelve a buscar desde este carácter
+     */
+    private void avanzarMarca(boolean coincide, Estado siguiente, char c) {
+        if (coincide) {
+            estado = siguiente;
+        } else {
+            reiniciar(c);
+        }
+    }
+
+    private void reiniciar(char c) {
+        boolean inicioDeMarca = c == 'f' && (Character.isWhitespace(anterior) || anterior == '>');
+        estado = inicioDeMarca ? Estado.F : Estado.FUERA;
+    }
+
+    private void procesarHecho(char c) {
+        boolean delimitador = Character.isWhitespace(c) || c == '(' || c == ')' || c == '"';
+        if (!delimitador) {
+            enAtomo = true;
+            token.append(c);
+            return;
+        }
+        if (enAtomo) {
+            terminarAtomo();
+        }
+
+        if (c == '"') {
+            estado = Estado.CADENA;
+        } else if (c == '(') {
+            profundidad++;
+            if (profundidad == 2) {
+                slot = null;
+                valores.clear();
+            }
+        } else if (c == ')') {
+            if (profundidad == 2) {
+                cerrarSlot();
+            } else if (profundidad == 1) {
+                emitir();
+            }
+            profundidad--;
+        }
+    }
+
+    private void terminarAtomo() {
+        String texto = token.toString();
+        token.setLength(0);
+        enAtomo = false;
+        if (profundidad == 1 && plantilla == null) {
+            plantilla = texto;
+        } else if (profundidad == 2 && slot == null) {
+            slot = texto;
+        } else {
+            agregarValor(convertir(texto));
+        }
+    }
+
+    private void agregarValor(Object valor) {
+        if (profundidad == 2 && slot != null) {
+            valores.add(valor);
+        } else if (profundidad == 1 && plantilla != null) {
+            implicitos.add(valor);
+        }
+        // Más profundo no hay valores válidos en un hecho: se ignora
+    }
+
+    private void cerrarSlot() {
+        if (slot != null) {
+            slots.put(slot, valores.size() == 1 ? valores.get(0) : List.copyOf(valores));
+        }
+        slot = null;
+        valores.clear();
+    }
+
+    private void emitir() {
+        if (plantilla != null) {
+            if (!implicitos.isEmpty()) {
+                slots.put(SLOT_IMPLICITO, List.copyOf(implicitos));
+            }
+            hechos.add(new HechoClips(plantilla, slots));
+            slots = new LinkedHashMap<>();
+        } else {
+            slots.clear();
+        }
+        plantilla = null;
+        implicitos.clear();
+        estado = Estado.FUERA;
+    }
+
+    private static Object convertir(String texto) {
+        char primero = texto.charAt(0);
+        boolean numerico = Character.isDigit(primero)
+            || ((primero == '-' || primero == '+' || primero == '.') && texto.length() > 1);
+        if (!numerico) {
+            return texto;
+        }
+        try {
+            long entero = Long.parseLong(texto);
+            return entero == (int) entero ? (Object) (int) entero : (Object) entero;
+        } catch (NumberFormatException e) {
+            // no es entero
+        }
+        if (!Character.isDigit(texto.charAt(texto.length() - 1))) {
+            return texto;
+        }
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            return texto;
+        }
+    }
+}
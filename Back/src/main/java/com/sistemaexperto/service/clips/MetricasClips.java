@@ -0,0 +1,60 @@
+package com.sistemaexperto.service.clips;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempos de CLIPS para Micrometer: arranque de procesos del pool, ejecución de la inferencia
+ * y conversión de los hechos resultantes, por motor (embedded o external)
+ */
+@Component
+public class MetricasClips {
+
+    public static final String EMBEBIDO = "embedded";
+    public static final String EXTERNO = "external";
+
+    private final Timer arranque;
+    private final Timer ejecucionEmbebida;
+    private final Timer ejecucionExterna;
+    private final Timer parseoEmbebido;
+    private final Timer parseoExterno;
+
+    public MetricasClips(MeterRegistry registry) {
+        this.arranque = Timer.builder("clips.proceso.arranque")
+            .description("Arranque de un proceso CLIPS con la carga de reglas")
+            .register(registry);
+        this.ejecucionEmbebida = ejecucion(registry, EMBEBIDO);
+        this.ejecucionExterna = ejecucion(registry, EXTERNO);
+        this.parseoEmbebido = parseo(registry, EMBEBIDO);
+        this.parseoExterno = parseo(registry, EXTERNO);
+    }
+
+    public void registrarArranque(long nanos) {
+        arranque.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registrarEjecucion(String motor, long nanos) {
+        (EMBEBIDO.equals(motor) ? ejecucionEmbebida : ejecucionExterna).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registrarParseo(String motor, long nanos) {
+        (EMBEBIDO.equals(motor) ? parseoEmbebido : parseoExterno).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer ejecucion(MeterRegistry registry, String motor) {
+        return Timer.builder("clips.ejecucion")
+            .description("Inferencia CLIPS completa: hechos, (run) y resultados")
+            .tag("motor", motor)
+            .register(registry);
+    }
+
+    private static Timer parseo(MeterRegistry registry, String motor) {
+        return Timer.builder("clips.parseo")
+            .description("Conversión de los hechos resultantes de CLIPS")
+            .tag("motor", motor)
+            .register(registry);
+    }
+}
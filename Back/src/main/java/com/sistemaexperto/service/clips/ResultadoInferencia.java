@@ -0,0 +1,52 @@
+package com.sistemaexperto.service.clips;
+
+import java.util.*;
+
+/**
+ * Hechos de una inferencia CLIPS agrupados por caso y plantilla.
+ * Permite ejecutar varios casos en una misma sesión y separar luego sus resultados.
+ */
+public class ResultadoInferencia {
+
+    private final Map<Long, Map<String, List<HechoClips>>> hechosPorCaso = new LinkedHashMap<>();
+
+    public static ResultadoInferencia agrupar(Collection<HechoClips> hechos) {
+        ResultadoInferencia resultado = new ResultadoInferencia();
+        for (HechoClips hecho : hechos) {
+            Long casoId = hecho.casoId();
+            if (casoId == null) {
+                continue;
+            }
+            resultado.hechosPorCaso
+                .computeIfAbsent(casoId, id -> new LinkedHashMap<>())
+                .computeIfAbsent(hecho.plantilla(), p -> new ArrayList<>())
+                .add(hecho);
+        }
+        return resultado;
+    }
+
+    public Set<Long> getCasos() {
+        return Collections.unmodifiableSet(hechosPorCaso.keySet());
+    }
+
+    /**
+     * Hechos de una plantilla para el caso, en orden de aserción
+     */
+    public List<HechoClips> getHechos(Long casoId, String plantilla) {
+        return hechosPorCaso.getOrDefault(casoId, Map.of()).getOrDefault(plantilla, List.of());
+    }
+
+    public boolean tieneDiagnostico(Long casoId) {
+        return !getHechos(casoId, "diagnostico").isEmpty();
+    }
+
+    /**
+     * Slots del último hecho de cada plantilla del caso, en el formato que espera ClipsMapper
+     */
+    public Map<String, Object> hechosDelCaso(Long casoId) {
+        Map<String, Object> hechos = new HashMap<>();
+        hechosPorCaso.getOrDefault(casoId, Map.of()).forEach((plantilla, lista) ->
+            hechos.put(plantilla, lista.get(lista.size() - 1).slots()));
+        return hechos;
+    }
+}
@@ -0,0 +1,89 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import com.sistemaexperto.service.clips.HechoClips;
+
+import java.util.*;
+
+/**
+ * Agenda de una evaluación de las reglas compiladas. Las reglas agregan sus activaciones y
+ * después se disparan con la estrategia depth del motor embebido: mayor salience primero y, a
+ * igual salience, la creada más tarde (hecho más reciente y, para un mismo hecho, mayor orden
+ * de activación). Así el último hecho de cada plantilla es el mismo que deja CLIPS.
+ *
+ * No es thread-safe; cada evaluación usa su propia agenda.
+ */
+public final class AgendaCompilada {
+
+    private static final Comparator<Activacion> DEPTH = Comparator
+        .comparingInt(Activacion::salience)
+        .thenComparingInt(Activacion::reciente)
+        .thenComparingInt(Activacion::orden)
+        .thenComparingInt(Activacion::secuencia)
+        .reversed();
+
+    private final List<Activacion> activaciones = new ArrayList<>(4);
+    private final List<Plantilla> plantillas = new ArrayList<>(8);
+    private final List<Object[]> valores = new ArrayList<>(8);
+
+    /**
+     * @param reciente posición del hecho más reciente de la activación
+     * @param orden    orden de activación del patrón que coincidió con ese hecho
+     */
+    void agregar(int salience, int reciente, int orden, Disparo disparo) {
+        activaciones.add(new Activacion(salience, reciente, orden, activaciones.size(), disparo));
+    }
+
+    /**
+     * (assert ...) con todos los slots de la plantilla; como en CLIPS, un hecho idéntico a uno
+     * ya afirmado no se agrega
+     */
+    void afirmar(Plantilla plantilla, Object[] hecho) {
+        for (int i = 0; i < valores.size(); i++) {
+            if (plantillas.get(i) == plantilla && Arrays.equals(valores.get(i), hecho)) {
+                return;
+            }
+        }
+        plantillas.add(plantilla);
+        valores.add(hecho);
+    }
+
+    /**
+     * Dispara las activaciones y retorna los hechos afirmados en orden, con los mismos tipos
+     * que produce el motor CLIPS
+     */
+    List<HechoClips> ejecutar() {
+        activaciones.sort(DEPTH);
+        for (Activacion activacion : activaciones) {
+            activacion.disparo().disparar(this);
+        }
+
+        List<HechoClips> hechos = new ArrayList<>(valores.size());
+        for (int i = 0; i < valores.size(); i++) {
+            Plantilla plantilla = plantillas.get(i);
+            Object[] hecho = valores.get(i);
+            Map<String, Object> slots = new HashMap<>();
+            for (int j = 0; j < hecho.length; j++) {
+                slots.put(plantilla.slots()[j], HechoClips.convertirValor(hecho[j]));
+            }
+            hechos.add(new HechoClips(plantilla.nombre(), slots));
+        }
+        return hechos;
+    }
+
+    /**
+     * Lado derecho de una regla con sus variables ya ligadas
+     */
+    @FunctionalInterface
+    interface Disparo {
+        void disparar(AgendaCompilada agenda);
+    }
+
+    /**
+     * Deftemplate de un hecho afirmado: nombre y slots en orden de declaración
+     */
+    record Plantilla(String nombre, String... slots) {
+    }
+
+    private record Activacion(int salience, int reciente, int orden, int secuencia, Disparo disparo) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import com.sistemaexperto.service.clips.motor.Expresion;
+import com.sistemaexperto.service.clips.motor.Simbolo;
+
+/**
+ * Funciones CLIPS que las reglas generadas no pueden resolver con operadores de Java porque el
+ * tipo de sus argumentos sólo se conoce al evaluar (por ejemplo el valor de una respuesta).
+ * Siguen las mismas reglas que el motor embebido.
+ */
+final class FuncionesCompiladas {
+
+    private FuncionesCompiladas() {
+    }
+
+    /**
+     * +, - o * de dos números: entero si ambos lo son, real si no
+     */
+    static Number aritmetica(char operador, Object a, Object b) {
+        Number x = Expresion.numero(a);
+        Number y = Expresion.numero(b);
+        if (x instanceof Long i && y instanceof Long j) {
+            return switch (operador) {
+                case '+' -> i + j;
+                case '-' -> i - j;
+                default -> i * j;
+            };
+        }
+        return switch (operador) {
+            case '+' -> x.doubleValue() + y.doubleValue();
+            case '-' -> x.doubleValue() - y.doubleValue();
+            default -> x.doubleValue() * y.doubleValue();
+        };
+    }
+
+    /**
+     * Valor de str-index a partir de String.indexOf: posición desde 1 o FALSE
+     */
+    static Object indice(int posicion) {
+        return posicion < 0 ? Simbolo.FALSE : (Object) (long) (posicion + 1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Respuesta;
+import com.sistemaexperto.service.clips.motor.Simbolo;
+import com.sistemaexperto.service.mapper.EscritorHechosClips;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Hechos de entrada de un caso (caso, electrodomestico, sintoma y respuestas) con los mismos
+ * valores que CLIPS lee de lo que escribe EscritorHechosClips, en campos que las reglas
+ * compiladas comparan directamente.
+ *
+ * Igual que en la memoria de trabajo de CLIPS, una respuesta idéntica a otra anterior no se
+ * agrega: la posición de cada respuesta es la recencia de su hecho.
+ */
+public final class HechosCaso {
+
+    /** Posición del primer hecho respuesta; caso, electrodomestico y sintoma son 0, 1 y 2 */
+    static final int PRIMERA_RESPUESTA = 3;
+
+    final long id;
+    final String fecha;
+    final String cliente;
+    final String telefono;
+    final String direccion;
+    final Simbolo estado;
+
+    final Simbolo tipo;
+    final String marca;
+    final String modelo;
+    final long antiguedad;
+    final Simbolo enGarantia;
+
+    final String descripcion;
+    final Simbolo gravedad;
+
+    final HechoRespuesta[] respuestas;
+
+    /**
+     * Con las respuestas ya convertidas y sin repetidas; {@link #de} las arma desde las entidades
+     */
+    HechosCaso(Caso caso, HechoRespuesta[] respuestas) {
+        this.id = caso.getId();
+        this.fecha = EscritorHechosClips.fecha(caso.getFechaCreacion());
+        this.cliente = EscritorHechosClips.cadena(caso.getClienteNombre());
+        this.telefono = EscritorHechosClips.cadena(caso.getClienteTelefono());
+        this.direccion = EscritorHechosClips.DIRECCION;
+        this.estado = new Simbolo(EscritorHechosClips.simboloEstado(caso.getEstado()));
+        this.tipo = new Simbolo(EscritorHechosClips.simboloTipo(caso.getTipoElectrodomestico()));
+        this.marca = EscritorHechosClips.cadena(caso.getMarca());
+        this.modelo = EscritorHechosClips.cadena(caso.getModelo());
+        this.antiguedad = EscritorHechosClips.antiguedad(caso);
+        this.enGarantia = new Simbolo(EscritorHechosClips.EN_GARANTIA);
+        this.descripcion = EscritorHechosClips.cadena(caso.getSintomaReportado());
+        this.gravedad = new Simbolo(EscritorHechosClips.gravedad(caso.getSintomaReportado()));
+        this.respuestas = respuestas;
+    }
+
+    public static HechosCaso de(Caso caso, List<Respuesta> respuestas) {
+        List<HechoRespuesta> hechos = new ArrayList<>(respuestas.size());
+        for (Respuesta respuesta : respuestas) {
+            HechoRespuesta hecho = new HechoRespuesta(
+                respuesta.getPreguntaId() != null ? respuesta.getPreguntaId().toString() : "0",
+                EscritorHechosClips.valorRespuesta(respuesta.getValor()));
+            if (!hechos.contains(hecho)) {
+                hechos.add(hecho);
+            }
+        }
+        return new HechosCaso(caso, hechos.toArray(HechoRespuesta[]::new));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Hecho respuesta: pregunta es un string y valor un símbolo, string o número
+     */
+    static final class HechoRespuesta {
+
+        final String pregunta;
+        final Object valor;
+
+        HechoRespuesta(String pregunta, Object valor) {
+            this.pregunta = pregunta;
+            this.valor = valor;
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof HechoRespuesta hecho
+                && pregunta.equals(hecho.pregunta) && valor.equals(hecho.valor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pregunta, valor);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.model.Respuesta;
+import com.sistemaexperto.service.ClipsService;
+import com.sistemaexperto.service.clips.BaseConocimiento;
+import com.sistemaexperto.service.clips.ResultadoInferencia;
+import com.sistemaexperto.service.mapper.ClipsMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Diagnóstico con las reglas CLIPS compiladas a Java en el build, sin motor ni proceso CLIPS.
+ * Reemplaza a la regla Java escrita a mano cuando CLIPS no está disponible o falla, siempre
+ * que las reglas compiladas sean de la misma versión que las que usaría CLIPS para el caso:
+ * si las reglas se recargaron con otro contenido, se vuelve a la regla Java.
+ *
+ * La cantidad de reglas .clp que el build no pudo compilar (y que por lo tanto este camino no
+ * evalúa) se publica en el gauge clips.reglas.no-compiladas.
+ */
+@Slf4j
+@Component
+public class MotorReglasCompiladas {
+
+    private final ClipsService clipsService;
+    private final ClipsMapper clipsMapper;
+    private final ReglasCompiladas reglas;
+
+    public MotorReglasCompiladas(ClipsService clipsService, ClipsMapper clipsMapper, MeterRegistry registry,
+                                 @Value("${clips.rules.compiled.enabled:true}") boolean habilitado) {
+        this.clipsService = clipsService;
+        this.clipsMapper = clipsMapper;
+        this.reglas = habilitado ? cargar() : null;
+        Gauge.builder("clips.reglas.no-compiladas", this, motor -> motor.getReglasNoCompiladas().size())
+            .description("Reglas CLIPS que no se compilaron a Java y sólo evalúa CLIPS")
+            .register(registry);
+    }
+
+    /**
+     * Si hay reglas compiladas para la versión de las reglas con que empezó el caso
+     */
+    public boolean isDisponible(String versionReglas) {
+        if (reglas == null) {
+            return false;
+        }
+        BaseConocimiento base = clipsService.getBase(versionReglas);
+        // Sin reglas cargadas valen las del classpath, que son las que se compilaron
+        return base == null || reglas.getVersion().equals(base.getVersion());
+    }
+
+    /**
+     * Diagnostica el caso con las reglas compiladas.
+     * Retorna null si ninguna regla genera un diagnóstico o si no están disponibles para la versión.
+     */
+    public Diagnostico diagnosticar(Caso caso, List<Respuesta> respuestas, String versionReglas) {
+        if (!isDisponible(versionReglas)) {
+            return null;
+        }
+        HechosCaso hechos = HechosCaso.de(caso, respuestas);
+        AgendaCompilada agenda = new AgendaCompilada();
+        reglas.activar(hechos, agenda);
+
+        ResultadoInferencia resultado = ResultadoInferencia.agrupar(agenda.ejecutar());
+        if (!resultado.tieneDiagnostico(caso.getId())) {
+            return null;
+        }
+        return clipsMapper.clipsFactsToDiagnostico(caso.getId(), resultado.hechosDelCaso(caso.getId()));
+    }
+
+    /**
+     * Reglas de las fuentes que quedaron sin compilar; vacía si no hay reglas compiladas
+     */
+    public List<String> getReglasNoCompiladas() {
+        return reglas != null ? reglas.getReglasNoCompiladas() : List.of();
+    }
+
+    /**
+     * Versión de las reglas compiladas, o null si no hay
+     */
+    public String getVersion() {
+        return reglas != null ? reglas.getVersion() : null;
+    }
+
+    private static ReglasCompiladas cargar() {
+        Iterator<ReglasCompiladas> encontradas = ServiceLoader.load(ReglasCompiladas.class).iterator();
+        if (!encontradas.hasNext()) {
+            log.info("No hay reglas CLIPS compiladas a Java en el classpath");
+            return null;
+        }
+        ReglasCompiladas reglas = encontradas.next();
+        // Las plantillas que no se reproducen exactamente no pueden alimentar al Diagnostico
+        if (!reglas.getPlantillas().containsAll(ClipsMapper.PLANTILLAS_DIAGNOSTICO)) {
+            log.warn("Las reglas CLIPS compiladas {} no reproducen {}, no se usan",
+                reglas.getVersion(), ClipsMapper.PLANTILLAS_DIAGNOSTICO);
+            return null;
+        }
+        log.info("Reglas CLIPS compiladas a Java {}: {} reglas, sin compilar {}",
+            reglas.getVersion(), reglas.getReglas().size(), reglas.getReglasNoCompiladas());
+        return reglas;
+    }
+}
@@ -0,0 +1,38 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reglas CLIPS compiladas a Java en el build por GeneradorReglasCompiladas (src/build/java).
+ * La implementación generada se registra como servicio (META-INF/services) y se carga con
+ * ServiceLoader: si el build no la generó, simplemente no hay reglas compiladas.
+ */
+public interface ReglasCompiladas {
+
+    /**
+     * Versión de las fuentes .clp de las que se generaron, la misma que BaseConocimiento
+     */
+    String getVersion();
+
+    /**
+     * Reglas compiladas, en orden de las fuentes
+     */
+    List<String> getReglas();
+
+    /**
+     * Reglas que no se compilaron porque dependen de hechos que afirman otras reglas
+     * (por ejemplo las de seguridad sobre diagnostico o solucion)
+     */
+    List<String> getReglasNoCompiladas();
+
+    /**
+     * Plantillas cuyos hechos se reproducen exactamente: sólo las afirman reglas compiladas
+     */
+    Set<String> getPlantillas();
+
+    /**
+     * Agrega a la agenda las activaciones de todas las reglas compiladas para los hechos del caso
+     */
+    void activar(HechosCaso hechos, AgendaCompilada agenda);
+}
@@ -0,0 +1,31 @@
+package com.sistemaexperto.service.clips.motor;
+
+/**
+ * Hecho a insertar con sus slots compilados: sirve tanto para (assert ...) en el
+ * RHS de una regla como para hechos literales y deffacts.
+ */
+final class AsercionCompilada implements Regla.Accion {
+
+    private final Plantilla plantilla;
+    private final int[] slots;
+    private final Expresion[] valores;
+
+    AsercionCompilada(Plantilla plantilla, int[] slots, Expresion[] valores) {
+        this.plantilla = plantilla;
+        this.slots = slots;
+        this.valores = valores;
+    }
+
+    Hecho insertar(SesionClips sesion, Object[] variables) {
+        Object[] hecho = plantilla.nuevosValores();
+        for (int i = 0; i < slots.length; i++) {
+            hecho[slots[i]] = valores[i].evaluar(variables);
+        }
+        return sesion.insertar(plantilla, hecho);
+    }
+
+    @Override
+    public void ejecutar(SesionClips sesion, Object[] variables) {
+        insertar(sesion, variables);
+    }
+}
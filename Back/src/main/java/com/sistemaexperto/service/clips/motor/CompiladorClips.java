@@ -0,0 +1,372 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compila fuentes .clp a un {@link ProgramaClips}.
+ * Soporta deftemplate (slots simples con type, default y allowed-values), deffacts y
+ * defrule con patrones de slots (constantes, variables y comodín), (test ...),
+ * (declare (salience n)) y acciones assert y printout. Cualquier otra construcción
+ * se rechaza con un error que indica el archivo de origen.
+ */
+public final class CompiladorClips {
+
+    private final Map<String, Plantilla> plantillas = new LinkedHashMap<>();
+    private final Map<String, NodoAlfa> alfasCompartidos = new HashMap<>();
+    private final Map<Plantilla, List<NodoAlfa>> nodosAlfa = new HashMap<>();
+    private final List<Regla> reglas = new ArrayList<>();
+    private final Set<String> nombresReglas = new HashSet<>();
+    private final List<List<?>> hechosIniciales = new ArrayList<>();
+    private int cantidadJoins;
+
+    /**
+     * Agrega las construcciones de un archivo. Las plantillas deben definirse
+     * antes que las reglas que las usan, igual que en CLIPS.
+     */
+    public CompiladorClips agregar(String fuente, String origen) {
+        for (Object construccion : LectorClips.leerTodo(fuente, origen)) {
+            try {
+                agregarConstruccion(construccion);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(origen + ": " + e.getMessage(), e);
+            }
+        }
+        return this;
+    }
+
+    public ProgramaClips compilar() {
+        alfasCompartidos.values().forEach(NodoAlfa::calcularIndices);
+        return new ProgramaClips(plantillas, nodosAlfa, reglas, hechosIniciales,
+            alfasCompartidos.size(), cantidadJoins);
+    }
+
+    private void agregarConstruccion(Object construccion) {
+        if (!(construccion instanceof List<?> lista) || lista.size() < 2
+                || !(lista.get(0) instanceof Simbolo tipo) || !(lista.get(1) instanceof Simbolo nombre)) {
+            throw new IllegalArgumentException("Construcción inválida: " + construccion);
+        }
+        List<?> cuerpo = sinComentario(lista.subList(2, lista.size()));
+        switch (tipo.nombre()) {
+            case "deftemplate" -> definirPlantilla(nombre.nombre(), cuerpo);
+            case "deffacts" -> cuerpo.forEach(hecho -> {
+                compilarAsercion(hecho, plantillas, this::sinVariables);
+                hechosIniciales.add((List<?>) hecho);
+            });
+            case "defrule" -> definirRegla(nombre.nombre(), cuerpo);
+            default -> throw new IllegalArgumentException("Construcción no soportada: " + tipo.nombre());
+        }
+    }
+
+    // ---------- deftemplate ----------
+
+    private void definirPlantilla(String nombre, List<?> definiciones) {
+        List<String> slots = new ArrayList<>();
+        List<Object> valoresPorDefecto = new ArrayList<>();
+        for (Object definicion : definiciones) {
+            List<?> slot = lista(definicion, "slot");
+            if (slot.size() < 2 || !Simbolo.class.isInstance(slot.get(1))) {
+                throw new IllegalArgumentException("Slot inválido en " + nombre + ": " + definicion);
+            }
+            String tipoSlot = slot.get(0).toString();
+            if (!"slot".equals(tipoSlot) && !"field".equals(tipoSlot)) {
+                throw new IllegalArgumentException("Sólo se soportan slots simples (" + tipoSlot + " en " + nombre + ")");
+            }
+            slots.add(slot.get(1).toString());
+            valoresPorDefecto.add(valorPorDefecto(slot.subList(2, slot.size())));
+        }
+        plantillas.put(nombre, new Plantilla(nombre, slots, valoresPorDefecto));
+    }
+
+    /**
+     * (default v), o el primer allowed-value, o el valor neutro del tipo declarado
+     */
+    private static Object valorPorDefecto(List<?> atributos) {
+        Object porTipo = Simbolo.NIL;
+        Object permitido = null;
+        for (Object atributo : atributos) {
+            List<?> lista = lista(atributo, "atributo de slot");
+            String nombre = lista.get(0).toString();
+            switch (nombre) {
+                case "default" -> {
+                    if (lista.size() != 2 || lista.get(1) instanceof List<?> || lista.get(1) instanceof Variable) {
+                        throw new IllegalArgumentException("Sólo se soportan defaults constantes: " + atributo);
+                    }
+                    return lista.get(1);
+                }
+                case "allowed-values" -> permitido = permitido != null ? permitido : lista.get(1);
+                case "type" -> porTipo = switch (lista.get(1).toString()) {
+                    case "INTEGER", "NUMBER" -> 0L;
+                    case "FLOAT" -> 0.0;
+                    case "STRING" -> "";
+                    default -> Simbolo.NIL;
+                };
+                default -> {
+                    // range, cardinality, etc. no afectan la inferencia
+                }
+            }
+        }
+        return permitido != null ? permitido : porTipo;
+    }
+
+    // ---------- defrule ----------
+
+    private void definirRegla(String nombre, List<?> cuerpo) {
+        if (!nombresReglas.add(nombre)) {
+            throw new IllegalArgumentException("Regla duplicada: " + nombre);
+        }
+        int flecha = cuerpo.indexOf(new Simbolo("=>"));
+        if (flecha < 0) {
+            throw new IllegalArgumentException("La regla " + nombre + " no tiene =>");
+        }
+        List<?> lhs = new ArrayList<>(cuerpo.subList(0, flecha));
+        List<?> rhs = cuerpo.subList(flecha + 1, cuerpo.size());
+
+        int salience = 0;
+        if (!lhs.isEmpty() && lhs.get(0) instanceof List<?> primero && !primero.isEmpty()
+                && new Simbolo("declare").equals(primero.get(0))) {
+            salience = salience(primero);
+            lhs.remove(0);
+        }
+
+        Map<String, Integer> variables = new LinkedHashMap<>();
+        List<PatronPendiente> patrones = new ArrayList<>();
+        for (Object elemento : lhs) {
+            List<?> ce = lista(elemento, "elemento condicional en " + nombre);
+            String cabeza = ce.get(0).toString();
+            if ("test".equals(cabeza)) {
+                if (patrones.isEmpty() || ce.size() != 2) {
+                    throw new IllegalArgumentException("(test) debe seguir a un patrón en " + nombre);
+                }
+                patrones.get(patrones.size() - 1).filtros.add(
+                    Funciones.compilar(ce.get(1), resolverLigada(variables, nombre)));
+            } else if (Set.of("not", "or", "and", "exists", "forall", "logical").contains(cabeza)
+                    || ce.get(0) instanceof Variable) {
+                throw new IllegalArgumentException("Elemento condicional no soportado en " + nombre + ": " + ce);
+            } else {
+                patrones.add(compilarPatron(ce, variables, nombre));
+            }
+        }
+        if (patrones.isEmpty()) {
+            throw new IllegalArgumentException("La regla " + nombre + " no tiene patrones");
+        }
+
+        Regla regla = new Regla(nombre, salience, variables.size());
+        NodoJoin anterior = null;
+        for (PatronPendiente patron : patrones) {
+            NodoJoin join = new NodoJoin(cantidadJoins++, regla, patron.alfa, anterior,
+                patron.slots.stream().mapToInt(Integer::intValue).toArray(),
+                patron.variables.stream().mapToInt(Integer::intValue).toArray(),
+                toArray(patron.ligar),
+                patron.filtros.toArray(Expresion[]::new));
+            if (anterior != null) {
+                anterior.siguiente = join;
+            }
+            regla.joins.add(join);
+            anterior = join;
+        }
+        // Los joins más profundos se activan primero para no duplicar tokens
+        // cuando un mismo hecho coincide con dos patrones de la regla
+        for (int i = regla.joins.size() - 1; i >= 0; i--) {
+            NodoJoin join = regla.joins.get(i);
+            join.alfa.sucesores.add(join);
+        }
+
+        ToIntFunction<String> ligadas = resolverLigada(variables, nombre);
+        List<Regla.Accion> acciones = new ArrayList<>();
+        for (Object accion : rhs) {
+            acciones.add(compilarAccion(lista(accion, "acción en " + nombre), ligadas));
+        }
+        regla.acciones = List.copyOf(acciones);
+        reglas.add(regla);
+    }
+
+    private static int salience(List<?> declare) {
+        for (Object propiedad : declare.subList(1, declare.size())) {
+            List<?> lista = lista(propiedad, "declare");
+            if ("salience".equals(lista.get(0).toString()) && lista.size() == 2
+                    && lista.get(1) instanceof Long valor) {
+                return valor.intValue();
+            }
+            throw new IllegalArgumentException("Declaración no soportada: " + propiedad);
+        }
+        return 0;
+    }
+
+    private PatronPendiente compilarPatron(List<?> ce, Map<String, Integer> variables, String regla) {
+        Plantilla plantilla = plantilla(ce.get(0), regla);
+        List<Integer> slotsConstantes = new ArrayList<>();
+        List<Object> constantes = new ArrayList<>();
+        PatronPendiente patron = new PatronPendiente();
+
+        for (Object elemento : ce.subList(1, ce.size())) {
+            List<?> restriccion = lista(elemento, "restricción de slot en " + regla);
+            int slot = slot(plantilla, restriccion.get(0), regla);
+            if (restriccion.size() != 2) {
+                throw new IllegalArgumentException("Restricción no soportada en " + regla + ": " + restriccion);
+            }
+            Object valor = restriccion.get(1);
+            if (valor instanceof Variable variable) {
+                if (variable.nombre().matches(".*[&|:~=].*")) {
+                    throw new IllegalArgumentException("Restricción conectiva no soportada en " + regla + ": " + variable);
+                }
+                if (variable.isComodin()) {
+                    continue;
+                }
+                Integer indice = variables.get(variable.nombre());
+                patron.slots.add(slot);
+                patron.ligar.add(indice == null);
+                if (indice == null) {
+                    indice = variables.size();
+                    variables.put(variable.nombre(), indice);
+                }
+                patron.variables.add(indice);
+            } else if (valor instanceof List<?>) {
+                throw new IllegalArgumentException("Restricción no soportada en " + regla + ": " + restriccion);
+            } else {
+                if (valor instanceof Simbolo simbolo && simbolo.nombre().matches("^~.*|.*[&|].*")) {
+                    throw new IllegalArgumentException("Restricción conectiva no soportada en " + regla + ": " + simbolo);
+                }
+                slotsConstantes.add(slot);
+                constantes.add(valor);
+            }
+        }
+
+        patron.alfa = nodoAlfa(plantilla, slotsConstantes, constantes);
+        return patron;
+    }
+
+    /**
+     * Retorna el nodo alfa para las restricciones constantes dadas, compartiéndolo si ya existe
+     */
+    private NodoAlfa nodoAlfa(Plantilla plantilla, List<Integer> slots, List<Object> valores) {
+        StringBuilder clave = new StringBuilder(plantilla.getNombre());
+        for (int i = 0; i < slots.size(); i++) {
+            Object valor = valores.get(i);
+            clave.append('|').append(slots.get(i)).append('=')
+                .append(valor.getClass().getSimpleName()).append(':').append(valor);
+        }
+        return alfasCompartidos.computeIfAbsent(clave.toString(), k -> {
+            NodoAlfa alfa = new NodoAlfa(alfasCompartidos.size(), plantilla,
+                slots.stream().mapToInt(Integer::intValue).toArray(), valores.toArray());
+            nodosAlfa.computeIfAbsent(plantilla, p -> new ArrayList<>()).add(alfa);
+            return alfa;
+        });
+    }
+
+    private Regla.Accion compilarAccion(List<?> accion, ToIntFunction<String> variables) {
+        String nombre = accion.get(0).toString();
+        switch (nombre) {
+            case "assert" -> {
+                List<AsercionCompilada> aserciones = new ArrayList<>();
+                for (Object hecho : accion.subList(1, accion.size())) {
+                    aserciones.add(compilarAsercion(hecho, plantillas, variables));
+                }
+                return (sesion, vars) -> aserciones.forEach(a -> a.insertar(sesion, vars));
+            }
+            case "printout" -> {
+                if (accion.size() < 2) {
+                    throw new IllegalArgumentException("printout sin router");
+                }
+                List<Expresion> partes = new ArrayList<>();
+                for (Object parte : accion.subList(2, accion.size())) {
+                    partes.add(new Simbolo("crlf").equals(parte)
+                        ? vars -> "\n"
+                        : Funciones.compilar(parte, variables));
+                }
+                return (sesion, vars) -> {
+                    StringBuilder texto = new StringBuilder();
+                    for (Expresion parte : partes) {
+                        texto.append(parte.evaluar(vars));
+                    }
+                    sesion.imprimir(texto.toString());
+                };
+            }
+            default -> throw new IllegalArgumentException("Acción no soportada: " + nombre);
+        }
+    }
+
+    /**
+     * Compila (plantilla (slot valor)...) donde cada valor puede ser una expresión
+     */
+    static AsercionCompilada compilarAsercion(Object hecho, Map<String, Plantilla> plantillas,
+                                              ToIntFunction<String> variables) {
+        List<?> lista = lista(hecho, "hecho");
+        Plantilla plantilla = plantillas.get(lista.get(0).toString());
+        if (plantilla == null) {
+            throw new IllegalArgumentException("Plantilla no definida: " + lista.get(0));
+        }
+        int cantidad = lista.size() - 1;
+        int[] slots = new int[cantidad];
+        Expresion[] valores = new Expresion[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            List<?> slot = lista(lista.get(i + 1), "slot de " + plantilla);
+            slots[i] = slot(plantilla, slot.get(0), "hecho " + plantilla);
+            if (slot.size() != 2) {
+                throw new IllegalArgumentException(
+                    "El slot " + slot.get(0) + " de " + plantilla + " admite un único valor: " + slot);
+            }
+            valores[i] = Funciones.compilar(slot.get(1), variables);
+        }
+        return new AsercionCompilada(plantilla, slots, valores);
+    }
+
+    // ---------- utilidades ----------
+
+    private Plantilla plantilla(Object nombre, String regla) {
+        Plantilla plantilla = plantillas.get(nombre.toString());
+        if (plantilla == null) {
+            throw new IllegalArgumentException("Plantilla no definida en " + regla + ": " + nombre);
+        }
+        return plantilla;
+    }
+
+    private static int slot(Plantilla plantilla, Object nombre, String contexto) {
+        int indice = plantilla.indice(nombre.toString());
+        if (indice < 0) {
+            throw new IllegalArgumentException("Slot " + nombre + " no existe en " + plantilla + " (" + contexto + ")");
+        }
+        return indice;
+    }
+
+    private static ToIntFunction<String> resolverLigada(Map<String, Integer> variables, String regla) {
+        return variable -> {
+            Integer indice = variables.get(variable);
+            if (indice == null) {
+                throw new IllegalArgumentException("Variable ?" + variable + " sin ligar en " + regla);
+            }
+            return indice;
+        };
+    }
+
+    private int sinVariables(String variable) {
+        throw new IllegalArgumentException("Los deffacts no admiten variables: ?" + variable);
+    }
+
+    private static List<?> sinComentario(List<?> cuerpo) {
+        return !cuerpo.isEmpty() && cuerpo.get(0) instanceof String ? cuerpo.subList(1, cuerpo.size()) : cuerpo;
+    }
+
+    private static List<?> lista(Object elemento, String contexto) {
+        if (elemento instanceof List<?> lista && !lista.isEmpty()) {
+            return lista;
+        }
+        throw new IllegalArgumentException("Se esperaba una lista (" + contexto + "): " + elemento);
+    }
+
+    private static boolean[] toArray(List<Boolean> valores) {
+        boolean[] resultado = new boolean[valores.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = valores.get(i);
+        }
+        return resultado;
+    }
+
+    private static final class PatronPendiente {
+        NodoAlfa alfa;
+        final List<Integer> slots = new ArrayList<>();
+        final List<Integer> variables = new ArrayList<>();
+        final List<Boolean> ligar = new ArrayList<>();
+        final List<Expresion> filtros = new ArrayList<>();
+    }
+}
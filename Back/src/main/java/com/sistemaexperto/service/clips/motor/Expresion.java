@@ -0,0 +1,44 @@
+package com.sistemaexperto.service.clips.motor;
+
+/**
+ * Expresión compilada. Las variables de la regla se resuelven por índice.
+ */
+@FunctionalInterface
+public interface Expresion {
+
+    Object evaluar(Object[] variables);
+
+    static boolean esVerdadero(Object valor) {
+        return !Simbolo.FALSE.equals(valor);
+    }
+
+    static Number numero(Object valor) {
+        if (valor instanceof Number n) {
+            return n;
+        }
+        throw new IllegalStateException("Se esperaba un número y se obtuvo: " + valor);
+    }
+
+    /**
+     * Texto de un string o símbolo, como lo usan str-index y str-cat
+     */
+    static String lexema(Object valor) {
+        if (valor instanceof String cadena) {
+            return cadena;
+        }
+        if (valor instanceof Simbolo simbolo) {
+            return simbolo.nombre();
+        }
+        throw new IllegalStateException("Se esperaba un string o símbolo y se obtuvo: " + valor);
+    }
+
+    /**
+     * Compara dos enteros como enteros y cualquier otra combinación como reales
+     */
+    static int comparar(Number a, Number b) {
+        if (a instanceof Long x && b instanceof Long y) {
+            return Long.compare(x, y);
+        }
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+}
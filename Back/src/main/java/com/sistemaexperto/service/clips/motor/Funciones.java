@@ -0,0 +1,170 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+import static com.sistemaexperto.service.clips.motor.Expresion.comparar;
+import static com.sistemaexperto.service.clips.motor.Expresion.lexema;
+import static com.sistemaexperto.service.clips.motor.Expresion.numero;
+
+/**
+ * Compila llamadas a funciones de CLIPS en {@link Expresion}.
+ * Cubre el subconjunto usado por la base de conocimiento: lógicas, comparaciones,
+ * aritmética, str-index y str-cat.
+ */
+final class Funciones {
+
+    private Funciones() {
+    }
+
+    /**
+     * Compila un término: constante, variable ligada o llamada a función
+     */
+    static Expresion compilar(Object termino, ToIntFunction<String> variables) {
+        if (termino instanceof Variable variable) {
+            if (variable.isComodin()) {
+                throw new IllegalArgumentException("El comodín ? no puede usarse en una expresión");
+            }
+            int indice = variables.applyAsInt(variable.nombre());
+            return vars -> vars[indice];
+        }
+        if (termino instanceof List<?> llamada) {
+            return compilarLlamada(llamada, variables);
+        }
+        return vars -> termino;
+    }
+
+    private static Expresion compilarLlamada(List<?> llamada, ToIntFunction<String> variables) {
+        if (llamada.isEmpty() || !(llamada.get(0) instanceof Simbolo funcion)) {
+            throw new IllegalArgumentException("Llamada a función inválida: " + llamada);
+        }
+        Expresion[] args = llamada.subList(1, llamada.size()).stream()
+            .map(arg -> compilar(arg, variables))
+            .toArray(Expresion[]::new);
+
+        return switch (funcion.nombre()) {
+            case "and" -> vars -> {
+                for (Expresion arg : args) {
+                    if (!Expresion.esVerdadero(arg.evaluar(vars))) {
+                        return Simbolo.FALSE;
+                    }
+                }
+                return Simbolo.TRUE;
+            };
+            case "or" -> vars -> {
+                for (Expresion arg : args) {
+                    if (Expresion.esVerdadero(arg.evaluar(vars))) {
+                        return Simbolo.TRUE;
+                    }
+                }
+                return Simbolo.FALSE;
+            };
+            case "not" -> {
+                aridad(funcion, args, 1);
+                yield vars -> Simbolo.de(!Expresion.esVerdadero(args[0].evaluar(vars)));
+            }
+            case "eq" -> vars -> Simbolo.de(todosIgualesAlPrimero(args, vars));
+            case "neq" -> vars -> Simbolo.de(ningunoIgualAlPrimero(args, vars));
+            case "=" -> comparacion(args, c -> c == 0);
+            case "<>" -> comparacion(args, c -> c != 0);
+            case "<" -> comparacion(args, c -> c < 0);
+            case "<=" -> comparacion(args, c -> c <= 0);
+            case ">" -> comparacion(args, c -> c > 0);
+            case ">=" -> comparacion(args, c -> c >= 0);
+            case "+" -> aritmetica(args, Long::sum, Double::sum);
+            case "-" -> aritmetica(args, (a, b) -> a - b, (a, b) -> a - b);
+            case "*" -> aritmetica(args, (a, b) -> a * b, (a, b) -> a * b);
+            case "/" -> vars -> {
+                double resultado = numero(args[0].evaluar(vars)).doubleValue();
+                for (int i = 1; i < args.length; i++) {
+                    resultado /= numero(args[i].evaluar(vars)).doubleValue();
+                }
+                return resultado;
+            };
+            case "str-index" -> {
+                aridad(funcion, args, 2);
+                yield vars -> {
+                    int indice = lexema(args[1].evaluar(vars)).indexOf(lexema(args[0].evaluar(vars)));
+                    return indice < 0 ? Simbolo.FALSE : (Object) (long) (indice + 1);
+                };
+            }
+            case "str-cat" -> vars -> {
+                StringBuilder texto = new StringBuilder();
+                for (Expresion arg : args) {
+                    texto.append(lexema(arg.evaluar(vars)));
+                }
+                return texto.toString();
+            };
+            default -> throw new IllegalArgumentException("Función CLIPS no soportada: " + funcion.nombre());
+        };
+    }
+
+    private static boolean todosIgualesAlPrimero(Expresion[] args, Object[] vars) {
+        Object primero = args[0].evaluar(vars);
+        for (int i = 1; i < args.length; i++) {
+            if (!Objects.equals(primero, args[i].evaluar(vars))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean ningunoIgualAlPrimero(Expresion[] args, Object[] vars) {
+        Object primero = args[0].evaluar(vars);
+        for (int i = 1; i < args.length; i++) {
+            if (Objects.equals(primero, args[i].evaluar(vars))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private interface Criterio {
+        boolean cumple(int comparacion);
+    }
+
+    private static Expresion comparacion(Expresion[] args, Criterio criterio) {
+        return vars -> {
+            Number anterior = numero(args[0].evaluar(vars));
+            for (int i = 1; i < args.length; i++) {
+                Number actual = numero(args[i].evaluar(vars));
+                if (!criterio.cumple(comparar(anterior, actual))) {
+                    return Simbolo.FALSE;
+                }
+                anterior = actual;
+            }
+            return Simbolo.TRUE;
+        };
+    }
+
+    private interface OperacionEntera {
+        long aplicar(long a, long b);
+    }
+
+    private interface OperacionReal {
+        double aplicar(double a, double b);
+    }
+
+    private static Expresion aritmetica(Expresion[] args, OperacionEntera entera, OperacionReal real) {
+        return vars -> {
+            Number resultado = numero(args[0].evaluar(vars));
+            for (int i = 1; i < args.length; i++) {
+                Number operando = numero(args[i].evaluar(vars));
+                if (resultado instanceof Long a && operando instanceof Long b) {
+                    resultado = entera.aplicar(a, b);
+                } else {
+                    resultado = real.aplicar(resultado.doubleValue(), operando.doubleValue());
+                }
+            }
+            return resultado;
+        };
+    }
+
+    private static void aridad(Simbolo funcion, Expresion[] args, int esperada) {
+        if (args.length != esperada) {
+            throw new IllegalArgumentException(
+                "La función " + funcion.nombre() + " espera " + esperada + " argumentos");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hecho de la memoria de trabajo. Dos hechos son iguales si tienen la misma
+ * plantilla y los mismos valores (CLIPS no admite hechos duplicados).
+ */
+public final class Hecho {
+
+    private final long id;
+    private final Plantilla plantilla;
+    private final Object[] valores;
+
+    Hecho(long id, Plantilla plantilla, Object[] valores) {
+        this.id = id;
+        this.plantilla = plantilla;
+        this.valores = valores;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Plantilla getPlantilla() {
+        return plantilla;
+    }
+
+    public Object valor(int indice) {
+        return valores[indice];
+    }
+
+    public Object valor(String slot) {
+        int indice = plantilla.indice(slot);
+        return indice < 0 ? null : valores[indice];
+    }
+
+    /**
+     * Slots del hecho en orden de declaración
+     */
+    public Map<String, Object> comoMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        for (int i = 0; i < valores.length; i++) {
+            mapa.put(plantilla.slot(i), valores[i]);
+        }
+        return mapa;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Hecho otro)) {
+            return false;
+        }
+        return plantilla == otro.plantilla && Arrays.equals(valores, otro.valores);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * plantilla.getNombre().hashCode() + Arrays.hashCode(valores);
+    }
+
+    /**
+     * Representación con la sintaxis de (facts)
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder("f-").append(id).append("  (").append(plantilla.getNombre());
+        for (int i = 0; i < valores.length; i++) {
+            texto.append(" (").append(plantilla.slot(i)).append(' ');
+            Object valor = valores[i];
+            if (valor instanceof String cadena) {
+                texto.append('"').append(cadena.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else {
+                texto.append(valor);
+            }
+            texto.append(')');
+        }
+        return texto.append(')').toString();
+    }
+}
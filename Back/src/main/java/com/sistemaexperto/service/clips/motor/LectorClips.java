@@ -0,0 +1,166 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de expresiones S de CLIPS.
+ * Produce listas ({@link List}) y átomos: {@link Simbolo}, {@link String},
+ * {@link Long}, {@link Double} y {@link Variable}. Los comentarios (;) se ignoran.
+ */
+public class LectorClips {
+
+    private final CharSequence fuente;
+    private final String origen;
+    private int posicion;
+    private int linea = 1;
+
+    public LectorClips(CharSequence fuente, String origen) {
+        this.fuente = fuente;
+        this.origen = origen;
+    }
+
+    /**
+     * Lee todas las expresiones de primer nivel de un texto
+     */
+    public static List<Object> leerTodo(String fuente, String origen) {
+        LectorClips lector = new LectorClips(fuente, origen);
+        List<Object> expresiones = new ArrayList<>();
+        Object expresion;
+        while ((expresion = lector.siguiente()) != null) {
+            expresiones.add(expresion);
+        }
+        return expresiones;
+    }
+
+    /**
+     * Lee una única expresión (por ejemplo un hecho a insertar)
+     */
+    public static Object leerUna(String fuente) {
+        LectorClips lector = new LectorClips(fuente, "<hecho>");
+        Object expresion = lector.siguiente();
+        if (expresion == null || lector.siguiente() != null) {
+            throw new IllegalArgumentException("Se esperaba exactamente una expresión: " + fuente);
+        }
+        return expresion;
+    }
+
+    /**
+     * Retorna la siguiente expresión de primer nivel o null al final del texto
+     */
+    public Object siguiente() {
+        saltarEspacios();
+        if (posicion >= fuente.length()) {
+            return null;
+        }
+        if (fuente.charAt(posicion) == ')') {
+            throw error("')' sin '(' correspondiente");
+        }
+        return leerExpresion();
+    }
+
+    private Object leerExpresion() {
+        char c = fuente.charAt(posicion);
+        if (c == '(') {
+            int lineaInicio = linea;
+            posicion++;
+            List<Object> elementos = new ArrayList<>();
+            while (true) {
+                saltarEspacios();
+                if (posicion >= fuente.length()) {
+                    throw new IllegalArgumentException(
+                        origen + ":" + lineaInicio + ": '(' sin cerrar");
+                }
+                if (fuente.charAt(posicion) == ')') {
+                    posicion++;
+                    return elementos;
+                }
+                elementos.add(leerExpresion());
+            }
+        }
+        if (c == '"') {
+            return leerCadena();
+        }
+        return leerAtomo();
+    }
+
+    private String leerCadena() {
+        StringBuilder valor = new StringBuilder();
+        posicion++;
+        while (posicion < fuente.length()) {
+            char c = fuente.charAt(posicion++);
+            if (c == '"') {
+                return valor.toString();
+            }
+            if (c == '\\' && posicion < fuente.length()) {
+                c = fuente.charAt(posicion++);
+            }
+            if (c == '\n') {
+                linea++;
+            }
+            valor.append(c);
+        }
+        throw error("cadena sin cerrar");
+    }
+
+    private Object leerAtomo() {
+        int inicio = posicion;
+        while (posicion < fuente.length() && !esDelimitador(fuente.charAt(posicion))) {
+            posicion++;
+        }
+        String texto = fuente.subSequence(inicio, posicion).toString();
+
+        if (texto.startsWith("$?")) {
+            throw error("variables multicampo no soportadas: " + texto);
+        }
+        if (texto.startsWith("?")) {
+            return new Variable(texto.substring(1));
+        }
+        Object numero = comoNumero(texto);
+        return numero != null ? numero : new Simbolo(texto);
+    }
+
+    private static Object comoNumero(String texto) {
+        char c = texto.charAt(0);
+        if (!Character.isDigit(c) && c != '-' && c != '+' && c != '.') {
+            return null;
+        }
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            // no es entero
+        }
+        try {
+            boolean tieneDigito = texto.chars().anyMatch(Character::isDigit);
+            return tieneDigito ? Double.parseDouble(texto) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void saltarEspacios() {
+        while (posicion < fuente.length()) {
+            char c = fuente.charAt(posicion);
+            if (c == ';') {
+                while (posicion < fuente.length() && fuente.charAt(posicion) != '\n') {
+                    posicion++;
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (c == '\n') {
+                    linea++;
+                }
+                posicion++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static boolean esDelimitador(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')' || c == '"' || c == ';';
+    }
+
+    private IllegalArgumentException error(String mensaje) {
+        return new IllegalArgumentException(origen + ":" + linea + ": " + mensaje);
+    }
+}
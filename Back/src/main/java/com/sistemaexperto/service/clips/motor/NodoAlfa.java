@@ -0,0 +1,58 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nodo alfa de la red Rete: filtra hechos de una plantilla por valores constantes.
+ * Patrones con las mismas restricciones constantes comparten el nodo y su memoria.
+ */
+final class NodoAlfa {
+
+    final int id;
+    final Plantilla plantilla;
+    private final int[] slots;
+    private final Object[] valores;
+
+    /** Joins que consumen esta memoria, los más profundos de cada regla primero */
+    final List<NodoJoin> sucesores = new ArrayList<>();
+
+    /** Slots por los que algún join busca hechos en esta memoria */
+    int[] slotsIndexados = new int[0];
+
+    NodoAlfa(int id, Plantilla plantilla, int[] slots, Object[] valores) {
+        this.id = id;
+        this.plantilla = plantilla;
+        this.slots = slots;
+        this.valores = valores;
+    }
+
+    void calcularIndices() {
+        slotsIndexados = sucesores.stream()
+            .filter(NodoJoin::isIndexado)
+            .mapToInt(join -> join.slotClave)
+            .distinct()
+            .toArray();
+        for (NodoJoin join : sucesores) {
+            join.posicionEnAlfa = join.isIndexado() ? posicionIndice(join.slotClave) : -1;
+        }
+    }
+
+    int posicionIndice(int slot) {
+        for (int i = 0; i < slotsIndexados.length; i++) {
+            if (slotsIndexados[i] == slot) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    boolean acepta(Hecho hecho) {
+        for (int i = 0; i < slots.length; i++) {
+            if (!valores[i].equals(hecho.valor(slots[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.sistemaexperto.service.clips.motor;
+
+/**
+ * Nodo join de la red Rete: combina los tokens del patrón anterior con los hechos
+ * de una memoria alfa, verificando y ligando variables. Los (test ...) que siguen
+ * al patrón se evalúan como filtros del token resultante.
+ */
+final class NodoJoin {
+
+    final int id;
+    final Regla regla;
+    final NodoAlfa alfa;
+    final NodoJoin anterior;
+    NodoJoin siguiente;
+
+    // Operaciones sobre slots en orden: comparar contra una variable ya ligada o ligarla
+    private final int[] slots;
+    private final int[] variables;
+    private final boolean[] ligar;
+    private final Expresion[] filtros;
+
+    // Primera comparación contra una variable de un patrón anterior: indexa las memorias
+    final int slotClave;
+    final int variableClave;
+    int posicionEnAlfa = -1;
+
+    NodoJoin(int id, Regla regla, NodoAlfa alfa, NodoJoin anterior,
+             int[] slots, int[] variables, boolean[] ligar, Expresion[] filtros) {
+        this.id = id;
+        this.regla = regla;
+        this.alfa = alfa;
+        this.anterior = anterior;
+        this.slots = slots;
+        this.variables = variables;
+        this.ligar = ligar;
+        this.filtros = filtros;
+
+        int clave = -1;
+        for (int i = 0; i < slots.length && clave < 0; i++) {
+            if (!ligar[i] && !ligadaEnEstePatron(variables[i], i)) {
+                clave = i;
+            }
+        }
+        this.slotClave = clave < 0 ? -1 : slots[clave];
+        this.variableClave = clave < 0 ? -1 : variables[clave];
+    }
+
+    boolean isIndexado() {
+        return slotClave >= 0;
+    }
+
+    private boolean ligadaEnEstePatron(int variable, int hasta) {
+        for (int i = 0; i < hasta; i++) {
+            if (ligar[i] && variables[i] == variable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retorna las variables extendidas con el hecho, o null si no hay coincidencia
+     */
+    Object[] unir(Object[] token, Hecho hecho) {
+        Object[] resultado = null;
+        for (int i = 0; i < slots.length; i++) {
+            Object valor = hecho.valor(slots[i]);
+            if (ligar[i]) {
+                if (resultado == null) {
+                    resultado = token.clone();
+                }
+                resultado[variables[i]] = valor;
+            } else {
+                Object ligado = resultado != null ? resultado[variables[i]] : token[variables[i]];
+                if (!valor.equals(ligado)) {
+                    return null;
+                }
+            }
+        }
+        if (resultado == null) {
+            resultado = token;
+        }
+        for (Expresion filtro : filtros) {
+            if (!Expresion.esVerdadero(filtro.evaluar(resultado))) {
+                return null;
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,64 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deftemplate compilado: nombres de slots en orden de declaración y sus valores por defecto
+ */
+public final class Plantilla {
+
+    private final String nombre;
+    private final String[] slots;
+    private final Object[] valoresPorDefecto;
+
+    Plantilla(String nombre, List<String> slots, List<Object> valoresPorDefecto) {
+        this.nombre = nombre;
+        this.slots = slots.toArray(String[]::new);
+        this.valoresPorDefecto = valoresPorDefecto.toArray();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public List<String> getSlots() {
+        return Arrays.asList(slots);
+    }
+
+    public int cantidadSlots() {
+        return slots.length;
+    }
+
+    public String slot(int indice) {
+        return slots[indice];
+    }
+
+    /**
+     * Índice del slot o -1 si la plantilla no lo declara
+     */
+    public int indice(String slot) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].equals(slot)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Valor que toma el slot cuando un hecho no lo indica
+     */
+    public Object getValorPorDefecto(int indice) {
+        return valoresPorDefecto[indice];
+    }
+
+    Object[] nuevosValores() {
+        return valoresPorDefecto.clone();
+    }
+
+    @Override
+    public String toString() {
+        return nombre;
+    }
+}
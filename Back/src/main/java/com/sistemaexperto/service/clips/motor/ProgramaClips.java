@@ -0,0 +1,92 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.*;
+
+/**
+ * Base de conocimiento compilada a una red Rete. Es inmutable una vez construida
+ * por {@link CompiladorClips} y puede compartirse entre hilos; cada inferencia
+ * trabaja sobre su propia {@link SesionClips}.
+ */
+public final class ProgramaClips {
+
+    private final Map<String, Plantilla> plantillas;
+    private final Map<Plantilla, List<NodoAlfa>> nodosAlfa;
+    private final List<Regla> reglas;
+    private final List<List<?>> hechosIniciales;
+    private final int cantidadNodosAlfa;
+    private final int cantidadJoins;
+
+    ProgramaClips(Map<String, Plantilla> plantillas, Map<Plantilla, List<NodoAlfa>> nodosAlfa,
+                  List<Regla> reglas, List<List<?>> hechosIniciales,
+                  int cantidadNodosAlfa, int cantidadJoins) {
+        this.plantillas = Map.copyOf(plantillas);
+        this.nodosAlfa = Map.copyOf(nodosAlfa);
+        this.reglas = List.copyOf(reglas);
+        this.hechosIniciales = List.copyOf(hechosIniciales);
+        this.cantidadNodosAlfa = cantidadNodosAlfa;
+        this.cantidadJoins = cantidadJoins;
+    }
+
+    /**
+     * Crea una memoria de trabajo vacía con los deffacts ya insertados, como (reset)
+     */
+    public SesionClips nuevaSesion() {
+        SesionClips sesion = new SesionClips(this);
+        for (List<?> hecho : hechosIniciales) {
+            compilarHecho(hecho).insertar(sesion, new Object[0]);
+        }
+        return sesion;
+    }
+
+    public Plantilla getPlantilla(String nombre) {
+        return plantillas.get(nombre);
+    }
+
+    public Collection<Plantilla> getPlantillas() {
+        return plantillas.values();
+    }
+
+    public List<Regla> getReglas() {
+        return reglas;
+    }
+
+    public int cantidadNodosAlfa() {
+        return cantidadNodosAlfa;
+    }
+
+    public int cantidadJoins() {
+        return cantidadJoins;
+    }
+
+    /**
+     * Orden en que el patrón de la regla recibe un hecho nuevo de su plantilla, entre todos los
+     * patrones de esa plantilla. Las activaciones que crea un mismo hecho entran a la agenda en
+     * este orden, así que a igual salience la de mayor orden se dispara primero.
+     */
+    public int ordenActivacion(Regla regla, int patron) {
+        NodoJoin join = regla.joins.get(patron);
+        int orden = 0;
+        for (NodoAlfa alfa : nodosAlfa(join.alfa.plantilla)) {
+            for (NodoJoin sucesor : alfa.sucesores) {
+                if (sucesor == join) {
+                    return orden;
+                }
+                orden++;
+            }
+        }
+        throw new IllegalArgumentException("El patrón " + patron + " no pertenece a " + regla.getNombre());
+    }
+
+    List<NodoAlfa> nodosAlfa(Plantilla plantilla) {
+        return nodosAlfa.getOrDefault(plantilla, List.of());
+    }
+
+    /**
+     * Compila un hecho literal (sin variables) de alguna de las plantillas del programa
+     */
+    AsercionCompilada compilarHecho(List<?> hecho) {
+        return CompiladorClips.compilarAsercion(hecho, plantillas, variable -> {
+            throw new IllegalArgumentException("Variable ?" + variable + " sin ligar en el hecho " + hecho);
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defrule compilado: cadena de joins del LHS y acciones del RHS
+ */
+public final class Regla {
+
+    private final String nombre;
+    private final int salience;
+    private final int cantidadVariables;
+    final List<NodoJoin> joins = new ArrayList<>();
+    List<Accion> acciones = List.of();
+
+    Regla(String nombre, int salience, int cantidadVariables) {
+        this.nombre = nombre;
+        this.salience = salience;
+        this.cantidadVariables = cantidadVariables;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getSalience() {
+        return salience;
+    }
+
+    public int getCantidadPatrones() {
+        return joins.size();
+    }
+
+    Object[] tokenInicial() {
+        return new Object[cantidadVariables];
+    }
+
+    /**
+     * Acción del RHS de una regla
+     */
+    interface Accion {
+        void ejecutar(SesionClips sesion, Object[] variables);
+    }
+}
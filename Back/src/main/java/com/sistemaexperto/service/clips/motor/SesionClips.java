@@ -0,0 +1,242 @@
+package com.sistemaexperto.service.clips.motor;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Memoria de trabajo de una inferencia. Equivale a un (reset) sobre el programa:
+ * la red es compartida e inmutable, las memorias alfa/beta y la agenda son propias.
+ * No es thread-safe; cada inferencia usa su propia sesión.
+ */
+public final class SesionClips {
+
+    /** Cantidad máxima de reglas disparadas por defecto en un (run) */
+    public static final int LIMITE_DISPAROS = 10_000;
+
+    private final ProgramaClips programa;
+    private final MemoriaAlfa[] memoriasAlfa;
+    private final MemoriaBeta[] memoriasBeta;
+    private final Map<Hecho, Hecho> hechos = new LinkedHashMap<>();
+    private final PriorityQueue<Activacion> agenda = new PriorityQueue<>();
+    private final StringBuilder salida = new StringBuilder();
+    private long proximoId;
+    private long secuenciaActivaciones;
+
+    SesionClips(ProgramaClips programa) {
+        this.programa = programa;
+        this.memoriasAlfa = new MemoriaAlfa[programa.cantidadNodosAlfa()];
+        this.memoriasBeta = new MemoriaBeta[programa.cantidadJoins()];
+    }
+
+    /**
+     * Inserta un hecho escrito con sintaxis CLIPS, por ejemplo (respuesta (caso-id 1) (valor si))
+     */
+    public Hecho insertar(String hecho) {
+        Object expresion = LectorClips.leerUna(hecho);
+        if (!(expresion instanceof List<?> lista)) {
+            throw new IllegalArgumentException("Hecho inválido: " + hecho);
+        }
+        return programa.compilarHecho(lista).insertar(this, new Object[0]);
+    }
+
+    /**
+     * Inserta todos los hechos de un texto, sin copiarlo a un String por hecho.
+     * Igual que una secuencia de (assert): un hecho inválido se informa al
+     * consumidor y los siguientes se insertan igual.
+     *
+     * @return cantidad de hechos leídos (insertados o descartados)
+     */
+    public int insertarTodos(CharSequence hechos, Consumer<IllegalArgumentException> alDescartar) {
+        LectorClips lector = new LectorClips(hechos, "<hechos>");
+        int leidos = 0;
+        Object expresion;
+        while ((expresion = lector.siguiente()) != null) {
+            leidos++;
+            try {
+                if (!(expresion instanceof List<?> lista)) {
+                    throw new IllegalArgumentException("Hecho inválido: " + expresion);
+                }
+                programa.compilarHecho(lista).insertar(this, new Object[0]);
+            } catch (IllegalArgumentException e) {
+                alDescartar.accept(e);
+            }
+        }
+        return leidos;
+    }
+
+    /**
+     * Inserta un hecho de la plantilla dada. Retorna null si ya existía uno idéntico.
+     */
+    Hecho insertar(Plantilla plantilla, Object[] valores) {
+        Hecho nuevo = new Hecho(proximoId + 1, plantilla, valores);
+        if (hechos.putIfAbsent(nuevo, nuevo) != null) {
+            return null;
+        }
+        proximoId++;
+
+        for (NodoAlfa alfa : programa.nodosAlfa(plantilla)) {
+            if (!alfa.acepta(nuevo)) {
+                continue;
+            }
+            memoriaAlfa(alfa).agregar(alfa, nuevo);
+            for (NodoJoin join : alfa.sucesores) {
+                activarDerecha(join, nuevo);
+            }
+        }
+        return nuevo;
+    }
+
+    /**
+     * Dispara reglas hasta vaciar la agenda. Retorna la cantidad de disparos.
+     */
+    public int ejecutar() {
+        return ejecutar(LIMITE_DISPAROS);
+    }
+
+    public int ejecutar(int limite) {
+        int disparos = 0;
+        Activacion activacion;
+        while ((activacion = agenda.poll()) != null) {
+            if (disparos == limite) {
+                throw new IllegalStateException("Se alcanzó el límite de " + limite + " disparos de reglas");
+            }
+            for (Regla.Accion accion : activacion.regla.acciones) {
+                accion.ejecutar(this, activacion.variables);
+            }
+            disparos++;
+        }
+        return disparos;
+    }
+
+    /**
+     * Hechos de la memoria de trabajo en orden de inserción
+     */
+    public List<Hecho> getHechos() {
+        return new ArrayList<>(hechos.keySet());
+    }
+
+    /**
+     * Texto emitido por (printout t ...)
+     */
+    public String getSalida() {
+        return salida.toString();
+    }
+
+    void imprimir(String texto) {
+        salida.append(texto);
+    }
+
+    private void activarDerecha(NodoJoin join, Hecho hecho) {
+        if (join.anterior == null) {
+            propagar(join, join.unir(join.regla.tokenInicial(), hecho));
+            return;
+        }
+        MemoriaBeta izquierda = memoriasBeta[join.anterior.id];
+        if (izquierda == null) {
+            return;
+        }
+        for (Object[] token : izquierda.buscar(join, hecho)) {
+            propagar(join, join.unir(token, hecho));
+        }
+    }
+
+    private void propagar(NodoJoin join, Object[] token) {
+        if (token == null) {
+            return;
+        }
+        NodoJoin siguiente = join.siguiente;
+        if (siguiente == null) {
+            agenda.add(new Activacion(join.regla, token, ++secuenciaActivaciones));
+            return;
+        }
+        MemoriaBeta memoria = memoriasBeta[join.id];
+        if (memoria == null) {
+            memoria = memoriasBeta[join.id] = new MemoriaBeta(siguiente);
+        }
+        memoria.agregar(token);
+
+        MemoriaAlfa derecha = memoriasAlfa[siguiente.alfa.id];
+        if (derecha == null) {
+            return;
+        }
+        for (Hecho hecho : derecha.buscar(siguiente, token)) {
+            propagar(siguiente, siguiente.unir(token, hecho));
+        }
+    }
+
+    private MemoriaAlfa memoriaAlfa(NodoAlfa alfa) {
+        MemoriaAlfa memoria = memoriasAlfa[alfa.id];
+        if (memoria == null) {
+            memoria = memoriasAlfa[alfa.id] = new MemoriaAlfa(alfa.slotsIndexados.length);
+        }
+        return memoria;
+    }
+
+    /**
+     * Hechos que pasaron un nodo alfa, indexados por los slots que usan sus joins
+     */
+    private static final class MemoriaAlfa {
+        final List<Hecho> hechos = new ArrayList<>();
+        final List<Map<Object, List<Hecho>>> indices;
+
+        MemoriaAlfa(int cantidadIndices) {
+            indices = new ArrayList<>(cantidadIndices);
+            for (int i = 0; i < cantidadIndices; i++) {
+                indices.add(new HashMap<>());
+            }
+        }
+
+        void agregar(NodoAlfa alfa, Hecho hecho) {
+            hechos.add(hecho);
+            for (int i = 0; i < indices.size(); i++) {
+                indices.get(i).computeIfAbsent(hecho.valor(alfa.slotsIndexados[i]), k -> new ArrayList<>()).add(hecho);
+            }
+        }
+
+        List<Hecho> buscar(NodoJoin join, Object[] token) {
+            if (join.posicionEnAlfa < 0) {
+                return hechos;
+            }
+            return indices.get(join.posicionEnAlfa).getOrDefault(token[join.variableClave], List.of());
+        }
+    }
+
+    /**
+     * Tokens producidos por un join, indexados por la variable que compara el join siguiente
+     */
+    private static final class MemoriaBeta {
+        final List<Object[]> tokens = new ArrayList<>();
+        final Map<Object, List<Object[]>> indice;
+        final int variableClave;
+
+        MemoriaBeta(NodoJoin siguiente) {
+            variableClave = siguiente.variableClave;
+            indice = siguiente.isIndexado() ? new HashMap<>() : null;
+        }
+
+        void agregar(Object[] token) {
+            if (indice != null) {
+                indice.computeIfAbsent(token[variableClave], k -> new ArrayList<>()).add(token);
+            } else {
+                tokens.add(token);
+            }
+        }
+
+        List<Object[]> buscar(NodoJoin join, Hecho hecho) {
+            return indice != null ? indice.getOrDefault(hecho.valor(join.slotClave), List.of()) : tokens;
+        }
+    }
+
+    /**
+     * Estrategia depth de CLIPS: mayor salience primero y, a igual salience, la más reciente
+     */
+    private record Activacion(Regla regla, Object[] variables, long secuencia)
+            implements Comparable<Activacion> {
+
+        @Override
+        public int compareTo(Activacion otra) {
+            int porSalience = Integer.compare(otra.regla.getSalience(), regla.getSalience());
+            return porSalience != 0 ? porSalience : Long.compare(otra.secuencia, secuencia);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.sistemaexperto.service.clips.motor;
+
+/**
+ * Valor de tipo SYMBOL de CLIPS. Se distingue de STRING: (eq abc "abc") es FALSE.
+ */
+public record Simbolo(String nombre) {
+
+    public static final Simbolo TRUE = new Simbolo("TRUE");
+    public static final Simbolo FALSE = new Simbolo("FALSE");
+    public static final Simbolo NIL = new Simbolo("nil");
+
+    public static Simbolo de(boolean valor) {
+        return valor ? TRUE : FALSE;
+    }
+
+    @Override
+    public String toString() {
+        return nombre;
+    }
+}
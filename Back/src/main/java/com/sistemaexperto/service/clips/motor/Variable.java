@@ -0,0 +1,16 @@
+package com.sistemaexperto.service.clips.motor;
+
+/**
+ * Variable de un patrón (?nombre). El comodín ? se representa con nombre vacío.
+ */
+public record Variable(String nombre) {
+
+    public boolean isComodin() {
+        return nombre.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "?" + nombre;
+    }
+}
@@ -1,14 +1,12 @@
 package com.sistemaexperto.service.mapper;
 
 import com.sistemaexperto.model.*;
-import com.sistemaexperto.model.enums.EstadoCaso;
-import com.sistemaexperto.model.enums.TipoElectrodomestico;
 import org.springframework.stereotype.Component;
 
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -17,66 +15,34 @@ import java.util.stream.Collectors;
 @Component
 public class ClipsMapper {
     
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    /** Plantillas CLIPS de las que clipsFactsToDiagnostico toma datos */
+    public static final Set<String> PLANTILLAS_DIAGNOSTICO = Set.of("diagnostico", "decision", "solucion", "orden-trabajo");
     
     /**
      * Convierte un Caso Java a string de hechos CLIPS
      */
     public String casoToClipsFact(Caso caso) {
-        String estado = mapearEstado(caso.getEstado());
-        String fecha = caso.getFechaCreacion() != null 
-            ? caso.getFechaCreacion().format(DATE_FORMATTER)
-            : "2025-01-01";
-        
-        return String.format(
-            "(caso (id %d) (fecha \"%s\") (cliente \"%s\") " +
-            "(telefono \"%s\") (direccion \"\") (estado %s))",
-            caso.getId(),
-            fecha,
-            escapeString(caso.getClienteNombre() != null ? caso.getClienteNombre() : ""),
-            escapeString(caso.getClienteTelefono() != null ? caso.getClienteTelefono() : ""),
-            estado
-        );
+        StringBuilder hecho = new StringBuilder(160);
+        EscritorHechosClips.escribirDatosCaso(caso, hecho);
+        return sinSalto(hecho);
     }
     
     /**
      * Convierte electrodoméstico a hecho CLIPS
      */
     public String electrodomesticoToClipsFact(Caso caso) {
-        String tipo = mapearTipoElectrodomestico(caso.getTipoElectrodomestico());
-        String enGarantia = "no"; // Por defecto, se puede mejorar
-        
-        return String.format(
-            "(electrodomestico (tipo %s) (marca \"%s\") (modelo \"%s\") " +
-            "(antiguedad %d) (en-garantia %s))",
-            tipo,
-            escapeString(caso.getMarca() != null ? caso.getMarca() : ""),
-            escapeString(caso.getModelo() != null ? caso.getModelo() : ""),
-            caso.getAntiguedad() != null ? caso.getAntiguedad() : 0,
-            enGarantia
-        );
+        StringBuilder hecho = new StringBuilder(128);
+        EscritorHechosClips.escribirElectrodomestico(caso, hecho);
+        return sinSalto(hecho);
     }
     
     /**
      * Convierte síntoma a hecho CLIPS
      */
     public String sintomaToClipsFact(Caso caso) {
-        String gravedad = "media"; // Por defecto
-        if (caso.getSintomaReportado() != null) {
-            String sintoma = caso.getSintomaReportado().toLowerCase();
-            if (sintoma.contains("chispas") || sintoma.contains("incendio")) {
-                gravedad = "critica";
-            } else if (sintoma.contains("no enfría") || sintoma.contains("no funciona")) {
-                gravedad = "alta";
-            }
-        }
-        
-        return String.format(
-            "(sintoma (caso-id %d) (descripcion \"%s\") (gravedad %s))",
-            caso.getId(),
-            escapeString(caso.getSintomaReportado() != null ? caso.getSintomaReportado() : ""),
-            gravedad
-        );
+        StringBuilder hecho = new StringBuilder(128);
+        EscritorHechosClips.escribirSintoma(caso, hecho);
+        return sinSalto(hecho);
     }
     
     /**
@@ -92,17 +58,9 @@ public class ClipsMapper {
      * Convierte una respuesta a hecho CLIPS
      */
     public String respuestaToClipsFact(Respuesta respuesta) {
-        String valor = convertirValorRespuesta(respuesta.getValor());
-        String preguntaId = respuesta.getPreguntaId() != null 
-            ? respuesta.getPreguntaId().toString()
-            : "0";
-        
-        return String.format(
-            "(respuesta (caso-id %d) (pregunta \"%s\") (valor %s))",
-            respuesta.getCaso().getId(),
-            preguntaId,
-            valor
-        );
+        StringBuilder hecho = new StringBuilder(64);
+        EscritorHechosClips.escribirRespuesta(respuesta, hecho);
+        return sinSalto(hecho);
     }
     
     /**
@@ -157,38 +115,6 @@ public class ClipsMapper {
     
     // Métodos auxiliares de mapeo
     
-    private String mapearEstado(EstadoCaso estado) {
-        if (estado == null) return "en-diagnostico";
-        return switch (estado) {
-            case EN_DIAGNOSTICO -> "en-diagnostico";
-            case DIAGNOSTICADO -> "en-diagnostico";
-            case RESUELTO_DIY -> "resuelto-remoto";
-            case REQUIERE_TECNICO -> "requiere-tecnico";
-            case CERRADO -> "cerrado";
-        };
-    }
-    
-    private String mapearTipoElectrodomestico(TipoElectrodomestico tipo) {
-        if (tipo == null) return "heladera";
-        return switch (tipo) {
-            case HELADERA -> "heladera";
-            case LAVARROPAS -> "lavarropas";
-            case MICROONDAS -> "microondas";
-        };
-    }
-    
-    private String convertirValorRespuesta(String valor) {
-        if (valor == null) return "no";
-        String val = valor.toLowerCase().trim();
-        if (val.equals("sí") || val.equals("si") || val.equals("yes") || val.equals("true") || val.equals("1")) {
-            return "si";
-        }
-        if (val.equals("no") || val.equals("not") || val.equals("false") || val.equals("0")) {
-            return "no";
-        }
-        return val;
-    }
-    
     private com.sistemaexperto.model.enums.TipoSolucion mapearTipoSolucion(String tipo) {
         if (tipo == null) return com.sistemaexperto.model.enums.TipoSolucion.TECNICO_COMPLEJO;
         return switch (tipo) {
@@ -211,9 +137,11 @@ public class ClipsMapper {
         };
     }
     
-    private String escapeString(String str) {
-        if (str == null) return "";
-        return str.replace("\"", "\\\"").replace("\n", " ").replace("\r", "");
+    /**
+     * Hecho individual sin el salto de línea con que lo termina el escritor
+     */
+    private static String sinSalto(StringBuilder hecho) {
+        return hecho.substring(0, hecho.length() - 1);
     }
 }
 
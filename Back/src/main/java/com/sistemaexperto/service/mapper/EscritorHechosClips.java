@@ -0,0 +1,317 @@
+package com.sistemaexperto.service.mapper;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Respuesta;
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.service.clips.motor.LectorClips;
+import com.sistemaexperto.service.clips.motor.Simbolo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Escribe los hechos CLIPS de un caso directamente en un buffer reutilizable.
+ * Los nombres de plantillas y slots y los símbolos de los enums son constantes precalculadas,
+ * los números se escriben sin pasar por String y las cadenas sólo se recorren carácter a
+ * carácter cuando tienen algo que escapar: con un buffer ya dimensionado, escribir los hechos
+ * de un caso no crea objetos.
+ *
+ * Cada hecho termina en un salto de línea. Dentro de las cadenas los saltos de línea se
+ * reemplazan por espacios, así cada línea del buffer es exactamente un hecho.
+ *
+ * Los métodos públicos de valores (cadena, fecha, valorRespuesta...) dan lo que CLIPS lee de
+ * cada slot escrito, para las reglas compiladas a Java que no pasan por texto.
+ */
+public final class EscritorHechosClips {
+
+    private static final String FIN = "))\n";
+
+    /** Slots que se escriben siempre con el mismo valor */
+    public static final String DIRECCION = "";
+    public static final String EN_GARANTIA = "no";
+
+    private static final String CASO = "(caso (id ";
+    private static final String CASO_FECHA = ") (fecha \"";
+    private static final String CASO_CLIENTE = "\") (cliente \"";
+    private static final String CASO_TELEFONO = "\") (telefono \"";
+    private static final String CASO_ESTADO = "\") (direccion \"" + DIRECCION + "\") (estado ";
+    private static final String FECHA_POR_DEFECTO = "2025-01-01";
+
+    private static final String ELECTRODOMESTICO = "(electrodomestico (caso-id ";
+    private static final String ELECTRODOMESTICO_TIPO = ") (tipo ";
+    private static final String ELECTRODOMESTICO_MARCA = ") (marca \"";
+    private static final String ELECTRODOMESTICO_MODELO = "\") (modelo \"";
+    private static final String ELECTRODOMESTICO_ANTIGUEDAD = "\") (antiguedad ";
+    private static final String ELECTRODOMESTICO_GARANTIA = ") (en-garantia " + EN_GARANTIA + FIN;
+
+    private static final String SINTOMA = "(sintoma (caso-id ";
+    private static final String SINTOMA_DESCRIPCION = ") (descripcion \"";
+    private static final String SINTOMA_GRAVEDAD = "\") (gravedad ";
+
+    private static final String RESPUESTA = "(respuesta (caso-id ";
+    private static final String RESPUESTA_PREGUNTA = ") (pregunta \"";
+    private static final String RESPUESTA_VALOR = "\") (valor ";
+
+    private static final String SI = "si";
+    private static final String NO = "no";
+    private static final String[] VALORES_SI = {"sí", "si", "yes", "true", "1"};
+    private static final String[] VALORES_NO = {"no", "not", "false", "0"};
+    private static final Simbolo SIMBOLO_SI = new Simbolo(SI);
+    private static final Simbolo SIMBOLO_NO = new Simbolo(NO);
+
+    /** Símbolo CLIPS de cada enum, indexado por ordinal */
+    private static final String[] ESTADOS = simbolos(EstadoCaso.class, EscritorHechosClips::simboloEstado);
+    private static final String[] TIPOS = simbolos(TipoElectrodomestico.class, EscritorHechosClips::simboloTipo);
+
+    private EscritorHechosClips() {
+    }
+
+    /**
+     * Escribe los hechos caso, electrodomestico, sintoma y una respuesta por cada respuesta
+     */
+    public static void escribirCaso(Caso caso, List<Respuesta> respuestas, StringBuilder destino) {
+        escribirDatosCaso(caso, destino);
+        escribirElectrodomestico(caso, destino);
+        escribirSintoma(caso, destino);
+        for (int i = 0; i < respuestas.size(); i++) {
+            escribirRespuesta(respuestas.get(i), destino);
+        }
+    }
+
+    public static void escribirDatosCaso(Caso caso, StringBuilder destino) {
+        destino.append(CASO).append(caso.getId().longValue()).append(CASO_FECHA);
+        escribirFecha(caso.getFechaCreacion(), destino);
+        destino.append(CASO_CLIENTE);
+        escribirCadena(caso.getClienteNombre(), destino);
+        destino.append(CASO_TELEFONO);
+        escribirCadena(caso.getClienteTelefono(), destino);
+        destino.append(CASO_ESTADO)
+            .append(caso.getEstado() != null ? ESTADOS[caso.getEstado().ordinal()] : simboloEstado(null))
+            .append(FIN);
+    }
+
+    public static void escribirElectrodomestico(Caso caso, StringBuilder destino) {
+        TipoElectrodomestico tipo = caso.getTipoElectrodomestico();
+        destino.append(ELECTRODOMESTICO).append(caso.getId().longValue())
+            .append(ELECTRODOMESTICO_TIPO).append(tipo != null ? TIPOS[tipo.ordinal()] : simboloTipo(null))
+            .append(ELECTRODOMESTICO_MARCA);
+        escribirCadena(caso.getMarca(), destino);
+        destino.append(ELECTRODOMESTICO_MODELO);
+        escribirCadena(caso.getModelo(), destino);
+        destino.append(ELECTRODOMESTICO_ANTIGUEDAD).append(antiguedad(caso)).append(ELECTRODOMESTICO_GARANTIA);
+    }
+
+    public static void escribirSintoma(Caso caso, StringBuilder destino) {
+        String sintoma = caso.getSintomaReportado();
+        destino.append(SINTOMA).append(caso.getId().longValue()).append(SINTOMA_DESCRIPCION);
+        escribirCadena(sintoma, destino);
+        destino.append(SINTOMA_GRAVEDAD).append(gravedad(sintoma)).append(FIN);
+    }
+
+    public static void escribirRespuesta(Respuesta respuesta, StringBuilder destino) {
+        destino.append(RESPUESTA).append(respuesta.getCaso().getId().longValue()).append(RESPUESTA_PREGUNTA);
+        if (respuesta.getPreguntaId() != null) {
+            destino.append(respuesta.getPreguntaId().longValue());
+        } else {
+            destino.append('0');
+        }
+        destino.append(RESPUESTA_VALOR);
+        escribirValor(respuesta.getValor(), destino);
+        destino.append(FIN);
+    }
+
+    public static String simboloEstado(EstadoCaso estado) {
+        if (estado == null) return "en-diagnostico";
+        return switch (estado) {
+            case EN_DIAGNOSTICO -> "en-diagnostico";
+            case DIAGNOSTICADO -> "en-diagnostico";
+            case RESUELTO_DIY -> "resuelto-remoto";
+            case REQUIERE_TECNICO -> "requiere-tecnico";
+            case CERRADO -> "cerrado";
+        };
+    }
+
+    public static String simboloTipo(TipoElectrodomestico tipo) {
+        if (tipo == null) return "heladera";
+        return switch (tipo) {
+            case HELADERA -> "heladera";
+            case LAVARROPAS -> "lavarropas";
+            case MICROONDAS -> "microondas";
+        };
+    }
+
+    public static String gravedad(String sintoma) {
+        if (sintoma == null) {
+            return "media";
+        }
+        if (contiene(sintoma, "chispas") || contiene(sintoma, "incendio")) {
+            return "critica";
+        }
+        if (contiene(sintoma, "no enfría") || contiene(sintoma, "no funciona")) {
+            return "alta";
+        }
+        return "media";
+    }
+
+    public static int antiguedad(Caso caso) {
+        return caso.getAntiguedad() != null ? caso.getAntiguedad().intValue() : 0;
+    }
+
+    /**
+     * Contenido de la cadena CLIPS que se escribe para el texto ("" si es null)
+     */
+    public static String cadena(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return requiereEscape(texto, 0, texto.length()) ? texto.replace('\n', ' ').replace("\r", "") : texto;
+    }
+
+    public static String fecha(LocalDateTime fecha) {
+        StringBuilder texto = new StringBuilder(10);
+        escribirFecha(fecha, texto);
+        return texto.toString();
+    }
+
+    /**
+     * Valor CLIPS del slot valor de una respuesta: símbolo, string o número según cómo lo lee CLIPS
+     */
+    public static Object valorRespuesta(String valor) {
+        StringBuilder texto = new StringBuilder(16);
+        escribirValor(valor, texto);
+        if (SI.contentEquals(texto)) {
+            return SIMBOLO_SI;
+        }
+        if (NO.contentEquals(texto)) {
+            return SIMBOLO_NO;
+        }
+        return LectorClips.leerUna(texto.toString());
+    }
+
+    /**
+     * Fecha yyyy-MM-dd sin formatear a un String intermedio
+     */
+    private static void escribirFecha(LocalDateTime fecha, StringBuilder destino) {
+        if (fecha == null) {
+            destino.append(FECHA_POR_DEFECTO);
+            return;
+        }
+        destino.append(fecha.getYear()).append('-');
+        dosDigitos(fecha.getMonthValue(), destino);
+        destino.append('-');
+        dosDigitos(fecha.getDayOfMonth(), destino);
+    }
+
+    private static void dosDigitos(int valor, StringBuilder destino) {
+        destino.append((char) ('0' + valor / 10)).append((char) ('0' + valor % 10));
+    }
+
+    /**
+     * Contenido de una cadena CLIPS (sin comillas). El caso común, sin nada que escapar,
+     * se copia de una vez.
+     */
+    private static void escribirCadena(String texto, StringBuilder destino) {
+        if (texto == null) {
+            return;
+        }
+        if (!requiereEscape(texto, 0, texto.length())) {
+            destino.append(texto);
+            return;
+        }
+        escribirEscapado(texto, 0, texto.length(), false, destino);
+    }
+
+    /**
+     * Valor de una respuesta: si/no para las variantes afirmativas y negativas, el texto en
+     * minúsculas como símbolo si lo es, y entre comillas si no (por ejemplo si tiene espacios)
+     */
+    private static void escribirValor(String valor, StringBuilder destino) {
+        if (valor == null) {
+            destino.append(NO);
+            return;
+        }
+        int inicio = 0;
+        int fin = valor.length();
+        while (inicio < fin && Character.isWhitespace(valor.charAt(inicio))) inicio++;
+        while (fin > inicio && Character.isWhitespace(valor.charAt(fin - 1))) fin--;
+
+        if (coincideAlguno(valor, inicio, fin, VALORES_SI)) {
+            destino.append(SI);
+        } else if (coincideAlguno(valor, inicio, fin, VALORES_NO)) {
+            destino.append(NO);
+        } else if (esSimbolo(valor, inicio, fin)) {
+            for (int i = inicio; i < fin; i++) {
+                destino.append(Character.toLowerCase(valor.charAt(i)));
+            }
+        } else {
+            destino.append('"');
+            escribirEscapado(valor, inicio, fin, true, destino);
+            destino.append('"');
+        }
+    }
+
+    private static void escribirEscapado(String texto, int inicio, int fin, boolean minusculas, StringBuilder destino) {
+        for (int i = inicio; i < fin; i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"', '\\' -> destino.append('\\').append(c);
+                case '\n' -> destino.append(' ');
+                case '\r' -> { }
+                default -> destino.append(minusculas ? Character.toLowerCase(c) : c);
+            }
+        }
+    }
+
+    private static boolean requiereEscape(String texto, int inicio, int fin) {
+        for (int i = inicio; i < fin; i++) {
+            char c = texto.charAt(i);
+            if (c == '"' || c == '\\' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean esSimbolo(String texto, int inicio, int fin) {
+        if (inicio == fin || texto.charAt(inicio) == '?' || texto.charAt(inicio) == '$') {
+            return false;
+        }
+        for (int i = inicio; i < fin; i++) {
+            char c = texto.charAt(i);
+            if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"' || c == ';'
+                    || c == '&' || c == '|' || c == '<' || c == '~' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean coincideAlguno(String texto, int inicio, int fin, String[] candidatos) {
+        for (String candidato : candidatos) {
+            if (candidato.length() == fin - inicio && texto.regionMatches(true, inicio, candidato, 0, fin - inicio)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contiene(String texto, String buscado) {
+        for (int i = 0; i + buscado.length() <= texto.length(); i++) {
+            if (texto.regionMatches(true, i, buscado, 0, buscado.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <E extends Enum<E>> String[] simbolos(Class<E> tipo, Function<E, String> simbolo) {
+        E[] valores = tipo.getEnumConstants();
+        String[] simbolos = new String[valores.length];
+        for (E valor : valores) {
+            simbolos[valor.ordinal()] = simbolo.apply(valor);
+        }
+        return simbolos;
+    }
+}
@@ -0,0 +1,203 @@
+package com.sistemaexperto.service.rules;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Autómata Aho-Corasick sobre las palabras clave de varios grupos (una regla por grupo).
+ * Encuentra en una sola pasada por el texto el primer grupo con alguna palabra presente,
+ * sin importar cuántas palabras o grupos haya.
+ *
+ * Texto y palabras se comparan en minúsculas y con los espacios colapsados a uno solo.
+ * Un '*' dentro de una palabra admite cualquier texto entre sus tramos ("luz*interior").
+ */
+public final class BuscadorPalabrasClave {
+
+    /** Separador de tramos que pueden tener texto entre medio */
+    public static final char COMODIN = '*';
+
+    private static final int NINGUNO = -1;
+
+    /** Caracteres de las palabras clave, ordenados; la columna alfabeto.length es cualquier otro */
+    private final char[] alfabeto;
+    private final int[][] transiciones;
+    /** Tramos reconocidos al llegar a cada estado, incluidos los de sus sufijos */
+    private final int[][] salidas;
+
+    private final int[] palabraDelTramo;
+    private final int[] ordenDelTramo;
+    private final int[] largoDelTramo;
+    private final int[] tramosDePalabra;
+    private final int[] grupoDePalabra;
+    private final boolean hayComodines;
+
+    /**
+     * @param grupos palabras clave de cada grupo; ante varios grupos presentes gana el de menor índice
+     */
+    public BuscadorPalabrasClave(List<? extends Collection<String>> grupos) {
+        List<String> tramos = new ArrayList<>();
+        List<Integer> palabras = new ArrayList<>();
+        List<Integer> ordenes = new ArrayList<>();
+        List<Integer> cantidades = new ArrayList<>();
+        List<Integer> gruposPalabra = new ArrayList<>();
+
+        for (int grupo = 0; grupo < grupos.size(); grupo++) {
+            for (String palabra : grupos.get(grupo)) {
+                List<String> partes = new ArrayList<>();
+                for (String parte : normalizar(palabra).split(Pattern.quote(String.valueOf(COMODIN)))) {
+                    if (!parte.isBlank()) {
+                        partes.add(parte.strip());
+                    }
+                }
+                if (partes.isEmpty()) {
+                    throw new IllegalArgumentException("Palabra clave vacía en el grupo " + grupo);
+                }
+                int indicePalabra = cantidades.size();
+                cantidades.add(partes.size());
+                gruposPalabra.add(grupo);
+                for (int orden = 0; orden < partes.size(); orden++) {
+                    tramos.add(partes.get(orden));
+                    palabras.add(indicePalabra);
+                    ordenes.add(orden);
+                }
+            }
+        }
+
+        this.palabraDelTramo = aArreglo(palabras);
+        this.ordenDelTramo = aArreglo(ordenes);
+        this.largoDelTramo = tramos.stream().mapToInt(String::length).toArray();
+        this.tramosDePalabra = aArreglo(cantidades);
+        this.grupoDePalabra = aArreglo(gruposPalabra);
+        this.hayComodines = cantidades.stream().anyMatch(cantidad -> cantidad > 1);
+
+        // Trie de los tramos
+        List<Map<Character, Integer>> hijos = new ArrayList<>();
+        List<List<Integer>> propias = new ArrayList<>();
+        hijos.add(new HashMap<>());
+        propias.add(new ArrayList<>());
+        SortedSet<Character> caracteres = new TreeSet<>();
+        for (int tramo = 0; tramo < tramos.size(); tramo++) {
+            int estado = 0;
+            for (char c : tramos.get(tramo).toCharArray()) {
+                caracteres.add(c);
+                Integer hijo = hijos.get(estado).get(c);
+                if (hijo == null) {
+                    hijo = hijos.size();
+                    hijos.get(estado).put(c, hijo);
+                    hijos.add(new HashMap<>());
+                    propias.add(new ArrayList<>());
+                }
+                estado = hijo;
+            }
+            propias.get(estado).add(tramo);
+        }
+
+        this.alfabeto = new char[caracteres.size()];
+        int columna = 0;
+        for (char c : caracteres) {
+            alfabeto[columna++] = c;
+        }
+
+        // Autómata determinista: transiciones completas siguiendo los enlaces de falla
+        int simbolos = alfabeto.length + 1;
+        this.transiciones = new int[hijos.size()][simbolos];
+        this.salidas = new int[hijos.size()][];
+        int[] falla = new int[hijos.size()];
+        Deque<Integer> pendientes = new ArrayDeque<>();
+        salidas[0] = aArreglo(propias.get(0));
+        for (int s = 0; s < alfabeto.length; s++) {
+            Integer hijo = hijos.get(0).get(alfabeto[s]);
+            if (hijo != null) {
+                transiciones[0][s] = hijo;
+                pendientes.add(hijo);
+            }
+        }
+        while (!pendientes.isEmpty()) {
+            int estado = pendientes.poll();
+            int[] heredadas = salidas[falla[estado]];
+            int[] todas = Arrays.copyOf(aArreglo(propias.get(estado)), propias.get(estado).size() + heredadas.length);
+            System.arraycopy(heredadas, 0, todas, propias.get(estado).size(), heredadas.length);
+            salidas[estado] = todas;
+
+            for (int s = 0; s < simbolos; s++) {
+                Integer hijo = s < alfabeto.length ? hijos.get(estado).get(alfabeto[s]) : null;
+                if (hijo != null) {
+                    falla[hijo] = transiciones[falla[estado]][s];
+                    transiciones[estado][s] = hijo;
+                    pendientes.add(hijo);
+                } else {
+                    transiciones[estado][s] = transiciones[falla[estado]][s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Índice del primer grupo con alguna palabra clave en el texto, o -1 si no hay ninguno
+     */
+    public int buscarPrimerGrupo(String texto) {
+        if (texto == null) {
+            return NINGUNO;
+        }
+        int mejor = Integer.MAX_VALUE;
+        int[] progreso = hayComodines ? new int[tramosDePalabra.length] : null;
+        int[] finAnterior = hayComodines ? new int[tramosDePalabra.length] : null;
+
+        int estado = 0;
+        int posicion = 0;
+        boolean espacioPrevio = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (espacioPrevio) {
+                    continue;
+                }
+                c = ' ';
+                espacioPrevio = true;
+            } else {
+                c = Character.toLowerCase(c);
+                espacioPrevio = false;
+            }
+            estado = transiciones[estado][columna(c)];
+
+            for (int tramo : salidas[estado]) {
+                int palabra = palabraDelTramo[tramo];
+                int grupo = grupoDePalabra[palabra];
+                if (grupo >= mejor) {
+                    continue;
+                }
+                if (tramosDePalabra[palabra] == 1) {
+                    mejor = grupo;
+                } else if (progreso[palabra] == ordenDelTramo[tramo]
+                        && posicion - largoDelTramo[tramo] + 1 >= finAnterior[palabra]) {
+                    // El tramo más temprano que no se superpone con el anterior
+                    finAnterior[palabra] = posicion + 1;
+                    if (++progreso[palabra] == tramosDePalabra[palabra]) {
+                        mejor = grupo;
+                    }
+                }
+            }
+            if (mejor == 0) {
+                return 0;
+            }
+            posicion++;
+        }
+        return mejor == Integer.MAX_VALUE ? NINGUNO : mejor;
+    }
+
+    private int columna(char c) {
+        int columna = Arrays.binarySearch(alfabeto, c);
+        return columna >= 0 ? columna : alfabeto.length;
+    }
+
+    /**
+     * Minúsculas y espacios colapsados, igual que durante la búsqueda
+     */
+    static String normalizar(String texto) {
+        return texto.strip().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    private static int[] aArreglo(List<Integer> valores) {
+        return valores.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -28,6 +28,13 @@ public interface DiagnosticRule {
      */
     boolean esAplicable(String sintomaReportado);
 
+    /**
+     * Palabras clave del síntoma que hacen aplicable esta regla.
+     * Se comparan en minúsculas y con los espacios colapsados; un '*' admite
+     * cualquier texto entre dos tramos (ver {@link BuscadorPalabrasClave}).
+     */
+    List<String> getPalabrasClave();
+
     /**
      * Obtiene todas las preguntas de esta regla
      */
@@ -48,6 +55,11 @@ public interface DiagnosticRule {
      */
     Diagnostico evaluarDiagnostico(Map<String, Object> respuestas, Caso caso);
 
+    /**
+     * Hipótesis de la regla con sus probabilidades a priori y la evidencia de cada respuesta
+     */
+    ModeloHipotesis getModeloHipotesis();
+
     /**
      * Obtiene el ID string de una pregunta desde su ID numérico
      */
@@ -0,0 +1,71 @@
+package com.sistemaexperto.service.rules;
+
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Índice de reglas por tipo de electrodoméstico.
+ * Las reglas de cada tipo quedan ordenadas por prioridad y sus palabras clave combinadas
+ * en un único autómata, así la selección es una sola pasada por el síntoma.
+ */
+@Component
+public class IndiceReglas {
+
+    private final Map<TipoElectrodomestico, ReglasDelTipo> porTipo = new EnumMap<>(TipoElectrodomestico.class);
+    private final Map<String, DiagnosticRule> porId = new HashMap<>();
+
+    public IndiceReglas(List<DiagnosticRule> reglas) {
+        Map<TipoElectrodomestico, List<DiagnosticRule>> agrupadas = new EnumMap<>(TipoElectrodomestico.class);
+        for (DiagnosticRule regla : reglas) {
+            porId.put(regla.getId(), regla);
+            agrupadas.computeIfAbsent(regla.getTipoElectrodomestico(), tipo -> new ArrayList<>()).add(regla);
+        }
+        agrupadas.forEach((tipo, delTipo) -> {
+            // Orden estable: a igual prioridad se respeta el orden de registro
+            delTipo.sort(Comparator.comparingInt(DiagnosticRule::getPrioridad).reversed());
+            BuscadorPalabrasClave buscador = new BuscadorPalabrasClave(
+                delTipo.stream().map(DiagnosticRule::getPalabrasClave).toList());
+            porTipo.put(tipo, new ReglasDelTipo(List.copyOf(delTipo), buscador));
+        });
+    }
+
+    /**
+     * Regla de mayor prioridad del tipo cuyo síntoma coincide, o null si ninguna coincide
+     */
+    public DiagnosticRule buscar(TipoElectrodomestico tipo, String sintoma) {
+        ReglasDelTipo reglas = tipo != null ? porTipo.get(tipo) : null;
+        if (reglas == null) {
+            return null;
+        }
+        int indice = reglas.buscador().buscarPrimerGrupo(sintoma);
+        return indice >= 0 ? reglas.porPrioridad().get(indice) : null;
+    }
+
+    /**
+     * Regla de mayor prioridad del tipo, o null si no hay reglas para el tipo
+     */
+    public DiagnosticRule principal(TipoElectrodomestico tipo) {
+        ReglasDelTipo reglas = tipo != null ? porTipo.get(tipo) : null;
+        return reglas != null ? reglas.porPrioridad().get(0) : null;
+    }
+
+    /**
+     * Reglas del tipo ordenadas por prioridad descendente
+     */
+    public List<DiagnosticRule> getReglas(TipoElectrodomestico tipo) {
+        ReglasDelTipo reglas = tipo != null ? porTipo.get(tipo) : null;
+        return reglas != null ? reglas.porPrioridad() : List.of();
+    }
+
+    /**
+     * Regla con ese id, o null si no existe
+     */
+    public DiagnosticRule porId(String id) {
+        return porId.get(id);
+    }
+
+    private record ReglasDelTipo(List<DiagnosticRule> porPrioridad, BuscadorPalabrasClave buscador) {
+    }
+}
@@ -0,0 +1,171 @@
+package com.sistemaexperto.service.rules;
+
+import java.util.*;
+
+/**
+ * Modelo probabilístico de las hipótesis de una regla.
+ * Cada hipótesis tiene una probabilidad a priori y cada respuesta (pregunta, valor)
+ * declarada una verosimilitud P(respuesta | hipótesis). Las verosimilitudes se compilan
+ * en una única tabla de doubles, una fila por respuesta, así actualizar la posterior es
+ * un producto y una normalización sobre arreglos sin crear objetos.
+ *
+ * Las respuestas sin fila declarada no aportan evidencia (no cambian la posterior).
+ */
+public final class ModeloHipotesis {
+
+    /** Modelo sin hipótesis, para reglas que no las declaran */
+    public static final ModeloHipotesis VACIO = new ModeloHipotesis(List.of(), List.of());
+
+    private static final int SIN_FILA = -1;
+
+    private final String[] descripciones;
+    private final double[] priors;
+    private final Map<String, Integer> indicePregunta;
+    private final String[] preguntas;
+    /** Respuestas con evidencia de cada pregunta y el inicio de su fila en la tabla */
+    private final Object[][] respuestas;
+    private final int[][] filas;
+    private final double[] tabla;
+
+    ModeloHipotesis(List<HipotesisDefinida> hipotesis, List<EvidenciaDefinida> evidencias) {
+        int cantidad = hipotesis.size();
+        this.descripciones = hipotesis.stream().map(HipotesisDefinida::descripcion).toArray(String[]::new);
+        this.priors = new double[cantidad];
+        double total = 0;
+        for (int i = 0; i < cantidad; i++) {
+            double prior = hipotesis.get(i).prior();
+            if (!(prior > 0)) {
+                throw new IllegalStateException("Probabilidad a priori no positiva: " + descripciones[i]);
+            }
+            priors[i] = prior;
+            total += prior;
+        }
+        for (int i = 0; i < cantidad; i++) {
+            priors[i] /= total;
+        }
+
+        // Agrupar las filas por pregunta, respetando el orden de declaración
+        Map<String, List<EvidenciaDefinida>> porPregunta = new LinkedHashMap<>();
+        for (EvidenciaDefinida evidencia : evidencias) {
+            if (evidencia.verosimilitudes().length != cantidad) {
+                throw new IllegalStateException("La evidencia de " + evidencia.preguntaId() + " = " + evidencia.respuesta()
+                    + " tiene " + evidencia.verosimilitudes().length + " valores para " + cantidad + " hipótesis");
+            }
+            for (double p : evidencia.verosimilitudes()) {
+                if (!(p > 0 && p <= 1)) {
+                    throw new IllegalStateException("Verosimilitud fuera de (0, 1] en " + evidencia.preguntaId() + ": " + p);
+                }
+            }
+            porPregunta.computeIfAbsent(evidencia.preguntaId(), id -> new ArrayList<>()).add(evidencia);
+        }
+
+        int cantidadPreguntas = porPregunta.size();
+        this.preguntas = porPregunta.keySet().toArray(new String[0]);
+        this.respuestas = new Object[cantidadPreguntas][];
+        this.filas = new int[cantidadPreguntas][];
+        this.tabla = new double[evidencias.size() * cantidad];
+        Map<String, Integer> indices = new HashMap<>();
+        int fila = 0;
+        for (int q = 0; q < cantidadPreguntas; q++) {
+            List<EvidenciaDefinida> delaPregunta = porPregunta.get(preguntas[q]);
+            indices.put(preguntas[q], q);
+            respuestas[q] = new Object[delaPregunta.size()];
+            filas[q] = new int[delaPregunta.size()];
+            for (int r = 0; r < delaPregunta.size(); r++) {
+                EvidenciaDefinida evidencia = delaPregunta.get(r);
+                if (Arrays.asList(respuestas[q]).subList(0, r).contains(evidencia.respuesta())) {
+                    throw new IllegalStateException("Evidencia duplicada: " + preguntas[q] + " = " + evidencia.respuesta());
+                }
+                respuestas[q][r] = evidencia.respuesta();
+                filas[q][r] = fila * cantidad;
+                System.arraycopy(evidencia.verosimilitudes(), 0, tabla, fila * cantidad, cantidad);
+                fila++;
+            }
+        }
+        this.indicePregunta = Map.copyOf(indices);
+    }
+
+    public int getCantidad() {
+        return descripciones.length;
+    }
+
+    public String getDescripcion(int hipotesis) {
+        return descripciones[hipotesis];
+    }
+
+    /**
+     * Nuevo arreglo con las probabilidades a priori (normalizadas)
+     */
+    public double[] crearPriors() {
+        return priors.clone();
+    }
+
+    /**
+     * Aplica la evidencia de una respuesta a la posterior y la renormaliza.
+     * Retorna false si la respuesta no tiene evidencia declarada.
+     */
+    public boolean actualizar(double[] posterior, String preguntaId, Object respuesta) {
+        int fila = fila(preguntaId, respuesta);
+        if (fila == SIN_FILA) {
+            return false;
+        }
+        multiplicar(posterior, fila);
+        normalizar(posterior);
+        return true;
+    }
+
+    /**
+     * Recalcula la posterior desde los priors con todas las respuestas dadas
+     */
+    public void calcular(Map<String, Object> respuestasDadas, double[] posterior) {
+        System.arraycopy(priors, 0, posterior, 0, priors.length);
+        for (String pregunta : preguntas) {
+            Object respuesta = respuestasDadas.get(pregunta);
+            if (respuesta != null) {
+                int fila = fila(pregunta, respuesta);
+                if (fila != SIN_FILA) {
+                    multiplicar(posterior, fila);
+                }
+            }
+        }
+        normalizar(posterior);
+    }
+
+    private int fila(String preguntaId, Object respuesta) {
+        Integer q = indicePregunta.get(preguntaId);
+        if (q == null) {
+            return SIN_FILA;
+        }
+        Object[] delaPregunta = respuestas[q];
+        for (int r = 0; r < delaPregunta.length; r++) {
+            if (delaPregunta[r].equals(respuesta)) {
+                return filas[q][r];
+            }
+        }
+        return SIN_FILA;
+    }
+
+    private void multiplicar(double[] posterior, int fila) {
+        for (int i = 0; i < posterior.length; i++) {
+            posterior[i] *= tabla[fila + i];
+        }
+    }
+
+    private static void normalizar(double[] posterior) {
+        double total = 0;
+        for (double p : posterior) {
+            total += p;
+        }
+        if (total > 0) {
+            for (int i = 0; i < posterior.length; i++) {
+                posterior[i] /= total;
+            }
+        }
+    }
+
+    record HipotesisDefinida(String descripcion, double prior) {
+    }
+
+    record EvidenciaDefinida(String preguntaId, Object respuesta, double[] verosimilitudes) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.sistemaexperto.service.rules;
+
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.model.enums.TipoSolucion;
+import com.sistemaexperto.model.enums.Urgencia;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diagnóstico inmutable de una hoja del árbol de decisión.
+ * Se comparte entre todas las evaluaciones; sólo se copia a una entidad
+ * Diagnostico cuando hay que persistirlo.
+ */
+@Value
+@Builder
+public class PlantillaDiagnostico {
+
+    String causaProbable;
+    Integer probabilidad;
+    String componenteAfectado;
+    Boolean requiereTecnico;
+    TipoSolucion tipoSolucion;
+    Urgencia urgencia;
+    Double costoEstimadoMin;
+    Double costoEstimadoMax;
+    Integer tiempoEstimado;
+
+    @Singular("instruccionDiy")
+    List<String> instruccionesDiy;
+
+    @Singular("alertaSeguridad")
+    List<String> alertasSeguridad;
+
+    @Singular("repuestoProbable")
+    List<String> repuestosProbables;
+
+    @Singular("mensajeCliente")
+    List<String> mensajesCliente;
+
+    Boolean generarOrdenTrabajo;
+    String prioridadOT;
+
+    /**
+     * Plantilla con los datos de un diagnóstico ya calculado (sin id ni caso)
+     */
+    public static PlantillaDiagnostico de(Diagnostico diagnostico) {
+        return PlantillaDiagnostico.builder()
+            .causaProbable(diagnostico.getCausaProbable())
+            .probabilidad(diagnostico.getProbabilidad())
+            .componenteAfectado(diagnostico.getComponenteAfectado())
+            .requiereTecnico(diagnostico.getRequiereTecnico())
+            .tipoSolucion(diagnostico.getTipoSolucion())
+            .urgencia(diagnostico.getUrgencia())
+            .costoEstimadoMin(diagnostico.getCostoEstimadoMin())
+            .costoEstimadoMax(diagnostico.getCostoEstimadoMax())
+            .tiempoEstimado(diagnostico.getTiempoEstimado())
+            .instruccionesDiy(noNula(diagnostico.getInstruccionesDiy()))
+            .alertasSeguridad(noNula(diagnostico.getAlertasSeguridad()))
+            .repuestosProbables(noNula(diagnostico.getRepuestosProbables()))
+            .mensajesCliente(noNula(diagnostico.getMensajesCliente()))
+            .generarOrdenTrabajo(diagnostico.getGenerarOrdenTrabajo())
+            .prioridadOT(diagnostico.getPrioridadOT())
+            .build();
+    }
+
+    private static List<String> noNula(List<String> lista) {
+        return lista != null ? lista : List.of();
+    }
+
+    /**
+     * Crea una entidad Diagnostico nueva con los datos de la plantilla
+     */
+    public Diagnostico crearDiagnostico() {
+        return Diagnostico.builder()
+            .causaProbable(causaProbable)
+            .probabilidad(probabilidad)
+            .componenteAfectado(componenteAfectado)
+            .requiereTecnico(requiereTecnico)
+            .tipoSolucion(tipoSolucion)
+            .urgencia(urgencia)
+            .costoEstimadoMin(costoEstimadoMin)
+            .costoEstimadoMax(costoEstimadoMax)
+            .tiempoEstimado(tiempoEstimado)
+            .instruccionesDiy(new ArrayList<>(instruccionesDiy))
+            .alertasSeguridad(new ArrayList<>(alertasSeguridad))
+            .repuestosProbables(new ArrayList<>(repuestosProbables))
+            .mensajesCliente(new ArrayList<>(mensajesCliente))
+            .generarOrdenTrabajo(generarOrdenTrabajo)
+            .prioridadOT(prioridadOT)
+            .build();
+    }
+}
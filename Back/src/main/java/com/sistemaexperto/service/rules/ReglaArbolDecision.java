@@ -0,0 +1,520 @@
+package com.sistemaexperto.service.rules;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.model.Pregunta;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Regla de diagnóstico definida como árbol de decisión.
+ * La definición se compila una sola vez al construir la regla: las preguntas quedan en
+ * un arreglo indexado, las transiciones del wizard en tablas por índice y el diagnóstico
+ * en un DAG inmutable cuyas hojas son plantillas compartidas. Navegar y evaluar no
+ * crea objetos.
+ *
+ * El árbol además se precalcula en una tabla con una entrada por combinación de respuestas:
+ * cada pregunta aporta un dígito (0 si no está respondida o la respuesta no es ninguna de las
+ * que el árbol distingue, 1..n según la respuesta) y el número formado es el índice, sin
+ * colisiones. Evaluar es calcular el índice y leer la entrada; sólo los nodos que dependen de
+ * datos del caso (antigüedad, etc.) se resuelven después. Al construir la regla se recorren
+ * todos los caminos del wizard con {@link #getSiguientePregunta} y se verifica que la tabla
+ * coincide con el recorrido del árbol en cada uno.
+ */
+@Slf4j
+public abstract class ReglaArbolDecision implements DiagnosticRule {
+
+    /** Destino de una transición que termina el wizard */
+    private static final int FIN = -1;
+
+    /** Cantidad máxima de entradas de la tabla; con más combinaciones se recorre el árbol */
+    private static final int MAXIMO_TABLA = 1 << 16;
+
+    /** Respuesta que ni el árbol ni las transiciones distinguen, para recorrer los caminos del wizard */
+    private static final Object OTRA_RESPUESTA = new Object();
+
+    private final String prefijoIds;
+    private final List<String> palabrasClave;
+    private final BuscadorPalabrasClave buscador;
+    private final Pregunta[] preguntas;
+    private final List<Pregunta> listaPreguntas;
+    private final Map<String, Integer> indicePorId;
+    private final Map<Long, String> idPorNumero;
+    private final Transicion[] transiciones;
+    private final Nodo raiz;
+    private final ModeloHipotesis modeloHipotesis;
+
+    /** Preguntas que el árbol distingue y, por cada una, las respuestas que distingue */
+    private final String[] idsTabla;
+    private final Object[][] dominios;
+    /** Nodo alcanzado por cada combinación: una hoja, o el primer nodo que depende del caso */
+    private final Nodo[] tabla;
+
+    protected ReglaArbolDecision(Definicion definicion) {
+        int cantidad = definicion.ids.size();
+        if (cantidad == 0 || definicion.raiz == null) {
+            throw new IllegalStateException("La regla debe definir preguntas y un árbol de diagnóstico");
+        }
+        this.prefijoIds = definicion.prefijoIds;
+        this.palabrasClave = List.copyOf(definicion.palabrasClave);
+        this.buscador = new BuscadorPalabrasClave(List.of(palabrasClave));
+        this.preguntas = definicion.preguntas.toArray(new Pregunta[0]);
+        this.listaPreguntas = List.of(preguntas);
+        this.indicePorId = Map.copyOf(definicion.indices);
+
+        Map<Long, String> numeros = new HashMap<>();
+        for (int i = 0; i < cantidad; i++) {
+            numeros.put(preguntas[i].getId(), definicion.ids.get(i));
+        }
+        this.idPorNumero = Map.copyOf(numeros);
+
+        this.transiciones = new Transicion[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            transiciones[i] = definicion.transiciones.get(i).compilar(this::indice);
+        }
+
+        validar(definicion.raiz, Collections.newSetFromMap(new IdentityHashMap<>()));
+        this.raiz = definicion.raiz;
+
+        for (ModeloHipotesis.EvidenciaDefinida evidencia : definicion.evidencias) {
+            indice(evidencia.preguntaId());
+        }
+        this.modeloHipotesis = new ModeloHipotesis(definicion.hipotesis, definicion.evidencias);
+
+        // Sólo las respuestas que el árbol distingue: cualquier otra lleva a la misma rama que no responder
+        Map<String, Set<Object>> distinguidas = new LinkedHashMap<>();
+        for (String id : definicion.ids) {
+            distinguidas.put(id, new LinkedHashSet<>());
+        }
+        recolectarRespuestas(raiz, distinguidas, Collections.newSetFromMap(new IdentityHashMap<>()));
+        distinguidas.values().removeIf(Set::isEmpty);
+        this.idsTabla = distinguidas.keySet().toArray(new String[0]);
+        this.dominios = distinguidas.values().stream().map(Set::toArray).toArray(Object[][]::new);
+        this.tabla = construirTabla();
+        if (tabla != null) {
+            int caminos = verificarTabla(0, new HashMap<>());
+            log.info("Regla {}: tabla de {} combinaciones verificada en {} caminos del wizard",
+                getClass().getSimpleName(), tabla.length, caminos);
+        }
+    }
+
+    /**
+     * Plantilla de la hoja que corresponde a las respuestas dadas
+     */
+    public PlantillaDiagnostico evaluar(Map<String, Object> respuestas, Caso caso) {
+        Nodo nodo = tabla != null ? tabla[indiceTabla(respuestas)] : raiz;
+        while (nodo.plantilla == null) {
+            nodo = nodo.elegir(respuestas, caso);
+        }
+        return nodo.plantilla;
+    }
+
+    @Override
+    public Diagnostico evaluarDiagnostico(Map<String, Object> respuestas, Caso caso) {
+        return evaluar(respuestas, caso).crearDiagnostico();
+    }
+
+    @Override
+    public boolean esAplicable(String sintomaReportado) {
+        return buscador.buscarPrimerGrupo(sintomaReportado) == 0;
+    }
+
+    @Override
+    public List<String> getPalabrasClave() {
+        return palabrasClave;
+    }
+
+    @Override
+    public ModeloHipotesis getModeloHipotesis() {
+        return modeloHipotesis;
+    }
+
+    @Override
+    public List<Pregunta> getPreguntas() {
+        return listaPreguntas;
+    }
+
+    @Override
+    public Pregunta getPrimeraPregunta() {
+        return preguntas[0];
+    }
+
+    @Override
+    public Pregunta getSiguientePregunta(String preguntaActualId, Object respuesta, Map<String, Object> todasLasRespuestas) {
+        Integer indice = indicePorId.get(preguntaActualId);
+        if (indice == null) {
+            return null;
+        }
+        int destino = transiciones[indice].destino(respuesta);
+        return destino == FIN ? null : preguntas[destino];
+    }
+
+    @Override
+    public String getPreguntaIdString(Long preguntaIdNumerico) {
+        String id = idPorNumero.get(preguntaIdNumerico);
+        return id != null ? id : prefijoIds + preguntaIdNumerico;
+    }
+
+    private int indice(String preguntaId) {
+        if (preguntaId == null) {
+            return FIN;
+        }
+        Integer indice = indicePorId.get(preguntaId);
+        if (indice == null) {
+            throw new IllegalStateException("Pregunta desconocida en la regla " + getClass().getSimpleName() + ": " + preguntaId);
+        }
+        return indice;
+    }
+
+    // ========== Tabla de combinaciones ==========
+
+    private int indiceTabla(Map<String, Object> respuestas) {
+        int indice = 0;
+        for (int i = 0; i < idsTabla.length; i++) {
+            indice = indice * (dominios[i].length + 1) + digito(i, respuestas.get(idsTabla[i]));
+        }
+        return indice;
+    }
+
+    private int digito(int pregunta, Object respuesta) {
+        if (respuesta != null) {
+            Object[] dominio = dominios[pregunta];
+            for (int j = 0; j < dominio.length; j++) {
+                if (dominio[j] == respuesta || dominio[j].equals(respuesta)) {
+                    return j + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Resuelve el árbol para cada combinación de dígitos, o null si son demasiadas
+     */
+    private Nodo[] construirTabla() {
+        long tamanio = 1;
+        for (Object[] dominio : dominios) {
+            tamanio *= dominio.length + 1;
+            if (tamanio > MAXIMO_TABLA) {
+                log.info("Regla {}: demasiadas combinaciones de respuestas, se evalúa recorriendo el árbol",
+                    getClass().getSimpleName());
+                return null;
+            }
+        }
+
+        Nodo[] entradas = new Nodo[(int) tamanio];
+        Map<String, Object> respuestas = new HashMap<>();
+        for (int indice = 0; indice < entradas.length; indice++) {
+            int resto = indice;
+            for (int i = idsTabla.length - 1; i >= 0; i--) {
+                int radix = dominios[i].length + 1;
+                int digito = resto % radix;
+                resto /= radix;
+                respuestas.put(idsTabla[i], digito == 0 ? null : dominios[i][digito - 1]);
+            }
+            entradas[indice] = recorrerHastaCaso(respuestas);
+        }
+        return entradas;
+    }
+
+    /**
+     * Recorre el árbol hasta una hoja o hasta el primer nodo que depende de datos del caso
+     */
+    private Nodo recorrerHastaCaso(Map<String, Object> respuestas) {
+        Nodo nodo = raiz;
+        while (nodo.plantilla == null && nodo.condicion == null) {
+            nodo = nodo.elegir(respuestas, null);
+        }
+        return nodo;
+    }
+
+    /**
+     * Recorre todos los caminos del wizard desde la pregunta dada y verifica que la tabla
+     * da el mismo nodo que el árbol al final de cada uno. Retorna la cantidad de caminos.
+     */
+    private int verificarTabla(int pregunta, Map<String, Object> respuestas) {
+        String id = pregunta == FIN ? null : idPorNumero.get(preguntas[pregunta].getId());
+        // Un camino termina al no haber más preguntas o al volver a una ya respondida
+        if (id == null || respuestas.containsKey(id)) {
+            if (tabla[indiceTabla(respuestas)] != recorrerHastaCaso(respuestas)) {
+                throw new IllegalStateException("La tabla de la regla " + getClass().getSimpleName()
+                    + " no coincide con el árbol para las respuestas " + respuestas);
+            }
+            return 1;
+        }
+
+        int caminos = 0;
+        for (Object respuesta : respuestasPosibles(pregunta, id)) {
+            respuestas.put(id, respuesta);
+            Pregunta siguiente = getSiguientePregunta(id, respuesta, respuestas);
+            caminos += verificarTabla(siguiente == null ? FIN : indicePorId.get(idPorNumero.get(siguiente.getId())),
+                respuestas);
+            respuestas.remove(id);
+        }
+        return caminos;
+    }
+
+    /**
+     * Respuestas que distinguen el árbol y las transiciones, las opciones de la pregunta
+     * y una respuesta cualquiera
+     */
+    private Collection<Object> respuestasPosibles(int pregunta, String id) {
+        Set<Object> posibles = new LinkedHashSet<>(Arrays.asList(transiciones[pregunta].respuestas()));
+        for (int i = 0; i < idsTabla.length; i++) {
+            if (idsTabla[i].equals(id)) {
+                posibles.addAll(List.of(dominios[i]));
+            }
+        }
+        Pregunta definida = preguntas[pregunta];
+        if (definida.getTipo() == Pregunta.TipoPregunta.SI_NO) {
+            posibles.addAll(List.of(true, false));
+        } else if (definida.getOpciones() != null) {
+            posibles.addAll(definida.getOpciones());
+        }
+        posibles.add(OTRA_RESPUESTA);
+        return posibles;
+    }
+
+    private static void recolectarRespuestas(Nodo nodo, Map<String, Set<Object>> distinguidas, Set<Nodo> visitados) {
+        if (!visitados.add(nodo) || nodo.plantilla != null) {
+            return;
+        }
+        if (nodo.pregunta != null) {
+            distinguidas.get(nodo.pregunta).addAll(List.of(nodo.respuestas));
+        }
+        for (Nodo destino : nodo.destinos) {
+            recolectarRespuestas(destino, distinguidas, visitados);
+        }
+        recolectarRespuestas(nodo.porDefecto, distinguidas, visitados);
+    }
+
+    private void validar(Nodo nodo, Set<Nodo> visitados) {
+        if (!visitados.add(nodo) || nodo.plantilla != null) {
+            return;
+        }
+        if (nodo.pregunta != null) {
+            indice(nodo.pregunta);
+        }
+        for (Nodo destino : nodo.destinos) {
+            validar(destino, visitados);
+        }
+        validar(nodo.porDefecto, visitados);
+    }
+
+    // ========== Construcción del árbol ==========
+
+    /**
+     * Hoja del árbol con el diagnóstico resultante
+     */
+    protected static Nodo hoja(PlantillaDiagnostico plantilla) {
+        return new Nodo(null, null, new Object[0], new Nodo[0], null, Objects.requireNonNull(plantilla));
+    }
+
+    /**
+     * Nodo que ramifica según la respuesta a una pregunta
+     */
+    protected static Rama segun(String preguntaId) {
+        return new Rama(preguntaId);
+    }
+
+    /**
+     * Nodo que ramifica según un dato del caso (antigüedad, modelo, etc.)
+     */
+    protected static Nodo segunCaso(Predicate<Caso> condicion, Nodo siCumple, Nodo siNo) {
+        return new Nodo(null, condicion, new Object[0], new Nodo[]{siCumple}, siNo, null);
+    }
+
+    /**
+     * Preguntas, transiciones del wizard y árbol de diagnóstico de una regla
+     */
+    public static final class Definicion {
+        private final String prefijoIds;
+        private final List<String> palabrasClave = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<Pregunta> preguntas = new ArrayList<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<TransicionDefinida> transiciones = new ArrayList<>();
+        private final List<ModeloHipotesis.HipotesisDefinida> hipotesis = new ArrayList<>();
+        private final List<ModeloHipotesis.EvidenciaDefinida> evidencias = new ArrayList<>();
+        private Nodo raiz;
+
+        /**
+         * @param prefijoIds prefijo del id string para preguntas numéricas que la regla no define
+         */
+        public Definicion(String prefijoIds) {
+            this.prefijoIds = prefijoIds;
+        }
+
+        /**
+         * Palabras clave del síntoma que hacen aplicable la regla
+         */
+        public Definicion palabrasClave(String... palabras) {
+            palabrasClave.addAll(List.of(palabras));
+            return this;
+        }
+
+        /**
+         * Agrega una pregunta. La primera agregada es la primera del wizard y,
+         * salvo que se indique otra cosa, cada pregunta termina el wizard.
+         */
+        public Definicion pregunta(String id, Pregunta pregunta) {
+            if (indices.putIfAbsent(id, ids.size()) != null) {
+                throw new IllegalStateException("Pregunta duplicada: " + id);
+            }
+            ids.add(id);
+            preguntas.add(pregunta);
+            transiciones.add(new TransicionDefinida());
+            return this;
+        }
+
+        /**
+         * Pregunta siguiente para cualquier respuesta sin transición propia (null termina)
+         */
+        public Definicion siguiente(String desde, String hacia) {
+            transicion(desde).porDefecto = hacia;
+            return this;
+        }
+
+        /**
+         * Pregunta siguiente cuando la respuesta es igual a la indicada (null termina)
+         */
+        public Definicion siguiente(String desde, Object respuesta, String hacia) {
+            TransicionDefinida transicion = transicion(desde);
+            transicion.respuestas.add(respuesta);
+            transicion.destinos.add(hacia);
+            return this;
+        }
+
+        /**
+         * Agrega una hipótesis con su probabilidad a priori (se normalizan entre todas)
+         */
+        public Definicion hipotesis(String descripcion, double prior) {
+            hipotesis.add(new ModeloHipotesis.HipotesisDefinida(descripcion, prior));
+            return this;
+        }
+
+        /**
+         * P(respuesta | hipótesis) para cada hipótesis, en el orden en que se agregaron
+         */
+        public Definicion evidencia(String preguntaId, Object respuesta, double... verosimilitudes) {
+            evidencias.add(new ModeloHipotesis.EvidenciaDefinida(preguntaId, respuesta, verosimilitudes.clone()));
+            return this;
+        }
+
+        /**
+         * Evidencia de una pregunta sí/no: P(sí | hipótesis) y su complemento para el no
+         */
+        public Definicion evidenciaSiNo(String preguntaId, double... siVerosimilitudes) {
+            double[] no = new double[siVerosimilitudes.length];
+            for (int i = 0; i < no.length; i++) {
+                no[i] = 1 - siVerosimilitudes[i];
+            }
+            return evidencia(preguntaId, true, siVerosimilitudes).evidencia(preguntaId, false, no);
+        }
+
+        /**
+         * Raíz del árbol de diagnóstico
+         */
+        public Definicion arbol(Nodo raiz) {
+            this.raiz = raiz;
+            return this;
+        }
+
+        private TransicionDefinida transicion(String desde) {
+            Integer indice = indices.get(desde);
+            if (indice == null) {
+                throw new IllegalStateException("Pregunta desconocida: " + desde);
+            }
+            return transiciones.get(indice);
+        }
+    }
+
+    /**
+     * Nodo inmutable del árbol de diagnóstico
+     */
+    public static final class Nodo {
+        private final String pregunta;
+        private final Predicate<Caso> condicion;
+        private final Object[] respuestas;
+        private final Nodo[] destinos;
+        private final Nodo porDefecto;
+        private final PlantillaDiagnostico plantilla;
+
+        private Nodo(String pregunta, Predicate<Caso> condicion, Object[] respuestas, Nodo[] destinos,
+                     Nodo porDefecto, PlantillaDiagnostico plantilla) {
+            this.pregunta = pregunta;
+            this.condicion = condicion;
+            this.respuestas = respuestas;
+            this.destinos = destinos;
+            this.porDefecto = porDefecto;
+            this.plantilla = plantilla;
+        }
+
+        private Nodo elegir(Map<String, Object> respuestasCaso, Caso caso) {
+            if (condicion != null) {
+                return condicion.test(caso) ? destinos[0] : porDefecto;
+            }
+            Object respuesta = respuestasCaso.get(pregunta);
+            for (int i = 0; i < respuestas.length; i++) {
+                if (respuestas[i].equals(respuesta)) {
+                    return destinos[i];
+                }
+            }
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Ramas de un nodo por pregunta. Las respuestas no listadas van a la rama sino,
+     * incluida la pregunta sin responder.
+     */
+    public static final class Rama {
+        private final String pregunta;
+        private final List<Object> respuestas = new ArrayList<>();
+        private final List<Nodo> destinos = new ArrayList<>();
+
+        private Rama(String pregunta) {
+            this.pregunta = pregunta;
+        }
+
+        public Rama cuando(Object respuesta, Nodo destino) {
+            respuestas.add(Objects.requireNonNull(respuesta));
+            destinos.add(Objects.requireNonNull(destino));
+            return this;
+        }
+
+        public Nodo sino(Nodo destino) {
+            return new Nodo(pregunta, null, respuestas.toArray(), destinos.toArray(new Nodo[0]),
+                Objects.requireNonNull(destino), null);
+        }
+    }
+
+    private static final class TransicionDefinida {
+        final List<Object> respuestas = new ArrayList<>();
+        final List<String> destinos = new ArrayList<>();
+        String porDefecto;
+
+        Transicion compilar(ToIntFunction<String> indice) {
+            int[] indices = destinos.stream().mapToInt(indice).toArray();
+            return new Transicion(respuestas.toArray(), indices, indice.applyAsInt(porDefecto));
+        }
+    }
+
+    /**
+     * Transiciones de una pregunta: destino por respuesta y destino por defecto
+     */
+    private record Transicion(Object[] respuestas, int[] destinos, int porDefecto) {
+
+        int destino(Object respuesta) {
+            for (int i = 0; i < respuestas.length; i++) {
+                if (Objects.equals(respuestas[i], respuesta)) {
+                    return destinos[i];
+                }
+            }
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sistemaexperto.service.session;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Otra instancia modificó la sesión del caso mientras se procesaba el paso.
+ * Se responde 409 para que el cliente reintente con el estado actual.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictoSesionException extends OptimisticLockingFailureException {
+
+    public ConflictoSesionException(Long casoId) {
+        super("La sesión del caso " + casoId + " fue modificada por otra instancia");
+    }
+}
@@ -0,0 +1,151 @@
+package com.sistemaexperto.service.session;
+
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.IndiceReglas;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato binario de una sesión, compartido por los snapshots y el almacén JDBC.
+ * Textos con largo + UTF-8, respuestas con una marca de tipo y probabilidades como doubles.
+ * Cada registro empieza con un byte de formato: un cambio de campos usa otro valor, y un
+ * registro de formato desconocido se rechaza en lugar de leerse corrido.
+ */
+final class FormatoSesion {
+
+    /** Formato de los registros que se escriben */
+    static final byte FORMATO = 1;
+
+    private static final byte NULO = 0;
+    private static final byte BOOLEANO = 1;
+    private static final byte ENTERO = 2;
+    private static final byte TEXTO = 3;
+
+    private FormatoSesion() {
+    }
+
+    /**
+     * Escribe la sesión; el llamador debe tener tomado el lock de la sesión
+     */
+    static void escribir(DataOutputStream salida, SesionDiagnostico sesion) throws IOException {
+        salida.writeByte(FORMATO);
+        salida.writeLong(sesion.getCasoId());
+        escribirTexto(salida, sesion.getRegla().getId());
+        escribirTexto(salida, sesion.getUltimaPregunta());
+        salida.writeLong(sesion.getUltimaRespuestaId());
+
+        salida.writeInt(sesion.getRespuestas().size());
+        for (Map.Entry<String, Object> respuesta : sesion.getRespuestas().entrySet()) {
+            escribirTexto(salida, respuesta.getKey());
+            Object valor = respuesta.getValue();
+            if (valor instanceof Boolean booleano) {
+                salida.writeByte(BOOLEANO);
+                salida.writeBoolean(booleano);
+            } else if (valor instanceof Integer entero) {
+                salida.writeByte(ENTERO);
+                salida.writeInt(entero);
+            } else if (valor != null) {
+                salida.writeByte(TEXTO);
+                escribirTexto(salida, valor.toString());
+            } else {
+                salida.writeByte(NULO);
+            }
+        }
+
+        double[] probabilidades = sesion.getProbabilidades();
+        salida.writeInt(probabilidades.length);
+        for (double probabilidad : probabilidades) {
+            salida.writeDouble(probabilidad);
+        }
+
+        salida.writeInt(sesion.getHipotesis().size());
+        for (HipotesisSesion hipotesis : sesion.getHipotesis()) {
+            salida.writeLong(hipotesis.getId());
+            escribirTexto(salida, hipotesis.getDescripcion());
+            salida.writeInt(hipotesis.getProbabilidad());
+            salida.writeBoolean(hipotesis.isActiva());
+        }
+        escribirTexto(salida, sesion.getVersionReglas());
+    }
+
+    /**
+     * Lee una sesión y avanza el buffer hasta la siguiente. Retorna null si su regla ya no
+     * existe o su modelo de hipótesis cambió: esa sesión se reconstruye desde la base.
+     *
+     * @throws IllegalArgumentException si el registro tiene un formato desconocido
+     */
+    static SesionDiagnostico leer(ByteBuffer entrada, IndiceReglas indiceReglas) {
+        byte formato = entrada.get();
+        if (formato != FORMATO) {
+            throw new IllegalArgumentException("Formato de sesión desconocido: " + formato);
+        }
+        long casoId = entrada.getLong();
+        DiagnosticRule regla = indiceReglas.porId(leerTexto(entrada));
+        String ultimaPregunta = leerTexto(entrada);
+        long ultimaRespuestaId = entrada.getLong();
+
+        int cantidadRespuestas = entrada.getInt();
+        Map<String, Object> respuestas = new LinkedHashMap<>();
+        for (int r = 0; r < cantidadRespuestas; r++) {
+            String preguntaId = leerTexto(entrada);
+            Object valor = switch (entrada.get()) {
+                case BOOLEANO -> entrada.get() != 0;
+                case ENTERO -> entrada.getInt();
+                case TEXTO -> leerTexto(entrada);
+                default -> null;
+            };
+            respuestas.put(preguntaId, valor);
+        }
+
+        double[] probabilidades = new double[entrada.getInt()];
+        for (int p = 0; p < probabilidades.length; p++) {
+            probabilidades[p] = entrada.getDouble();
+        }
+
+        int cantidadHipotesis = entrada.getInt();
+        List<HipotesisSesion> hipotesis = new ArrayList<>(cantidadHipotesis);
+        for (int h = 0; h < cantidadHipotesis; h++) {
+            hipotesis.add(new HipotesisSesion(entrada.getLong(), leerTexto(entrada),
+                    entrada.getInt(), entrada.get() != 0));
+        }
+
+        String versionReglas = leerTexto(entrada);
+
+        if (regla == null || regla.getModeloHipotesis().getCantidad() != probabilidades.length) {
+            return null;
+        }
+        SesionDiagnostico sesion = new SesionDiagnostico(casoId, regla, versionReglas);
+        respuestas.forEach((preguntaId, valor) -> sesion.registrarRespuesta(preguntaId, valor, null));
+        sesion.restaurarPosicion(ultimaPregunta, ultimaRespuestaId);
+        System.arraycopy(probabilidades, 0, sesion.getProbabilidades(), 0, probabilidades.length);
+        sesion.getHipotesis().addAll(hipotesis);
+        return sesion;
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        if (texto == null) {
+            salida.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static String leerTexto(ByteBuffer entrada) {
+        int largo = entrada.getInt();
+        if (largo < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[largo];
+        entrada.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
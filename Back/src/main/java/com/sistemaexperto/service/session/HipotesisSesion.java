@@ -0,0 +1,26 @@
+package com.sistemaexperto.service.session;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Hipótesis de un caso en curso. Se mantiene en la sesión mientras dura el wizard
+ * y se vuelca a la base en diferido.
+ */
+@Getter
+public class HipotesisSesion {
+
+    private final Long id;
+    private final String descripcion;
+    @Setter
+    private int probabilidad;
+    @Setter
+    private boolean activa;
+
+    public HipotesisSesion(Long id, String descripcion, int probabilidad, boolean activa) {
+        this.id = id;
+        this.descripcion = descripcion;
+        this.probabilidad = probabilidad;
+        this.activa = activa;
+    }
+}
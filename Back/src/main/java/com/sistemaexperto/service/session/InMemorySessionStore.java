@@ -0,0 +1,112 @@
+package com.sistemaexperto.service.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Almacén concurrente de sesiones de diagnóstico en memoria, para una sola instancia.
+ * Acotado por cantidad de sesiones y por tiempo de inactividad, para que los
+ * casos abandonados no queden retenidos en memoria.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "sessions.store", havingValue = "memory", matchIfMissing = true)
+public class InMemorySessionStore implements SessionStore {
+
+    private final Cache<Long, SesionDiagnostico> sesiones;
+    private final long maximo;
+    private final Duration inactividad;
+
+    private final LongAdder expiradas = new LongAdder();
+    private final LongAdder desalojadasPorTamanio = new LongAdder();
+    private final LongAdder finalizadas = new LongAdder();
+
+    public InMemorySessionStore(@Value("${sessions.max-size:10000}") long maximo,
+                                @Value("${sessions.idle-timeout.minutes:60}") long inactividadMinutos) {
+        this.maximo = maximo;
+        this.inactividad = Duration.ofMinutes(inactividadMinutos);
+        this.sesiones = Caffeine.newBuilder()
+            .maximumSize(maximo)
+            .expireAfterAccess(inactividad)
+            .scheduler(Scheduler.systemScheduler())
+            .recordStats()
+            .removalListener(this::registrarRemocion)
+            .build();
+    }
+
+    @Override
+    public SesionDiagnostico obtener(Long casoId) {
+        return sesiones.getIfPresent(casoId);
+    }
+
+    @Override
+    public SesionDiagnostico registrarSiAusente(SesionDiagnostico sesion) {
+        SesionDiagnostico existente = sesiones.asMap().putIfAbsent(sesion.getCasoId(), sesion);
+        return existente != null ? existente : sesion;
+    }
+
+    /**
+     * Las sesiones se modifican en el lugar: no hay nada que guardar
+     */
+    @Override
+    public void guardar(SesionDiagnostico sesion) {
+    }
+
+    @Override
+    public void eliminar(Long casoId) {
+        sesiones.invalidate(casoId);
+    }
+
+    @Override
+    public Collection<SesionDiagnostico> activas() {
+        return sesiones.asMap().values();
+    }
+
+    @Override
+    public long tamanio() {
+        return sesiones.estimatedSize();
+    }
+
+    @Override
+    public Map<String, Object> getEstadisticas() {
+        CacheStats stats = sesiones.stats();
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("activas", sesiones.estimatedSize());
+        estadisticas.put("maximo", maximo);
+        estadisticas.put("inactividadMinutos", inactividad.toMinutes());
+        estadisticas.put("aciertos", stats.hitCount());
+        estadisticas.put("fallos", stats.missCount());
+        estadisticas.put("expiradas", expiradas.sum());
+        estadisticas.put("desalojadasPorTamanio", desalojadasPorTamanio.sum());
+        estadisticas.put("finalizadas", finalizadas.sum());
+        return estadisticas;
+    }
+
+    private void registrarRemocion(Long casoId, SesionDiagnostico sesion, RemovalCause causa) {
+        switch (causa) {
+            case EXPIRED -> {
+                expiradas.increment();
+                log.info("Sesión del caso {} expirada por inactividad", casoId);
+            }
+            case SIZE -> {
+                desalojadasPorTamanio.increment();
+                log.warn("Sesión del caso {} desalojada por límite de tamaño ({})", casoId, maximo);
+            }
+            case EXPLICIT -> finalizadas.increment();
+            default -> log.debug("Sesión del caso {} removida: {}", casoId, causa);
+        }
+    }
+}
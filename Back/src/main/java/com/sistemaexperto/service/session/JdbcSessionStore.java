@@ -0,0 +1,268 @@
+package com.sistemaexperto.service.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Almacén de sesiones en una tabla compartida, para correr varias instancias detrás de un
+ * balanceador sin afinidad: cualquier instancia puede atender cualquier paso de un caso.
+ *
+ * Cada fila guarda la sesión en el formato binario de los snapshots y un número de versión.
+ * Las escrituras son optimistas (UPDATE ... WHERE version = ?); si otra instancia escribió
+ * antes se lanza ConflictoSesionException. Las sesiones leídas se conservan en una caché
+ * local que se reutiliza mientras la versión de la tabla no cambie: la consulta de versión
+ * sólo trae los datos cuando la copia local quedó vieja.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "sessions.store", havingValue = "jdbc")
+public class JdbcSessionStore implements SessionStore {
+
+    private static final String CREAR_TABLA = """
+        CREATE TABLE IF NOT EXISTS sesion_diagnostico (
+            caso_id BIGINT PRIMARY KEY,
+            version BIGINT NOT NULL,
+            datos VARBINARY NOT NULL,
+            actualizada TIMESTAMP NOT NULL
+        )""";
+
+    private static final String LEER = """
+        SELECT version, CASE WHEN version = ? THEN NULL ELSE datos END
+        FROM sesion_diagnostico WHERE caso_id = ?""";
+
+    private static final String INSERTAR = """
+        INSERT INTO sesion_diagnostico (caso_id, version, datos, actualizada)
+        SELECT ?, 0, ?, ? WHERE NOT EXISTS (SELECT 1 FROM sesion_diagnostico WHERE caso_id = ?)""";
+
+    private static final String ACTUALIZAR = """
+        UPDATE sesion_diagnostico SET version = version + 1, datos = ?, actualizada = ?
+        WHERE caso_id = ? AND version = ?""";
+
+    private static final long SIN_VERSION = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndiceReglas indiceReglas;
+    private final Cache<Long, SesionDiagnostico> locales;
+    private final long maximo;
+    private final Duration inactividad;
+
+    private final LongAdder aciertosLocales = new LongAdder();
+    private final LongAdder recargas = new LongAdder();
+    private final LongAdder conflictos = new LongAdder();
+    private final LongAdder expiradas = new LongAdder();
+    private final LongAdder finalizadas = new LongAdder();
+
+    public JdbcSessionStore(JdbcTemplate jdbcTemplate,
+                            IndiceReglas indiceReglas,
+                            @Value("${sessions.max-size:10000}") long maximo,
+                            @Value("${sessions.idle-timeout.minutes:60}") long inactividadMinutos) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indiceReglas = indiceReglas;
+        this.maximo = maximo;
+        this.inactividad = Duration.ofMinutes(inactividadMinutos);
+        this.locales = Caffeine.newBuilder()
+            .maximumSize(maximo)
+            .expireAfterAccess(inactividad)
+            .build();
+    }
+
+    @PostConstruct
+    public void crearTabla() {
+        jdbcTemplate.execute(CREAR_TABLA);
+    }
+
+    @Override
+    public SesionDiagnostico obtener(Long casoId) {
+        SesionDiagnostico local = locales.getIfPresent(casoId);
+        long versionLocal = local != null ? local.getVersion() : SIN_VERSION;
+
+        List<Fila> filas = jdbcTemplate.query(LEER,
+                (rs, n) -> new Fila(rs.getLong(1), rs.getBytes(2)), versionLocal, casoId);
+        if (filas.isEmpty()) {
+            if (local != null) {
+                locales.invalidate(casoId);
+            }
+            return null;
+        }
+
+        Fila fila = filas.get(0);
+        if (fila.datos() == null) {
+            aciertosLocales.increment();
+            return local;
+        }
+
+        SesionDiagnostico leida = leer(casoId, fila.datos());
+        if (leida == null) {
+            // La regla ya no existe, cambió su modelo o el formato es otro: se descarta para reconstruirla desde las respuestas
+            jdbcTemplate.update("DELETE FROM sesion_diagnostico WHERE caso_id = ? AND version = ?", casoId, fila.version());
+            locales.invalidate(casoId);
+            return null;
+        }
+        leida.setVersion(fila.version());
+        locales.put(casoId, leida);
+        recargas.increment();
+        return leida;
+    }
+
+    @Override
+    public SesionDiagnostico registrarSiAusente(SesionDiagnostico sesion) {
+        Long casoId = sesion.getCasoId();
+        int insertadas;
+        try {
+            insertadas = jdbcTemplate.update(INSERTAR, casoId, serializar(sesion), ahora(), casoId);
+        } catch (DuplicateKeyException e) {
+            insertadas = 0;
+        }
+        if (insertadas == 0) {
+            SesionDiagnostico existente = obtener(casoId);
+            return existente != null ? existente : registrarSiAusente(sesion);
+        }
+
+        sesion.setVersion(0);
+        locales.put(casoId, sesion);
+        descartarSiSeRevierte(casoId);
+        return sesion;
+    }
+
+    @Override
+    public void guardar(SesionDiagnostico sesion) {
+        Long casoId = sesion.getCasoId();
+        byte[] datos;
+        long version;
+        synchronized (sesion) {
+            datos = serializar(sesion);
+            version = sesion.getVersion();
+        }
+
+        if (jdbcTemplate.update(ACTUALIZAR, datos, ahora(), casoId, version) == 0) {
+            conflictos.increment();
+            // La copia local tiene cambios que no se guardaron
+            locales.invalidate(casoId);
+            throw new ConflictoSesionException(casoId);
+        }
+        synchronized (sesion) {
+            sesion.setVersion(version + 1);
+        }
+        descartarSiSeRevierte(casoId);
+    }
+
+    @Override
+    public void eliminar(Long casoId) {
+        jdbcTemplate.update("DELETE FROM sesion_diagnostico WHERE caso_id = ?", casoId);
+        locales.invalidate(casoId);
+        finalizadas.increment();
+    }
+
+    @Override
+    public Collection<SesionDiagnostico> activas() {
+        return locales.asMap().values();
+    }
+
+    @Override
+    public long tamanio() {
+        Long cantidad = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sesion_diagnostico", Long.class);
+        return cantidad != null ? cantidad : 0;
+    }
+
+    @Override
+    public Map<String, Object> getEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("almacen", "jdbc");
+        estadisticas.put("activas", tamanio());
+        estadisticas.put("locales", locales.estimatedSize());
+        estadisticas.put("maximo", maximo);
+        estadisticas.put("inactividadMinutos", inactividad.toMinutes());
+        estadisticas.put("aciertosLocales", aciertosLocales.sum());
+        estadisticas.put("recargas", recargas.sum());
+        estadisticas.put("conflictos", conflictos.sum());
+        estadisticas.put("expiradas", expiradas.sum());
+        estadisticas.put("finalizadas", finalizadas.sum());
+        return estadisticas;
+    }
+
+    /**
+     * Elimina las sesiones sin escrituras durante el tiempo de inactividad
+     */
+    @Scheduled(initialDelayString = "${sessions.jdbc.purge-interval.minutes:5}",
+               fixedDelayString = "${sessions.jdbc.purge-interval.minutes:5}",
+               timeUnit = TimeUnit.MINUTES)
+    public void purgarInactivas() {
+        int eliminadas = jdbcTemplate.update("DELETE FROM sesion_diagnostico WHERE actualizada < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(inactividad)));
+        if (eliminadas > 0) {
+            expiradas.add(eliminadas);
+            log.info("{} sesiones expiradas por inactividad", eliminadas);
+        }
+    }
+
+    /**
+     * Si la transacción no se confirma, la copia local puede tener una versión que la
+     * tabla no tiene: se descarta para volver a leerla
+     */
+    private void descartarSiSeRevierte(Long casoId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        locales.invalidate(casoId);
+                    }
+                }
+            });
+        }
+    }
+
+    private SesionDiagnostico leer(Long casoId, byte[] datos) {
+        try {
+            return FormatoSesion.leer(ByteBuffer.wrap(datos), indiceReglas);
+        } catch (IllegalArgumentException e) {
+            log.warn("Sesión del caso {} ilegible, se reconstruirá: {}", casoId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] serializar(SesionDiagnostico sesion) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream salida = new DataOutputStream(bytes)) {
+            synchronized (sesion) {
+                FormatoSesion.escribir(salida, sesion);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Timestamp ahora() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    private record Fila(long version, byte[] datos) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.sistemaexperto.service.session;
+
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado del wizard de diagnóstico para un caso en curso.
+ * Los accesos concurrentes al mismo caso deben sincronizarse sobre la instancia.
+ */
+@Getter
+public class SesionDiagnostico {
+
+    private final Long casoId;
+    private final DiagnosticRule regla;
+    /** Versión de las reglas CLIPS con que empezó el caso, o null si CLIPS no tenía reglas */
+    private final String versionReglas;
+    private final Map<String, Object> respuestas = new HashMap<>();
+    private final List<HipotesisSesion> hipotesis = new ArrayList<>();
+    /** Probabilidad posterior de cada hipótesis del modelo de la regla, en su orden */
+    private final double[] probabilidades;
+    private String ultimaPregunta;
+    /** Id de la última Respuesta guardada aplicada a la sesión (0 si ninguna) */
+    private long ultimaRespuestaId;
+    /** Hay cambios en las hipótesis que todavía no se volcaron a la base */
+    private boolean hipotesisPendientes;
+    /** Versión guardada de la que se leyó la sesión, para el control optimista del almacén JDBC */
+    private long version;
+
+    public SesionDiagnostico(Long casoId, DiagnosticRule regla, String versionReglas) {
+        this.casoId = casoId;
+        this.regla = regla;
+        this.versionReglas = versionReglas;
+        this.probabilidades = regla.getModeloHipotesis().crearPriors();
+    }
+
+    /**
+     * Registra la respuesta a una pregunta y la marca como la última contestada
+     *
+     * @param respuestaId id de la Respuesta guardada, o null si no se guardó
+     */
+    public void registrarRespuesta(String preguntaId, Object valor, Long respuestaId) {
+        respuestas.put(preguntaId, valor);
+        ultimaPregunta = preguntaId;
+        if (respuestaId != null) {
+            ultimaRespuestaId = Math.max(ultimaRespuestaId, respuestaId);
+        }
+    }
+
+    /**
+     * Si la Respuesta guardada con ese id ya está aplicada a la sesión
+     */
+    public boolean yaAplicada(Long respuestaId) {
+        return respuestaId != null && respuestaId <= ultimaRespuestaId;
+    }
+
+    /**
+     * Restaura la posición del wizard leída de un snapshot
+     */
+    void restaurarPosicion(String ultimaPregunta, long ultimaRespuestaId) {
+        this.ultimaPregunta = ultimaPregunta;
+        this.ultimaRespuestaId = ultimaRespuestaId;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Marca las hipótesis como modificadas para el próximo volcado
+     */
+    public void marcarHipotesisPendientes() {
+        hipotesisPendientes = true;
+    }
+
+    /**
+     * Retorna si había cambios sin volcar y limpia la marca
+     */
+    public boolean tomarHipotesisPendientes() {
+        boolean pendientes = hipotesisPendientes;
+        hipotesisPendientes = false;
+        return pendientes;
+    }
+}
@@ -0,0 +1,49 @@
+package com.sistemaexperto.service.session;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Almacén de las sesiones del wizard de diagnóstico.
+ * Se elige con sessions.store: memory (una instancia) o jdbc (compartido entre instancias).
+ *
+ * Quien modifica una sesión obtenida del almacén lo hace con el lock de la sesión tomado
+ * y después llama a {@link #guardar}, dentro de la transacción en curso.
+ */
+public interface SessionStore {
+
+    /**
+     * Obtiene la sesión activa de un caso, o null si no existe
+     */
+    SesionDiagnostico obtener(Long casoId);
+
+    /**
+     * Registra una sesión nueva salvo que ya exista una para el mismo caso.
+     * Retorna la sesión que quedó registrada.
+     */
+    SesionDiagnostico registrarSiAusente(SesionDiagnostico sesion);
+
+    /**
+     * Persiste los cambios hechos a una sesión.
+     *
+     * @throws ConflictoSesionException si otra instancia la modificó desde que se leyó
+     */
+    void guardar(SesionDiagnostico sesion);
+
+    /**
+     * Elimina la sesión de un caso finalizado
+     */
+    void eliminar(Long casoId);
+
+    /**
+     * Sesiones activas en esta instancia
+     */
+    Collection<SesionDiagnostico> activas();
+
+    long tamanio();
+
+    /**
+     * Estadísticas de uso del almacén
+     */
+    Map<String, Object> getEstadisticas();
+}
@@ -0,0 +1,179 @@
+package com.sistemaexperto.service.session;
+
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.repository.CasoRepository;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshots binarios de las sesiones activas en un archivo mapeado en memoria.
+ * Se escriben periódicamente y al cerrar; al arrancar se restauran todas de una vez,
+ * sin reproducir respuestas caso por caso. Antes de restaurar se valida con una consulta
+ * por lote que cada caso siga en diagnóstico y no tenga respuestas posteriores al snapshot;
+ * las que no pasan se reconstruyen desde la base cuando se usen.
+ * Sólo con el almacén en memoria: el almacén JDBC ya las conserva.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "sessions.store", havingValue = "memory", matchIfMissing = true)
+public class SnapshotSesiones {
+
+    /** "SES1" */
+    private static final int MAGICO = 0x53455331;
+    private static final int VERSION = 3;
+
+    private static final int LOTE_VALIDACION = 1000;
+
+    private final SessionStore sessionStore;
+    private final IndiceReglas indiceReglas;
+    private final CasoRepository casoRepository;
+    private final Path archivo;
+    private final boolean habilitado;
+
+    public SnapshotSesiones(SessionStore sessionStore,
+                            IndiceReglas indiceReglas,
+                            CasoRepository casoRepository,
+                            @Value("${sessions.snapshot.path:./data/sesiones.snap}") String archivo,
+                            @Value("${sessions.snapshot.enabled:true}") boolean habilitado) {
+        this.sessionStore = sessionStore;
+        this.indiceReglas = indiceReglas;
+        this.casoRepository = casoRepository;
+        this.archivo = Path.of(archivo);
+        this.habilitado = habilitado;
+    }
+
+    /**
+     * Restaura las sesiones del último snapshot válido
+     */
+    @PostConstruct
+    public void restaurar() {
+        if (!habilitado || !Files.exists(archivo)) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        List<SesionDiagnostico> leidas;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            leidas = leer(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Snapshot de sesiones ilegible ({}), se reconstruirán desde la base: {}", archivo, e.getMessage());
+            return;
+        }
+
+        Map<Long, Long> ultimaRespuesta = new HashMap<>();
+        List<Long> ids = leidas.stream().map(SesionDiagnostico::getCasoId).toList();
+        for (int desde = 0; desde < ids.size(); desde += LOTE_VALIDACION) {
+            List<Long> lote = ids.subList(desde, Math.min(ids.size(), desde + LOTE_VALIDACION));
+            for (CasoRepository.UltimaRespuesta fila : casoRepository.buscarUltimaRespuesta(lote, EstadoCaso.EN_DIAGNOSTICO)) {
+                ultimaRespuesta.put(fila.getCasoId(), fila.getUltimaRespuestaId() != null ? fila.getUltimaRespuestaId() : 0L);
+            }
+        }
+
+        int restauradas = 0;
+        for (SesionDiagnostico sesion : leidas) {
+            Long ultima = ultimaRespuesta.get(sesion.getCasoId());
+            if (ultima != null && ultima == sesion.getUltimaRespuestaId()
+                    && sessionStore.registrarSiAusente(sesion) == sesion) {
+                restauradas++;
+            }
+        }
+        log.info("Restauradas {} de {} sesiones del snapshot en {} ms", restauradas, leidas.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Escribe el snapshot de las sesiones activas
+     */
+    @Scheduled(initialDelayString = "${sessions.snapshot.interval.seconds:30}",
+               fixedDelayString = "${sessions.snapshot.interval.seconds:30}",
+               timeUnit = TimeUnit.SECONDS)
+    public void guardar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            long inicio = System.nanoTime();
+            Bytes bytes = new Bytes();
+            DataOutputStream salida = new DataOutputStream(bytes);
+            List<SesionDiagnostico> sesiones = List.copyOf(sessionStore.activas());
+            salida.writeInt(MAGICO);
+            salida.writeInt(VERSION);
+            salida.writeInt(sesiones.size());
+            for (SesionDiagnostico sesion : sesiones) {
+                synchronized (sesion) {
+                    FormatoSesion.escribir(salida, sesion);
+                }
+            }
+            salida.flush();
+
+            // Se escribe en un temporal y se reemplaza de una vez: un corte a mitad no deja un snapshot roto
+            Path carpeta = archivo.toAbsolutePath().getParent();
+            if (carpeta != null) {
+                Files.createDirectories(carpeta);
+            }
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, bytes.size());
+                mapa.put(bytes.comoBuffer());
+                mapa.force();
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Snapshot de {} sesiones ({} bytes) en {} ms", sesiones.size(), bytes.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se pudo escribir el snapshot de sesiones en {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void guardarAlCerrar() {
+        guardar();
+    }
+
+    private List<SesionDiagnostico> leer(ByteBuffer entrada) {
+        if (entrada.getInt() != MAGICO || entrada.getInt() != VERSION) {
+            throw new IllegalStateException("formato desconocido");
+        }
+        int cantidad = entrada.getInt();
+        List<SesionDiagnostico> sesiones = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            SesionDiagnostico sesion = FormatoSesion.leer(entrada, indiceReglas);
+            if (sesion != null) {
+                sesiones.add(sesion);
+            }
+        }
+        return sesiones;
+    }
+
+    /**
+     * Buffer de escritura que expone su contenido sin copiarlo
+     */
+    private static final class Bytes extends ByteArrayOutputStream {
+        Bytes() {
+            super(64 * 1024);
+        }
+
+        ByteBuffer comoBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
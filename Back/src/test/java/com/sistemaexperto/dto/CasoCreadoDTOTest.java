@@ -0,0 +1,86 @@
+package com.sistemaexperto.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Pregunta;
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * POST /api/casos retorna el mismo JSON que antes (los campos del caso en el nivel superior)
+ * con el primer paso del wizard agregado en "paso"
+ */
+class CasoCreadoDTOTest {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void losCamposDelCasoQuedanEnElNivelSuperiorJuntoAlPaso() {
+        Caso caso = caso();
+        JsonNode comoCaso = mapper.valueToTree(caso);
+        JsonNode creado = mapper.valueToTree(new CasoCreadoDTO(caso, paso()));
+
+        List<String> campos = new ArrayList<>();
+        creado.fieldNames().forEachRemaining(campos::add);
+        List<String> camposCaso = new ArrayList<>();
+        comoCaso.fieldNames().forEachRemaining(camposCaso::add);
+
+        assertThat(campos).containsExactlyElementsOf(concatenar(camposCaso, "paso"));
+        camposCaso.forEach(campo -> assertThat(creado.get(campo)).as(campo).isEqualTo(comoCaso.get(campo)));
+        assertThat(creado.get("paso").get("siguientePregunta").get("id").asLong()).isEqualTo(1L);
+        assertThat(creado.get("paso").get("listoParaFinalizar").asBoolean()).isFalse();
+    }
+
+    @Test
+    void unClienteQueLeeUnCasoSigueLeyendoLaRespuesta() throws Exception {
+        Caso caso = caso();
+        String json = mapper.writeValueAsString(new CasoCreadoDTO(caso, paso()));
+
+        Caso leido = mapper.readValue(json, Caso.class);
+
+        assertThat(leido.getId()).isEqualTo(caso.getId());
+        assertThat(leido.getClienteNombre()).isEqualTo(caso.getClienteNombre());
+        assertThat(leido.getEstado()).isEqualTo(EstadoCaso.EN_DIAGNOSTICO);
+        assertThat(leido.getFechaCreacion()).isEqualTo(caso.getFechaCreacion());
+    }
+
+    private static Caso caso() {
+        Caso caso = new Caso();
+        caso.setId(7L);
+        caso.setDescripcion("No enfría");
+        caso.setClienteNombre("Ana");
+        caso.setClienteTelefono("1234");
+        caso.setTipo(TipoElectrodomestico.HELADERA);
+        caso.setMarca("Marca");
+        caso.setModelo("M1");
+        caso.setAntiguedad(4);
+        caso.setSintomaReportado("no enfría");
+        caso.setEstado(EstadoCaso.EN_DIAGNOSTICO);
+        caso.setFechaCreacion(LocalDateTime.of(2024, 5, 1, 10, 30));
+        return caso;
+    }
+
+    private static PasoDiagnosticoDTO paso() {
+        return PasoDiagnosticoDTO.builder()
+            .siguientePregunta(Pregunta.builder().id(1L).texto("¿La luz interior funciona?").build())
+            .hipotesis(List.of(Map.of("id", 1L, "descripcion", "Problema eléctrico", "probabilidad", 30, "activa", true)))
+            .listoParaFinalizar(false)
+            .build();
+    }
+
+    private static List<String> concatenar(List<String> campos, String ultimo) {
+        List<String> todos = new ArrayList<>(campos);
+        todos.add(ultimo);
+        return todos;
+    }
+}
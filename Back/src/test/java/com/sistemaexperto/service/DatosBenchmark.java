@@ -0,0 +1,70 @@
+package com.sistemaexperto.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sistemaexperto.model.Respuesta;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.heladera.HeladeraNoEnfriaRule;
+import com.sistemaexperto.service.rules.lavarropas.LavarropasNoCargaAguaRule;
+import com.sistemaexperto.service.rules.microondas.MicroondasHaceChispasRule;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Datos compartidos por los benchmarks: corpus de casos y reglas Java sin contexto Spring
+ */
+final class DatosBenchmark {
+
+    private DatosBenchmark() {
+    }
+
+    static List<CasoPrueba> corpus() {
+        silenciarLogs();
+        try {
+            return CorpusCasosPrueba.cargar();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Corpus leído caso por caso; el stream se tiene que cerrar
+     */
+    static Stream<CasoPrueba> recorrerCorpus() {
+        silenciarLogs();
+        try {
+            return CorpusCasosPrueba.recorrer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void silenciarLogs() {
+        // Los servicios loguean por caso (INFO, y WARN cuando no hay regla específica); eso mediría el appender
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.ERROR);
+    }
+
+    static List<DiagnosticRule> reglas() {
+        return List.of(new HeladeraNoEnfriaRule(), new LavarropasNoCargaAguaRule(), new MicroondasHaceChispasRule());
+    }
+
+    /**
+     * Respuestas del caso con los ids y tipos que usa la regla Java, como en InferenceEngine
+     */
+    static Map<String, Object> respuestasJava(DiagnosticRule regla, List<Respuesta> respuestas) {
+        Map<String, Object> valores = new HashMap<>();
+        for (Respuesta respuesta : respuestas) {
+            valores.put(regla.getPreguntaIdString(respuesta.getPreguntaId()),
+                InferenceEngine.procesarValorRespuesta(respuesta.getValor()));
+        }
+        return valores;
+    }
+}
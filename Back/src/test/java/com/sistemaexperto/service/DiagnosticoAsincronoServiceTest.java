@@ -0,0 +1,151 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.dto.TrabajoDiagnosticoDTO;
+import com.sistemaexperto.dto.TrabajoDiagnosticoDTO.Estado;
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.service.session.SessionStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Dos instancias sobre la misma base H2: los trabajos de una se consultan, se esperan y se
+ * deduplican desde la otra
+ */
+class DiagnosticoAsincronoServiceTest {
+
+    private static final long CASO = 1L;
+
+    private JdbcTemplate jdbcTemplate;
+    private DiagnosticoService diagnosticoService;
+    private InferenceEngine inferenceEngine;
+    private CountDownLatch liberar;
+    private DiagnosticoAsincronoService nodoA;
+    private DiagnosticoAsincronoService nodoB;
+
+    @BeforeEach
+    void crearBase() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        diagnosticoService = mock(DiagnosticoService.class);
+        inferenceEngine = mock(InferenceEngine.class);
+        liberar = new CountDownLatch(1);
+        when(inferenceEngine.inferirDiagnostico(any())).thenAnswer(invocacion -> {
+            liberar.await(10, TimeUnit.SECONDS);
+            return Diagnostico.builder().causaProbable("Falla del compresor").probabilidad(80)
+                    .instruccionesDiy(List.of("Desenchufar")).build();
+        });
+        nodoA = nodo();
+        nodoB = nodo();
+    }
+
+    @AfterEach
+    void cerrar() throws InterruptedException {
+        liberar.countDown();
+        nodoA.cerrar();
+        nodoB.cerrar();
+    }
+
+    private DiagnosticoAsincronoService nodo() {
+        MetricasInferencia metricas = new MetricasInferencia(new SimpleMeterRegistry(), mock(SessionStore.class));
+        DiagnosticoAsincronoService servicio = new DiagnosticoAsincronoService(diagnosticoService, inferenceEngine,
+                metricas, jdbcTemplate, Jackson2ObjectMapperBuilder.json().build(), 2, 10, 15);
+        servicio.crearTabla();
+        return servicio;
+    }
+
+    @Test
+    void elTrabajoDeUnaInstanciaSeConsultaYSeEsperaDesdeLaOtra() throws Exception {
+        TrabajoDiagnosticoDTO trabajo = nodoA.iniciar(CASO);
+
+        TrabajoDiagnosticoDTO enB = nodoB.obtener(trabajo.getId());
+        assertThat(enB).isNotNull();
+        assertThat(enB.getCasoId()).isEqualTo(CASO);
+        assertThat(enB.getEstado()).isIn(Estado.PENDIENTE, Estado.EN_CURSO);
+
+        CompletableFuture<TrabajoDiagnosticoDTO> espera =
+                nodoB.alTerminar(trabajo.getId(), Duration.ofSeconds(10)).toCompletableFuture();
+        assertThat(espera).isNotDone();
+
+        liberar.countDown();
+        TrabajoDiagnosticoDTO terminado = espera.get(10, TimeUnit.SECONDS);
+
+        assertThat(terminado.getEstado()).isEqualTo(Estado.COMPLETADO);
+        assertThat(terminado.getFinalizado()).isNotNull();
+        assertThat(terminado.getDiagnostico().getCausaProbable()).isEqualTo("Falla del compresor");
+        assertThat(terminado.getDiagnostico().getInstruccionesDiy()).containsExactly("Desenchufar");
+        verify(diagnosticoService).guardarFinalizacion(eq(CASO), any());
+    }
+
+    @Test
+    void unCasoEnCursoEnUnaInstanciaNoSeVuelveAProgramarEnLaOtra() throws Exception {
+        TrabajoDiagnosticoDTO enA = nodoA.iniciar(CASO);
+        TrabajoDiagnosticoDTO enB = nodoB.iniciar(CASO);
+
+        assertThat(enB.getId()).isEqualTo(enA.getId());
+
+        liberar.countDown();
+        nodoA.alTerminar(enA.getId()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        verify(inferenceEngine, times(1)).inferirDiagnostico(any());
+    }
+
+    @Test
+    void laEsperaRetornaElEstadoActualAlCumplirseElTiempo() throws Exception {
+        TrabajoDiagnosticoDTO trabajo = nodoA.iniciar(CASO);
+
+        TrabajoDiagnosticoDTO alVencer = nodoB.alTerminar(trabajo.getId(), Duration.ofMillis(300))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertThat(alVencer.getEstado()).isIn(Estado.PENDIENTE, Estado.EN_CURSO);
+    }
+
+    @Test
+    void unCasoYaDiagnosticadoSeRechazaSinProgramarTrabajo() {
+        when(diagnosticoService.estaDiagnosticado(CASO)).thenReturn(true);
+
+        assertThatThrownBy(() -> nodoA.iniciar(CASO))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM trabajo_diagnostico", Integer.class)).isZero();
+        verify(diagnosticoService, never()).prepararFinalizacion(anyLong());
+    }
+
+    @Test
+    void laPurgaCierraLosTrabajosAbandonadosYLiberaElCaso() {
+        Timestamp viejo = Timestamp.valueOf(LocalDateTime.now().minusMinutes(20));
+        jdbcTemplate.update("""
+                INSERT INTO trabajo_diagnostico (id, caso_id, caso_en_curso, estado, creado)
+                VALUES ('abandonado', ?, ?, 'EN_CURSO', ?)""", CASO, CASO, viejo);
+        jdbcTemplate.update("""
+                INSERT INTO trabajo_diagnostico (id, caso_id, estado, creado, finalizado)
+                VALUES ('vencido', 2, 'COMPLETADO', ?, ?)""", viejo, viejo);
+
+        nodoB.purgarVencidos();
+
+        assertThat(nodoA.obtener("vencido")).isNull();
+        TrabajoDiagnosticoDTO abandonado = nodoA.obtener("abandonado");
+        assertThat(abandonado.getEstado()).isEqualTo(Estado.ERROR);
+        assertThat(nodoA.iniciar(CASO).getId()).isNotEqualTo("abandonado");
+    }
+}
@@ -0,0 +1,499 @@
+package com.sistemaexperto.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Diagnostico;
+import com.sistemaexperto.service.clips.CircuitoClips;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.clips.MetricasClips;
+import com.sistemaexperto.service.clips.compiladas.MotorReglasCompiladas;
+import com.sistemaexperto.service.mapper.ClipsMapper;
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import com.sistemaexperto.service.session.InMemorySessionStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Equivalencia y throughput de los caminos de diagnóstico sobre el corpus casos-prueba.clp, con
+ * los servicios reales armados sin contexto Spring:
+ * <ul>
+ *   <li>clips: ClipsIntegrationService.procesarCasoConClips con el motor embebido, sin caché</li>
+ *   <li>fallback: InferenceEngine.inferirDiagnostico sin CLIPS (reglas compiladas y, si no
+ *       diagnostican, la regla Java)</li>
+ *   <li>regla-java: InferenceEngine.inferirDiagnostico sólo con la regla Java del caso</li>
+ * </ul>
+ * El corpus se lee de a bloques de casos y cada camino recorre el bloque en un ForkJoinPool de
+ * cada nivel de paralelismo. El reporte JSON tiene las diferencias con CLIPS campo por campo del
+ * Diagnostico, los huecos de cobertura (casos sin diagnóstico CLIPS o sin regla Java específica)
+ * y los casos por segundo de cada camino y nivel.
+ *
+ * Termina con código 1 si algún camino difiere de un diagnóstico de CLIPS fuera de las divergencias
+ * conocidas de equivalencia-conocidas.txt, o si algún camino cambia de resultado con el paralelismo.
+ *
+ * Ejecutar: mvn -P benchmark test-compile exec:exec@equivalencia
+ * Opciones: -Dequivalencia.args="niveles=1,2,4,8 rondas=5 bloque=500 paso=1 salida=target/equivalencia-reglas.json"
+ * (paso=N toma uno de cada N casos del corpus; EquivalenciaReglasTest corre así una muestra en cada build)
+ */
+public final class EquivalenciaReglas {
+
+    static final String CLIPS = "clips";
+    static final String FALLBACK = "fallback";
+    static final String REGLA_JAVA = "regla-java";
+    static final String CONOCIDAS = "/equivalencia-conocidas.txt";
+
+    private final ClipsIntegrationService clipsIntegration = new ClipsIntegrationService();
+    private final InferenceEngine engine = new InferenceEngine();
+    private final IndiceReglas indiceReglas = new IndiceReglas(DatosBenchmark.reglas());
+    private final String versionReglas;
+    private final Map<String, Function<CasoPrueba, Resultado>> caminos = new LinkedHashMap<>();
+
+    EquivalenciaReglas() {
+        ClipsMapper clipsMapper = new ClipsMapper();
+        CacheDiagnosticos sinCache = new CacheDiagnosticos(false, 1);
+        ClipsService clipsService = new ClipsService(new DefaultResourceLoader(), null, new CircuitoClips(3, 30),
+            new MetricasClips(new SimpleMeterRegistry()), sinCache);
+        ReflectionTestUtils.setField(clipsService, "clipsEnabled", true);
+        ReflectionTestUtils.setField(clipsService, "motor", "embedded");
+        ReflectionTestUtils.setField(clipsService, "directorioExterno", "");
+        ReflectionTestUtils.setField(clipsService, "versionesRetenidas", 1);
+        clipsService.inicializarMotor();
+        if (!clipsService.isClipsDisponible()) {
+            throw new IllegalStateException("No se pudieron cargar las reglas CLIPS");
+        }
+        versionReglas = clipsService.getBase().getVersion();
+
+        ReflectionTestUtils.setField(clipsIntegration, "clipsService", clipsService);
+        ReflectionTestUtils.setField(clipsIntegration, "clipsMapper", clipsMapper);
+        ReflectionTestUtils.setField(clipsIntegration, "cacheDiagnosticos", sinCache);
+
+        // Sin clipsIntegration el motor va directo al fallback, como con CLIPS deshabilitado
+        ReflectionTestUtils.setField(engine, "indiceReglas", indiceReglas);
+        ReflectionTestUtils.setField(engine, "reglasCompiladas", new MotorReglasCompiladas(clipsService, clipsMapper, new SimpleMeterRegistry(), true));
+        ReflectionTestUtils.setField(engine, "metricas",
+            new MetricasInferencia(new SimpleMeterRegistry(), new InMemorySessionStore(1, 1)));
+
+        caminos.put(CLIPS, this::clips);
+        caminos.put(FALLBACK, caso -> java(caso, true));
+        caminos.put(REGLA_JAVA, caso -> java(caso, false));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = new HashMap<>();
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0) {
+                throw new IllegalArgumentException("Opción inválida " + arg + ", se espera nombre=valor");
+            }
+            opciones.put(arg.substring(0, igual), arg.substring(igual + 1));
+        }
+        int procesadores = Runtime.getRuntime().availableProcessors();
+        List<Integer> niveles = Arrays.stream(opciones.getOrDefault("niveles", "1,2,4," + procesadores).split(","))
+            .map(String::trim).map(Integer::valueOf).distinct().sorted().toList();
+        int rondas = Integer.parseInt(opciones.getOrDefault("rondas", "5"));
+        int bloque = Integer.parseInt(opciones.getOrDefault("bloque", "500"));
+        int paso = Integer.parseInt(opciones.getOrDefault("paso", "1"));
+        Path salida = Path.of(opciones.getOrDefault("salida", "target/equivalencia-reglas.json"));
+
+        EquivalenciaReglas equivalencia = new EquivalenciaReglas();
+        Reporte reporte = equivalencia.ejecutar(niveles, rondas, bloque, paso, Conocidas.cargar());
+
+        Files.createDirectories(salida.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(salida.toFile(), reporte);
+        System.out.println(reporte.resumen());
+        System.out.println("Reporte: " + salida.toAbsolutePath());
+        if (!reporte.aprobado()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Corre todos los caminos en cada nivel sobre cada bloque del corpus, tomando uno de cada paso
+     * casos; el primer nivel es la referencia de los resultados. Sólo se retienen los casos del
+     * bloque en curso.
+     */
+    Reporte ejecutar(List<Integer> niveles, int rondas, int bloque, int paso, Conocidas conocidas) throws Exception {
+        Comparacion comparacion = new Comparacion(caminos.keySet(), conocidas);
+        long[][] nanos = new long[niveles.size()][caminos.size()];
+        int[][] inestables = new int[niveles.size()][caminos.size()];
+        List<ForkJoinPool> pools = niveles.stream().map(ForkJoinPool::new).toList();
+        try (Stream<CasoPrueba> corpus = muestra(DatosBenchmark.recorrerCorpus(), paso)) {
+            Iterator<CasoPrueba> casos = corpus.iterator();
+            while (casos.hasNext()) {
+                List<CasoPrueba> casosBloque = new ArrayList<>(bloque);
+                while (casos.hasNext() && casosBloque.size() < bloque) {
+                    casosBloque.add(casos.next());
+                }
+
+                Map<String, Resultado[]> referencia = new LinkedHashMap<>();
+                for (int nivel = 0; nivel < pools.size(); nivel++) {
+                    int indice = 0;
+                    for (Map.Entry<String, Function<CasoPrueba, Resultado>> camino : caminos.entrySet()) {
+                        // Calentamiento del JIT con una pasada que también da los resultados a comparar
+                        Resultado[] resultados = recorrer(pools.get(nivel), casosBloque, camino.getValue());
+                        long inicio = System.nanoTime();
+                        for (int ronda = 0; ronda < rondas; ronda++) {
+                            recorrer(pools.get(nivel), casosBloque, camino.getValue());
+                        }
+                        nanos[nivel][indice] += System.nanoTime() - inicio;
+
+                        Resultado[] esperados = referencia.putIfAbsent(camino.getKey(), resultados);
+                        if (esperados != null) {
+                            inestables[nivel][indice] += (int) IntStream.range(0, resultados.length)
+                                .filter(i -> !resultados[i].equals(esperados[i]))
+                                .count();
+                        }
+                        indice++;
+                    }
+                }
+                comparacion.agregar(casosBloque, referencia);
+            }
+        } finally {
+            pools.forEach(ForkJoinPool::shutdown);
+        }
+
+        List<Rendimiento> rendimiento = new ArrayList<>();
+        for (int nivel = 0; nivel < niveles.size(); nivel++) {
+            int indice = 0;
+            for (String camino : caminos.keySet()) {
+                long casos = (long) comparacion.casos * rondas;
+                long ns = nanos[nivel][indice];
+                rendimiento.add(new Rendimiento(camino, niveles.get(nivel), casos, ns / 1_000_000,
+                    casos * 1e9 / Math.max(ns, 1), inestables[nivel][indice]));
+                indice++;
+            }
+        }
+        return comparacion.reporte(versionReglas, rendimiento);
+    }
+
+    private static Stream<CasoPrueba> muestra(Stream<CasoPrueba> corpus, int paso) {
+        if (paso <= 1) {
+            return corpus;
+        }
+        int[] posicion = {0};
+        return corpus.filter(caso -> posicion[0]++ % paso == 0);
+    }
+
+    private static Resultado[] recorrer(ForkJoinPool pool, List<CasoPrueba> casos,
+                                        Function<CasoPrueba, Resultado> camino) throws Exception {
+        Resultado[] resultados = new Resultado[casos.size()];
+        // Un stream paralelo lanzado desde una tarea del pool usa ese pool
+        pool.submit(() -> IntStream.range(0, resultados.length).parallel()
+            .forEach(i -> resultados[i] = camino.apply(casos.get(i)))).get();
+        return resultados;
+    }
+
+    private Resultado clips(CasoPrueba caso) {
+        try {
+            Diagnostico diagnostico = clipsIntegration.procesarCasoConClips(caso.caso(), caso.respuestas(), versionReglas);
+            return Resultado.de(null, diagnostico);
+        } catch (RuntimeException e) {
+            return Resultado.error(e);
+        }
+    }
+
+    private Resultado java(CasoPrueba caso, boolean conReglasCompiladas) {
+        Caso entidad = caso.caso();
+        DiagnosticRule regla = engine.seleccionarReglaAplicable(entidad);
+        if (regla == null) {
+            return Resultado.SIN_REGLA;
+        }
+        boolean especifica = indiceReglas.buscar(entidad.getTipo(), entidad.getSintomaReportado()) != null;
+        String idRegla = especifica ? regla.getId() : regla.getId() + " (genérica)";
+        try {
+            InferenceEngine.EntradaDiagnostico entrada = new InferenceEngine.EntradaDiagnostico(entidad, regla,
+                DatosBenchmark.respuestasJava(regla, caso.respuestas()),
+                conReglasCompiladas ? caso.respuestas() : null, versionReglas);
+            return Resultado.de(idRegla, engine.inferirDiagnostico(entrada));
+        } catch (RuntimeException e) {
+            return Resultado.error(e);
+        }
+    }
+
+    /**
+     * Cobertura y diferencias con CLIPS acumuladas bloque a bloque
+     */
+    static final class Comparacion {
+        private final Conocidas conocidas;
+        private final Map<String, Cobertura> cobertura = new LinkedHashMap<>();
+        private final Map<String, Map<String, Integer>> diferenciasPorCampo = new LinkedHashMap<>();
+        private final List<Divergencia> divergencias = new ArrayList<>();
+        private int casos;
+
+        Comparacion(Collection<String> caminos, Conocidas conocidas) {
+            this.conocidas = conocidas;
+            caminos.forEach(camino -> {
+                cobertura.put(camino, new Cobertura());
+                if (!CLIPS.equals(camino)) {
+                    diferenciasPorCampo.put(camino, new TreeMap<>());
+                }
+            });
+        }
+
+        void agregar(List<CasoPrueba> bloque, Map<String, Resultado[]> resultados) {
+            Resultado[] clips = resultados.get(CLIPS);
+            for (int i = 0; i < bloque.size(); i++) {
+                Caso caso = bloque.get(i).caso();
+                Map<String, Resultado> delCaso = new LinkedHashMap<>();
+                Map<String, List<String>> diferentes = new LinkedHashMap<>();
+                for (Map.Entry<String, Resultado[]> camino : resultados.entrySet()) {
+                    Resultado resultado = camino.getValue()[i];
+                    delCaso.put(camino.getKey(), resultado);
+                    cobertura.get(camino.getKey()).contar(caso.getId(), resultado);
+                    if (CLIPS.equals(camino.getKey())) {
+                        continue;
+                    }
+                    List<String> campos = resultado.diferencias(clips[i]);
+                    if (!campos.isEmpty()) {
+                        diferentes.put(camino.getKey(), campos);
+                        campos.forEach(campo -> diferenciasPorCampo.get(camino.getKey()).merge(campo, 1, Integer::sum));
+                    }
+                }
+                if (!diferentes.isEmpty()) {
+                    divergencias.add(Divergencia.de(caso, delCaso, diferentes, conocidas));
+                }
+            }
+            casos += bloque.size();
+        }
+
+        Reporte reporte(String versionReglas, List<Rendimiento> rendimiento) {
+            long inestables = rendimiento.stream().mapToLong(Rendimiento::inestables).sum();
+            boolean aprobado = inestables == 0 && divergencias.stream().noneMatch(Divergencia::nueva);
+            return new Reporte(versionReglas, casos, aprobado, cobertura, diferenciasPorCampo, rendimiento,
+                conocidas.usos(), divergencias);
+        }
+    }
+
+    /**
+     * Divergencias conocidas con CLIPS (equivalencia-conocidas.txt), una por línea:
+     * camino | regla Java | causa probable de CLIPS | causa probable del camino.
+     * Cubren todos los campos distintos de los casos con esas causas; un caso que un camino no
+     * diagnostica o en que falla nunca es conocido.
+     */
+    static final class Conocidas {
+        private final Map<String, Integer> usos = new LinkedHashMap<>();
+
+        static Conocidas cargar() throws IOException {
+            Conocidas conocidas = new Conocidas();
+            try (InputStream in = EquivalenciaReglas.class.getResourceAsStream(CONOCIDAS)) {
+                if (in == null) {
+                    throw new IOException("No se encontró " + CONOCIDAS);
+                }
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).lines()
+                    .map(String::strip)
+                    .filter(linea -> !linea.isEmpty() && !linea.startsWith("#"))
+                    .forEach(linea -> {
+                        String[] partes = linea.split("\\s*\\|\\s*");
+                        if (partes.length != 4) {
+                            throw new IllegalArgumentException(CONOCIDAS + ": se esperan 4 columnas en " + linea);
+                        }
+                        conocidas.usos.put(String.join(" | ", partes), 0);
+                    });
+            }
+            return conocidas;
+        }
+
+        /**
+         * Si la diferencia del camino con CLIPS es conocida; cuenta el uso de la entrada
+         */
+        boolean cubre(String camino, Resultado resultado, Resultado clips) {
+            if (resultado.campos() == null || clips.campos() == null) {
+                return false;
+            }
+            String clave = String.join(" | ", camino, String.valueOf(resultado.regla()),
+                String.valueOf(clips.valor("causaProbable")), String.valueOf(resultado.valor("causaProbable")));
+            return usos.computeIfPresent(clave, (entrada, casos) -> casos + 1) != null;
+        }
+
+        /**
+         * Casos cubiertos por cada entrada; las que quedan en 0 ya no hacen falta
+         */
+        Map<String, Integer> usos() {
+            return usos;
+        }
+    }
+
+    /**
+     * Resultado de un camino para un caso: los campos comparables del Diagnostico (null si no
+     * hubo diagnóstico), la regla Java usada y el error si falló
+     */
+    record Resultado(String regla, Map<String, Object> campos, String error) {
+
+        static final Resultado SIN_REGLA = new Resultado(null, null, "sin regla aplicable");
+
+        static Resultado de(String regla, Diagnostico diagnostico) {
+            if (diagnostico == null) {
+                return new Resultado(regla, null, null);
+            }
+            Map<String, Object> campos = new LinkedHashMap<>();
+            campos.put("causaProbable", diagnostico.getCausaProbable());
+            campos.put("probabilidad", diagnostico.getProbabilidad());
+            campos.put("componenteAfectado", diagnostico.getComponenteAfectado());
+            campos.put("requiereTecnico", diagnostico.getRequiereTecnico());
+            campos.put("tipoSolucion", diagnostico.getTipoSolucion());
+            campos.put("urgencia", diagnostico.getUrgencia());
+            campos.put("costoEstimadoMin", diagnostico.getCostoEstimadoMin());
+            campos.put("costoEstimadoMax", diagnostico.getCostoEstimadoMax());
+            campos.put("tiempoEstimado", diagnostico.getTiempoEstimado());
+            campos.put("instruccionesDiy", List.copyOf(diagnostico.getInstruccionesDiy()));
+            campos.put("alertasSeguridad", List.copyOf(diagnostico.getAlertasSeguridad()));
+            campos.put("repuestosProbables", List.copyOf(diagnostico.getRepuestosProbables()));
+            campos.put("mensajesCliente", List.copyOf(diagnostico.getMensajesCliente()));
+            campos.put("generarOrdenTrabajo", diagnostico.getGenerarOrdenTrabajo());
+            campos.put("prioridadOT", diagnostico.getPrioridadOT());
+            return new Resultado(regla, campos, null);
+        }
+
+        Object valor(String campo) {
+            return switch (campo) {
+                case "error" -> error;
+                case "diagnostico" -> campos != null ? campos.get("causaProbable") : null;
+                default -> campos != null ? campos.get(campo) : null;
+            };
+        }
+
+        static Resultado error(RuntimeException e) {
+            return new Resultado(null, null, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+
+        /**
+         * Campos en que difiere de otro resultado; "diagnostico" si sólo uno diagnosticó
+         */
+        List<String> diferencias(Resultado otro) {
+            if (error != null || otro.error != null) {
+                return Objects.equals(error, otro.error) ? List.of() : List.of("error");
+            }
+            if (campos == null || otro.campos == null) {
+                return campos == otro.campos ? List.of() : List.of("diagnostico");
+            }
+            return campos.keySet().stream()
+                .filter(campo -> !Objects.equals(campos.get(campo), otro.campos.get(campo)))
+                .toList();
+        }
+    }
+
+    static final class Cobertura {
+        public int diagnosticados;
+        public final List<Long> sinDiagnostico = new ArrayList<>();
+        public final List<Long> reglaGenerica = new ArrayList<>();
+        public final Map<Long, String> errores = new TreeMap<>();
+
+        void contar(Long casoId, Resultado resultado) {
+            if (resultado.error() != null) {
+                errores.put(casoId, resultado.error());
+            } else if (resultado.campos() == null) {
+                sinDiagnostico.add(casoId);
+            } else {
+                diagnosticados++;
+            }
+            if (resultado.regla() != null && resultado.regla().endsWith("(genérica)")) {
+                reglaGenerica.add(casoId);
+            }
+        }
+    }
+
+    /**
+     * @param inestables casos con otro resultado que en el primer nivel de paralelismo
+     */
+    record Rendimiento(String camino, int paralelismo, long casos, long milisegundos, double casosPorSegundo,
+                       int inestables) {
+    }
+
+    /**
+     * Caso en que algún camino difiere de CLIPS
+     *
+     * @param huecoClips  CLIPS no diagnosticó el caso, que queda para la regla Java
+     * @param reglas      regla Java usada por cada camino
+     * @param diferencias campos distintos de CLIPS por camino
+     * @param conocidas   caminos cuya diferencia está entre las divergencias conocidas
+     * @param valores     valor de cada campo distinto por camino ("diagnostico": la causa probable)
+     */
+    record Divergencia(Long casoId, String tipo, String sintoma, boolean huecoClips, Map<String, String> reglas,
+                       Map<String, List<String>> diferencias, Set<String> conocidas,
+                       Map<String, Map<String, Object>> valores) {
+
+        static Divergencia de(Caso caso, Map<String, Resultado> resultados, Map<String, List<String>> diferencias,
+                              Conocidas registro) {
+            Map<String, String> reglas = new LinkedHashMap<>();
+            Map<String, Map<String, Object>> valores = new TreeMap<>();
+            resultados.forEach((camino, resultado) -> {
+                if (resultado.regla() != null) {
+                    reglas.put(camino, resultado.regla());
+                }
+            });
+            diferencias.values().stream().flatMap(List::stream).distinct().forEach(campo -> {
+                // LinkedHashMap admite null: el camino no diagnosticó
+                Map<String, Object> porCamino = new LinkedHashMap<>();
+                resultados.forEach((camino, resultado) -> porCamino.put(camino, resultado.valor(campo)));
+                valores.put(campo, porCamino);
+            });
+            Resultado clips = resultados.get(CLIPS);
+            boolean huecoClips = clips.campos() == null && clips.error() == null;
+            Set<String> conocidas = new TreeSet<>();
+            if (!huecoClips) {
+                diferencias.keySet().stream()
+                    .filter(camino -> registro.cubre(camino, resultados.get(camino), clips))
+                    .forEach(conocidas::add);
+            }
+            return new Divergencia(caso.getId(), caso.getTipo().name(), caso.getSintomaReportado(), huecoClips,
+                reglas, diferencias, conocidas, valores);
+        }
+
+        /**
+         * Si el camino difiere de lo que resolvió CLIPS; un hueco de CLIPS no es una divergencia
+         */
+        boolean difiereDeClips(String camino) {
+            return !huecoClips && diferencias.containsKey(camino);
+        }
+
+        /**
+         * Si algún camino difiere de CLIPS fuera de las divergencias conocidas
+         */
+        boolean nueva() {
+            return !huecoClips && !conocidas.containsAll(diferencias.keySet());
+        }
+    }
+
+    /**
+     * @param conocidas casos cubiertos por cada divergencia conocida
+     */
+    record Reporte(String versionReglas, int casos, boolean aprobado, Map<String, Cobertura> cobertura,
+                   Map<String, Map<String, Integer>> diferenciasPorCampo, List<Rendimiento> rendimiento,
+                   Map<String, Integer> conocidas, List<Divergencia> divergencias) {
+
+        String resumen() {
+            StringBuilder resumen = new StringBuilder()
+                .append("Reglas CLIPS ").append(versionReglas).append(", ").append(casos).append(" casos: ")
+                .append(aprobado ? "APROBADO" : "RECHAZADO").append('\n');
+            cobertura.forEach((camino, c) -> resumen.append(String.format(Locale.ROOT,
+                "  %-10s %5d diagnosticados, %4d sin diagnóstico, %4d con regla genérica, %d errores, %d difieren de CLIPS (%d conocidas)%n",
+                camino, c.diagnosticados, c.sinDiagnostico.size(), c.reglaGenerica.size(), c.errores.size(),
+                divergencias.stream().filter(d -> d.difiereDeClips(camino)).count(),
+                divergencias.stream().filter(d -> d.difiereDeClips(camino) && d.conocidas().contains(camino)).count())));
+            rendimiento.forEach(r -> resumen.append(String.format(Locale.ROOT,
+                "  %-10s paralelismo %2d: %,12.0f casos/s%s%n", r.camino(), r.paralelismo(), r.casosPorSegundo(),
+                r.inestables() > 0 ? " (" + r.inestables() + " casos inestables)" : "")));
+            conocidas.forEach((conocida, usos) -> {
+                if (usos == 0) {
+                    resumen.append("  divergencia conocida sin casos: ").append(conocida).append('\n');
+                }
+            });
+            return resumen.toString();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.service.EquivalenciaReglas.Conocidas;
+import com.sistemaexperto.service.EquivalenciaReglas.Divergencia;
+import com.sistemaexperto.service.EquivalenciaReglas.Reporte;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Muestra fija del arnés de equivalencia en el build: uno de cada 10 casos del corpus (los tres
+ * electrodomésticos) por los tres caminos, secuencial y en paralelo, sin rondas de medición.
+ * La corrida completa sigue siendo mvn -P benchmark test-compile exec:exec@equivalencia.
+ */
+class EquivalenciaReglasTest {
+
+    @Test
+    void laMuestraDelCorpusNoTieneDivergenciasNuevasNiResultadosInestables() throws Exception {
+        Reporte reporte = new EquivalenciaReglas().ejecutar(List.of(1, 4), 0, 100, 10, Conocidas.cargar());
+
+        assertThat(reporte.casos()).isEqualTo(200);
+        assertThat(reporte.divergencias()).filteredOn(Divergencia::nueva).as("divergencias nuevas con CLIPS").isEmpty();
+        assertThat(reporte.rendimiento()).allSatisfy(rendimiento ->
+            assertThat(rendimiento.inestables()).as("inestables en %s", rendimiento).isZero());
+        assertThat(reporte.cobertura()).allSatisfy((camino, cobertura) ->
+            assertThat(cobertura.errores).as("errores de %s", camino).isEmpty());
+        assertThat(reporte.cobertura().get(EquivalenciaReglas.CLIPS).diagnosticados).isPositive();
+        assertThat(reporte.aprobado()).isTrue();
+    }
+}
@@ -0,0 +1,99 @@
+package com.sistemaexperto.service;
+
+import com.sistemaexperto.service.rules.heladera.HeladeraNoEnfriaRule;
+import com.sistemaexperto.service.session.HipotesisSesion;
+import com.sistemaexperto.service.session.SesionDiagnostico;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dos instancias con su propio VolcadoHipotesis sobre la misma base: una copia vieja pendiente
+ * en una instancia no pisa lo que otra ya volcó con una versión más nueva
+ */
+class VolcadoHipotesisTest {
+
+    private static final long CASO = 1L;
+    private static final long HIPOTESIS = 10L;
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private VolcadoHipotesis nodoA;
+    private VolcadoHipotesis nodoB;
+
+    @BeforeEach
+    void crearBase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:volcado;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS hipotesis");
+        jdbcTemplate.execute("""
+            CREATE TABLE hipotesis (id BIGINT PRIMARY KEY, descripcion VARCHAR(255), probabilidad INT,
+                                    activa BOOLEAN NOT NULL, version_sesion BIGINT, caso_id BIGINT)""");
+        jdbcTemplate.update("INSERT INTO hipotesis (id, descripcion, probabilidad, activa, caso_id) VALUES (?, 'Compresor', 30, FALSE, ?)",
+                HIPOTESIS, CASO);
+        nodoA = new VolcadoHipotesis(jdbcTemplate, transactionManager);
+        nodoB = new VolcadoHipotesis(jdbcTemplate, transactionManager);
+    }
+
+    @Test
+    void unaCopiaMasViejaVolcadaDespuesNoPisaLaMasNueva() {
+        nodoA.programar(sesion(3, 40, false));
+        nodoB.programar(sesion(5, 80, true));
+
+        nodoB.volcarPendientes();
+        nodoA.volcarPendientes();
+
+        assertThat(fila()).containsEntry("PROBABILIDAD", 80).containsEntry("ACTIVA", true).containsEntry("VERSION_SESION", 5L);
+    }
+
+    @Test
+    void unaCopiaMasNuevaReemplazaLaAnterior() {
+        nodoA.programar(sesion(3, 40, false));
+        nodoA.volcarPendientes();
+        nodoB.programar(sesion(5, 80, true));
+        nodoB.volcarPendientes();
+
+        assertThat(fila()).containsEntry("PROBABILIDAD", 80).containsEntry("VERSION_SESION", 5L);
+    }
+
+    @Test
+    void ningunVolcadoPeriodicoPisaElDiagnosticoFinal() {
+        nodoA.programar(sesion(5, 40, false));
+        SesionDiagnostico finalB = sesion(5, 95, true);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> nodoB.volcar(finalB));
+
+        nodoA.volcarPendientes();
+
+        assertThat(fila()).containsEntry("PROBABILIDAD", 95).containsEntry("VERSION_SESION", VolcadoHipotesis.VERSION_FINAL);
+    }
+
+    @Test
+    void lasSesionesSinCambiosPendientesNoSeVuelcan() {
+        SesionDiagnostico sesion = sesion(7, 60, true);
+        sesion.tomarHipotesisPendientes();
+        nodoA.programar(sesion);
+        nodoA.volcarPendientes();
+
+        assertThat(fila()).containsEntry("PROBABILIDAD", 30).containsEntry("VERSION_SESION", null);
+    }
+
+    private static SesionDiagnostico sesion(long ultimaRespuestaId, int probabilidad, boolean activa) {
+        SesionDiagnostico sesion = new SesionDiagnostico(CASO, new HeladeraNoEnfriaRule(), null);
+        sesion.registrarRespuesta("h_ne_p1", "si", ultimaRespuestaId);
+        sesion.getHipotesis().add(new HipotesisSesion(HIPOTESIS, "Compresor", probabilidad, activa));
+        sesion.marcarHipotesisPendientes();
+        return sesion;
+    }
+
+    private Map<String, Object> fila() {
+        return jdbcTemplate.queryForMap("SELECT probabilidad, activa, version_sesion FROM hipotesis WHERE id = ?", HIPOTESIS);
+    }
+}
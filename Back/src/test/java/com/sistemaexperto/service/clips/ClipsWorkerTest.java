@@ -0,0 +1,58 @@
+package com.sistemaexperto.service.clips;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El worker entrega al lector la salida hasta su marca de fin y nada más. En lugar de CLIPS
+ * corre un script que responde (facts) con un listado fijo e imprime la marca pedida
+ * en una línea con el prompt y texto que no pertenece a la inferencia.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class ClipsWorkerTest {
+
+    private static final String CLIPS_FALSO = """
+            #!/bin/sh
+            while IFS= read -r linea; do
+              case "$linea" in
+                '(facts)')
+                  printf 'f-0     (initial-fact)\\n'
+                  printf 'f-1     (diagnostico (caso-id 1) (causa "compresor (principal)")\\n'
+                  printf '           (repuestos "filtro" bomba))\\n'
+                  printf 'f-2     (recomendacion (caso-id 1) (texto "sin cerrar\\n' ;;
+                '(printout t "<<FIN-'*)
+                  marca=${linea#*\\"}
+                  printf 'CLIPS> %s f-9 (alerta-seguridad (caso-id 1))\\n' "${marca%%\\"*}" ;;
+                '(exit)') exit 0 ;;
+              esac
+            done
+            """;
+
+    @Test
+    void laSalidaSeCortaEnLaMarcaDeFin(@TempDir Path directorio) throws Exception {
+        Path script = directorio.resolve("clips");
+        Files.writeString(script, CLIPS_FALSO);
+        assertThat(script.toFile().setExecutable(true)).isTrue();
+
+        try (ClipsWorker worker = ClipsWorker.iniciar(script.toString(), List.of(), 5000)) {
+            for (int corrida = 0; corrida < 2; corrida++) {
+                List<HechoClips> hechos = worker.ejecutar(new StringBuilder("(caso (id 1))\n"), 5000);
+
+                // Ni el hecho abierto al llegar la marca ni lo impreso en su línea quedan en el resultado
+                assertThat(hechos).extracting(HechoClips::plantilla).containsExactly("initial-fact", "diagnostico");
+                assertThat(hechos.get(1).slots())
+                        .containsEntry("causa", "compresor (principal)")
+                        .containsEntry("repuestos", List.of("filtro", "bomba"));
+            }
+            assertThat(worker.getCasosAtendidos()).isEqualTo(2);
+        }
+    }
+}
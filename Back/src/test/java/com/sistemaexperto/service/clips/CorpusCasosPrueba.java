@@ -0,0 +1,272 @@
+package com.sistemaexperto.service.clips;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.model.Respuesta;
+import com.sistemaexperto.model.enums.EstadoCaso;
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.service.clips.motor.LectorClips;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Corpus de casos de prueba definido en clips/casos-prueba.clp.
+ * Convierte el deffacts en casos Java (sin persistir) con sus respuestas, y conserva
+ * los hechos CLIPS originales para ejecutar ambos caminos de inferencia sobre el mismo caso.
+ * Los hechos de cada caso tienen que estar juntos: el corpus se lee hecho por hecho y cada caso
+ * se completa al empezar el siguiente.
+ */
+public final class CorpusCasosPrueba {
+
+    public static final String RECURSO = "/clips/casos-prueba.clp";
+
+    /**
+     * Caso del corpus.
+     *
+     * @param caso        caso con id, electrodoméstico y síntoma
+     * @param respuestas  respuestas con id de pregunta numérico (las que entiende ClipsMapper)
+     * @param respuestasClips todas las respuestas por id de pregunta CLIPS, con su valor textual
+     * @param hechos      hechos CLIPS del caso tal como aparecen en el corpus
+     */
+    public record CasoPrueba(Caso caso, List<Respuesta> respuestas,
+                             Map<String, String> respuestasClips, List<String> hechos) {
+    }
+
+    private CorpusCasosPrueba() {
+    }
+
+    /**
+     * Carga el corpus completo desde el classpath
+     */
+    public static List<CasoPrueba> cargar() throws IOException {
+        try (Stream<CasoPrueba> casos = recorrer()) {
+            return casos.toList();
+        }
+    }
+
+    /**
+     * Recorre el corpus del classpath caso por caso, sin cargarlo entero. El stream se tiene que cerrar.
+     */
+    public static Stream<CasoPrueba> recorrer() throws IOException {
+        InputStream in = CorpusCasosPrueba.class.getResourceAsStream(RECURSO);
+        if (in == null) {
+            throw new IOException("No se encontró el corpus " + RECURSO);
+        }
+        LectorCorpus lector = new LectorCorpus(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        Spliterator<CasoPrueba> casos = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super CasoPrueba> accion) {
+                CasoPrueba caso = lector.siguienteCaso();
+                if (caso == null) {
+                    return false;
+                }
+                accion.accept(caso);
+                return true;
+            }
+        };
+        return StreamSupport.stream(casos, false).onClose(lector::cerrar);
+    }
+
+    private static void agregarHecho(Constructor constructor, List<?> hecho, Map<String, Object> slots) {
+        String plantilla = hecho.get(0).toString();
+        constructor.hechos.add(escribir(hecho));
+
+        Caso caso = constructor.caso;
+        switch (plantilla) {
+            case "caso" -> {
+                caso.setClienteNombre(texto(slots.get("cliente")));
+                caso.setClienteTelefono(texto(slots.get("telefono")));
+            }
+            case "electrodomestico" -> {
+                TipoElectrodomestico tipo = TipoElectrodomestico.valueOf(texto(slots.get("tipo")).toUpperCase());
+                caso.setTipo(tipo);
+                caso.setTipoElectrodomestico(tipo);
+                caso.setMarca(texto(slots.get("marca")));
+                caso.setModelo(texto(slots.get("modelo")));
+                caso.setAntiguedad(slots.get("antiguedad") instanceof Long antiguedad ? antiguedad.intValue() : null);
+            }
+            case "sintoma" -> {
+                caso.setSintomaReportado(texto(slots.get("descripcion")));
+                caso.setDescripcion(caso.getSintomaReportado());
+            }
+            case "respuesta" -> {
+                String pregunta = texto(slots.get("pregunta"));
+                String valor = texto(slots.get("valor"));
+                constructor.respuestasClips.put(pregunta, valor);
+                if (pregunta.chars().allMatch(Character::isDigit)) {
+                    Respuesta respuesta = new Respuesta();
+                    respuesta.setCaso(caso);
+                    respuesta.setPreguntaId(Long.parseLong(pregunta));
+                    respuesta.setValor(valor);
+                    constructor.respuestas.add(respuesta);
+                }
+            }
+            default -> {
+                // Otras plantillas sólo se conservan como hechos CLIPS
+            }
+        }
+    }
+
+    private static Map<String, Object> slots(List<?> hecho) {
+        Map<String, Object> slots = new HashMap<>();
+        for (Object slot : hecho.subList(1, hecho.size())) {
+            List<?> par = (List<?>) slot;
+            slots.put(par.get(0).toString(), par.size() > 1 ? par.get(1) : null);
+        }
+        return slots;
+    }
+
+    private static String texto(Object valor) {
+        return valor == null ? null : valor.toString();
+    }
+
+    /**
+     * Vuelve a escribir una expresión con sintaxis CLIPS
+     */
+    private static String escribir(Object expresion) {
+        if (expresion instanceof List<?> lista) {
+            StringJoiner texto = new StringJoiner(" ", "(", ")");
+            lista.forEach(elemento -> texto.add(escribir(elemento)));
+            return texto.toString();
+        }
+        if (expresion instanceof String cadena) {
+            return '"' + cadena.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+        }
+        return expresion.toString();
+    }
+
+    private static final class Constructor {
+        final Caso caso = new Caso();
+        final List<Respuesta> respuestas = new ArrayList<>();
+        final Map<String, String> respuestasClips = new LinkedHashMap<>();
+        final List<String> hechos = new ArrayList<>();
+
+        Constructor(Long id) {
+            caso.setId(id);
+            caso.setEstado(EstadoCaso.EN_DIAGNOSTICO);
+        }
+
+        CasoPrueba construir() {
+            return new CasoPrueba(caso, List.copyOf(respuestas),
+                Collections.unmodifiableMap(respuestasClips), List.copyOf(hechos));
+        }
+    }
+
+    /**
+     * Lee los hechos de los deffacts de a uno, con los comentarios y cadenas de CLIPS, y los agrupa por caso
+     */
+    private static final class LectorCorpus {
+        private final Reader entrada;
+        private final StringBuilder cabecera = new StringBuilder();
+        private final StringBuilder hecho = new StringBuilder();
+        private final Set<Long> completos = new HashSet<>();
+        private int profundidad;
+        private boolean enDeffacts;
+        private boolean enCadena;
+        private boolean escape;
+        private boolean enComentario;
+        private Constructor actual;
+
+        LectorCorpus(Reader entrada) {
+            this.entrada = entrada;
+        }
+
+        CasoPrueba siguienteCaso() {
+            try {
+                String texto;
+                while ((texto = siguienteHecho()) != null) {
+                    List<?> hecho = (List<?>) LectorClips.leerUna(texto);
+                    Map<String, Object> slots = slots(hecho);
+                    Object id = "caso".equals(hecho.get(0).toString()) ? slots.get("id") : slots.get("caso-id");
+                    if (!(id instanceof Long casoId)) {
+                        throw new IllegalArgumentException("Hecho sin caso-id en el corpus: " + texto);
+                    }
+                    CasoPrueba completo = null;
+                    if (actual == null || !actual.caso.getId().equals(casoId)) {
+                        completo = completar();
+                        if (completos.contains(casoId)) {
+                            throw new IllegalArgumentException("Los hechos del caso " + casoId + " no están juntos en el corpus");
+                        }
+                        actual = new Constructor(casoId);
+                    }
+                    agregarHecho(actual, hecho, slots);
+                    if (completo != null) {
+                        return completo;
+                    }
+                }
+                return completar();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private CasoPrueba completar() {
+            if (actual == null) {
+                return null;
+            }
+            completos.add(actual.caso.getId());
+            CasoPrueba caso = actual.construir();
+            actual = null;
+            return caso;
+        }
+
+        /**
+         * Texto del siguiente hecho de un deffacts, o null al final del corpus
+         */
+        private String siguienteHecho() throws IOException {
+            int c;
+            while ((c = entrada.read()) >= 0) {
+                char ch = (char) c;
+                if (enComentario) {
+                    enComentario = ch != '\n';
+                    continue;
+                }
+                if (enCadena) {
+                    enCadena = escape || ch != '"';
+                    escape = !escape && ch == '\\';
+                } else if (ch == ';') {
+                    enComentario = true;
+                    continue;
+                } else if (ch == '"') {
+                    enCadena = true;
+                } else if (ch == '(' && ++profundidad == 1) {
+                    cabecera.setLength(0);
+                    continue;
+                } else if (ch == '(' && profundidad == 2) {
+                    enDeffacts = "deffacts".equals(cabecera.toString().strip().split("\\s+")[0]);
+                }
+
+                if (profundidad == 1) {
+                    cabecera.append(ch);
+                } else if (enDeffacts) {
+                    hecho.append(ch);
+                }
+                if (!enCadena && ch == ')' && --profundidad == 1 && !hecho.isEmpty()) {
+                    String texto = hecho.toString();
+                    hecho.setLength(0);
+                    return texto;
+                }
+                if (profundidad < 0) {
+                    throw new IllegalArgumentException(RECURSO + ": ')' sin '(' correspondiente");
+                }
+            }
+            if (profundidad != 0 || enCadena) {
+                throw new IllegalArgumentException(RECURSO + ": expresión sin cerrar al final del corpus");
+            }
+            return null;
+        }
+
+        void cerrar() {
+            try {
+                entrada.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.sistemaexperto.service.clips;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Parseo de listados de (facts): cadenas con escapes, paréntesis anidados, multislots y salida
+ * cortada, entregada de una vez o de a pedazos
+ */
+class LectorHechosClipsTest {
+
+    @Test
+    void lasCadenasConservanComillasYBarrasEscapadas() {
+        List<HechoClips> hechos = LectorHechosClips.parsear("""
+                f-1     (recomendacion (caso-id 1) (texto "dice \\"no\\" y C:\\\\dir\\\\x") (vacia ""))
+                """);
+
+        assertThat(hechos).hasSize(1);
+        assertThat(hechos.get(0).slots())
+                .containsEntry("texto", "dice \"no\" y C:\\dir\\x")
+                .containsEntry("vacia", "");
+    }
+
+    @Test
+    void losParentesisDentroDeCadenasNoCierranElHecho() {
+        List<HechoClips> hechos = LectorHechosClips.parsear("""
+                f-1     (alerta-seguridad (caso-id 2) (mensaje "desenchufar (siempre) antes :)"))
+                f-2     (recomendacion (caso-id 2) (texto "ok"))
+                """);
+
+        assertThat(hechos).extracting(HechoClips::plantilla).containsExactly("alerta-seguridad", "recomendacion");
+        assertThat(hechos.get(0).slots()).containsEntry("mensaje", "desenchufar (siempre) antes :)");
+    }
+
+    @Test
+    void losValoresAnidadosMasProfundoSeIgnoranSinDesbalancearElHecho() {
+        List<HechoClips> hechos = LectorHechosClips.parsear("""
+                f-1     (diagnostico (caso-id 3) (extra (a (b c)) d) (causa compresor))
+                f-2     (metrica (nombre disparos) (valor 4))
+                """);
+
+        assertThat(hechos).hasSize(2);
+        assertThat(hechos.get(0).slots())
+                .containsEntry("caso-id", 3)
+                .containsEntry("extra", "d")
+                .containsEntry("causa", "compresor");
+        assertThat(hechos.get(1).slots()).containsEntry("valor", 4);
+    }
+
+    @Test
+    void losMultislotsQuedanComoListaYLosValoresSeTipan() {
+        List<HechoClips> hechos = LectorHechosClips.parsear("""
+                f-1     (diagnostico (caso-id 4) (repuestos "filtro" bomba 3 -2.5 9999999999) (uno solo) (ninguno))
+                f-2     (alerta a "b c" 7)
+                f-3     (initial-fact)
+                """);
+
+        assertThat(hechos.get(0).slots())
+                .containsEntry("repuestos", List.of("filtro", "bomba", 3, -2.5, 9999999999L))
+                .containsEntry("uno", "solo")
+                .containsEntry("ninguno", List.of());
+        assertThat(hechos.get(1).slots()).isEqualTo(Map.of(LectorHechosClips.SLOT_IMPLICITO, List.of("a", "b c", 7)));
+        assertThat(hechos.get(2).plantilla()).isEqualTo("initial-fact");
+        assertThat(hechos.get(2).slots()).isEmpty();
+    }
+
+    @Test
+    void losPromptsYLosPrintoutSeIgnoran() {
+        List<HechoClips> hechos = LectorHechosClips.parsear("""
+                CLIPS> Regla disparada: diff-1 (no es un hecho)
+                DIAGNOSTICOS:
+                CLIPS> f-0     (initial-fact)
+                f-1     (diagnostico (caso-id 5) (causa "x"))
+                For a total of 2 facts.
+                """);
+
+        assertThat(hechos).extracting(HechoClips::plantilla).containsExactly("initial-fact", "diagnostico");
+    }
+
+    @Test
+    void unHechoCortadoPorLaMarcaDeFinNoSeEmite() {
+        // El worker entrega las líneas hasta la marca, sin incluirla: lo que quedó abierto se descarta
+        LectorHechosClips lector = new LectorHechosClips();
+        lector.leerLinea("f-1     (diagnostico (caso-id 6) (causa \"completo\"))");
+        lector.leerLinea("f-2     (recomendacion (caso-id 6) (texto \"sin cerrar");
+
+        assertThat(lector.getHechos()).extracting(HechoClips::plantilla).containsExactly("diagnostico");
+
+        // Un lector nuevo por inferencia: el corte anterior no contamina la siguiente
+        assertThat(LectorHechosClips.parsear("f-1     (recomendacion (caso-id 7) (texto \"nuevo\"))\n"))
+                .singleElement()
+                .extracting(HechoClips::slots)
+                .isEqualTo(Map.of("caso-id", 7, "texto", "nuevo"));
+    }
+
+    @Test
+    void elResultadoNoDependeDeComoSeParteLaSalida() throws Exception {
+        String salida = """
+                CLIPS> f-0     (initial-fact)
+                f-1     (diagnostico (caso-id 8) (causa "a \\"b\\" (c)")
+                           (repuestos filtro "x\\\\y" 2.0) (prob 85))
+                f-12    (alerta x y)
+                """;
+        List<HechoClips> esperados = LectorHechosClips.parsear(salida);
+        assertThat(esperados).hasSize(3);
+
+        for (int corte = 1; corte < salida.length(); corte++) {
+            LectorHechosClips lector = new LectorHechosClips();
+            char[] datos = salida.toCharArray();
+            lector.leer(datos, 0, corte);
+            lector.leer(datos, corte, datos.length - corte);
+            assertThat(lector.getHechos()).as("corte en %d", corte).isEqualTo(esperados);
+        }
+
+        LectorHechosClips porLineas = new LectorHechosClips();
+        salida.lines().forEach(porLineas::leerLinea);
+        assertThat(porLineas.getHechos()).isEqualTo(esperados);
+
+        LectorHechosClips porReader = new LectorHechosClips();
+        porReader.leer(new StringReader(salida));
+        assertThat(porReader.getHechos()).isEqualTo(esperados);
+    }
+}
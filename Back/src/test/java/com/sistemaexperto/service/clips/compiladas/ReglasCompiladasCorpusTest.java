@@ -0,0 +1,204 @@
+package com.sistemaexperto.service.clips.compiladas;
+
+import com.sistemaexperto.model.Caso;
+import com.sistemaexperto.service.ClipsService;
+import com.sistemaexperto.service.clips.AnalisisReglas;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba;
+import com.sistemaexperto.service.clips.CorpusCasosPrueba.CasoPrueba;
+import com.sistemaexperto.service.clips.HechoClips;
+import com.sistemaexperto.service.clips.motor.CompiladorClips;
+import com.sistemaexperto.service.clips.compiladas.HechosCaso.HechoRespuesta;
+import com.sistemaexperto.service.clips.motor.Hecho;
+import com.sistemaexperto.service.clips.motor.LectorClips;
+import com.sistemaexperto.service.clips.motor.ProgramaClips;
+import com.sistemaexperto.service.clips.motor.SesionClips;
+import com.sistemaexperto.service.clips.motor.Simbolo;
+import com.sistemaexperto.service.mapper.EscritorHechosClips;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Las reglas que generó el build (GeneradorReglasCompiladas) contra el motor embebido sobre las
+ * mismas fuentes: para cada caso de casos-prueba.clp, y para variantes del corpus con respuestas
+ * quitadas o cambiadas, los hechos de las plantillas que reproducen tienen que ser los mismos y
+ * en el mismo orden.
+ *
+ * Las respuestas se toman de los hechos del corpus, con su pregunta CLIPS y el tipo de su valor:
+ * la mayoría de las preguntas de las reglas no tienen id numérico y no pasan por Respuesta.
+ */
+class ReglasCompiladasCorpusTest {
+
+    private static final long SEMILLA = 20240501L;
+    private static final Object[] VALORES = {
+        new Simbolo("si"), new Simbolo("no"), "si", "no", 1L, 0L, 3L, new Simbolo("alto"), 2.5, ""};
+
+    private static ReglasCompiladas reglas;
+    private static ProgramaClips programa;
+    private static String version;
+
+    @BeforeAll
+    static void cargar() throws IOException {
+        reglas = ServiceLoader.load(ReglasCompiladas.class).findFirst()
+            .orElseThrow(() -> new AssertionError("El build no generó reglas compiladas"));
+
+        CompiladorClips compilador = new CompiladorClips();
+        List<String> fuentes = new ArrayList<>();
+        for (String ruta : ClipsService.ARCHIVOS_REGLAS) {
+            String recurso = "/" + ruta.substring("classpath:".length());
+            String fuente = leer(recurso);
+            compilador.agregar(fuente, recurso);
+            fuentes.add(fuente);
+        }
+        programa = compilador.compilar();
+        version = AnalisisReglas.huella(fuentes);
+    }
+
+    @Test
+    void lasReglasGeneradasSonLasDeLasFuentesActuales() {
+        assertThat(reglas.getVersion()).isEqualTo(version);
+        assertThat(reglas.getPlantillas()).contains("diagnostico", "decision", "solucion", "orden-trabajo");
+        // Las únicas que sólo evalúa CLIPS; una nueva ya hace fallar el build (reglas.no-compiladas)
+        assertThat(reglas.getReglasNoCompiladas()).containsExactlyInAnyOrder("alerta-riesgo-electrico",
+            "evaluar-reemplazo", "mantenimiento-heladera", "mantenimiento-lavarropas", "mantenimiento-microondas");
+        assertThat(reglas.getReglas()).hasSize(programa.getReglas().size() - reglas.getReglasNoCompiladas().size());
+    }
+
+    @Test
+    void danLosMismosHechosQueElMotorEmbebidoEnTodoElCorpus() throws IOException {
+        int casos = 0;
+        int diagnosticados = 0;
+        try (Stream<CasoPrueba> corpus = CorpusCasosPrueba.recorrer()) {
+            for (CasoPrueba caso : (Iterable<CasoPrueba>) corpus::iterator) {
+                List<HechoClips> hechos = comparar(caso.caso(), respuestas(caso), "caso " + caso.caso().getId());
+                casos++;
+                if (hechos.stream().anyMatch(hecho -> "diagnostico".equals(hecho.plantilla()))) {
+                    diagnosticados++;
+                }
+            }
+        }
+
+        // Los mismos números que ReglasCorpusTest: ninguna regla que diagnostica quedó afuera
+        assertThat(casos).isEqualTo(2000);
+        assertThat(diagnosticados).isEqualTo(1124);
+    }
+
+    @Test
+    void danLosMismosHechosEnVariantesDelCorpus() throws IOException {
+        Random azar = new Random(SEMILLA);
+        try (Stream<CasoPrueba> corpus = CorpusCasosPrueba.recorrer()) {
+            for (CasoPrueba caso : (Iterable<CasoPrueba>) corpus::iterator) {
+                List<HechoRespuesta> originales = respuestas(caso);
+                for (int variante = 0; variante < 3; variante++) {
+                    List<HechoRespuesta> respuestas = variar(originales, azar);
+                    comparar(caso.caso(), respuestas, "caso " + caso.caso().getId() + " con " + describir(respuestas));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compara ambos caminos para el caso y retorna los hechos que reproducen las reglas compiladas
+     */
+    private static List<HechoClips> comparar(Caso caso, List<HechoRespuesta> respuestas, String descripcion) {
+        AgendaCompilada agenda = new AgendaCompilada();
+        reglas.activar(new HechosCaso(caso, respuestas.toArray(HechoRespuesta[]::new)), agenda);
+        List<HechoClips> compilados = agenda.ejecutar().stream()
+            .filter(hecho -> reglas.getPlantillas().contains(hecho.plantilla()))
+            .toList();
+
+        StringBuilder hechos = new StringBuilder();
+        EscritorHechosClips.escribirDatosCaso(caso, hechos);
+        EscritorHechosClips.escribirElectrodomestico(caso, hechos);
+        EscritorHechosClips.escribirSintoma(caso, hechos);
+        for (HechoRespuesta respuesta : respuestas) {
+            hechos.append("(respuesta (caso-id ").append(caso.getId()).append(") (pregunta ")
+                .append(escribir(respuesta.pregunta)).append(") (valor ").append(escribir(respuesta.valor)).append("))\n");
+        }
+        SesionClips sesion = programa.nuevaSesion();
+        sesion.insertarTodos(hechos, e -> fail("Hecho descartado en %s: %s", descripcion, e.getMessage()));
+        sesion.ejecutar();
+        List<HechoClips> embebidos = new ArrayList<>();
+        for (Hecho hecho : sesion.getHechos()) {
+            String plantilla = hecho.getPlantilla().getNombre();
+            if (reglas.getPlantillas().contains(plantilla)) {
+                Map<String, Object> slots = new HashMap<>();
+                hecho.comoMapa().forEach((slot, valor) -> slots.put(slot, HechoClips.convertirValor(valor)));
+                embebidos.add(new HechoClips(plantilla, slots));
+            }
+        }
+
+        assertThat(compilados).as(descripcion).isEqualTo(embebidos);
+        return compilados;
+    }
+
+    /**
+     * Respuestas del caso tal como las tiene el corpus, sin repetidas como en la memoria de trabajo
+     */
+    private static List<HechoRespuesta> respuestas(CasoPrueba caso) {
+        List<HechoRespuesta> respuestas = new ArrayList<>();
+        for (String texto : caso.hechos()) {
+            List<?> hecho = (List<?>) LectorClips.leerUna(texto);
+            if (!"respuesta".equals(hecho.get(0).toString())) {
+                continue;
+            }
+            Map<String, Object> slots = new HashMap<>();
+            for (Object slot : hecho.subList(1, hecho.size())) {
+                List<?> par = (List<?>) slot;
+                slots.put(par.get(0).toString(), par.get(1));
+            }
+            agregar(respuestas, new HechoRespuesta((String) slots.get("pregunta"), slots.get("valor")));
+        }
+        return respuestas;
+    }
+
+    /**
+     * Quita una respuesta o cambia el valor de otra, o ambas cosas
+     */
+    private static List<HechoRespuesta> variar(List<HechoRespuesta> originales, Random azar) {
+        List<HechoRespuesta> copia = new ArrayList<>(originales);
+        if (!copia.isEmpty() && azar.nextBoolean()) {
+            copia.remove(azar.nextInt(copia.size()));
+        }
+        if (!copia.isEmpty()) {
+            int indice = azar.nextInt(copia.size());
+            copia.set(indice, new HechoRespuesta(copia.get(indice).pregunta, VALORES[azar.nextInt(VALORES.length)]));
+        }
+        List<HechoRespuesta> respuestas = new ArrayList<>();
+        copia.forEach(respuesta -> agregar(respuestas, respuesta));
+        return respuestas;
+    }
+
+    private static void agregar(List<HechoRespuesta> respuestas, HechoRespuesta respuesta) {
+        if (!respuestas.contains(respuesta)) {
+            respuestas.add(respuesta);
+        }
+    }
+
+    private static String escribir(Object valor) {
+        if (valor instanceof String cadena) {
+            return '"' + cadena.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+        }
+        return valor instanceof Simbolo simbolo ? simbolo.nombre() : valor.toString();
+    }
+
+    private static String describir(List<HechoRespuesta> respuestas) {
+        StringJoiner texto = new StringJoiner(", ", "{", "}");
+        respuestas.forEach(respuesta -> texto.add(respuesta.pregunta + "=" + escribir(respuesta.valor)));
+        return texto.toString();
+    }
+
+    private static String leer(String recurso) throws IOException {
+        try (InputStream in = ReglasCompiladasCorpusTest.class.getResourceAsStream(recurso)) {
+            return new String(Objects.requireNonNull(in, recurso).readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.sistemaexperto.service.clips.motor;
+
+import com.sistemaexperto.service.ClipsService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cada regla de los .clp sobre cada caso de casos-prueba.clp. El resultado esperado lo da una
+ * evaluación directa de las reglas, sin red Rete: prueba todas las combinaciones de hechos de
+ * cada patrón hasta que ninguna regla agrega hechos. Las reglas sólo afirman hechos, así que los
+ * hechos finales no dependen del orden de disparo y tienen que ser los mismos que los de la sesión.
+ */
+class ReglasCorpusTest {
+
+    private static final String CORPUS = "/clips/casos-prueba.clp";
+
+    private static ProgramaClips programa;
+    private static List<ReglaDirecta> reglas;
+    private static Map<Long, List<String>> casos;
+
+    @BeforeAll
+    static void cargar() throws IOException {
+        CompiladorClips compilador = new CompiladorClips();
+        List<Object> construcciones = new ArrayList<>();
+        for (String ruta : ClipsService.ARCHIVOS_REGLAS) {
+            String recurso = "/" + ruta.substring("classpath:".length());
+            String fuente = leer(recurso);
+            compilador.agregar(fuente, recurso);
+            construcciones.addAll(LectorClips.leerTodo(fuente, recurso));
+        }
+        programa = compilador.compilar();
+        reglas = construcciones.stream()
+            .map(construccion -> (List<?>) construccion)
+            .filter(construccion -> new Simbolo("defrule").equals(construccion.get(0)))
+            .map(ReglaDirecta::new)
+            .toList();
+
+        casos = new TreeMap<>();
+        for (Object deffacts : LectorClips.leerTodo(leer(CORPUS), CORPUS)) {
+            for (Object hecho : ((List<?>) deffacts).subList(2, ((List<?>) deffacts).size())) {
+                if (hecho instanceof List<?> lista) {
+                    casos.computeIfAbsent(casoId(lista), id -> new ArrayList<>()).add(escribir(lista));
+                }
+            }
+        }
+    }
+
+    @Test
+    void laRedDaLosMismosHechosQueLaEvaluacionDirectaEnTodoElCorpus() {
+        assertThat(casos).hasSize(2000);
+        Map<String, Integer> disparosPorRegla = new TreeMap<>();
+        int diagnosticados = 0;
+        for (Map.Entry<Long, List<String>> caso : casos.entrySet()) {
+            Set<Map<String, Object>> iniciales = new LinkedHashSet<>();
+            Set<Map<String, Object>> obtenidos = inferir(caso.getValue(), iniciales);
+            Set<Map<String, Object>> esperados = evaluarDirecto(iniciales, disparosPorRegla);
+            assertThat(obtenidos).as("hechos del caso %d", caso.getKey()).isEqualTo(esperados);
+
+            // Al revés, los tokens buscan en memorias alfa ya cargadas (activación izquierda)
+            List<String> invertidos = new ArrayList<>(caso.getValue());
+            Collections.reverse(invertidos);
+            assertThat(inferir(invertidos, new HashSet<>()))
+                .as("hechos del caso %d insertados al revés", caso.getKey())
+                .isEqualTo(esperados);
+            if (esperados.stream().anyMatch(hecho -> "diagnostico".equals(hecho.get("")))) {
+                diagnosticados++;
+            }
+        }
+
+        // Fijan la cobertura del corpus: un cambio de reglas o de corpus las tiene que actualizar
+        assertThat(diagnosticados).isEqualTo(1124);
+        assertThat(reglas).hasSize(30);
+        assertThat(reglas.stream().map(regla -> regla.nombre).filter(nombre -> !disparosPorRegla.containsKey(nombre)))
+            .as("reglas sin casos en el corpus")
+            .containsExactlyInAnyOrder("equipo-muy-antiguo", "lavarropas-vibra-desbalanceo", "lavarropas-vibra-nuevo");
+    }
+
+    /**
+     * Hechos finales de una sesión con los hechos dados; agrega los insertados a iniciales
+     */
+    private static Set<Map<String, Object>> inferir(List<String> hechos, Set<Map<String, Object>> iniciales) {
+        SesionClips sesion = programa.nuevaSesion();
+        for (String hecho : hechos) {
+            Hecho insertado = sesion.insertar(hecho);
+            if (insertado != null) {
+                iniciales.add(mapa(insertado));
+            }
+        }
+        sesion.ejecutar();
+        Set<Map<String, Object>> finales = new HashSet<>();
+        sesion.getHechos().forEach(hecho -> finales.add(mapa(hecho)));
+        return finales;
+    }
+
+    /**
+     * Aplica todas las reglas sobre los hechos hasta que ninguna agrega uno nuevo
+     */
+    private static Set<Map<String, Object>> evaluarDirecto(Set<Map<String, Object>> iniciales,
+                                                          Map<String, Integer> disparosPorRegla) {
+        Set<Map<String, Object>> hechos = new LinkedHashSet<>(iniciales);
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (ReglaDirecta regla : reglas) {
+                List<Map<String, Object>> nuevos = new ArrayList<>();
+                regla.coincidencias(List.copyOf(hechos), 0, new HashMap<>(), variables -> {
+                    nuevos.addAll(regla.afirmar(variables));
+                    disparosPorRegla.merge(regla.nombre, 1, Integer::sum);
+                });
+                for (Map<String, Object> nuevo : nuevos) {
+                    cambio |= hechos.add(nuevo);
+                }
+            }
+        }
+        return hechos;
+    }
+
+    /**
+     * Defrule interpretado sin compilar: patrones, (test ...) y los assert del RHS
+     */
+    private static final class ReglaDirecta {
+        final String nombre;
+        final List<List<?>> condiciones = new ArrayList<>();
+        final List<List<?>> aserciones = new ArrayList<>();
+
+        ReglaDirecta(List<?> defrule) {
+            nombre = defrule.get(1).toString();
+            int flecha = defrule.indexOf(new Simbolo("=>"));
+            for (Object elemento : defrule.subList(2, flecha)) {
+                if (elemento instanceof List<?> lista && !new Simbolo("declare").equals(lista.get(0))) {
+                    condiciones.add(lista);
+                }
+            }
+            for (Object accion : defrule.subList(flecha + 1, defrule.size())) {
+                List<?> lista = (List<?>) accion;
+                if (new Simbolo("assert").equals(lista.get(0))) {
+                    lista.subList(1, lista.size()).forEach(hecho -> aserciones.add((List<?>) hecho));
+                }
+            }
+        }
+
+        void coincidencias(List<Map<String, Object>> hechos, int indice, Map<String, Object> variables,
+                           Consumer<Map<String, Object>> alCoincidir) {
+            if (indice == condiciones.size()) {
+                alCoincidir.accept(variables);
+                return;
+            }
+            List<?> condicion = condiciones.get(indice);
+            if (new Simbolo("test").equals(condicion.get(0))) {
+                if (Expresion.esVerdadero(evaluar(condicion.get(1), variables))) {
+                    coincidencias(hechos, indice + 1, variables, alCoincidir);
+                }
+                return;
+            }
+            for (Map<String, Object> hecho : hechos) {
+                if (!condicion.get(0).toString().equals(hecho.get(""))) {
+                    continue;
+                }
+                Map<String, Object> ligadas = new HashMap<>(variables);
+                boolean coincide = true;
+                for (Object restriccion : condicion.subList(1, condicion.size())) {
+                    List<?> slot = (List<?>) restriccion;
+                    Object valor = hecho.get(slot.get(0).toString());
+                    Object esperado = slot.get(1);
+                    if (esperado instanceof Variable variable) {
+                        if (variable.isComodin()) {
+                            continue;
+                        }
+                        Object ligado = ligadas.putIfAbsent(variable.nombre(), valor);
+                        coincide = ligado == null || ligado.equals(valor);
+                    } else {
+                        coincide = esperado.equals(valor);
+                    }
+                    if (!coincide) {
+                        break;
+                    }
+                }
+                if (coincide) {
+                    coincidencias(hechos, indice + 1, ligadas, alCoincidir);
+                }
+            }
+        }
+
+        List<Map<String, Object>> afirmar(Map<String, Object> variables) {
+            List<Map<String, Object>> nuevos = new ArrayList<>();
+            for (List<?> asercion : aserciones) {
+                Plantilla plantilla = programa.getPlantilla(asercion.get(0).toString());
+                Map<String, Object> hecho = vacio(plantilla);
+                for (Object slot : asercion.subList(1, asercion.size())) {
+                    List<?> par = (List<?>) slot;
+                    hecho.put(par.get(0).toString(), evaluar(par.get(1), variables));
+                }
+                nuevos.add(hecho);
+            }
+            return nuevos;
+        }
+
+        private static Object evaluar(Object termino, Map<String, Object> variables) {
+            List<String> nombres = new ArrayList<>(variables.keySet());
+            Object[] valores = nombres.stream().map(variables::get).toArray();
+            return Funciones.compilar(termino, nombres::indexOf).evaluar(valores);
+        }
+    }
+
+    private static Map<String, Object> vacio(Plantilla plantilla) {
+        Map<String, Object> hecho = new HashMap<>();
+        hecho.put("", plantilla.getNombre());
+        for (int i = 0; i < plantilla.cantidadSlots(); i++) {
+            hecho.put(plantilla.slot(i), plantilla.getValorPorDefecto(i));
+        }
+        return hecho;
+    }
+
+    private static Map<String, Object> mapa(Hecho hecho) {
+        Map<String, Object> mapa = new HashMap<>(hecho.comoMapa());
+        mapa.put("", hecho.getPlantilla().getNombre());
+        return mapa;
+    }
+
+    private static Long casoId(List<?> hecho) {
+        for (Object slot : hecho.subList(1, hecho.size())) {
+            List<?> par = (List<?>) slot;
+            String nombre = par.get(0).toString();
+            if (nombre.equals("caso-id") || (nombre.equals("id") && hecho.get(0).toString().equals("caso"))) {
+                return (Long) par.get(1);
+            }
+        }
+        throw new IllegalArgumentException("Hecho sin caso-id: " + hecho);
+    }
+
+    private static String escribir(Object expresion) {
+        if (expresion instanceof List<?> lista) {
+            StringJoiner texto = new StringJoiner(" ", "(", ")");
+            lista.forEach(elemento -> texto.add(escribir(elemento)));
+            return texto.toString();
+        }
+        if (expresion instanceof String cadena) {
+            return '"' + cadena.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+        }
+        return expresion.toString();
+    }
+
+    private static String leer(String recurso) throws IOException {
+        try (InputStream in = ReglasCorpusTest.class.getResourceAsStream(recurso)) {
+            return new String(Objects.requireNonNull(in, recurso).readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
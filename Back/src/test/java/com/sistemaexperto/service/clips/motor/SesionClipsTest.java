@@ -0,0 +1,237 @@
+package com.sistemaexperto.service.clips.motor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Red Rete del motor embebido: índices de las memorias alfa/beta, orden de la agenda
+ * (estrategia depth) y acciones que el motor no soporta
+ */
+class SesionClipsTest {
+
+    private static final String PLANTILLAS = """
+        (deftemplate caso (slot id (type INTEGER)) (slot estado))
+        (deftemplate respuesta (slot caso-id (type INTEGER)) (slot pregunta (type STRING)) (slot valor))
+        (deftemplate par (slot a) (slot b))
+        (deftemplate resultado (slot caso-id (type INTEGER)) (slot regla))
+        """;
+
+    private static final String REGLA_JOIN = """
+        (defrule cruce
+          (caso (id ?id) (estado abierto))
+          (respuesta (caso-id ?id) (pregunta "1") (valor si))
+          =>
+          (assert (resultado (caso-id ?id) (regla cruce))))
+        """;
+
+    private static ProgramaClips compilar(String reglas) {
+        return new CompiladorClips().agregar(PLANTILLAS, "plantillas").agregar(reglas, "reglas").compilar();
+    }
+
+    private static List<Long> casosConResultado(SesionClips sesion) {
+        return sesion.getHechos().stream()
+            .filter(hecho -> hecho.getPlantilla().getNombre().equals("resultado"))
+            .map(hecho -> (Long) hecho.valor("caso-id"))
+            .sorted()
+            .toList();
+    }
+
+    @Test
+    void elJoinSeIndexaPorLaVariableQueComparaConElPatronAnterior() {
+        ProgramaClips programa = compilar(REGLA_JOIN);
+        Regla regla = programa.getReglas().get(0);
+
+        assertThat(regla.joins.get(0).isIndexado()).isFalse();
+        NodoJoin segundo = regla.joins.get(1);
+        assertThat(segundo.isIndexado()).isTrue();
+        assertThat(segundo.alfa.plantilla.slot(segundo.slotClave)).isEqualTo("caso-id");
+        assertThat(segundo.alfa.slotsIndexados).containsExactly(segundo.slotClave);
+        assertThat(segundo.posicionEnAlfa).isZero();
+    }
+
+    @Test
+    void elJoinIndexadoSoloUneHechosDelMismoCasoConHechosDerechosPrimero() {
+        SesionClips sesion = compilar(REGLA_JOIN).nuevaSesion();
+        // Activación derecha: las respuestas llegan antes que los casos que las unen
+        for (long id = 1; id <= 5; id++) {
+            sesion.insertar("(respuesta (caso-id " + id + ") (pregunta \"1\") (valor " + (id % 2 == 0 ? "si" : "no") + "))");
+        }
+        for (long id = 1; id <= 5; id++) {
+            sesion.insertar("(caso (id " + id + ") (estado abierto))");
+        }
+        sesion.ejecutar();
+
+        assertThat(casosConResultado(sesion)).containsExactly(2L, 4L);
+    }
+
+    @Test
+    void elJoinIndexadoSoloUneHechosDelMismoCasoConHechosIzquierdosPrimero() {
+        SesionClips sesion = compilar(REGLA_JOIN).nuevaSesion();
+        // Activación izquierda: los tokens de los casos buscan en la memoria alfa indexada
+        sesion.insertar("(caso (id 1) (estado abierto))");
+        sesion.insertar("(caso (id 2) (estado cerrado))");
+        sesion.insertar("(caso (id 3) (estado abierto))");
+        sesion.insertar("(respuesta (caso-id 3) (pregunta \"1\") (valor si))");
+        sesion.insertar("(respuesta (caso-id 2) (pregunta \"1\") (valor si))");
+        sesion.insertar("(respuesta (caso-id 1) (pregunta \"2\") (valor si))");
+        sesion.ejecutar();
+
+        assertThat(casosConResultado(sesion)).containsExactly(3L);
+    }
+
+    @Test
+    void laMemoriaBetaIndexaPorLaClaveDelJoinSiguiente() {
+        ProgramaClips programa = compilar("""
+            (defrule tres-patrones
+              (caso (id ?id))
+              (respuesta (caso-id ?id) (pregunta "1") (valor ?v))
+              (respuesta (caso-id ?id) (pregunta "2") (valor ?v))
+              =>
+              (assert (resultado (caso-id ?id) (regla tres))))
+            """);
+        Regla regla = programa.getReglas().get(0);
+        NodoJoin tercero = regla.joins.get(2);
+        assertThat(tercero.isIndexado()).isTrue();
+        assertThat(tercero.alfa.plantilla.slot(tercero.slotClave)).isEqualTo("caso-id");
+
+        SesionClips sesion = programa.nuevaSesion();
+        sesion.insertar("(respuesta (caso-id 1) (pregunta \"2\") (valor si))");
+        sesion.insertar("(respuesta (caso-id 2) (pregunta \"2\") (valor si))");
+        sesion.insertar("(caso (id 1))");
+        sesion.insertar("(caso (id 2))");
+        sesion.insertar("(respuesta (caso-id 1) (pregunta \"1\") (valor si))");
+        sesion.insertar("(respuesta (caso-id 2) (pregunta \"1\") (valor no))");
+        sesion.ejecutar();
+
+        // El caso 2 tiene la clave pero no el mismo ?v en los dos patrones
+        assertThat(casosConResultado(sesion)).containsExactly(1L);
+    }
+
+    @Test
+    void unaVariableLigadaEnElMismoPatronNoIndexaYSeComparaEnElHecho() {
+        ProgramaClips programa = compilar("""
+            (defrule iguales
+              (par (a ?x) (b ?x))
+              =>
+              (assert (resultado (caso-id 0) (regla ?x))))
+            """);
+        assertThat(programa.getReglas().get(0).joins.get(0).isIndexado()).isFalse();
+
+        SesionClips sesion = programa.nuevaSesion();
+        sesion.insertar("(par (a uno) (b dos))");
+        sesion.insertar("(par (a tres) (b tres))");
+        sesion.ejecutar();
+
+        assertThat(sesion.getHechos()).filteredOn(hecho -> hecho.getPlantilla().getNombre().equals("resultado"))
+            .extracting(hecho -> hecho.valor("regla"))
+            .containsExactly(new Simbolo("tres"));
+    }
+
+    @Test
+    void reglasConLasMismasConstantesCompartenElNodoAlfaConIndicesDistintos() {
+        ProgramaClips programa = compilar("""
+            (defrule por-caso
+              (caso (id ?id))
+              (respuesta (caso-id ?id) (pregunta "1"))
+              =>
+              (assert (resultado (caso-id ?id) (regla por-caso))))
+            (defrule por-valor
+              (par (a ?v))
+              (respuesta (valor ?v) (pregunta "1"))
+              =>
+              (assert (resultado (caso-id 0) (regla ?v))))
+            """);
+        NodoJoin porCaso = programa.getReglas().get(0).joins.get(1);
+        NodoJoin porValor = programa.getReglas().get(1).joins.get(1);
+        assertThat(porCaso.alfa).isSameAs(porValor.alfa);
+        assertThat(porCaso.alfa.slotsIndexados).hasSize(2);
+        assertThat(porCaso.posicionEnAlfa).isNotEqualTo(porValor.posicionEnAlfa);
+
+        SesionClips sesion = programa.nuevaSesion();
+        sesion.insertar("(respuesta (caso-id 7) (pregunta \"1\") (valor si))");
+        sesion.insertar("(caso (id 7))");
+        sesion.insertar("(caso (id 8))");
+        sesion.insertar("(par (a si))");
+        sesion.insertar("(par (a no))");
+        sesion.ejecutar();
+
+        assertThat(sesion.getHechos()).filteredOn(hecho -> hecho.getPlantilla().getNombre().equals("resultado"))
+            .extracting(hecho -> hecho.valor("regla"))
+            .containsExactlyInAnyOrder(new Simbolo("por-caso"), new Simbolo("si"));
+    }
+
+    @Test
+    void laAgendaDisparaPrimeroLaMayorSalienceYLuegoLaActivacionMasReciente() {
+        SesionClips sesion = compilar("""
+            (defrule baja (declare (salience -10)) (caso (id ?id)) => (printout t "baja " ?id crlf))
+            (defrule normal (caso (id ?id)) => (printout t "normal " ?id crlf))
+            (defrule alta (declare (salience 10)) (caso (id ?id)) => (printout t "alta " ?id crlf))
+            """).nuevaSesion();
+        sesion.insertar("(caso (id 1))");
+        sesion.insertar("(caso (id 2))");
+
+        assertThat(sesion.ejecutar()).isEqualTo(6);
+        assertThat(sesion.getSalida().lines()).containsExactly(
+            "alta 2", "alta 1", "normal 2", "normal 1", "baja 2", "baja 1");
+    }
+
+    @Test
+    void lasActivacionesDeUnDisparoVanAntesQueLasAnterioresDeIgualSalience() {
+        SesionClips sesion = compilar("""
+            (defrule abrir (caso (id ?id) (estado nuevo)) => (printout t "abrir " ?id crlf)
+              (assert (resultado (caso-id ?id) (regla abrir))))
+            (defrule cerrar (resultado (caso-id ?id)) => (printout t "cerrar " ?id crlf))
+            """).nuevaSesion();
+        sesion.insertar("(caso (id 1) (estado nuevo))");
+        sesion.insertar("(caso (id 2) (estado nuevo))");
+        sesion.ejecutar();
+
+        assertThat(sesion.getSalida().lines()).containsExactly("abrir 2", "cerrar 2", "abrir 1", "cerrar 1");
+    }
+
+    @Test
+    void unHechoDuplicadoNoSeInsertaNiActivaReglas() {
+        SesionClips sesion = compilar(REGLA_JOIN).nuevaSesion();
+        sesion.insertar("(caso (id 1) (estado abierto))");
+        assertThat(sesion.insertar("(respuesta (caso-id 1) (pregunta \"1\") (valor si))")).isNotNull();
+        assertThat(sesion.insertar("(respuesta (caso-id 1) (pregunta \"1\") (valor si))")).isNull();
+
+        assertThat(sesion.ejecutar()).isEqualTo(1);
+        assertThat(sesion.getHechos()).hasSize(3);
+    }
+
+    @Test
+    void retractYModifyNoEstanSoportadosYSeRechazanAlCompilar() {
+        // La red sólo agrega hechos: una regla que retira o modifica hechos no puede dar el mismo resultado que CLIPS
+        assertThatThrownBy(() -> compilar("""
+            (defrule quitar ?f <- (caso (id ?id)) => (retract ?f))
+            """)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> compilar("""
+            (defrule quitar (caso (id ?id)) => (retract 1))
+            """)).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Acción no soportada: retract");
+        assertThatThrownBy(() -> compilar("""
+            (defrule cambiar (caso (id ?id)) => (modify 1 (estado cerrado)))
+            """)).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Acción no soportada: modify");
+    }
+
+    @Test
+    void cadaSesionEmpiezaDeCeroComoUnReset() {
+        ProgramaClips programa = compilar(REGLA_JOIN + """
+            (deffacts inicial (caso (id 9) (estado abierto)))
+            """);
+        SesionClips primera = programa.nuevaSesion();
+        primera.insertar("(respuesta (caso-id 9) (pregunta \"1\") (valor si))");
+        primera.ejecutar();
+
+        SesionClips segunda = programa.nuevaSesion();
+        segunda.ejecutar();
+
+        assertThat(casosConResultado(primera)).containsExactly(9L);
+        assertThat(casosConResultado(segunda)).isEmpty();
+        assertThat(segunda.getHechos()).hasSize(1);
+    }
+}
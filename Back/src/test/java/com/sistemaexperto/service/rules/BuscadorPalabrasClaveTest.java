@@ -0,0 +1,180 @@
+package com.sistemaexperto.service.rules;
+
+import com.sistemaexperto.model.enums.TipoElectrodomestico;
+import com.sistemaexperto.service.rules.heladera.HeladeraNoEnfriaRule;
+import com.sistemaexperto.service.rules.lavarropas.LavarropasNoCargaAguaRule;
+import com.sistemaexperto.service.rules.microondas.MicroondasHaceChispasRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Las palabras clave de cada regla aceptan las mismas descripciones que las expresiones regulares
+ * que reemplazaron. Las expresiones se compilan con UNICODE_CASE y DOTALL porque el autómata
+ * también pasa a minúsculas las mayúsculas acentuadas y busca a través de saltos de línea; con las
+ * banderas originales esas dos diferencias quedan fijadas en su propio test.
+ */
+class BuscadorPalabrasClaveTest {
+
+    /** Expresiones que tenían las reglas antes de declarar palabras clave */
+    private static final Map<String, String> REGEX_ANTERIORES = Map.of(
+        "heladera_no_enfria", ".*(no\\s+(enfr[ií]a|fr[ií]o|congela|funciona)|temperatura|caliente|tibio).*",
+        "lavarropas_no_carga_agua", ".*(no\\s+(carga|entra|llena|toma)\\s+agua|sin\\s+agua|no\\s+hay\\s+agua).*",
+        "microondas_hace_chispas", ".*(chispa|chispazo|centella|arco\\s+eléctrico|destello|luz.*interior).*");
+
+    private static final List<DiagnosticRule> REGLAS = List.of(
+        new HeladeraNoEnfriaRule(), new LavarropasNoCargaAguaRule(), new MicroondasHaceChispasRule());
+
+    /** Tramos de las palabras clave con variantes de mayúsculas y acentos, prefijos y texto de relleno */
+    private static final String[] FRAGMENTOS = {
+        "no", "No", "NO", "nno", "noo", "n", "o",
+        "enfria", "enfría", "ENFRÍA", "ENFRIA", "Enfría", "enfr", "ía",
+        "frio", "frío", "FRÍO", "Frío", "congela", "CONGELA", "funciona", "Funciona",
+        "temperatura", "Temperatura", "caliente", "CALIENTE", "tibio", "tibi",
+        "carga", "entra", "llena", "toma", "agua", "AGUA", "Agua", "sin", "Sin", "hay", "HAY",
+        "carga agua", "no  entra", "Toma\tAgua", "hay agua",
+        "chispa", "chispazo", "CHISPAS", "Chispazos", "chisp", "centella", "arco", "Arco",
+        "eléctrico", "ELÉCTRICO", "Eléctrico", "electrico", "destello", "DESTELLO",
+        "luz", "LUZ", "interior", "Interior", "inter", "ior",
+        "la", "heladera", "hace", "ruido", "puerta", "y", "a veces", "í", "Í"
+    };
+
+    private static final String[] SEPARADORES = {" ", " ", " ", "  ", "\t", " \t ", "", "\n", ". ", ", "};
+
+    @Test
+    void cadaReglaAceptaLasMismasDescripcionesQueSuExpresionAnterior() {
+        Map<String, Integer> aceptadas = new HashMap<>();
+        for (String descripcion : descripciones()) {
+            for (DiagnosticRule regla : REGLAS) {
+                boolean esperado = regex(regla).matcher(descripcion).matches();
+                assertThat(regla.esAplicable(descripcion))
+                    .as("%s sobre \"%s\"", regla.getId(), descripcion)
+                    .isEqualTo(esperado);
+                if (esperado) {
+                    aceptadas.merge(regla.getId(), 1, Integer::sum);
+                }
+            }
+        }
+        // Que el generador cubra tanto aceptadas como rechazadas en cada regla
+        assertThat(aceptadas).hasSize(REGLAS.size());
+        assertThat(aceptadas.values()).allMatch(cantidad -> cantidad > 500 && cantidad < 40_000);
+    }
+
+    @Test
+    void elIndiceEligeLaReglaDelTipoCuandoSuExpresionAnteriorCoincide() {
+        IndiceReglas indice = new IndiceReglas(REGLAS);
+        for (String descripcion : descripciones()) {
+            for (DiagnosticRule regla : REGLAS) {
+                TipoElectrodomestico tipo = regla.getTipoElectrodomestico();
+                DiagnosticRule esperada = regex(regla).matcher(descripcion).matches() ? regla : null;
+                assertThat(indice.buscar(tipo, descripcion))
+                    .as("%s sobre \"%s\"", tipo, descripcion)
+                    .isSameAs(esperada);
+            }
+        }
+    }
+
+    @Test
+    void conVariosGruposGanaElPrimeroCuyaExpresionCoincide() {
+        // Las tres reglas en un solo autómata: palabras superpuestas de grupos distintos
+        List<List<DiagnosticRule>> ordenes = List.of(
+            REGLAS, List.of(REGLAS.get(2), REGLAS.get(0), REGLAS.get(1)), List.of(REGLAS.get(1), REGLAS.get(2), REGLAS.get(0)));
+        for (List<DiagnosticRule> orden : ordenes) {
+            BuscadorPalabrasClave buscador = new BuscadorPalabrasClave(
+                orden.stream().map(DiagnosticRule::getPalabrasClave).toList());
+            for (String descripcion : descripciones()) {
+                int esperado = -1;
+                for (int grupo = 0; grupo < orden.size() && esperado < 0; grupo++) {
+                    if (regex(orden.get(grupo)).matcher(descripcion).matches()) {
+                        esperado = grupo;
+                    }
+                }
+                assertThat(buscador.buscarPrimerGrupo(descripcion))
+                    .as("\"%s\"", descripcion)
+                    .isEqualTo(esperado);
+            }
+        }
+    }
+
+    @Test
+    void casosLimiteDeAcentosMayusculasYPalabrasSuperpuestas() {
+        DiagnosticRule heladera = REGLAS.get(0);
+        DiagnosticRule lavarropas = REGLAS.get(1);
+        DiagnosticRule microondas = REGLAS.get(2);
+
+        List<String> heladeraSi = List.of("No Enfría", "NO ENFRIA", "no   frío", "nno enfria", "no no congela",
+            "la temperatura sube", "está TIBIO", "no\tfunciona");
+        List<String> heladeraNo = List.of("noenfría", "enfría bien", "no enfr ía", "nofrio", "", "   ");
+        List<String> lavarropasSi = List.of("no  carga\tagua", "NO HAY AGUA", "sin agua", "no no entra agua",
+            "no llena agua y no toma agua");
+        List<String> lavarropasNo = List.of("no carga", "carga agua", "sinagua", "no hay  ag");
+        List<String> microondasSi = List.of("chispazo", "CHISPAS", "arco   eléctrico", "luzinterior",
+            "la luz del interior", "luz luz interior", "interior luz interior");
+        List<String> microondasNo = List.of("arcoeléctrico", "interior luz", "chisp a", "arco electrico");
+
+        heladeraSi.forEach(texto -> assertThat(heladera.esAplicable(texto)).as(texto).isTrue());
+        heladeraNo.forEach(texto -> assertThat(heladera.esAplicable(texto)).as(texto).isFalse());
+        lavarropasSi.forEach(texto -> assertThat(lavarropas.esAplicable(texto)).as(texto).isTrue());
+        lavarropasNo.forEach(texto -> assertThat(lavarropas.esAplicable(texto)).as(texto).isFalse());
+        microondasSi.forEach(texto -> assertThat(microondas.esAplicable(texto)).as(texto).isTrue());
+        microondasNo.forEach(texto -> assertThat(microondas.esAplicable(texto)).as(texto).isFalse());
+
+        // Cada caso límite coincide también con la expresión anterior
+        for (DiagnosticRule regla : REGLAS) {
+            for (String texto : concatenar(heladeraSi, heladeraNo, lavarropasSi, lavarropasNo, microondasSi, microondasNo)) {
+                assertThat(regla.esAplicable(texto)).as("%s sobre \"%s\"", regla.getId(), texto)
+                    .isEqualTo(regex(regla).matcher(texto).matches());
+            }
+        }
+        assertThat(heladera.esAplicable(null)).isFalse();
+    }
+
+    @Test
+    void diferenciasBuscadasConLasBanderasOriginales() {
+        // CASE_INSENSITIVE sin UNICODE_CASE no pasaba a minúsculas las mayúsculas acentuadas
+        Pattern original = Pattern.compile(REGEX_ANTERIORES.get("heladera_no_enfria"), Pattern.CASE_INSENSITIVE);
+        assertThat(original.matcher("NO ENFRÍA").matches()).isFalse();
+        assertThat(REGLAS.get(0).esAplicable("NO ENFRÍA")).isTrue();
+
+        // Sin DOTALL el '.*' no cruzaba saltos de línea alrededor de la palabra clave
+        assertThat(original.matcher("la heladera\nno enfría").matches()).isFalse();
+        assertThat(REGLAS.get(0).esAplicable("la heladera\nno enfría")).isTrue();
+    }
+
+    private static Pattern regex(DiagnosticRule regla) {
+        return Pattern.compile(REGEX_ANTERIORES.get(regla.getId()),
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    /**
+     * Descripciones deterministas armadas con fragmentos y separadores al azar
+     */
+    private static List<String> descripciones() {
+        Random azar = new Random(8);
+        List<String> descripciones = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            StringBuilder texto = new StringBuilder();
+            int cantidad = 1 + azar.nextInt(7);
+            for (int j = 0; j < cantidad; j++) {
+                if (j > 0 || azar.nextInt(8) == 0) {
+                    texto.append(SEPARADORES[azar.nextInt(SEPARADORES.length)]);
+                }
+                texto.append(FRAGMENTOS[azar.nextInt(FRAGMENTOS.length)]);
+            }
+            descripciones.add(texto.toString());
+        }
+        return descripciones;
+    }
+
+    @SafeVarargs
+    private static List<String> concatenar(List<String>... listas) {
+        List<String> todas = new ArrayList<>();
+        for (List<String> lista : listas) {
+            todas.addAll(lista);
+        }
+        return todas;
+    }
+}
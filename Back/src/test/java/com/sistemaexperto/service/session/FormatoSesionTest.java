@@ -0,0 +1,110 @@
+package com.sistemaexperto.service.session;
+
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import com.sistemaexperto.service.rules.heladera.HeladeraNoEnfriaRule;
+import com.sistemaexperto.service.rules.microondas.MicroondasHaceChispasRule;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Ida y vuelta del formato binario de las sesiones, solas y una detrás de otra como en los snapshots
+ */
+class FormatoSesionTest {
+
+    private static final DiagnosticRule HELADERA = new HeladeraNoEnfriaRule();
+    private static final DiagnosticRule MICROONDAS = new MicroondasHaceChispasRule();
+    private static final IndiceReglas INDICE = new IndiceReglas(List.of(HELADERA, MICROONDAS));
+
+    @Test
+    void unaSesionSeLeeIgualQueSeEscribio() throws IOException {
+        SesionDiagnostico original = sesionCompleta(7L, "3fa2c1", HELADERA);
+
+        SesionDiagnostico leida = FormatoSesion.leer(ByteBuffer.wrap(escribir(original)), INDICE);
+
+        assertIguales(leida, original);
+    }
+
+    @Test
+    void variasSesionesSeguidasSeLeenSinCorrerse() throws IOException {
+        // Sin versión de reglas, vacía y con textos no ASCII: ninguna puede desplazar a la siguiente
+        SesionDiagnostico sinVersion = sesionCompleta(1L, null, HELADERA);
+        SesionDiagnostico vacia = new SesionDiagnostico(2L, MICROONDAS, "v9");
+        SesionDiagnostico acentos = sesionCompleta(3L, "versión-ñ", MICROONDAS);
+
+        ByteBuffer entrada = ByteBuffer.wrap(escribir(sinVersion, vacia, acentos));
+
+        assertIguales(FormatoSesion.leer(entrada, INDICE), sinVersion);
+        assertIguales(FormatoSesion.leer(entrada, INDICE), vacia);
+        assertIguales(FormatoSesion.leer(entrada, INDICE), acentos);
+        assertThat(entrada.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void unaSesionDeReglaInexistenteRetornaNullYDejaLeerLaSiguiente() throws IOException {
+        SesionDiagnostico deMicroondas = sesionCompleta(1L, "v1", MICROONDAS);
+        SesionDiagnostico deHeladera = sesionCompleta(2L, "v1", HELADERA);
+        ByteBuffer entrada = ByteBuffer.wrap(escribir(deMicroondas, deHeladera));
+
+        IndiceReglas soloHeladera = new IndiceReglas(List.of(HELADERA));
+        assertThat(FormatoSesion.leer(entrada, soloHeladera)).isNull();
+        assertIguales(FormatoSesion.leer(entrada, soloHeladera), deHeladera);
+    }
+
+    @Test
+    void unFormatoDesconocidoSeRechaza() throws IOException {
+        byte[] datos = escribir(sesionCompleta(1L, "v1", HELADERA));
+        assertThat(datos[0]).isEqualTo(FormatoSesion.FORMATO);
+        datos[0] = (byte) (FormatoSesion.FORMATO + 1);
+
+        assertThatThrownBy(() -> FormatoSesion.leer(ByteBuffer.wrap(datos), INDICE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Formato de sesión desconocido");
+    }
+
+    private static SesionDiagnostico sesionCompleta(Long casoId, String versionReglas, DiagnosticRule regla) {
+        SesionDiagnostico sesion = new SesionDiagnostico(casoId, regla, versionReglas);
+        sesion.registrarRespuesta("p_bool", true, 10L);
+        sesion.registrarRespuesta("p_entero", 42, 11L);
+        sesion.registrarRespuesta("p_texto", "a veces \"sí\"", 12L);
+        sesion.registrarRespuesta("p_nulo", null, 13L);
+        double[] probabilidades = sesion.getProbabilidades();
+        for (int i = 0; i < probabilidades.length; i++) {
+            probabilidades[i] = (i + 1) / 10.0;
+        }
+        sesion.getHipotesis().add(new HipotesisSesion(100L, "Falla del compresor", 35, true));
+        sesion.getHipotesis().add(new HipotesisSesion(101L, "Termostato defectuoso", 5, false));
+        return sesion;
+    }
+
+    private static void assertIguales(SesionDiagnostico leida, SesionDiagnostico original) {
+        assertThat(leida).isNotNull();
+        assertThat(leida.getCasoId()).isEqualTo(original.getCasoId());
+        assertThat(leida.getRegla()).isSameAs(original.getRegla());
+        assertThat(leida.getVersionReglas()).isEqualTo(original.getVersionReglas());
+        assertThat(leida.getUltimaPregunta()).isEqualTo(original.getUltimaPregunta());
+        assertThat(leida.getUltimaRespuestaId()).isEqualTo(original.getUltimaRespuestaId());
+        assertThat(leida.getRespuestas()).isEqualTo(original.getRespuestas());
+        assertThat(leida.getProbabilidades()).containsExactly(original.getProbabilidades());
+        assertThat(leida.getHipotesis()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(original.getHipotesis());
+    }
+
+    private static byte[] escribir(SesionDiagnostico... sesiones) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream salida = new DataOutputStream(bytes)) {
+            for (SesionDiagnostico sesion : sesiones) {
+                FormatoSesion.escribir(salida, sesion);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
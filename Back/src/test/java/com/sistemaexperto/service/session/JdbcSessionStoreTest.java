@@ -0,0 +1,181 @@
+package com.sistemaexperto.service.session;
+
+import com.sistemaexperto.service.rules.DiagnosticRule;
+import com.sistemaexperto.service.rules.IndiceReglas;
+import com.sistemaexperto.service.rules.heladera.HeladeraNoEnfriaRule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Almacén JDBC sobre H2, con dos instancias que comparten la tabla como dos nodos
+ */
+class JdbcSessionStoreTest {
+
+    private static final DiagnosticRule REGLA = new HeladeraNoEnfriaRule();
+    private static final IndiceReglas INDICE = new IndiceReglas(List.of(REGLA));
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private JdbcSessionStore nodoA;
+    private JdbcSessionStore nodoB;
+
+    @BeforeEach
+    void crearBase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        nodoA = nodo();
+        nodoB = nodo();
+    }
+
+    private JdbcSessionStore nodo() {
+        JdbcSessionStore store = new JdbcSessionStore(jdbcTemplate, INDICE, 100, 60);
+        store.crearTabla();
+        return store;
+    }
+
+    @Test
+    void laSegundaEscrituraSobreLaMismaVersionEsUnConflicto() {
+        nodoA.registrarSiAusente(sesion(1L, "h_ne_p1", 10));
+        SesionDiagnostico enA = nodoA.obtener(1L);
+        SesionDiagnostico enB = nodoB.obtener(1L);
+        assertThat(enA.getVersion()).isZero();
+        assertThat(enB.getVersion()).isZero();
+
+        enA.registrarRespuesta("h_ne_p2", true, 11L);
+        nodoA.guardar(enA);
+        assertThat(enA.getVersion()).isEqualTo(1);
+
+        enB.registrarRespuesta("h_ne_p2", false, 12L);
+        assertThatThrownBy(() -> nodoB.guardar(enB)).isInstanceOf(ConflictoSesionException.class);
+        assertThat(nodoB.getEstadisticas()).containsEntry("conflictos", 1L);
+
+        // La copia local de B se descartó: la próxima lectura trae lo que guardó A
+        SesionDiagnostico releida = nodoB.obtener(1L);
+        assertThat(releida).isNotSameAs(enB);
+        assertThat(releida.getVersion()).isEqualTo(1);
+        assertThat(releida.getRespuestas()).containsEntry("h_ne_p2", true);
+        assertThat(releida.getUltimaRespuestaId()).isEqualTo(11L);
+    }
+
+    @Test
+    void laCopiaLocalSeReutilizaMientrasLaVersionNoCambie() {
+        nodoA.registrarSiAusente(sesion(1L, "h_ne_p1", 10));
+        SesionDiagnostico primera = nodoB.obtener(1L);
+        SesionDiagnostico segunda = nodoB.obtener(1L);
+        assertThat(segunda).isSameAs(primera);
+        assertThat(nodoB.getEstadisticas()).containsEntry("aciertosLocales", 1L).containsEntry("recargas", 1L);
+
+        SesionDiagnostico enA = nodoA.obtener(1L);
+        enA.registrarRespuesta("h_ne_p2", true, 11L);
+        nodoA.guardar(enA);
+        assertThat(nodoB.obtener(1L)).isNotSameAs(primera).extracting(SesionDiagnostico::getVersion).isEqualTo(1L);
+
+        nodoA.eliminar(1L);
+        assertThat(nodoB.obtener(1L)).isNull();
+    }
+
+    @Test
+    void dosNodosQueRegistranElMismoCasoALaVezTerminanConLaMismaSesion() throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            for (long casoId = 1; casoId <= 200; casoId++) {
+                SesionDiagnostico deA = sesion(casoId, "h_ne_p1", 10);
+                SesionDiagnostico deB = sesion(casoId, "h_ne_p2", 20);
+                CyclicBarrier largada = new CyclicBarrier(2);
+                Future<SesionDiagnostico> enA = hilos.submit(() -> {
+                    largada.await();
+                    return nodoA.registrarSiAusente(deA);
+                });
+                Future<SesionDiagnostico> enB = hilos.submit(() -> {
+                    largada.await();
+                    return nodoB.registrarSiAusente(deB);
+                });
+                SesionDiagnostico ganadaA = enA.get(10, TimeUnit.SECONDS);
+                SesionDiagnostico ganadaB = enB.get(10, TimeUnit.SECONDS);
+
+                // Exactamente uno inserta; el otro recibe la sesión guardada por el primero
+                assertThat(ganadaA == deA ^ ganadaB == deB).as("caso %d", casoId).isTrue();
+                assertThat(ganadaA.getUltimaPregunta()).as("caso %d", casoId).isEqualTo(ganadaB.getUltimaPregunta());
+                assertThat(ganadaA.getVersion()).isZero();
+                assertThat(ganadaB.getVersion()).isZero();
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+        assertThat(nodoA.tamanio()).isEqualTo(200);
+    }
+
+    @Test
+    void laPurgaEliminaSoloLasSesionesInactivas() {
+        nodoA.registrarSiAusente(sesion(1L, "h_ne_p1", 10));
+        nodoA.registrarSiAusente(sesion(2L, "h_ne_p1", 10));
+        jdbcTemplate.update("UPDATE sesion_diagnostico SET actualizada = ? WHERE caso_id = 1",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(61)));
+
+        nodoB.purgarInactivas();
+
+        assertThat(nodoA.obtener(1L)).isNull();
+        assertThat(nodoA.obtener(2L)).isNotNull();
+        assertThat(nodoB.tamanio()).isEqualTo(1);
+        assertThat(nodoB.getEstadisticas()).containsEntry("expiradas", 1L);
+    }
+
+    @Test
+    void unaEscrituraRevertidaDescartaLaCopiaLocal() {
+        nodoA.registrarSiAusente(sesion(1L, "h_ne_p1", 10));
+        SesionDiagnostico local = nodoA.obtener(1L);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            local.registrarRespuesta("h_ne_p2", true, 11L);
+            nodoA.guardar(local);
+            status.setRollbackOnly();
+        });
+
+        SesionDiagnostico releida = nodoA.obtener(1L);
+        assertThat(releida).isNotSameAs(local);
+        assertThat(releida.getVersion()).isZero();
+        assertThat(releida.getRespuestas()).doesNotContainKey("h_ne_p2");
+    }
+
+    @Test
+    void unRegistroRevertidoNoQuedaEnLaCopiaLocal() {
+        transactionTemplate.executeWithoutResult(status -> {
+            nodoA.registrarSiAusente(sesion(1L, "h_ne_p1", 10));
+            status.setRollbackOnly();
+        });
+
+        assertThat(nodoA.obtener(1L)).isNull();
+        assertThat(nodoA.activas()).isEmpty();
+    }
+
+    @Test
+    void unaFilaIlegibleSeDescartaParaReconstruirla() {
+        nodoA.registrarSiAusente(sesion(1L, "h_ne_p1", 10));
+        jdbcTemplate.update("UPDATE sesion_diagnostico SET datos = ?, version = 1 WHERE caso_id = 1", (Object) new byte[]{9, 0, 0});
+
+        assertThat(nodoB.obtener(1L)).isNull();
+        assertThat(nodoB.tamanio()).isZero();
+    }
+
+    private static SesionDiagnostico sesion(Long casoId, String ultimaPregunta, long ultimaRespuestaId) {
+        SesionDiagnostico sesion = new SesionDiagnostico(casoId, REGLA, "v1");
+        sesion.registrarRespuesta(ultimaPregunta, true, ultimaRespuestaId);
+        sesion.getHipotesis().add(new HipotesisSesion(casoId * 10, "Falla del compresor", 25, true));
+        return sesion;
+    }
+}
@@ -13,8 +13,8 @@ GREEN='\033[0;32m'
 BLUE='\033[0;34m'
 NC='\033[0m' # No Color
 
-# 1. Listar todos los casos
-echo -e "${BLUE}1. Listar todos los casos:${NC}"
+# 1. Listar casos (primera página)
+echo -e "${BLUE}1. Listar casos (primera página):${NC}"
 curl -s -X GET "$BASE_URL/casos" | jq .
 echo ""
 echo ""
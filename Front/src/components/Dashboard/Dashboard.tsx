@@ -3,10 +3,15 @@ import { useNavigate } from 'react-router-dom';
 import { Plus, Clock, CheckCircle, AlertTriangle, TrendingUp, Users, Refrigerator } from 'lucide-react';
 import { casoApi, metricasApi, CasoCreateDTO } from '../../services/api';
 import NuevoCasoModal from './NuevoCasoModal';
-import { Caso, Metricas } from '../../types';
+import { CasoResumen, Metricas, PaginaCasos } from '../../types';
+
+// Pasar limite hace que el backend responda una página en vez del arreglo completo
+const LIMITE_PAGINA = 20;
 
 export default function Dashboard() {
-  const [casos, setCasos] = useState<Caso[]>([]);
+  const [casos, setCasos] = useState<CasoResumen[]>([]);
+  const [siguienteCursor, setSiguienteCursor] = useState<string | null>(null);
+  const [cargandoMas, setCargandoMas] = useState(false);
   const [loading, setLoading] = useState(true);
   const [metricas, setMetricas] = useState<Metricas | null>(null);
   const [modalOpen, setModalOpen] = useState(false);
@@ -19,14 +24,13 @@ export default function Dashboard() {
   const cargarDatos = async () => {
     try {
       const [casosRes, metricasRes] = await Promise.all([
-        casoApi.listar(),
+        casoApi.listar({ limite: LIMITE_PAGINA }),
         metricasApi.obtener()
       ]);
-      // Ordenar casos por fecha de creación descendente (más recientes primero)
-      const casosOrdenados = casosRes.data.sort((a: Caso, b: Caso) =>
-        new Date(b.fechaCreacion).getTime() - new Date(a.fechaCreacion).getTime()
-      );
-      setCasos(casosOrdenados);
+      // El backend ya devuelve los casos más recientes primero
+      const pagina: PaginaCasos = casosRes.data;
+      setCasos(pagina.casos);
+      setSiguienteCursor(pagina.siguienteCursor);
       setMetricas(metricasRes.data);
     } catch (error) {
       console.error('Error al cargar datos:', error);
@@ -35,11 +39,27 @@ export default function Dashboard() {
     }
   };
 
+  const cargarMasCasos = async () => {
+    if (!siguienteCursor) return;
+    setCargandoMas(true);
+    try {
+      const res = await casoApi.listar({ cursor: siguienteCursor, limite: LIMITE_PAGINA });
+      const pagina: PaginaCasos = res.data;
+      setCasos((anteriores) => [...anteriores, ...pagina.casos]);
+      setSiguienteCursor(pagina.siguienteCursor);
+    } catch (error) {
+      console.error('Error al cargar más casos:', error);
+    } finally {
+      setCargandoMas(false);
+    }
+  };
+
   const crearNuevoCaso = async (data: CasoCreateDTO) => {
     try {
       const response = await casoApi.crear(data);
       setModalOpen(false);
-      navigate(`/diagnostico/${response.data.id}`);
+      // La respuesta ya trae el primer paso del wizard
+      navigate(`/diagnostico/${response.data.id}`, { state: { caso: response.data, paso: response.data.paso } });
     } catch (error) {
       console.error('Error al crear caso:', error);
       alert('Error al crear el caso. Por favor intente nuevamente.');
@@ -226,6 +246,15 @@ export default function Dashboard() {
                 </div>
               </div>
             ))}
+            {siguienteCursor && (
+              <button
+                onClick={cargarMasCasos}
+                disabled={cargandoMas}
+                className="bg-white text-indigo-600 border border-indigo-200 px-6 py-3 rounded-xl hover:bg-indigo-50 transition-all font-medium disabled:opacity-50"
+              >
+                {cargandoMas ? 'Cargando...' : 'Cargar más casos'}
+              </button>
+            )}
           </div>
         )}
       </div>
@@ -1,12 +1,13 @@
-import { useState, useEffect } from 'react';
-import { useParams, useNavigate } from 'react-router-dom';
+import { useState, useEffect, useRef } from 'react';
+import { useParams, useNavigate, useLocation } from 'react-router-dom';
 import { ArrowLeft, Sparkles, HelpCircle, Lightbulb, ArrowRight, CheckCircle, AlertTriangle } from 'lucide-react';
-import { casoApi } from '../../services/api';
-import { Caso, Pregunta, Hipotesis } from '../../types';
+import { casoApi, abrirWizardSocket } from '../../services/api';
+import { Caso, Pregunta, Hipotesis, PasoDiagnostico, TrabajoDiagnostico, EventoWizard } from '../../types';
 
 export default function DiagnosticWizard() {
   const { id } = useParams();
   const navigate = useNavigate();
+  const location = useLocation();
   const [caso, setCaso] = useState<Caso | null>(null);
   const [preguntaActual, setPreguntaActual] = useState<Pregunta | null>(null);
   const [hipotesis, setHipotesis] = useState<Hipotesis[]>([]);
@@ -14,35 +15,60 @@ export default function DiagnosticWizard() {
   const [error, setError] = useState<string | null>(null);
   const [respuestaSeleccionada, setRespuestaSeleccionada] = useState<string>('');
 
+  // Con el WebSocket abierto las respuestas y el final van por ahí; si no, por HTTP
+  const socket = useRef<WebSocket | null>(null);
+  const respondiendo = useRef(false);
+
   useEffect(() => {
     cargarDatos();
   }, [id]);
 
+  useEffect(() => {
+    const ws = abrirWizardSocket(Number(id));
+    ws.onopen = () => { socket.current = ws; };
+    ws.onclose = () => { if (socket.current === ws) socket.current = null; };
+    ws.onmessage = (mensaje) => {
+      const evento: EventoWizard = JSON.parse(mensaje.data);
+      if (evento.tipo === 'PASO' && evento.paso) {
+        const paso = evento.paso;
+        if (respondiendo.current && (paso.listoParaFinalizar || !paso.siguientePregunta)) {
+          ws.send(JSON.stringify({ tipo: 'FINALIZAR' }));
+        } else {
+          aplicarPaso(paso);
+        }
+        respondiendo.current = false;
+      } else if (evento.tipo === 'DIAGNOSTICO') {
+        navigate(`/resultado/${id}`);
+      } else if (evento.tipo === 'ERROR') {
+        console.error('Error en el wizard:', evento.mensaje);
+      }
+    };
+    return () => ws.close();
+  }, [id]);
+
   const cargarDatos = async () => {
     try {
       setError(null);
       console.log('Cargando datos para caso:', id);
 
+      // Al venir de crear el caso, el caso y su primer paso llegan en el estado de navegación
+      const inicial = location.state as { caso?: Caso; paso?: PasoDiagnostico } | null;
+      if (inicial?.caso && inicial.paso && inicial.caso.id === Number(id)) {
+        setCaso(inicial.caso);
+        aplicarPaso(inicial.paso);
+        return;
+      }
+
       // Primero obtener el caso
       const casoRes = await casoApi.obtener(Number(id));
       console.log('Caso obtenido:', casoRes.data);
       setCaso(casoRes.data);
 
-      // Luego obtener la pregunta (esto inicializa las hipótesis en el backend)
+      // Luego el paso actual: pregunta e hipótesis (esto inicializa las hipótesis en el backend)
       try {
-        const preguntaRes = await casoApi.getSiguientePregunta(Number(id));
-        console.log('Pregunta obtenida:', preguntaRes.data);
-        setPreguntaActual(preguntaRes.data);
-
-        // Ahora sí obtener las hipótesis (que ya fueron creadas)
-        try {
-          const hipotesisRes = await casoApi.getHipotesis(Number(id));
-          console.log('Hipótesis obtenidas:', hipotesisRes.data);
-          setHipotesis(hipotesisRes.data || []);
-        } catch (hipErr) {
-          console.log('No se pudieron cargar hipótesis:', hipErr);
-          setHipotesis([]);
-        }
+        const pasoRes = await casoApi.registrarPaso(Number(id), []);
+        console.log('Paso obtenido:', pasoRes.data);
+        aplicarPaso(pasoRes.data);
       } catch (err: any) {
         console.error('Error al cargar pregunta:', err);
         // Si falla obtener la pregunta, no es fatal, podemos seguir
@@ -62,22 +88,35 @@ export default function DiagnosticWizard() {
     }
   };
 
+  const aplicarPaso = (paso: PasoDiagnostico) => {
+    setPreguntaActual(paso.siguientePregunta);
+    setHipotesis(paso.hipotesis || []);
+  };
+
   const responder = async () => {
     if (!respuestaSeleccionada || !preguntaActual) return;
 
+    if (socket.current) {
+      respondiendo.current = true;
+      socket.current.send(JSON.stringify({
+        tipo: 'RESPUESTA',
+        preguntaId: preguntaActual.id,
+        valor: respuestaSeleccionada
+      }));
+      setRespuestaSeleccionada('');
+      return;
+    }
+
     try {
-      await casoApi.responder(Number(id), {
+      // Una sola llamada: registra la respuesta y trae la siguiente pregunta con las hipótesis
+      const pasoRes = await casoApi.registrarPaso(Number(id), [{
         preguntaId: preguntaActual.id,
         valor: respuestaSeleccionada
-      });
+      }]);
+      const paso: PasoDiagnostico = pasoRes.data;
 
-      // Cargar siguiente pregunta
-      const siguienteRes = await casoApi.getSiguientePregunta(Number(id));
-      const hipotesisRes = await casoApi.getHipotesis(Number(id));
-      
-      if (siguienteRes.data) {
-        setPreguntaActual(siguienteRes.data);
-        setHipotesis(hipotesisRes.data);
+      if (!paso.listoParaFinalizar && paso.siguientePregunta) {
+        aplicarPaso(paso);
         setRespuestaSeleccionada('');
       } else {
         // No hay más preguntas, finalizar diagnóstico
@@ -89,8 +128,20 @@ export default function DiagnosticWizard() {
   };
 
   const finalizarDiagnostico = async () => {
+    if (socket.current) {
+      socket.current.send(JSON.stringify({ tipo: 'FINALIZAR' }));
+      return;
+    }
+
     try {
-      await casoApi.finalizar(Number(id));
+      // La inferencia corre en segundo plano; se espera su fin con long-poll
+      let trabajo: TrabajoDiagnostico = (await casoApi.finalizarAsync(Number(id))).data;
+      while (trabajo.estado === 'PENDIENTE' || trabajo.estado === 'EN_CURSO') {
+        trabajo = (await casoApi.esperarTrabajo(Number(id), trabajo.id)).data;
+      }
+      if (trabajo.estado === 'ERROR') {
+        throw new Error(trabajo.error ?? 'Error en el diagnóstico');
+      }
       navigate(`/resultado/${id}`);
     } catch (error) {
       console.error('Error al finalizar:', error);
@@ -25,6 +25,13 @@ export interface CasoCreateDTO {
   sintomaReportado: string;
 }
 
+export interface ListarCasosParams {
+  estado?: string;
+  tipo?: TipoElectrodomestico;
+  cursor?: string;
+  limite?: number;
+}
+
 export interface RespuestaDTO {
   preguntaId: number;
   valor: string;
@@ -33,13 +40,26 @@ export interface RespuestaDTO {
 export const casoApi = {
   crear: (data: CasoCreateDTO) => api.post('/casos', data),
   obtener: (id: number) => api.get(`/casos/${id}`),
-  listar: () => api.get('/casos'),
+  // Sin cursor ni limite el backend retorna el arreglo de casos; con alguno, una página
+  // (más recientes primero) cuyo siguienteCursor pide la próxima
+  listar: (params?: ListarCasosParams) => api.get('/casos', { params }),
   getSiguientePregunta: (id: number) => api.get(`/casos/${id}/siguiente-pregunta`),
   responder: (id: number, data: RespuestaDTO) => api.post(`/casos/${id}/responder`, data),
   getHipotesis: (id: number) => api.get(`/casos/${id}/hipotesis`),
+  // Responde y avanza en una sola llamada; con [] sólo retorna el paso actual
+  registrarPaso: (id: number, respuestas: RespuestaDTO[]) => api.post(`/casos/${id}/pasos`, respuestas),
   finalizar: (id: number) => api.post(`/casos/${id}/finalizar`),
+  // Finaliza en segundo plano; el trabajo se consulta con esperarTrabajo
+  finalizarAsync: (id: number) => api.post(`/casos/${id}/finalizar`, null, { params: { modo: 'async' } }),
+  // Long-poll: responde al terminar el trabajo o a los `esperar` segundos
+  esperarTrabajo: (id: number, trabajoId: string, esperar = 25) =>
+    api.get(`/casos/${id}/trabajos/${trabajoId}`, { params: { esperar } }),
 };
 
+// Wizard por WebSocket: envía el paso al conectar y después uno por cada respuesta
+export const abrirWizardSocket = (id: number) =>
+  new WebSocket(`${API_URL.replace(/^http/, 'ws').replace(/\/api$/, '')}/ws/casos/${id}/wizard`);
+
 export const metricasApi = {
   obtener: () => api.get('/metricas'),
 };
@@ -32,6 +32,13 @@ export interface Caso {
   respuestas?: Respuesta[];
 }
 
+export type CasoResumen = Omit<Caso, 'clienteTelefono' | 'respuestas'>;
+
+export interface PaginaCasos {
+  casos: CasoResumen[];
+  siguienteCursor: string | null;
+}
+
 export interface Respuesta {
   id: number;
   preguntaId: number;
@@ -69,9 +76,37 @@ export interface Hipotesis {
   nivel: string;
 }
 
+// Estado del wizard después de POST /casos/{id}/pasos (y en la respuesta de crear caso)
+export interface PasoDiagnostico {
+  siguientePregunta: Pregunta | null;
+  hipotesis: Hipotesis[];
+  listoParaFinalizar: boolean;
+}
+
+// Diagnóstico en segundo plano (POST /casos/{id}/finalizar?modo=async)
+export interface TrabajoDiagnostico {
+  id: string;
+  casoId: number;
+  estado: 'PENDIENTE' | 'EN_CURSO' | 'COMPLETADO' | 'ERROR';
+  creado: string;
+  finalizado: string | null;
+  diagnostico: Diagnostico | null;
+  error: string | null;
+}
+
+// Eventos del wizard por WebSocket (/ws/casos/{id}/wizard)
+export interface EventoWizard {
+  tipo: 'PASO' | 'DIAGNOSTICO' | 'ERROR';
+  paso?: PasoDiagnostico;
+  diagnostico?: Diagnostico;
+  mensaje?: string;
+}
+
 export interface Metricas {
   casosTotales: number;
   diyExitosos: number;
   tecnicoEnviados: number;
   tiempoPromedio: number;
+  porEstado?: Partial<Record<EstadoCaso, number>>;
+  porTipo?: Partial<Record<TipoElectrodomestico, number>>;
 }
\ No newline at end of file